@@ -0,0 +1,203 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Cached per-account Device statistics
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** Cached per-account Device statistics (device count, active device count, and last
+*** GPS event time).<br>
+*** The statistics for all accounts are loaded with a single grouped Device query:<br>
+*** <code>SELECT accountID,COUNT(*),SUM(isActive),MAX(lastGPSTimestamp) FROM Device GROUP BY accountID</code><br>
+*** and are reloaded after "db.accountStats.refreshSec" seconds, or after a Device is inserted,
+*** deleted, activated, or deactivated within this JVM.  A refresh value of '0' disables the
+*** cache, in which case the statistics are queried for each account request.
+**/
+
+public class AccountStats
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_refreshSec = RTConfig.key(DBConfig.PROP_db_accountStats_refreshSec);
+
+    /**
+    *** Returns true if the account statistics cache is enabled
+    *** @return True if the account statistics cache is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return (KEY_refreshSec.asLong(60L) > 0L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static final String AGGREGATE_FIELDS[] = new String[] {
+        DBProvider.FLD_COUNT(),
+        DBProvider.FLD_SUM(Device.FLD_isActive),
+        DBProvider.FLD_MAX(Device.FLD_lastGPSTimestamp),
+    };
+
+    private static final AccountStats EMPTY_STATS = new AccountStats(null, new long[3]);
+
+    private static Object                   statsLock   = new Object();
+    private static Map<String,AccountStats> statsMap    = null;
+    private static long                     statsLoadMS = 0L;
+
+    /* load the statistics for all accounts (or the specified account) */
+    private static Map<String,AccountStats> _loadStats(String acctID)
+        throws DBException
+    {
+        String where = null;
+        if (acctID != null) {
+            DBWhere dwh = new DBWhere(Device.getFactory());
+            where = dwh.WHERE_(dwh.EQ(Device.FLD_accountID,acctID));
+        }
+        Map<String,long[]> aggr = Device.getFactory().getGroupedAggregates(
+            Device.FLD_accountID, AGGREGATE_FIELDS, where);
+        Map<String,AccountStats> map = new HashMap<String,AccountStats>();
+        for (String id : aggr.keySet()) {
+            map.put(id, new AccountStats(id, aggr.get(id)));
+        }
+        return map;
+    }
+
+    /**
+    *** Gets the Device statistics for the specified account
+    *** @param acctID  The account ID
+    *** @return The account statistics (never null)
+    **/
+    public static AccountStats getStats(String acctID)
+    {
+        if (StringTools.isBlank(acctID)) {
+            return EMPTY_STATS;
+        }
+        try {
+            long refreshMS = KEY_refreshSec.asLong(60L) * 1000L;
+            if (refreshMS <= 0L) {
+                // cache disabled
+                AccountStats as = AccountStats._loadStats(acctID).get(acctID);
+                return (as != null)? as : EMPTY_STATS;
+            }
+            synchronized (AccountStats.statsLock) {
+                long nowMS = System.currentTimeMillis();
+                if ((AccountStats.statsMap == null) || ((nowMS - AccountStats.statsLoadMS) > refreshMS)) {
+                    AccountStats.statsMap    = AccountStats._loadStats(null);
+                    AccountStats.statsLoadMS = nowMS;
+                }
+                AccountStats as = AccountStats.statsMap.get(acctID);
+                return (as != null)? as : EMPTY_STATS;
+            }
+        } catch (DBException dbe) {
+            Print.logException("Unable to retrieve Account statistics", dbe);
+            return EMPTY_STATS;
+        }
+    }
+
+    /**
+    *** Discards the cached statistics (the statistics will be reloaded on the next request)
+    **/
+    public static void invalidate()
+    {
+        synchronized (AccountStats.statsLock) {
+            AccountStats.statsMap = null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private String accountID     = null;
+    private long   deviceCount   = 0L;
+    private long   activeCount   = 0L;
+    private long   lastEventTime = 0L;
+
+    /* constructor */
+    private AccountStats(String acctID, long aggr[])
+    {
+        this.accountID     = acctID;
+        this.deviceCount   = aggr[0];
+        this.activeCount   = aggr[1];
+        this.lastEventTime = aggr[2];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the account ID
+    *** @return The account ID
+    **/
+    public String getAccountID()
+    {
+        return (this.accountID != null)? this.accountID : "";
+    }
+
+    /**
+    *** Gets the number of devices owned by this account
+    *** @return The number of devices
+    **/
+    public long getDeviceCount()
+    {
+        return this.deviceCount;
+    }
+
+    /**
+    *** Gets the number of active devices owned by this account
+    *** @return The number of active devices
+    **/
+    public long getActiveDeviceCount()
+    {
+        return this.activeCount;
+    }
+
+    /**
+    *** Gets the most recent valid GPS event time of all devices owned by this account
+    *** @return The last event time, or '0' if no devices have reported a valid GPS event
+    **/
+    public long getLastEventTime()
+    {
+        return this.lastEventTime;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a String representation of this instance
+    *** @return A String representation of this instance
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.getAccountID());
+        sb.append(" devices=").append(this.getDeviceCount());
+        sb.append(" active=").append(this.getActiveDeviceCount());
+        sb.append(" lastEvent=").append(this.getLastEventTime());
+        return sb.toString();
+    }
+
+}
@@ -255,6 +255,8 @@ public class BasicPrivateLabel
     public  static final String PROP_DeviceChooser_search               = "deviceChooser.search";               // true|false (table only)
     public  static final String PROP_DeviceChooser_singleItemTextField  = "deviceChooser.singleItemTextField";  // true|false (hint)
     public  static final String PROP_DeviceChooser_includeListHtml      = "deviceChooser.includeListHtml";      // include iniitial HTML
+    public  static final String PROP_DeviceChooser_serverSearch         = "deviceChooser.serverSearch";         // true|false (table only)
+    public  static final String PROP_DeviceChooser_pageSize             = "deviceChooser.pageSize";             // int (serverSearch only)
 
     // ---
     public  static final String PROP_DeviceChooser_extraDebugEntries    = "deviceChooser.extraDebugEntries";    // int
@@ -355,6 +355,71 @@ public class DBConfig
     *** Type: Boolean
     **/
     public static final String PROP_track_enableService             = "track.enableService";
+    
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds that the host PrivateLabel properties are cached (0 to disable).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_track_cache_hostPropertiesTTL   = "track.cache.hostPropertiesTTL";
+    
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds that the session Account/User records are cached (0 to disable).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_track_cache_accountUserTTL      = "track.cache.accountUserTTL";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds that the per-account DeviceChooser search index is cached (0 to disable).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_track_cache_deviceChooserTTL    = "track.cache.deviceChooserTTL";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** True to serve generated static JavaScript/CSS as versioned, cacheable resources, rather than inline.<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_track_generatedResources        = "track.generatedResources";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** True to append a version (file modification time) to local JavaScript/CSS file references.<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_track_versionStaticFiles        = "track.versionStaticFiles";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of EventData records selected per block when streaming events from the 'events' servlet.<br>
+    *** Type: Long
+    **/
+    public static final String PROP_events_stream_blockSize         = "events.stream.blockSize";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of EventData records returned per streamed 'events' servlet request (0 for no maximum).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_events_stream_maximumLimit      = "events.stream.maximumLimit";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of fixes accepted per batch upload to the HTTP device servlets (0 to disable batch uploads).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_ingest_batch_maximumFixes       = "ingest.batch.maximumFixes";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of EventData records inserted per multi-row insert during a batch upload.<br>
+    *** Type: Long
+    **/
+    public static final String PROP_ingest_batch_insertSize         = "ingest.batch.insertSize";
 
     // -------
     
@@ -417,6 +482,94 @@ public class DBConfig
     **/
     public static final String PROP_db_defaultDeviceAuthorization_  = PROP_db_defaultDeviceAuthorization + ".";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds after which the in-memory DeviceGroup authorization index for an
+    *** account is reloaded (0 to disable the index, the default).  Membership changes made by
+    *** other processes are not seen by this JVM until the index is reloaded.<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_deviceAuthIndex_refreshSec   = "db.deviceAuthIndex.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds after which the in-memory StatusCode cache for an account is
+    *** reloaded (0 to disable the cache).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_statusCodeCache_refreshSec   = "db.statusCodeCache.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds after which the cached per-account Device statistics (device count,
+    *** active device count, last event time) are reloaded (0 to disable the cache).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_accountStats_refreshSec      = "db.accountStats.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds over which Device session statistics are aggregated before being
+    *** written to the SessionStatsBucket table (0 to disable aggregation).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_sessionStats_intervalSec     = "db.sessionStats.intervalSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Journal file for session statistics which have not yet been written to the database
+    *** (defaults to "sessionStats.journal" in the log file directory).  The server name is
+    *** inserted before the file extension (ie. "sessionStats.gtsdmtp.journal").<br>
+    *** Type: String
+    **/
+    public static final String PROP_db_sessionStats_journalFile     = "db.sessionStats.journalFile";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds between writes of the changed Device event state fields (last location,
+    *** odometer, etc) held in the DeviceStateCache (0 to update the Device record immediately).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_deviceState_flushSec         = "db.deviceState.flushSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Number of seconds for which recently inserted EventData keys are remembered per device,
+    *** to drop retransmitted events before they are inserted (0 to disable).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_eventDupFilter_windowSec     = "db.eventDupFilter.windowSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Directory in which EventData records are spooled while the database is unavailable or
+    *** slow (blank to disable the EventData spool).<br>
+    *** Type: String
+    **/
+    public static final String PROP_db_eventSpool_directory         = "db.eventSpool.directory";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum total size (in megabytes) of the EventData spool segment files.<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_eventSpool_maxMB             = "db.eventSpool.maxMB";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Size (in kilobytes) of each EventData spool segment file.<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_eventSpool_segmentKB         = "db.eventSpool.segmentKB";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** EventData insert time (in milliseconds) above which new events are spooled until the
+    *** spool has been drained (0 to spool only when the insert fails).<br>
+    *** Type: Long
+    **/
+    public static final String PROP_db_eventSpool_slowInsertMS      = "db.eventSpool.slowInsertMS";
+
     // -------
     
     /**
@@ -479,12 +632,32 @@ public class DBConfig
         new RTKey.Entry(PROP_track_js_directory                 , "./js"                        , "'Track' JavaScript Directory"),
         new RTKey.Entry(PROP_track_offlineFile                  , null                          , "'Track' Offline File"),
         new RTKey.Entry(PROP_track_enableService                , false                         , "'Track' Enable 'Service'"),
+        new RTKey.Entry(PROP_track_cache_hostPropertiesTTL      , 60L                           , "'Track' Host Properties Cache Seconds"),
+        new RTKey.Entry(PROP_track_cache_accountUserTTL         , 30L                           , "'Track' Account/User Cache Seconds"),
+        new RTKey.Entry(PROP_track_cache_deviceChooserTTL       , 300L                          , "'Track' DeviceChooser Index Cache Seconds"),
+        new RTKey.Entry(PROP_track_generatedResources           , true                          , "'Track' Externalize Generated Resources"),
+        new RTKey.Entry(PROP_track_versionStaticFiles           , true                          , "'Track' Version Static File References"),
+        new RTKey.Entry(PROP_events_stream_blockSize            , 500L                          , "'Events' Stream Block Size"),
+        new RTKey.Entry(PROP_events_stream_maximumLimit         , 100000L                       , "'Events' Stream Maximum Limit"),
+        new RTKey.Entry(PROP_ingest_batch_maximumFixes          , 5000L                         , "Batch Upload Maximum Fixes"),
+        new RTKey.Entry(PROP_ingest_batch_insertSize            , 500L                          , "Batch Upload Insert Size"),
         new RTKey.Entry(PROP_SubdivisionProvider_class          , null                          , "SubdivisionProvider class"),
         new RTKey.Entry(PROP_EventFunctionMapFactory_class      , null                          , "EventFunctionMapFactory subclass"),
         new RTKey.Entry(PROP_EventIdentifierMapFactory_class    , null                          , "EventIdentifierMapFactory subclass"),
         new RTKey.Entry(PROP_Transport_queryEnabled             , false                         , "Enable DB Transport query"),
         new RTKey.Entry(PROP_UniqueXID_queryEnabled             , false                         , "Enable DB UniqueXID query"),
         new RTKey.Entry(PROP_db_defaultDeviceAuthorization      , DEFAULT_DEVICE_AUTHORIZATION  , "Default Device Authoirization"),
+        new RTKey.Entry(PROP_db_deviceAuthIndex_refreshSec      , 0L                            , "Device Authorization Index Refresh Seconds"),
+        new RTKey.Entry(PROP_db_statusCodeCache_refreshSec      , 60L                           , "StatusCode Cache Refresh Seconds"),
+        new RTKey.Entry(PROP_db_accountStats_refreshSec         , 60L                           , "Account Statistics Cache Refresh Seconds"),
+        new RTKey.Entry(PROP_db_sessionStats_intervalSec        , 0L                            , "Session Statistics Aggregation Interval Seconds"),
+        new RTKey.Entry(PROP_db_sessionStats_journalFile        , null                          , "Session Statistics Journal File"),
+        new RTKey.Entry(PROP_db_deviceState_flushSec            , 0L                            , "Device State Write-Behind Flush Seconds"),
+        new RTKey.Entry(PROP_db_eventDupFilter_windowSec        , 3600L                         , "EventData Duplicate Filter Window Seconds"),
+        new RTKey.Entry(PROP_db_eventSpool_directory            , null                          , "EventData Spool Directory"),
+        new RTKey.Entry(PROP_db_eventSpool_maxMB                , 256L                          , "EventData Spool Maximum Megabytes"),
+        new RTKey.Entry(PROP_db_eventSpool_segmentKB            , 4096L                         , "EventData Spool Segment Kilobytes"),
+        new RTKey.Entry(PROP_db_eventSpool_slowInsertMS         , 5000L                         , "EventData Spool Slow Insert Milliseconds"),
         new RTKey.Entry(PROP_sysAdmin_account                   , ""                            , "System Admin Account ID"),
         new RTKey.Entry(PROP_dcs_name                           , ""                            , "Default DCS ame"),
         new RTKey.Entry(PROP_dcs_bindInterface                  , null                          , "DCS Local 'Bind' Address"),
@@ -514,6 +687,20 @@ public class DBConfig
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
     
+    /**
+    *** Returns the name of this server process, used to keep the files of several processes
+    *** sharing a configured directory apart.  This is the "log.name" property (set to the 
+    *** DCS name by the "runserver" scripts), or the name of the main class.
+    *** (see "RTConfig.getServerName()")
+    *** @return The server name
+    **/
+    public static String getServerName()
+    {
+        return RTConfig.getServerName();
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** The GTS_HOME environment variable name
     **/
@@ -653,6 +840,7 @@ public class DBConfig
             PACKAGE_TABLES_ + "RoleAcl"      ,
             PACKAGE_TABLES_ + "StatusCode"   ,
             PACKAGE_TABLES_ + "SystemProps"  ,
+            PACKAGE_TABLES_ + "SessionStatsBucket",
         };
         for (String tableClassName : standardTables) {
             DBAdmin.addTableFactory(tableClassName, true/*required*/);
@@ -632,6 +632,38 @@ public class DCServerConfig
 
     }
 
+    /**
+    *** Queue SMS command to the NotificationOutbox for delivery, or send it
+    *** immediately if the outbox is not enabled
+    *** @param handlerName  The name of the SMS gateway handler
+    *** @param device       The device to which the SMS command is sent
+    *** @param commandStr   The SMS command which is sent
+    *** @return The ResultCode (SUCCESS if the command was queued)
+    **/
+    public static DCServerFactory.ResultCode QueueSMSCommand(String handlerName, Device device, String commandStr)
+    {
+
+        /* outbox not enabled (or not available), send now */
+        if (!NotificationOutbox.IsEnabled() || (NotificationOutbox.getInstance() == null)) {
+            return DCServerConfig.SendSMSCommand(handlerName, device, commandStr);
+        }
+
+        /* check handler before queueing */
+        String smsHandler = StringTools.blankDefault(handlerName,"body");
+        if (SMSOutboundGateway.GetSMSGateway(smsHandler) == null) {
+            Print.logError("SMS gateway handler not found: " + smsHandler);
+            return DCServerFactory.ResultCode.INVALID_PROTO;
+        }
+
+        /* queue */
+        if (SMSOutboundGateway.QueueSMSCommand(smsHandler, device, commandStr)) {
+            return DCServerFactory.ResultCode.SUCCESS;
+        } else {
+            return DCServerFactory.ResultCode.INTERNAL_ERROR;
+        }
+
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -1247,6 +1279,75 @@ public class DCServerConfig
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Gets the "Stationary Dwell Seconds" config.  Unchanged events received after the
+    *** device has been stationary for this number of seconds are not stored.
+    *** @param dft  The default "Stationary Dwell Seconds" (0 to disable stationary filtering)
+    *** @return The "Stationary Dwell Seconds"
+    **/
+    public long getStationaryDwellSec(long dft)
+    {
+        return this.getLongProperty(DCServerFactory.CONFIG_STATIONARY_DWELL_SEC(this.getName()), dft);
+    }
+
+    /**
+    *** Gets the "Stationary Radius Meters" config
+    *** @param dft  The default "Stationary Radius Meters"
+    *** @return The "Stationary Radius Meters"
+    **/
+    public double getStationaryRadiusMeters(double dft)
+    {
+        return this.getDoubleProperty(DCServerFactory.CONFIG_STATIONARY_RADIUS_METERS(this.getName()), dft);
+    }
+
+    /**
+    *** Gets the "Stationary Maximum Speed KPH" config
+    *** @param dft  The default "Stationary Maximum Speed KPH"
+    *** @return The "Stationary Maximum Speed KPH"
+    **/
+    public double getStationaryMaxSpeedKPH(double dft)
+    {
+        return this.getDoubleProperty(DCServerFactory.CONFIG_STATIONARY_MAX_SPEED_KPH(this.getName()), dft);
+    }
+
+    /**
+    *** Gets the "Stationary Heartbeat Seconds" config.  While stationary, one event is still
+    *** stored every this number of seconds.
+    *** @param dft  The default "Stationary Heartbeat Seconds" (0 for no heartbeat events)
+    *** @return The "Stationary Heartbeat Seconds"
+    **/
+    public long getStationaryHeartbeatSec(long dft)
+    {
+        return this.getLongProperty(DCServerFactory.CONFIG_STATIONARY_HEARTBEAT_SEC(this.getName()), dft);
+    }
+
+    private StationaryFilter stationaryFilter = null;
+
+    /**
+    *** Gets the StationaryFilter for this server
+    *** @return The StationaryFilter, or null if stationary filtering is not enabled for this server
+    **/
+    public StationaryFilter getStationaryFilter()
+    {
+        long dwellSec = this.getStationaryDwellSec(0L);
+        if (dwellSec <= 0L) {
+            return null;
+        }
+        synchronized (this) {
+            if (this.stationaryFilter == null) {
+                this.stationaryFilter = new StationaryFilter(this.getName());
+            }
+            this.stationaryFilter.setConfig(
+                dwellSec,
+                this.getStationaryRadiusMeters(25.0),
+                this.getStationaryMaxSpeedKPH(2.0),
+                this.getStationaryHeartbeatSec(3600L));
+            return this.stationaryFilter;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Convenience for converting the initial/final packet to a byte array.
     *** If the string begins with "0x" the the remain string is assumed to be hex
@@ -1063,6 +1063,10 @@ public class DCServerFactory
         if (!_didInit) {
             DCServerFactory._startupInit();
             SMSOutboundGateway._startupInit();
+            if (NotificationOutbox.IsEnabled()) {
+                // resume delivery of any previously journaled notifications
+                NotificationOutbox.getInstance();
+            }
         }
     }
 
@@ -1929,6 +1933,10 @@ public class DCServerFactory
     public static final String  CFG_useLastValidGPSLocation     = ".useLastValidGPSLocation";    // boolean
     public static final String  CFG_initialPacket               = ".initialPacket";              // String/Bytes
     public static final String  CFG_finalPacket                 = ".finalPacket";                // String/Bytes
+    public static final String  CFG_stationaryDwellSec          = ".stationaryDwellSec";         // long
+    public static final String  CFG_stationaryRadiusMeters      = ".stationaryRadiusMeters";     // double
+    public static final String  CFG_stationaryMaxSpeedKPH       = ".stationaryMaxSpeedKPH";      // double
+    public static final String  CFG_stationaryHeartbeatSec      = ".stationaryHeartbeatSec";     // long
 
     /**
     *** Return an array of "TCP port" property names
@@ -2159,6 +2167,46 @@ public class DCServerFactory
         return new String[] { name + CFG_useLastValidGPSLocation };
     }
 
+    /**
+    *** Return an array of "Stationary Dwell Seconds" property names
+    *** @param name  The server name
+    *** @return An array of "Stationary Dwell Seconds" property names
+    **/
+    public static String[] CONFIG_STATIONARY_DWELL_SEC(String name)
+    {
+        return new String[] { name + CFG_stationaryDwellSec };
+    }
+
+    /**
+    *** Return an array of "Stationary Radius Meters" property names
+    *** @param name  The server name
+    *** @return An array of "Stationary Radius Meters" property names
+    **/
+    public static String[] CONFIG_STATIONARY_RADIUS_METERS(String name)
+    {
+        return new String[] { name + CFG_stationaryRadiusMeters };
+    }
+
+    /**
+    *** Return an array of "Stationary Maximum Speed KPH" property names
+    *** @param name  The server name
+    *** @return An array of "Stationary Maximum Speed KPH" property names
+    **/
+    public static String[] CONFIG_STATIONARY_MAX_SPEED_KPH(String name)
+    {
+        return new String[] { name + CFG_stationaryMaxSpeedKPH };
+    }
+
+    /**
+    *** Return an array of "Stationary Heartbeat Seconds" property names
+    *** @param name  The server name
+    *** @return An array of "Stationary Heartbeat Seconds" property names
+    **/
+    public static String[] CONFIG_STATIONARY_HEARTBEAT_SEC(String name)
+    {
+        return new String[] { name + CFG_stationaryHeartbeatSec };
+    }
+
     /**
     *** Return an array of "Initial Packet" property names
     *** @param name  The server name
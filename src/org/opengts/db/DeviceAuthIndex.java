@@ -0,0 +1,352 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  In-memory DeviceGroup membership index used for User device authorization
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** In-memory index of the DeviceGroup membership (DeviceList table) for each Account.<br>
+*** Each device within an account is assigned an ordinal, and each DeviceGroup is represented
+*** by a BitSet of device ordinals.  The combined bitmap of all groups authorized for a User
+*** is cached by user, so a User device authorization check becomes a simple bit lookup rather
+*** than a DeviceList query for each authorized group.<br>
+*** The index for an account is loaded with a single DeviceList query, is updated incrementally
+*** as DeviceList entries are added/removed, is discarded when a Device or DeviceGroup is deleted,
+*** and is reloaded after "db.deviceAuthIndex.refreshSec" seconds.<br>
+*** Note: only changes made within this JVM are seen immediately.  Group membership changes made
+*** by other processes (ie. another servlet container, or a command-line tool) are not seen until
+*** the index is reloaded, so a User may be granted/denied access to a device for up to
+*** "db.deviceAuthIndex.refreshSec" seconds after such a change.  The index is disabled by
+*** default (refresh value of '0').
+**/
+
+public class DeviceAuthIndex
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_refreshSec = RTConfig.key(DBConfig.PROP_db_deviceAuthIndex_refreshSec);
+
+    /**
+    *** Returns true if the authorization index is enabled
+    *** @return True if the authorization index is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return (KEY_refreshSec.asLong(0L) > 0L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* combined group bitmap for a single user */
+    private static class UserBits
+    {
+        public long                   version = 0L;
+        public java.util.List<String> groups  = null;
+        public BitSet                 bits    = null;
+        public UserBits(long version, java.util.List<String> groups, BitSet bits) {
+            this.version = version;
+            this.groups  = groups;
+            this.bits    = bits;
+        }
+    }
+
+    /* index for a single account */
+    private static class AccountIndex
+    {
+        public  String              accountID   = null;
+        public  long                loadTimeMS  = 0L;
+        public  long                version     = 0L;
+        private Map<String,Integer> devOrdinal  = new HashMap<String,Integer>();
+        private Map<String,BitSet>  groupBits   = new HashMap<String,BitSet>();
+        private Map<String,UserBits> userBits   = new HashMap<String,UserBits>();
+        public AccountIndex(String accountID) {
+            this.accountID  = accountID;
+            this.loadTimeMS = System.currentTimeMillis();
+        }
+        private int getOrdinal(String deviceID, boolean create) {
+            Integer ord = this.devOrdinal.get(deviceID);
+            if (ord != null) {
+                return ord.intValue();
+            } else
+            if (create) {
+                int n = this.devOrdinal.size();
+                this.devOrdinal.put(deviceID, new Integer(n));
+                return n;
+            } else {
+                return -1;
+            }
+        }
+        public void add(String groupID, String deviceID) {
+            BitSet bits = this.groupBits.get(groupID);
+            if (bits == null) {
+                bits = new BitSet();
+                this.groupBits.put(groupID, bits);
+            }
+            bits.set(this.getOrdinal(deviceID,true));
+            this.version++;
+        }
+        public void remove(String groupID, String deviceID) {
+            BitSet bits = this.groupBits.get(groupID);
+            int ord = this.getOrdinal(deviceID,false);
+            if ((bits != null) && (ord >= 0)) {
+                bits.clear(ord);
+            }
+            this.version++;
+        }
+        public boolean isDeviceInGroup(String groupID, String deviceID) {
+            BitSet bits = this.groupBits.get(groupID);
+            int ord = this.getOrdinal(deviceID,false);
+            return (bits != null) && (ord >= 0) && bits.get(ord);
+        }
+        public boolean isDeviceInGroups(String userID, java.util.List<String> groups, String deviceID) {
+            int ord = this.getOrdinal(deviceID,false);
+            if (ord < 0) {
+                return false;
+            }
+            UserBits ub = this.userBits.get(userID);
+            if ((ub == null) || (ub.version != this.version) || (ub.groups != groups)) {
+                // (re)build the combined bitmap for this user
+                BitSet bits = new BitSet();
+                for (String groupID : groups) {
+                    BitSet gb = this.groupBits.get(groupID.toLowerCase());
+                    if (gb != null) {
+                        bits.or(gb);
+                    }
+                }
+                ub = new UserBits(this.version, groups, bits);
+                this.userBits.put(userID, ub);
+            }
+            return ub.bits.get(ord);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static Map<String,AccountIndex> accountIndexMap = new HashMap<String,AccountIndex>();
+
+    private static long changeCount = 0L;
+
+    /**
+    *** Returns the number of DeviceList/Device/DeviceGroup changes reported to this index
+    *** within this JVM.  May be used by other caches to detect group membership changes.
+    *** @return The change count
+    **/
+    public static long getChangeCount()
+    {
+        synchronized (accountIndexMap) {
+            return DeviceAuthIndex.changeCount;
+        }
+    }
+
+    /* load the DeviceList membership for the specified account */
+    private static AccountIndex _loadAccountIndex(String accountID)
+        throws DBException
+    {
+        // DBSelect: SELECT groupID,deviceID FROM DeviceList WHERE (accountID='acct')
+        DBSelect<DeviceList> dsel = new DBSelect<DeviceList>(DeviceList.getFactory());
+        dsel.setSelectedFields(DeviceList.FLD_groupID, DeviceList.FLD_deviceID);
+        DBWhere dwh = dsel.createDBWhere();
+        dsel.setWhere(dwh.WHERE(dwh.EQ(DeviceList.FLD_accountID,accountID)));
+
+        /* read DeviceList */
+        AccountIndex ndx = new AccountIndex(accountID);
+        DBConnection dbc = null;
+        Statement   stmt = null;
+        ResultSet     rs = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String grpID = StringTools.trim(rs.getString(DeviceList.FLD_groupID)).toLowerCase();
+                String devID = StringTools.trim(rs.getString(DeviceList.FLD_deviceID)).toLowerCase();
+                ndx.add(grpID, devID);
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Loading DeviceList authorization index", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        return ndx;
+
+    }
+
+    /* return the cached index for the specified account, or null if absent/expired (must be called while synchronized) */
+    private static AccountIndex _getCachedAccountIndex(String accountID)
+    {
+        long refreshMS = KEY_refreshSec.asLong(0L) * 1000L;
+        AccountIndex ndx = accountIndexMap.get(accountID);
+        if ((ndx == null) || ((System.currentTimeMillis() - ndx.loadTimeMS) > refreshMS)) {
+            return null;
+        }
+        return ndx;
+    }
+
+    /* load the index for the specified account (must NOT be called while synchronized) */
+    private static AccountIndex _reloadAccountIndex(String accountID)
+        throws DBException
+    {
+        long startCount;
+        synchronized (accountIndexMap) {
+            startCount = DeviceAuthIndex.changeCount;
+        }
+        AccountIndex ndx = DeviceAuthIndex._loadAccountIndex(accountID);
+        synchronized (accountIndexMap) {
+            if (DeviceAuthIndex.changeCount == startCount) {
+                // no changes were reported while loading, publish the new index
+                accountIndexMap.put(accountID, ndx);
+            } else {
+                // a change may have been missed by this load, leave it uncached
+                accountIndexMap.remove(accountID);
+            }
+        }
+        return ndx;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified device is a member of the specified group.
+    *** (does not check for the "all" group)
+    *** @param accountID  The Account ID
+    *** @param groupID    The DeviceGroup ID
+    *** @param deviceID   The Device ID
+    *** @return True if the device is a member of the group
+    *** @throws DBException if an error occurs while loading the account index
+    **/
+    public static boolean isDeviceInGroup(String accountID, String groupID, String deviceID)
+        throws DBException
+    {
+        if (StringTools.isBlank(accountID) || StringTools.isBlank(groupID) || StringTools.isBlank(deviceID)) {
+            return false;
+        }
+        String acctID = accountID.toLowerCase();
+        synchronized (accountIndexMap) {
+            AccountIndex ndx = DeviceAuthIndex._getCachedAccountIndex(acctID);
+            if (ndx != null) {
+                return ndx.isDeviceInGroup(groupID.toLowerCase(), deviceID.toLowerCase());
+            }
+        }
+        AccountIndex ndx = DeviceAuthIndex._reloadAccountIndex(acctID);
+        synchronized (accountIndexMap) {
+            return ndx.isDeviceInGroup(groupID.toLowerCase(), deviceID.toLowerCase());
+        }
+    }
+
+    /**
+    *** Returns true if the specified device is a member of any of the specified groups.
+    *** The combined group bitmap is cached for the user, and is rebuilt when the index
+    *** changes, or when a different group list instance is specified.
+    *** (does not check for the "all" group)
+    *** @param accountID  The Account ID
+    *** @param userID     The User ID
+    *** @param groups     The list of groups authorized for the user
+    *** @param deviceID   The Device ID
+    *** @return True if the device is a member of any listed group
+    *** @throws DBException if an error occurs while loading the account index
+    **/
+    public static boolean isDeviceInGroups(String accountID, String userID, java.util.List<String> groups, String deviceID)
+        throws DBException
+    {
+        if (StringTools.isBlank(accountID) || ListTools.isEmpty(groups) || StringTools.isBlank(deviceID)) {
+            return false;
+        }
+        String acctID = accountID.toLowerCase();
+        synchronized (accountIndexMap) {
+            AccountIndex ndx = DeviceAuthIndex._getCachedAccountIndex(acctID);
+            if (ndx != null) {
+                return ndx.isDeviceInGroups(StringTools.trim(userID), groups, deviceID.toLowerCase());
+            }
+        }
+        AccountIndex ndx = DeviceAuthIndex._reloadAccountIndex(acctID);
+        synchronized (accountIndexMap) {
+            return ndx.isDeviceInGroups(StringTools.trim(userID), groups, deviceID.toLowerCase());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Callback when a device has been added to a group
+    *** @param accountID  The Account ID
+    *** @param groupID    The DeviceGroup ID
+    *** @param deviceID   The Device ID
+    **/
+    public static void deviceAdded(String accountID, String groupID, String deviceID)
+    {
+        if ((accountID != null) && (groupID != null) && (deviceID != null)) {
+            synchronized (accountIndexMap) {
+                DeviceAuthIndex.changeCount++;
+                AccountIndex ndx = accountIndexMap.get(accountID.toLowerCase());
+                if (ndx != null) {
+                    ndx.add(groupID.toLowerCase(), deviceID.toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+    *** Callback when a device has been removed from a group
+    *** @param accountID  The Account ID
+    *** @param groupID    The DeviceGroup ID
+    *** @param deviceID   The Device ID
+    **/
+    public static void deviceRemoved(String accountID, String groupID, String deviceID)
+    {
+        if ((accountID != null) && (groupID != null) && (deviceID != null)) {
+            synchronized (accountIndexMap) {
+                DeviceAuthIndex.changeCount++;
+                AccountIndex ndx = accountIndexMap.get(accountID.toLowerCase());
+                if (ndx != null) {
+                    ndx.remove(groupID.toLowerCase(), deviceID.toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+    *** Discards the index for the specified account.  The index will be reloaded on next access.
+    *** @param accountID  The Account ID
+    **/
+    public static void invalidate(String accountID)
+    {
+        if (accountID != null) {
+            synchronized (accountIndexMap) {
+                DeviceAuthIndex.changeCount++;
+                accountIndexMap.remove(accountID.toLowerCase());
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+}
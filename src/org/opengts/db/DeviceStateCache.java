@@ -0,0 +1,276 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Write-behind cache for Device event state fields
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** Write-behind cache for the Device event state fields (last valid location, GPS timestamp,
+*** odometer, input state, notify fields, etc) updated by "Device.updateChangedEventFields".<br>
+*** Rather than updating the Device row after each received packet, the changed field values
+*** are merged per device in memory, and written every "db.deviceState.flushSec" seconds (and
+*** at shutdown) with a single batched update.  A flush interval of '0' disables the cache, in
+*** which case the Device row is updated immediately.<br>
+*** Device records loaded by this process are overlaid with the pending (unwritten) field values,
+*** so readers such as "getLastOdometerKM" and the geozone transition checks see the latest state.
+*** Other processes (ie. the web interface) may see Device state which is up to one flush interval
+*** old.<br>
+*** Fields which may also be edited by an administrator (ie. IMEI number, last notification
+*** time/code, active corridor) are never deferred, so that a pending value cannot overwrite,
+*** or be overlaid onto, an edit made elsewhere.
+**/
+
+public class DeviceStateCache
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_flushSec = RTConfig.key(DBConfig.PROP_db_deviceState_flushSec);
+
+    /**
+    *** Returns true if the Device state write-behind cache is enabled
+    *** @return True if the Device state write-behind cache is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return (KEY_flushSec.asLong(0L) > 0L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* Device fields which are not deferred (may be edited by an administrator) */
+    private static final Set<String> IMMEDIATE_FIELDS = ListTools.toSet(new String[] {
+        Device.FLD_imeiNumber,
+        Device.FLD_lastNotifyTime,
+        Device.FLD_lastNotifyCode,
+        Device.FLD_activeCorridor
+    }, null);
+
+    /**
+    *** Returns true if updates to the specified Device field may be deferred
+    *** @param fld  The Device field name
+    *** @return True if updates to the field may be deferred
+    **/
+    public static boolean isDeferredField(String fld)
+    {
+        return (fld != null) && !IMMEDIATE_FIELDS.contains(fld);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* pending field values for a single device */
+    private static class DeviceState
+    {
+        public String             accountID = null;
+        public String             deviceID  = null;
+        public Map<String,Object> values    = new HashMap<String,Object>();
+        public DeviceState(String accountID, String deviceID) {
+            this.accountID = accountID;
+            this.deviceID  = deviceID;
+        }
+        public String getKey() {
+            return DeviceState.getKey(this.accountID, this.deviceID);
+        }
+        public static String getKey(String accountID, String deviceID) {
+            return accountID + "/" + deviceID;
+        }
+    }
+
+    private static Map<String,DeviceState> pendingMap  = new HashMap<String,DeviceState>();
+    private static Object                  flushLock   = new Object();
+    private static Thread                  flushThread = null;
+
+    /* start the background flush thread (must be synchronized on 'pendingMap') */
+    private static void _startFlushThread()
+    {
+        if (DeviceStateCache.flushThread != null) {
+            return;
+        }
+        DeviceStateCache.flushThread = new Thread(new Runnable() {
+            public void run() {
+                for (;;) {
+                    long sleepMS = Math.max(KEY_flushSec.asLong(0L), 1L) * 1000L;
+                    try { Thread.sleep(sleepMS); } catch (Throwable th) { /*ignore*/ }
+                    DeviceStateCache.flush();
+                }
+            }
+        }, "DeviceStateFlush");
+        DeviceStateCache.flushThread.setDaemon(true);
+        DeviceStateCache.flushThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("DeviceStateShutdown") {
+            public void run() {
+                DeviceStateCache.flush();
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Defers the update of the specified Device fields.  The current values of the specified
+    *** fields are merged with any pending values for this device.
+    *** @param device  The Device
+    *** @param flds    The fields to update
+    **/
+    public static void deferUpdate(Device device, Set<String> flds)
+    {
+        if ((device == null) || (flds == null)) {
+            return;
+        }
+        String acctID = device.getAccountID();
+        String devID  = device.getDeviceID();
+        synchronized (DeviceStateCache.pendingMap) {
+            String key = DeviceState.getKey(acctID, devID);
+            DeviceState ds = DeviceStateCache.pendingMap.get(key);
+            if (ds == null) {
+                ds = new DeviceState(acctID, devID);
+                DeviceStateCache.pendingMap.put(key, ds);
+            }
+            for (String fld : flds) {
+                if (device.hasField(fld) && DeviceStateCache.isDeferredField(fld)) {
+                    ds.values.put(fld, device.getFieldValue(fld));
+                }
+            }
+            DeviceStateCache._startFlushThread();
+        }
+    }
+
+    /**
+    *** Overlays any pending (unwritten) field values onto the specified Device record
+    *** (called after the Device record has been loaded from the database)
+    *** @param device  The Device
+    **/
+    public static void applyPending(Device device)
+    {
+        if (device == null) {
+            return;
+        }
+        synchronized (DeviceStateCache.pendingMap) {
+            if (DeviceStateCache.pendingMap.isEmpty()) {
+                return;
+            }
+            DeviceState ds = DeviceStateCache.pendingMap.get(DeviceState.getKey(device.getAccountID(), device.getDeviceID()));
+            if (ds != null) {
+                for (String fld : ds.values.keySet()) {
+                    if (DeviceStateCache.isDeferredField(fld)) {
+                        device.setFieldValue(fld, ds.values.get(fld));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+    *** Discards any pending field values for the specified device (ie. the device was deleted)
+    *** @param acctID  The account ID
+    *** @param devID   The device ID
+    **/
+    public static void discard(String acctID, String devID)
+    {
+        synchronized (DeviceStateCache.pendingMap) {
+            DeviceStateCache.pendingMap.remove(DeviceState.getKey(acctID, devID));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writes all pending Device field values to the database
+    *** @return The number of Device records updated
+    **/
+    public static int flush()
+    {
+        synchronized (DeviceStateCache.flushLock) {
+
+            /* swap pending map */
+            Map<String,DeviceState> pend;
+            synchronized (DeviceStateCache.pendingMap) {
+                if (DeviceStateCache.pendingMap.isEmpty()) {
+                    return 0;
+                }
+                pend = new HashMap<String,DeviceState>(DeviceStateCache.pendingMap);
+                DeviceStateCache.pendingMap.clear();
+            }
+
+            /* group records by updated field set (normally all the same) */
+            Map<Set<String>,java.util.List<Device>> updGroups = new HashMap<Set<String>,java.util.List<Device>>();
+            for (DeviceState ds : pend.values()) {
+                Device dev = new Device.Key(ds.accountID, ds.deviceID).getDBRecord();
+                for (String fld : ds.values.keySet()) {
+                    dev.setFieldValue(fld, ds.values.get(fld));
+                }
+                Set<String> flds = new HashSet<String>(ds.values.keySet());
+                java.util.List<Device> list = updGroups.get(flds);
+                if (list == null) {
+                    list = new Vector<Device>();
+                    updGroups.put(flds, list);
+                }
+                list.add(dev);
+            }
+
+            /* update */
+            int count = 0;
+            for (Set<String> flds : updGroups.keySet()) {
+                java.util.List<Device> list = updGroups.get(flds);
+                try {
+                    count += DBRecord.updateRecords(list, flds);
+                } catch (DBException dbe) {
+                    Print.logError("Device state update failed: " + dbe);
+                    DeviceStateCache._restorePending(list, pend);
+                }
+            }
+            if (count > 0) {
+                Print.logDebug("Device state records updated: %d", count);
+            }
+            return count;
+
+        }
+    }
+
+    /* return failed updates to the pending map (newer pending values take precedence) */
+    private static void _restorePending(java.util.List<Device> list, Map<String,DeviceState> pend)
+    {
+        synchronized (DeviceStateCache.pendingMap) {
+            for (Device dev : list) {
+                String key = DeviceState.getKey(dev.getAccountID(), dev.getDeviceID());
+                DeviceState failed = pend.get(key);
+                DeviceState newer  = DeviceStateCache.pendingMap.get(key);
+                if (newer == null) {
+                    DeviceStateCache.pendingMap.put(key, failed);
+                } else {
+                    for (String fld : failed.values.keySet()) {
+                        if (!newer.values.containsKey(fld)) {
+                            newer.values.put(fld, failed.values.get(fld));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,891 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Parallel reprocessing of historical EventData records
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.geocoder.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** Parallel reprocessing of historical EventData records (ie. re-geocoding, geozone
+*** back-assignment after zones have changed, odometer recomputation).<br>
+*** The work is partitioned by device, and optionally by time window, and the partitions are
+*** processed by a pool of worker threads.  The events of each partition are read in blocks,
+*** in ascending timestamp/statusCode order, with keyset pagination (see
+*** <code>EventData.getRangeEventIterator</code>), so memory use does not depend on the number
+*** of events.  Each event is passed to the configured EventHandlers, and events changed by a
+*** handler are written back with batched updates (see <code>DBRecord.updateRecords</code>).<br>
+*** If a checkpoint file is specified, the key of the last event written for each partition
+*** is recorded after each batch, so that an interrupted job may be restarted with the same
+*** arguments, continuing from the last checkpoint.  The overall event rate may be limited
+*** (see <code>setMaxEventsPerSecond</code>) to reduce the load on a live database.<br>
+*** Handlers which depend on the previous events of the device (see
+*** <code>EventHandler.isOrdered</code>) cause all of the time windows of a device to be
+*** processed in order by a single worker.
+**/
+
+public class EventReprocessor
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String CHECKPOINT_DONE         = "done";
+
+    private static final long   DFT_BLOCK_SIZE          = 1000L;
+    private static final int    DFT_BATCH_SIZE          = 500;
+    private static final long   DFT_PROGRESS_INTERVAL   = 30L;  // seconds
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** EventData reprocessing handler.<br>
+    *** A new handler instance is created for each unit of work (a device, or a device time
+    *** window), so handlers need not be thread-safe.
+    **/
+    public interface EventHandler
+    {
+
+        /**
+        *** Returns true if this handler depends on the previously handled events of the
+        *** device, and must therefore see all events of the device in order
+        **/
+        public boolean isOrdered();
+
+        /**
+        *** Called before the first event of the device is handled
+        *** @param device  The Device
+        **/
+        public void startDevice(Device device)
+            throws DBException;
+
+        /**
+        *** Called (after <code>startDevice</code>) for an ordered handler when processing of
+        *** the device resumes after events which were already handled by a previous
+        *** (interrupted) run.  The handler should restore its state from the specified event.
+        *** @param device  The Device
+        *** @param lastEv  The last previously handled event before the resume point
+        **/
+        public void resumeDevice(Device device, EventData lastEv)
+            throws DBException;
+
+        /**
+        *** Handles the specified event
+        *** @param device  The Device
+        *** @param ev      The EventData record
+        *** @return The set of changed fields which are to be written back, or null if the
+        ***         event was not changed
+        **/
+        public Set<String> handleEvent(Device device, EventData ev)
+            throws DBException;
+
+        /**
+        *** Called after the last event of the device has been handled
+        *** @param device  The Device
+        **/
+        public void endDevice(Device device)
+            throws DBException;
+
+    }
+
+    /**
+    *** EventHandler adapter
+    **/
+    public static abstract class EventHandlerAdapter
+        implements EventHandler
+    {
+        public boolean isOrdered() {
+            return false;
+        }
+        public void startDevice(Device device) throws DBException {
+            // override
+        }
+        public void resumeDevice(Device device, EventData lastEv) throws DBException {
+            // override
+        }
+        public abstract Set<String> handleEvent(Device device, EventData ev) throws DBException;
+        public void endDevice(Device device) throws DBException {
+            // override
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reassigns the geozone of each event with a valid location, based on the current
+    *** Geozone definitions of the Account
+    **/
+    public static class GeozoneHandler
+        extends EventHandlerAdapter
+    {
+        public Set<String> handleEvent(Device device, EventData ev) throws DBException {
+            int sc = ev.getStatusCode();
+            if (!ev.isValidGeoPoint() ||
+                (sc == StatusCodes.STATUS_GEOFENCE_ARRIVE) || (sc == StatusCodes.STATUS_GEOFENCE_DEPART)) {
+                // arrive/depart events retain the geozone which was crossed
+                return null;
+            }
+            Geozone zone = Geozone.getGeozone(ev.getAccountID(), null, ev.getGeoPoint(), false);
+            String zoneID = (zone != null)? zone.getGeozoneID() : "";
+            if (zoneID.equals(ev.getGeozoneID())) {
+                return null;
+            }
+            ev.setGeozoneID(zoneID);
+            Set<String> updFields = new HashSet<String>();
+            updFields.add(EventData.FLD_geozoneID);
+            return updFields;
+        }
+    }
+
+    /**
+    *** Updates the address of each event with a valid location, using the Geozones and the
+    *** ReverseGeocodeProvider of the Account
+    **/
+    public static class AddressHandler
+        extends EventHandlerAdapter
+    {
+        public Set<String> handleEvent(Device device, EventData ev) throws DBException {
+            try {
+                return ev.updateAddress(false/*fastOnly*/, true/*force*/);
+            } catch (SlowOperationException soe) {
+                // will not occur, since 'fastOnly' is false
+                return null;
+            }
+        }
+    }
+
+    /**
+    *** Recomputes the odometer of each event from the distance travelled between consecutive
+    *** valid locations, starting with the odometer of the first event handled.  When resuming
+    *** an interrupted run, the odometer and location continue from the last event (and last
+    *** valid location) preceding the resume point, which were written by the previous run.
+    **/
+    public static class OdometerHandler
+        extends EventHandlerAdapter
+    {
+        private GeoPoint lastGP     = null;
+        private double   odometerKM = -1.0;
+        public boolean isOrdered() {
+            return true;
+        }
+        public void resumeDevice(Device device, EventData lastEv) throws DBException {
+            this.odometerKM = lastEv.getOdometerKM();
+            if (lastEv.isValidGeoPoint()) {
+                this.lastGP = lastEv.getGeoPoint();
+            } else {
+                EventData lastGPS = EventReprocessor._getLastEvent(
+                    lastEv.getAccountID(), lastEv.getDeviceID(),
+                    lastEv.getTimestamp(), lastEv.getStatusCode(), true/*validGPS*/);
+                this.lastGP = (lastGPS != null)? lastGPS.getGeoPoint() : null;
+            }
+        }
+        public Set<String> handleEvent(Device device, EventData ev) throws DBException {
+            if (this.odometerKM < 0.0) {
+                // first event, starting odometer
+                this.odometerKM = ev.getOdometerKM();
+                this.lastGP     = ev.isValidGeoPoint()? ev.getGeoPoint() : null;
+                return null;
+            }
+            if (ev.isValidGeoPoint()) {
+                GeoPoint gp = ev.getGeoPoint();
+                if (this.lastGP != null) {
+                    this.odometerKM += this.lastGP.kilometersToPoint(gp);
+                }
+                this.lastGP = gp;
+            }
+            if (Math.abs(ev.getOdometerKM() - this.odometerKM) < 0.001) {
+                return null;
+            }
+            ev.setOdometerKM(this.odometerKM);
+            Set<String> updFields = new HashSet<String>();
+            updFields.add(EventData.FLD_odometerKM);
+            return updFields;
+        }
+    }
+
+    /**
+    *** Returns a new EventHandler for the specified name ("geozone", "address", "odometer"),
+    *** or EventHandler class name
+    *** @param name  The handler name
+    *** @return The EventHandler, or null if the handler could not be created
+    **/
+    public static EventHandler createEventHandler(String name)
+    {
+        if (StringTools.isBlank(name)) {
+            return null;
+        } else
+        if (name.equalsIgnoreCase("geozone")) {
+            return new GeozoneHandler();
+        } else
+        if (name.equalsIgnoreCase("address")) {
+            return new AddressHandler();
+        } else
+        if (name.equalsIgnoreCase("odometer")) {
+            return new OdometerHandler();
+        } else {
+            try {
+                return (EventHandler)Class.forName(name).newInstance();
+            } catch (Throwable th) { // ClassNotFoundException, ClassCastException, etc
+                Print.logError("Unable to create EventHandler: " + name + " [" + th + "]");
+                return null;
+            }
+        }
+    }
+
+    /* return the last event at or before the specified timestamp/statusCode key */
+    private static EventData _getLastEvent(String acctID, String devID,
+        long timestamp, int statusCode, boolean validGPS)
+        throws DBException
+    {
+        // AND ( (timestamp<T) OR ((timestamp=T) AND (statusCode<=S)) )
+        DBWhere dwh = new DBWhere(EventData.getFactory());
+        String before = dwh.OR(
+            dwh.LT(EventData.FLD_timestamp, timestamp),
+            dwh.AND(dwh.EQ(EventData.FLD_timestamp,timestamp), dwh.LE(EventData.FLD_statusCode,statusCode))
+        );
+        EventData ev[] = EventData.getRangeEvents(
+            acctID, devID,
+            -1L, timestamp,
+            null/*statCode[]*/,
+            validGPS,
+            EventData.LimitType.LAST, 1L, true/*ascending*/,
+            before);
+        return !ListTools.isEmpty(ev)? ev[ev.length - 1] : null;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* a device time window */
+    private static class Partition
+    {
+        public String accountID   = null;
+        public String deviceID    = null;
+        public long   windowStart = -1L;
+        public long   windowEnd   = -1L;
+        public Partition(String acctID, String devID, long start, long end) {
+            this.accountID   = acctID;
+            this.deviceID    = devID;
+            this.windowStart = start;
+            this.windowEnd   = end;
+        }
+        public String getKey() {
+            return this.accountID + "/" + this.deviceID + "/" + this.windowStart;
+        }
+        public String toString() {
+            return this.accountID + "/" + this.deviceID +
+                ((this.windowStart > 0L)? (" [" + new DateTime(this.windowStart) + "]") : "");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private String              handlerNames[]  = null;
+    private boolean             ordered         = false;
+
+    private long                timeStart       = -1L;
+    private long                timeEnd         = -1L;
+    private long                windowSec       = 0L;
+
+    private int                 maxThreads      = 1;
+    private long                blockSize       = DFT_BLOCK_SIZE;
+    private int                 batchSize       = DFT_BATCH_SIZE;
+    private double              maxEventsPerSec = 0.0;
+    private long                progressSec     = DFT_PROGRESS_INTERVAL;
+
+    private File                checkpointFile  = null;
+    private Properties          checkpoint      = new Properties();
+
+    private long                nextEventMS     = 0L;
+
+    private int                 jobsPending     = 0;
+    private long                partCount       = 0L;
+    private long                partsDone       = 0L;
+    private long                eventCount      = 0L;
+    private long                updateCount     = 0L;
+    private long                errorCount      = 0L;
+
+    /**
+    *** Constructor
+    *** @param handlerNames  The EventHandler names (see <code>createEventHandler</code>)
+    *** @throws IllegalArgumentException if a handler cannot be created
+    **/
+    public EventReprocessor(String handlerNames[])
+    {
+        super();
+        if (ListTools.isEmpty(handlerNames)) {
+            throw new IllegalArgumentException("No EventHandlers specified");
+        }
+        this.handlerNames = handlerNames;
+        for (int i = 0; i < handlerNames.length; i++) {
+            EventHandler eh = EventReprocessor.createEventHandler(handlerNames[i]);
+            if (eh == null) {
+                throw new IllegalArgumentException("Invalid EventHandler: " + handlerNames[i]);
+            }
+            if (eh.isOrdered()) {
+                this.ordered = true;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the time range of the events to reprocess
+    *** @param startTime  The start time (inclusive), or -1 for no start time
+    *** @param endTime    The end time (inclusive), or -1 for no end time
+    **/
+    public void setTimeRange(long startTime, long endTime)
+    {
+        this.timeStart = startTime;
+        this.timeEnd   = endTime;
+    }
+
+    /**
+    *** Sets the time window size used to partition the events of each device.  Time windows
+    *** are used only if a start time has been specified.
+    *** @param sec  The time window size, in seconds (0 for no time windows)
+    **/
+    public void setTimeWindow(long sec)
+    {
+        this.windowSec = (sec > 0L)? sec : 0L;
+    }
+
+    /**
+    *** Sets the maximum number of partitions processed in parallel
+    *** @param threads  The number of worker threads
+    **/
+    public void setMaxThreads(int threads)
+    {
+        this.maxThreads = (threads > 0)? threads : 1;
+    }
+
+    /**
+    *** Sets the number of events read per select
+    *** @param size  The block size
+    **/
+    public void setBlockSize(long size)
+    {
+        this.blockSize = (size > 0L)? size : DFT_BLOCK_SIZE;
+    }
+
+    /**
+    *** Sets the number of changed events written back per batch update (this is also the
+    *** checkpoint interval)
+    *** @param size  The batch size
+    **/
+    public void setBatchSize(int size)
+    {
+        this.batchSize = (size > 0)? size : 1;
+    }
+
+    /**
+    *** Sets the maximum overall number of events handled per second
+    *** @param rate  The maximum rate (0 for no limit)
+    **/
+    public void setMaxEventsPerSecond(double rate)
+    {
+        this.maxEventsPerSec = (rate > 0.0)? rate : 0.0;
+    }
+
+    /**
+    *** Sets the progress logging interval
+    *** @param sec  The interval in seconds (0 to disable progress logging)
+    **/
+    public void setProgressInterval(long sec)
+    {
+        this.progressSec = (sec > 0L)? sec : 0L;
+    }
+
+    /**
+    *** Sets the checkpoint file
+    *** @param file  The checkpoint file (null for no checkpoints)
+    **/
+    public void setCheckpointFile(File file)
+    {
+        this.checkpointFile = file;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reprocesses the events of the specified devices
+    *** @param accountID  The Account ID
+    *** @param deviceIDs  The Device IDs (null/empty for all devices of the Account)
+    *** @return True if all partitions were processed without error
+    *** @throws DBException If an error occurs reading the Device list
+    **/
+    public boolean reprocess(String accountID, Collection<String> deviceIDs)
+        throws DBException
+    {
+        Map<String,Collection<String>> acctDevs = new OrderedMap<String,Collection<String>>();
+        acctDevs.put(accountID, deviceIDs);
+        return this.reprocess(acctDevs);
+    }
+
+    /**
+    *** Reprocesses the events of the specified devices
+    *** @param acctDevs  Map of Account IDs to Device IDs (a null/empty Device ID collection
+    ***                  selects all devices of the Account)
+    *** @return True if all partitions were processed without error
+    *** @throws DBException If an error occurs reading the Device list
+    **/
+    public boolean reprocess(Map<String,Collection<String>> acctDevs)
+        throws DBException
+    {
+
+        /* load checkpoint */
+        if ((this.checkpointFile != null) && this.checkpointFile.isFile()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(this.checkpointFile);
+                this.checkpoint.load(in);
+                Print.logInfo("Resuming from checkpoint: " + this.checkpointFile);
+            } catch (IOException ioe) {
+                Print.logException("Unable to read checkpoint file: " + this.checkpointFile, ioe);
+                return false;
+            } finally {
+                if (in != null) { try { in.close(); } catch (Throwable th) {} }
+            }
+        }
+
+        /* partition work */
+        java.util.List<ReprocessJob> jobs = new Vector<ReprocessJob>();
+        for (String acctID : acctDevs.keySet()) {
+            Collection<String> devIDs = acctDevs.get(acctID);
+            if (ListTools.isEmpty(devIDs)) {
+                devIDs = Device.getDeviceIDsForAccount(acctID, null/*User*/, true/*inclInactv*/);
+            }
+            for (String devID : devIDs) {
+                java.util.List<Partition> devParts = new Vector<Partition>();
+                boolean resumed = false;
+                if ((this.windowSec > 0L) && (this.timeStart > 0L)) {
+                    long end = (this.timeEnd > 0L)? this.timeEnd : DateTime.getCurrentTimeSec();
+                    for (long ws = this.timeStart; ws <= end; ws += this.windowSec) {
+                        long we = Math.min(ws + this.windowSec - 1L, end);
+                        devParts.add(new Partition(acctID, devID, ws, we));
+                    }
+                } else {
+                    devParts.add(new Partition(acctID, devID, this.timeStart, this.timeEnd));
+                }
+                for (Iterator<Partition> i = devParts.iterator(); i.hasNext();) {
+                    if (CHECKPOINT_DONE.equals(this._getCheckpoint(i.next()))) {
+                        i.remove(); // already processed
+                        resumed = true;
+                    }
+                }
+                if (devParts.isEmpty()) {
+                    // all windows already processed
+                } else
+                if (this.ordered) {
+                    // all windows of the device processed in order by one worker
+                    jobs.add(new ReprocessJob(devParts, resumed));
+                } else {
+                    for (Partition p : devParts) {
+                        jobs.add(new ReprocessJob(Collections.singletonList(p), false));
+                    }
+                }
+                this.partCount += devParts.size();
+            }
+        }
+        if (jobs.isEmpty()) {
+            Print.logInfo("Nothing to reprocess");
+            return true;
+        }
+
+        /* process */
+        long startMS = System.currentTimeMillis();
+        ThreadPool pool = new ThreadPool("EventReprocessor", Math.min(this.maxThreads, jobs.size()));
+        synchronized (this) {
+            this.jobsPending = jobs.size();
+        }
+        for (ReprocessJob job : jobs) {
+            pool.run(job);
+        }
+        pool.stopThreads(); // stop after all jobs have completed
+
+        /* wait for completion */
+        long progressMS = this.progressSec * 1000L;
+        synchronized (this) {
+            long lastMS = startMS;
+            while (this.jobsPending > 0) {
+                try { this.wait((progressMS > 0L)? Math.min(progressMS, 5000L) : 5000L); } catch (InterruptedException ie) {}
+                long nowMS = System.currentTimeMillis();
+                if ((progressMS > 0L) && ((nowMS - lastMS) >= progressMS)) {
+                    this._logProgress(startMS, nowMS);
+                    lastMS = nowMS;
+                }
+            }
+        }
+        this._logProgress(startMS, System.currentTimeMillis());
+        return (this.errorCount == 0L);
+
+    }
+
+    /* log current progress */
+    private synchronized void _logProgress(long startMS, long nowMS)
+    {
+        double sec  = (double)Math.max(nowMS - startMS, 1L) / 1000.0;
+        double rate = (double)this.eventCount / sec;
+        Print.logInfo("Reprocess progress: partitions %d/%d, events %d, updated %d, errors %d [%.0f events/sec]",
+            this.partsDone, this.partCount, this.eventCount, this.updateCount, this.errorCount, rate);
+    }
+
+    /* update counts */
+    private synchronized void _addCounts(long events, long updates, long errors, long parts)
+    {
+        this.eventCount  += events;
+        this.updateCount += updates;
+        this.errorCount  += errors;
+        this.partsDone   += parts;
+    }
+
+    /* wait until the next event may be handled (overall rate limit) */
+    private void _throttle(int events)
+    {
+        if (this.maxEventsPerSec <= 0.0) {
+            return;
+        }
+        long sleepMS;
+        synchronized (this) {
+            long nowMS = System.currentTimeMillis();
+            if (this.nextEventMS < nowMS) {
+                this.nextEventMS = nowMS;
+            }
+            sleepMS = this.nextEventMS - nowMS;
+            this.nextEventMS += (long)((1000.0 * events) / this.maxEventsPerSec);
+        }
+        if (sleepMS > 0L) {
+            try { Thread.sleep(sleepMS); } catch (InterruptedException ie) {}
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return checkpoint value for partition */
+    private String _getCheckpoint(Partition part)
+    {
+        synchronized (this.checkpoint) {
+            return this.checkpoint.getProperty(part.getKey());
+        }
+    }
+
+    /* save checkpoint value for partition */
+    private void _setCheckpoint(Partition part, String value)
+    {
+        if (this.checkpointFile == null) {
+            return;
+        }
+        synchronized (this.checkpoint) {
+            this.checkpoint.setProperty(part.getKey(), value);
+            File tmpFile = new File(this.checkpointFile.getPath() + ".tmp");
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(tmpFile);
+                this.checkpoint.store(out, "EventReprocessor checkpoint");
+                out.close();
+                out = null;
+                if (!tmpFile.renameTo(this.checkpointFile)) {
+                    // (Windows) rename fails if the destination exists
+                    this.checkpointFile.delete();
+                    if (!tmpFile.renameTo(this.checkpointFile)) {
+                        Print.logError("Unable to rename checkpoint file: " + tmpFile);
+                    }
+                }
+            } catch (IOException ioe) {
+                Print.logError("Unable to write checkpoint file: " + ioe);
+            } finally {
+                if (out != null) { try { out.close(); } catch (Throwable th) {} }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* process the partitions of a single job */
+    private class ReprocessJob
+        implements Runnable
+    {
+        private java.util.List<Partition> parts    = null;
+        private boolean                   resumed  = false; // earlier partitions already processed
+        private java.util.List<EventData> changed  = new Vector<EventData>();
+        private Set<String>               fields   = new HashSet<String>();
+        public ReprocessJob(java.util.List<Partition> parts, boolean resumed) {
+            this.parts   = parts;
+            this.resumed = resumed;
+        }
+        public void run() {
+            try {
+                this.process();
+            } finally {
+                synchronized (EventReprocessor.this) {
+                    EventReprocessor.this.jobsPending--;
+                    EventReprocessor.this.notifyAll();
+                }
+            }
+        }
+        private void process() {
+            Partition first = this.parts.get(0);
+            Device device = null;
+            try {
+
+                /* device */
+                Account account = Account.getAccount(first.accountID);
+                device = (account != null)? Device.getDevice(account, first.deviceID, false) : null;
+                if (device == null) {
+                    Print.logError("Device not found: " + first.accountID + "/" + first.deviceID);
+                    EventReprocessor.this._addCounts(0L, 0L, 1L, this.parts.size());
+                    return;
+                }
+
+                /* handlers */
+                EventHandler handlers[] = new EventHandler[EventReprocessor.this.handlerNames.length];
+                for (int h = 0; h < handlers.length; h++) {
+                    handlers[h] = EventReprocessor.createEventHandler(EventReprocessor.this.handlerNames[h]);
+                    handlers[h].startDevice(device);
+                }
+
+                /* resume ordered handlers from the last event already handled */
+                if (EventReprocessor.this.ordered) {
+                    EventData lastEv = this.getResumeEvent(first);
+                    if (lastEv != null) {
+                        for (int h = 0; h < handlers.length; h++) {
+                            if (handlers[h].isOrdered()) {
+                                handlers[h].resumeDevice(device, lastEv);
+                            }
+                        }
+                    }
+                }
+
+                /* partitions */
+                for (Partition part : this.parts) {
+                    this.processPartition(account, device, part, handlers);
+                    EventReprocessor.this._setCheckpoint(part, CHECKPOINT_DONE);
+                    EventReprocessor.this._addCounts(0L, 0L, 0L, 1L);
+                }
+
+                /* done */
+                for (int h = 0; h < handlers.length; h++) {
+                    handlers[h].endDevice(device);
+                }
+
+            } catch (DBException dbe) {
+                Print.logException("Error reprocessing: " + first, dbe);
+                EventReprocessor.this._addCounts(0L, 0L, 1L, 0L);
+            } catch (Throwable th) {
+                Print.logException("Unexpected error reprocessing: " + first, th);
+                EventReprocessor.this._addCounts(0L, 0L, 1L, 0L);
+            }
+        }
+        private EventData getResumeEvent(Partition first)
+            throws DBException {
+            String ckpt = EventReprocessor.this._getCheckpoint(first);
+            if (!StringTools.isBlank(ckpt)) {
+                // partially processed partition, resume at the checkpoint key
+                int p = ckpt.indexOf(':');
+                long ckTime = StringTools.parseLong((p >= 0)? ckpt.substring(0,p) : ckpt, -1L);
+                int  ckCode = (p >= 0)? StringTools.parseInt(ckpt.substring(p+1), 0) : 0;
+                if (ckTime >= 0L) {
+                    return EventReprocessor._getLastEvent(first.accountID, first.deviceID, ckTime, ckCode, false);
+                }
+            }
+            if (this.resumed && (first.windowStart > 0L)) {
+                // earlier partitions completed, resume before the start of this partition
+                return EventReprocessor._getLastEvent(first.accountID, first.deviceID,
+                    first.windowStart - 1L, Integer.MAX_VALUE, false);
+            }
+            return null;
+        }
+        private void processPartition(Account account, Device device, Partition part, EventHandler handlers[])
+            throws DBException {
+
+            /* resume key */
+            long afterTime = -1L;
+            int  afterCode = 0;
+            String ckpt = EventReprocessor.this._getCheckpoint(part);
+            if (!StringTools.isBlank(ckpt)) {
+                int p = ckpt.indexOf(':');
+                afterTime = StringTools.parseLong((p >= 0)? ckpt.substring(0,p) : ckpt, -1L);
+                afterCode = (p >= 0)? StringTools.parseInt(ckpt.substring(p+1), 0) : 0;
+                Print.logInfo("Resuming " + part + " after " + afterTime + ":" + afterCode);
+            }
+
+            /* events */
+            DBRecordIterator<EventData> evIter = EventData.getRangeEventIterator(
+                part.accountID, part.deviceID,
+                part.windowStart, part.windowEnd, false/*validGPS*/,
+                afterTime, afterCode,
+                EventReprocessor.this.blockSize);
+            EventData lastEv = null;
+            int handled = 0;
+            while ((evIter != null) && evIter.hasNext()) {
+                EventData ev = evIter.next();
+                ev.setAccount(account);
+                ev.setDevice(device);
+                for (int h = 0; h < handlers.length; h++) {
+                    Set<String> updFields = handlers[h].handleEvent(device, ev);
+                    if (!ListTools.isEmpty(updFields)) {
+                        if (this.changed.isEmpty() || (this.changed.get(this.changed.size() - 1) != ev)) {
+                            this.changed.add(ev);
+                        }
+                        this.fields.addAll(updFields);
+                    }
+                }
+                lastEv = ev;
+                EventReprocessor.this._throttle(1);
+                if (++handled >= EventReprocessor.this.batchSize) {
+                    this.flush(part, lastEv, handled);
+                    handled = 0;
+                }
+            }
+            this.flush(part, lastEv, handled);
+
+        }
+        private void flush(Partition part, EventData lastEv, int handled)
+            throws DBException {
+            int count = 0;
+            if (!this.changed.isEmpty()) {
+                count = DBRecord.updateRecords(this.changed, this.fields);
+                this.changed.clear();
+                this.fields.clear();
+            }
+            if (lastEv != null) {
+                EventReprocessor.this._setCheckpoint(part, lastEv.getTimestamp() + ":" + lastEv.getStatusCode());
+            }
+            EventReprocessor.this._addCounts(handled, count, 0L, 0L);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static String ARG_ACCOUNT[]     = new String[] { "account"   , "acct", "a" };
+    private static String ARG_DEVICE[]      = new String[] { "device"    , "dev" , "d" };
+    private static String ARG_HANDLER[]     = new String[] { "handler"   , "h"         };
+    private static String ARG_START[]       = new String[] { "start"     , "from"      };
+    private static String ARG_END[]         = new String[] { "end"       , "to"        };
+    private static String ARG_WINDOW[]      = new String[] { "window"                  };
+    private static String ARG_THREADS[]     = new String[] { "threads"   , "t"         };
+    private static String ARG_BATCH[]       = new String[] { "batch"                   };
+    private static String ARG_RATE[]        = new String[] { "rate"                    };
+    private static String ARG_CHECKPT[]     = new String[] { "checkpoint", "ckpt"      };
+    private static String ARG_PROGRESS[]    = new String[] { "progress"                };
+
+    private static void usage()
+    {
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + EventReprocessor.class.getName() + " {options}");
+        Print.sysPrintln("Options:");
+        Print.sysPrintln("  -account=<id>       Account ID (or comma-separated list)");
+        Print.sysPrintln("  -device=<id>        Device ID (or comma-separated list) [default all devices]");
+        Print.sysPrintln("  -handler=<h>        Comma-separated handlers: geozone, address, odometer, or class name");
+        Print.sysPrintln("  -start=<time>       Start time (ie. \"2010/01/01\")");
+        Print.sysPrintln("  -end=<time>         End time");
+        Print.sysPrintln("  -window=<days>      Time window size for partitioning (requires '-start')");
+        Print.sysPrintln("  -threads=<n>        Number of partitions processed in parallel [default 4]");
+        Print.sysPrintln("  -batch=<n>          Number of events per batch update/checkpoint [default " + DFT_BATCH_SIZE + "]");
+        Print.sysPrintln("  -rate=<n>           Maximum events/second [default no limit]");
+        Print.sysPrintln("  -checkpoint=<file>  Checkpoint file used to resume an interrupted job");
+        Print.sysPrintln("  -progress=<sec>     Progress logging interval [default " + DFT_PROGRESS_INTERVAL + "]");
+        System.exit(1);
+    }
+
+    /* parse command-line date argument */
+    private static long _parseTime(String key[], boolean isEnd)
+    {
+        String dateStr = RTConfig.getString(key, null);
+        if (StringTools.isBlank(dateStr)) {
+            return -1L;
+        }
+        try {
+            return DateTime.parseArgumentDate(dateStr, null, isEnd).getTimeSec();
+        } catch (DateTime.DateParseException dpe) {
+            Print.sysPrintln("ERROR: Invalid date: " + dateStr);
+            System.exit(99);
+            return -1L;
+        }
+    }
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv, true);  // main
+        String acctIDs[]    = StringTools.parseArray(RTConfig.getString(ARG_ACCOUNT, ""));
+        String devIDs[]     = StringTools.parseArray(RTConfig.getString(ARG_DEVICE , ""));
+        String handlers[]   = StringTools.parseArray(RTConfig.getString(ARG_HANDLER, ""));
+
+        /* validate */
+        if (ListTools.isEmpty(acctIDs) || StringTools.isBlank(acctIDs[0])) {
+            Print.sysPrintln("ERROR: Account not specified");
+            usage();
+        } else
+        if (ListTools.isEmpty(handlers) || StringTools.isBlank(handlers[0])) {
+            Print.sysPrintln("ERROR: Handler not specified");
+            usage();
+        } else
+        if ((acctIDs.length > 1) && !ListTools.isEmpty(devIDs) && !StringTools.isBlank(devIDs[0])) {
+            Print.sysPrintln("ERROR: Devices may only be specified for a single Account");
+            usage();
+        }
+
+        /* make sure the DB is properly initialized */
+        if (!DBAdmin.verifyTablesExist()) {
+            Print.sysPrintln("ERROR: MySQL database has not yet been properly initialized");
+            System.exit(99);
+        }
+
+        /* reprocess */
+        try {
+            EventReprocessor erp = new EventReprocessor(handlers);
+            erp.setTimeRange(_parseTime(ARG_START,false), _parseTime(ARG_END,true));
+            erp.setTimeWindow(DateTime.DaySeconds(RTConfig.getLong(ARG_WINDOW, 0L)));
+            erp.setMaxThreads(RTConfig.getInt(ARG_THREADS, 4));
+            erp.setBatchSize(RTConfig.getInt(ARG_BATCH, DFT_BATCH_SIZE));
+            erp.setMaxEventsPerSecond(RTConfig.getDouble(ARG_RATE, 0.0));
+            erp.setCheckpointFile(RTConfig.getFile(ARG_CHECKPT, null));
+            erp.setProgressInterval(RTConfig.getLong(ARG_PROGRESS, DFT_PROGRESS_INTERVAL));
+            Map<String,Collection<String>> acctDevs = new OrderedMap<String,Collection<String>>();
+            for (int i = 0; i < acctIDs.length; i++) {
+                Collection<String> devs = null;
+                if (!ListTools.isEmpty(devIDs) && !StringTools.isBlank(devIDs[0])) {
+                    devs = ListTools.toList(devIDs);
+                }
+                acctDevs.put(acctIDs[i], devs);
+            }
+            boolean ok = erp.reprocess(acctDevs);
+            System.exit(ok? 0 : 1);
+        } catch (IllegalArgumentException iae) {
+            Print.sysPrintln("ERROR: " + iae.getMessage());
+            System.exit(99);
+        } catch (DBException dbe) {
+            Print.logException("Reprocessing error", dbe);
+            System.exit(99);
+        }
+
+    }
+
+}
@@ -0,0 +1,711 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Local store-and-forward spool for EventData records
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.zip.CRC32;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** Local store-and-forward spool for EventData records, used when the database is unavailable
+*** or slow.<br>
+*** EventData records which cannot be inserted (or which arrive while earlier records are still
+*** spooled) are appended to memory-mapped segment files in the "&lt;db.eventSpool.directory&gt;/&lt;server&gt;"
+*** directory (see "DBConfig.getServerName()").  The directory is locked while in use, and the
+*** spool is not started if it is already locked by another process.  Each record is written with its length and CRC32 checksum, and the length is
+*** written last, so a record torn by a crash is detected and skipped on replay.  A background
+*** thread replays the spooled records to the database in the order in which they were spooled
+*** (so the order of the events for each device is preserved), and deletes each segment file once
+*** all of its records have been inserted.  The replay position is saved in the "spool.pos" file.<br>
+*** If the time taken by an EventData insert exceeds "db.eventSpool.slowInsertMS", new events
+*** are also spooled until the spool has been drained.  Total spool size is limited to
+*** "db.eventSpool.maxMB", after which new events are dropped (and counted).<br>
+*** Notes:
+*** <ul>
+*** <li>Spooled records are not available to the deferred reverse-geocode update (the address
+***     will be missing from records replayed from the spool).</li>
+*** <li>Records are durable across a process crash.  Segment files are only forced to the disk
+***     when a segment is closed, or at shutdown.</li>
+*** </ul>
+**/
+
+public class EventSpool
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_maxMB         = RTConfig.key(DBConfig.PROP_db_eventSpool_maxMB);
+    private static final RTConfig.Key KEY_segmentKB     = RTConfig.key(DBConfig.PROP_db_eventSpool_segmentKB);
+    private static final RTConfig.Key KEY_slowInsertMS  = RTConfig.key(DBConfig.PROP_db_eventSpool_slowInsertMS);
+
+    private static final String SEGMENT_SUFFIX          = ".spool";
+    private static final String POSITION_FILE           = "spool.pos";
+    private static final String LOCK_FILE               = "spool.lock";
+
+    private static final int    RECORD_HEADER           = 8;        // length, CRC32
+    private static final int    REPLAY_BATCH_SIZE       = 100;
+    private static final long   REPLAY_IDLE_MS          = 1000L;
+    private static final long   REPLAY_RETRY_MS         = 5000L;
+    private static final long   METRICS_INTERVAL_MS     = 60000L;
+
+    private static boolean      didInit                 = false;
+    private static EventSpool   eventSpool              = null;
+
+    /**
+    *** Gets the EventSpool instance (created on first call)
+    *** @return The EventSpool instance, or null if the spool is disabled
+    **/
+    public static EventSpool getInstance()
+    {
+        synchronized (EventSpool.class) {
+            if (!EventSpool.didInit) {
+                EventSpool.didInit = true;
+                File dir = RTConfig.getFile(DBConfig.PROP_db_eventSpool_directory, null);
+                if ((dir != null) && !StringTools.isBlank(dir.getPath())) {
+                    dir = new File(dir, DBConfig.getServerName());
+                    try {
+                        EventSpool.eventSpool = new EventSpool(dir,
+                            KEY_segmentKB.asLong(4096L) * 1024L,
+                            KEY_maxMB.asLong(256L) * 1024L * 1024L,
+                            KEY_slowInsertMS.asLong(5000L));
+                    } catch (IOException ioe) {
+                        Print.logError("Unable to open EventData spool (spool disabled): " + ioe.getMessage());
+                        EventSpool.eventSpool = null;
+                    }
+                }
+            }
+            return EventSpool.eventSpool;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private File                spoolDir        = null;
+    private int                 segmentBytes    = 0;
+    private long                maxBytes        = 0L;
+    private long                slowInsertMS    = 0L;
+
+    /* spool directory lock (held for the life of the process) */
+    private RandomAccessFile    lockFile        = null;
+    private FileLock            dirLock         = null;
+
+    /* writer state */
+    private long                writeSeq        = 0L;
+    private MappedByteBuffer    writeBuf        = null;     // null if segment 'writeSeq' not yet created
+
+    /* replay state (last committed position) */
+    private long                readSeq         = 0L;
+    private int                 readPos         = 0;
+    private MappedByteBuffer    readBuf         = null;
+    private long                readBufSeq      = -1L;
+
+    /* database is slow, spool new events until drained */
+    private boolean             dbSlow          = false;
+
+    /* metrics */
+    private long                spoolCount      = 0L;
+    private long                replayCount     = 0L;
+    private long                dropCount       = 0L;
+    private long                corruptCount    = 0L;
+    private String              lastMetrics     = "";
+
+    /**
+    *** Constructor
+    *** @param spoolDir      The spool directory
+    *** @param segmentBytes  The size of each segment file
+    *** @param maxBytes      The maximum total size of all segment files
+    *** @param slowInsertMS  The EventData insert time above which new events are spooled (0 to spool on failure only)
+    **/
+    public EventSpool(File spoolDir, long segmentBytes, long maxBytes, long slowInsertMS)
+        throws IOException
+    {
+        this.spoolDir     = spoolDir;
+        this.segmentBytes = (int)Math.max(Math.min(segmentBytes, 0x40000000L), 65536L);
+        this.maxBytes     = Math.max(maxBytes, (long)this.segmentBytes);
+        this.slowInsertMS = slowInsertMS;
+        if (!this.spoolDir.isDirectory() && !this.spoolDir.mkdirs()) {
+            throw new IOException("Unable to create spool directory: " + this.spoolDir);
+        }
+
+        /* exclusive use of the spool directory */
+        this.lockFile = new RandomAccessFile(new File(this.spoolDir, LOCK_FILE), "rw");
+        try {
+            this.dirLock = this.lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException ofle) {
+            this.dirLock = null; // already locked by this process
+        }
+        if (this.dirLock == null) {
+            this.lockFile.close();
+            throw new IOException("Spool directory is in use by another process: " + this.spoolDir);
+        }
+
+        /* existing segments */
+        long seqs[] = this._listSegments();
+        this._loadPosition();
+        if (seqs.length > 0) {
+            if (this.readSeq < seqs[0]) {
+                // position file missing/stale, replay from the first segment
+                this.readSeq = seqs[0];
+                this.readPos = 0;
+            }
+            this.writeSeq = Math.max(seqs[seqs.length - 1] + 1L, this.readSeq);
+            Print.logInfo("EventData spool has %d pending segment(s): %s", seqs.length, this.spoolDir);
+        } else {
+            this.writeSeq = this.readSeq;
+            this.readPos  = 0;
+        }
+
+        /* replay in the background */
+        Thread replayThread = new Thread(new Runnable() {
+            public void run() {
+                EventSpool.this._replayLoop();
+            }
+        }, "EventSpoolReplay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+
+        /* force the current segment to disk at shutdown */
+        Runtime.getRuntime().addShutdownHook(new Thread("EventSpoolShutdown") {
+            public void run() {
+                EventSpool.this._forceSegment();
+            }
+        });
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the file for the specified segment */
+    private File _segmentFile(long seq)
+    {
+        return new File(this.spoolDir, StringTools.format(seq,"0000000000") + SEGMENT_SUFFIX);
+    }
+
+    /* return the sorted sequence numbers of the existing segment files */
+    private long[] _listSegments()
+    {
+        File files[] = this.spoolDir.listFiles();
+        java.util.List<Long> seqList = new Vector<Long>();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (f.isFile() && name.endsWith(SEGMENT_SUFFIX)) {
+                    long seq = StringTools.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), -1L);
+                    if (seq >= 0L) {
+                        seqList.add(new Long(seq));
+                    }
+                }
+            }
+        }
+        Collections.sort(seqList);
+        long seqs[] = new long[seqList.size()];
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = seqList.get(i).longValue();
+        }
+        return seqs;
+    }
+
+    /* map the specified segment file */
+    private MappedByteBuffer _mapSegment(long seq, boolean write)
+        throws IOException
+    {
+        File f = this._segmentFile(seq);
+        RandomAccessFile raf = new RandomAccessFile(f, write? "rw" : "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            if (write) {
+                raf.setLength(this.segmentBytes);
+                return fc.map(FileChannel.MapMode.READ_WRITE, 0L, this.segmentBytes);
+            } else {
+                return fc.map(FileChannel.MapMode.READ_ONLY, 0L, raf.length());
+            }
+        } finally {
+            try { raf.close(); } catch (Throwable th) { /*ignore*/ }
+        }
+    }
+
+    /* force the current write segment to disk */
+    private void _forceSegment()
+    {
+        synchronized (this) {
+            if (this.writeBuf != null) {
+                try {
+                    this.writeBuf.force();
+                } catch (Throwable th) {
+                    Print.logError("Unable to force EventData spool segment: " + th);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* load the committed replay position */
+    private void _loadPosition()
+    {
+        File posFile = new File(this.spoolDir, POSITION_FILE);
+        if (posFile.isFile()) {
+            byte b[] = FileTools.readFile(posFile);
+            String p[] = StringTools.parseString(StringTools.toStringValue(b).trim(), ',');
+            if (p.length >= 2) {
+                this.readSeq = StringTools.parseLong(p[0], 0L);
+                this.readPos = StringTools.parseInt(p[1], 0);
+            }
+        }
+    }
+
+    /* save the committed replay position */
+    private void _savePosition(long seq, int pos)
+    {
+        File posFile = new File(this.spoolDir, POSITION_FILE);
+        File tmpFile = new File(this.spoolDir, POSITION_FILE + ".tmp");
+        byte b[] = (seq + "," + pos + "\n").getBytes();
+        try {
+            FileTools.writeFile(b, tmpFile);
+        } catch (IOException ioe) {
+            Print.logError("Unable to write EventData spool position: " + ioe);
+            return;
+        }
+        if (!tmpFile.renameTo(posFile)) {
+            // Windows will not rename over an existing file
+            posFile.delete();
+            if (!tmpFile.renameTo(posFile)) {
+                Print.logError("Unable to rename EventData spool position: " + posFile);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* returns true if spooled records are waiting to be replayed (must be synchronized) */
+    private boolean _hasBacklog()
+    {
+        if (this.readSeq < this.writeSeq) {
+            return true;
+        } else
+        if (this.writeBuf != null) {
+            return (this.readPos < this.writeBuf.position());
+        } else {
+            return false;
+        }
+    }
+
+    /**
+    *** Returns true if new EventData records should be spooled rather than inserted directly
+    *** (ie. earlier records are still spooled, or the database is currently slow)
+    *** @return True if new EventData records should be spooled
+    **/
+    public boolean isActive()
+    {
+        synchronized (this) {
+            return this.dbSlow || this._hasBacklog();
+        }
+    }
+
+    /**
+    *** Records the time taken by a direct EventData insert.  If the time exceeds the configured
+    *** slow-insert time, subsequent events are spooled until the spool has been drained.
+    *** @param insertMS  The number of milliseconds taken by the insert
+    **/
+    public void noteInsertTime(long insertMS)
+    {
+        if ((this.slowInsertMS > 0L) && (insertMS >= this.slowInsertMS)) {
+            synchronized (this) {
+                if (!this.dbSlow) {
+                    Print.logWarn("EventData insert took %d ms, spooling new events", insertMS);
+                    this.dbSlow = true;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Appends the specified EventData record to the spool
+    *** @param ev  The EventData record
+    *** @return True if the record was spooled, false if it was dropped
+    **/
+    public boolean spool(EventData ev)
+    {
+        byte payload[] = EventSpool._encode(ev);
+        synchronized (this) {
+            if (payload == null) {
+                this.dropCount++;
+                return false;
+            }
+            int recLen = RECORD_HEADER + payload.length;
+            if ((recLen + 4) > this.segmentBytes) {
+                Print.logError("EventData record too large to spool: " + ev);
+                this.dropCount++;
+                return false;
+            }
+
+            /* open the next segment */
+            if ((this.writeBuf == null) || (this.writeBuf.remaining() < (recLen + 4))) {
+                long nextSeq = (this.writeBuf != null)? (this.writeSeq + 1L) : this.writeSeq;
+                if (((nextSeq - this.readSeq + 1L) * this.segmentBytes) > this.maxBytes) {
+                    if ((this.dropCount % 1000L) == 0L) {
+                        Print.logError("EventData spool is full (%d segments), event dropped: %s", (nextSeq - this.readSeq), ev);
+                    }
+                    this.dropCount++;
+                    return false;
+                }
+                try {
+                    MappedByteBuffer bb = this._mapSegment(nextSeq, true);
+                    if (this.writeBuf != null) {
+                        this.writeBuf.force();
+                    }
+                    this.writeSeq = nextSeq;
+                    this.writeBuf = bb;
+                } catch (IOException ioe) {
+                    Print.logError("Unable to create EventData spool segment: " + ioe);
+                    this.dropCount++;
+                    return false;
+                }
+            }
+
+            /* append (the length is written last, marking the record as complete) */
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            int pos = this.writeBuf.position();
+            this.writeBuf.position(pos + RECORD_HEADER);
+            this.writeBuf.put(payload);
+            this.writeBuf.putInt(pos + 4, (int)crc.getValue());
+            this.writeBuf.putInt(pos, payload.length);
+            this.spoolCount++;
+            return true;
+
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* serialize the EventData record */
+    private static byte[] _encode(EventData ev)
+    {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeUTF(ev.getAccountID());
+            dos.writeUTF(ev.getDeviceID());
+            dos.writeLong(ev.getTimestamp());
+            dos.writeInt(ev.getStatusCode());
+            DBField flds[] = EventData.getFactory().getFields();
+            java.util.List<DBField> valFlds = new Vector<DBField>();
+            for (DBField fld : flds) {
+                if (!fld.isPrimaryKey() && (ev.getFieldValue(fld.getName()) != null)) {
+                    valFlds.add(fld);
+                }
+            }
+            dos.writeShort(valFlds.size());
+            for (DBField fld : valFlds) {
+                dos.writeUTF(fld.getName());
+                dos.writeUTF(DBFieldValues.toStringValue(ev.getFieldValue(fld.getName())));
+            }
+            dos.flush();
+            return bos.toByteArray();
+        } catch (IOException ioe) {
+            // UTFDataFormatException (value too long)
+            Print.logError("Unable to encode EventData record: " + ioe);
+            return null;
+        }
+    }
+
+    /* deserialize the EventData record */
+    private static EventData _decode(byte payload[])
+    {
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+            String acctID = dis.readUTF();
+            String devID  = dis.readUTF();
+            long   time   = dis.readLong();
+            int    code   = dis.readInt();
+            EventData ev  = new EventData.Key(acctID, devID, time, code).getDBRecord();
+            int count = dis.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                String name = dis.readUTF();
+                String val  = dis.readUTF();
+                DBField fld = EventData.getFactory().getField(name);
+                if (fld != null) {
+                    ev.setFieldValue(name, fld.parseStringValue(val));
+                }
+            }
+            return ev;
+        } catch (IOException ioe) {
+            Print.logError("Unable to decode spooled EventData record: " + ioe);
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the buffer for reading the specified segment (null if the segment does not exist) */
+    private ByteBuffer _getReadBuffer(long seq)
+    {
+        synchronized (this) {
+            if ((seq == this.writeSeq) && (this.writeBuf != null)) {
+                return this.writeBuf.duplicate();
+            }
+        }
+        if (this.readBufSeq != seq) {
+            this.readBuf    = null;
+            this.readBufSeq = -1L;
+            if (this._segmentFile(seq).isFile()) {
+                try {
+                    this.readBuf    = this._mapSegment(seq, false);
+                    this.readBufSeq = seq;
+                } catch (IOException ioe) {
+                    Print.logError("Unable to read EventData spool segment: " + ioe);
+                    return null;
+                }
+            }
+        }
+        return (this.readBuf != null)? this.readBuf.duplicate() : null;
+    }
+
+    /* read the next batch of spooled records, advancing the specified cursor [seq,pos] */
+    private java.util.List<EventData> _readBatch(long cursor[])
+    {
+        java.util.List<EventData> batch = new Vector<EventData>();
+        while (batch.size() < REPLAY_BATCH_SIZE) {
+            long seq = cursor[0];
+            int  pos = (int)cursor[1];
+
+            /* writer position */
+            boolean sealed;
+            synchronized (this) {
+                if (seq < this.writeSeq) {
+                    sealed = true;
+                } else
+                if ((this.writeBuf != null) && (pos < this.writeBuf.position())) {
+                    sealed = false;
+                } else {
+                    break; // caught up with the writer
+                }
+            }
+
+            /* next record */
+            ByteBuffer bb = this._getReadBuffer(seq);
+            int len = ((bb != null) && ((pos + RECORD_HEADER) <= bb.capacity()))? bb.getInt(pos) : 0;
+            if ((len <= 0) || ((pos + RECORD_HEADER + len) > bb.capacity())) {
+                if (sealed) {
+                    // end of segment
+                    cursor[0] = seq + 1L;
+                    cursor[1] = 0L;
+                    continue;
+                } else {
+                    break; // (not expected)
+                }
+            }
+            byte payload[] = new byte[len];
+            bb.position(pos + RECORD_HEADER);
+            bb.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            EventData ev = ((int)crc.getValue() == bb.getInt(pos + 4))? EventSpool._decode(payload) : null;
+            if (ev == null) {
+                // torn/corrupt record, the remainder of this segment is unreliable
+                Print.logError("Corrupt EventData spool record: %s @ %d", this._segmentFile(seq), pos);
+                synchronized (this) { this.corruptCount++; }
+                if (sealed) {
+                    cursor[0] = seq + 1L;
+                    cursor[1] = 0L;
+                } else {
+                    cursor[1] = pos + RECORD_HEADER + len;
+                }
+                continue;
+            }
+            batch.add(ev);
+            cursor[1] = pos + RECORD_HEADER + len;
+
+        }
+        return batch;
+    }
+
+    /* commit the replay position, deleting the completed segments */
+    private void _commit(long cursor[])
+    {
+        long seq;
+        int  pos;
+        synchronized (this) {
+            for (long s = this.readSeq; s < cursor[0]; s++) {
+                if (this.readBufSeq == s) {
+                    this.readBuf    = null;
+                    this.readBufSeq = -1L;
+                }
+                this._segmentFile(s).delete();
+            }
+            this.readSeq = cursor[0];
+            this.readPos = (int)cursor[1];
+            if (!this._hasBacklog()) {
+                // drained, release the current segment
+                if (this.writeBuf != null) {
+                    this.writeBuf = null;
+                    this._segmentFile(this.writeSeq).delete();
+                    this.writeSeq++;
+                    this.readSeq = this.writeSeq;
+                    this.readPos = 0;
+                }
+                if (this.dbSlow) {
+                    Print.logInfo("EventData spool drained, resuming direct inserts");
+                    this.dbSlow = false;
+                }
+            }
+            seq = this.readSeq;
+            pos = this.readPos;
+        }
+        this._savePosition(seq, pos);
+    }
+
+    /* replay spooled records to the database */
+    private void _replayLoop()
+    {
+        long    lastMetricsMS = System.currentTimeMillis();
+        boolean failing       = false;
+        for (;;) {
+
+            /* metrics */
+            if ((System.currentTimeMillis() - lastMetricsMS) >= METRICS_INTERVAL_MS) {
+                lastMetricsMS = System.currentTimeMillis();
+                String m = this.getStatistics();
+                if (!m.equals(this.lastMetrics)) {
+                    Print.logInfo("EventData spool: " + m);
+                    this.lastMetrics = m;
+                }
+            }
+
+            /* next batch */
+            long cursor[];
+            synchronized (this) {
+                cursor = new long[] { this.readSeq, this.readPos };
+            }
+            long startSeq = cursor[0], startPos = cursor[1];
+            java.util.List<EventData> batch = this._readBatch(cursor);
+            if (batch.isEmpty()) {
+                if ((cursor[0] != startSeq) || (cursor[1] != startPos)) {
+                    this._commit(cursor); // skipped segment ends/corrupt records
+                } else {
+                    try { Thread.sleep(REPLAY_IDLE_MS); } catch (Throwable th) { /*ignore*/ }
+                }
+                continue;
+            }
+
+            /* insert */
+            try {
+                DBRecord.insertRecords(batch); // previously inserted records are updated
+                synchronized (this) { this.replayCount += batch.size(); }
+                this._commit(cursor);
+                if (failing) {
+                    Print.logInfo("EventData spool replay resumed");
+                    failing = false;
+                }
+            } catch (Throwable th) {
+                // DBException, etc. (retry from the same position)
+                if (!failing) {
+                    Print.logWarn("EventData spool replay failed (will retry): " + th);
+                    failing = true;
+                }
+                try { Thread.sleep(REPLAY_RETRY_MS); } catch (Throwable t) { /*ignore*/ }
+            }
+
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of bytes of spooled records waiting to be replayed (approximate)
+    *** @return The number of pending bytes
+    **/
+    public long getBacklogBytes()
+    {
+        synchronized (this) {
+            if (!this._hasBacklog()) {
+                return 0L;
+            }
+            long bytes = (this.writeSeq - this.readSeq) * this.segmentBytes - this.readPos;
+            if (this.writeBuf != null) {
+                bytes += this.writeBuf.position();
+            }
+            return Math.max(bytes, 0L);
+        }
+    }
+
+    /**
+    *** Gets the spool statistics (spooled, replayed, dropped, and corrupt record counts, and
+    *** the pending bytes)
+    *** @return The spool statistics
+    **/
+    public String getStatistics()
+    {
+        long backlog = this.getBacklogBytes();
+        synchronized (this) {
+            return "spooled=" + this.spoolCount + " replayed=" + this.replayCount +
+                " dropped=" + this.dropCount + " corrupt=" + this.corruptCount +
+                " backlogBytes=" + backlog + (this.dbSlow? " (slow)" : "");
+        }
+    }
+
+    /**
+    *** Gets the number of records spooled by this process
+    *** @return The number of spooled records
+    **/
+    public long getSpoolCount()
+    {
+        synchronized (this) {
+            return this.spoolCount;
+        }
+    }
+
+    /**
+    *** Gets the number of records replayed to the database by this process
+    *** @return The number of replayed records
+    **/
+    public long getReplayCount()
+    {
+        synchronized (this) {
+            return this.replayCount;
+        }
+    }
+
+    /**
+    *** Gets the number of records dropped because the spool was full (or unwritable)
+    *** @return The number of dropped records
+    **/
+    public long getDropCount()
+    {
+        synchronized (this) {
+            return this.dropCount;
+        }
+    }
+
+}
@@ -147,6 +147,33 @@ public class EventUtil
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    /**
+    *** Incremental event writer.  Writes the format header, then each event as it is
+    *** provided, then the format footer, so that the events to be written need not be
+    *** held in memory all at once.
+    **/
+    public interface EventWriter
+    {
+        /**
+        *** Writes the format header
+        **/
+        public void writeHeader() throws IOException;
+        /**
+        *** Writes the specified event
+        *** @param ev  The EventData record to write
+        **/
+        public void writeEvent(EventData ev) throws IOException;
+        /**
+        *** Writes the format footer, and flushes the output
+        *** @param nextKey  The key at which a subsequent request may resume the selection,
+        ***                 or null if the selection is complete
+        **/
+        public void writeFooter(String nextKey) throws IOException;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     private static EventUtil instance = null;
     public static EventUtil getInstance()
     {
@@ -250,11 +277,31 @@ public class EventUtil
         char csvSep, boolean inclHeader, BasicPrivateLabel privLabel)
         throws IOException
     {
+        String evFields[] = this.getFields_CSV(allTags);
+        return this.writeEvents_CSV(pwout, evdata, tz, evFields, csvSep, inclHeader, privLabel);
+    }
+    
+    public boolean writeEvents_CSV(PrintWriter pwout, EventData evdata[], TimeZone tz, 
+        String evFields[], char csvSep, boolean inclHeader, BasicPrivateLabel privLabel)
+        throws IOException
+    {
+        // Note: If all of the specified EventData records do not belong to the 
+        // same 'deviceID', then 'evFields' should contain the 'deviceID'.
+        Account acct = (evdata.length > 0)? evdata[0].getAccount() : null;
+        EventWriter evw = new EventWriter_CSV(pwout, acct, tz, evFields, csvSep, inclHeader);
+        evw.writeHeader();
+        for (int i = 0; i < evdata.length; i++) {
+            evw.writeEvent(evdata[i]);
+        }
+        evw.writeFooter(null);
+        return true;
+    }
 
-        /* fields to place in CSV format */
-        String evFields[] = null;
+    /* fields to place in CSV format */
+    private String[] getFields_CSV(boolean allTags)
+    {
         if (allTags) {
-            evFields = new String[] {
+            return new String[] {
                 EventData.FLD_deviceID,
                 // --
                 EventData.FLD_timestamp,
@@ -282,7 +329,7 @@ public class EventUtil
                 EventData.FLD_coolantTemp,
             };
         } else {
-            evFields = new String[] {
+            return new String[] {
                 EventData.FLD_deviceID,
                 // --
                 EventData.FLD_timestamp,
@@ -295,41 +342,55 @@ public class EventUtil
                 EventData.FLD_address,
             };
         }
-
-        /* write events */
-        return this.writeEvents_CSV(pwout, evdata, tz, evFields, csvSep, inclHeader, privLabel);
-
     }
-    
-    public boolean writeEvents_CSV(PrintWriter pwout, EventData evdata[], TimeZone tz, 
-        String evFields[], char csvSep, boolean inclHeader, BasicPrivateLabel privLabel)
-        throws IOException
-    {
-        // Note: If all of the specified EventData records do not belong to the 
-        // same 'deviceID', then 'evFields' should contain the 'deviceID'.
 
-        /* print header */
-        if (inclHeader) {
-            String hdr = this.formatHeader_CSV(evFields,csvSep) + "\n";
-            this.write(pwout, hdr);
+    /* incremental CSV writer */
+    private class EventWriter_CSV
+        implements EventWriter
+    {
+        private PrintWriter pwout      = null;
+        private Account     account    = null;
+        private TimeZone    tz         = null;
+        private String      evFields[] = null;
+        private char        csvSep     = ',';
+        private boolean     inclHeader = true;
+        private String      dateFmt    = null;
+        private String      timeFmt    = null;
+        public EventWriter_CSV(PrintWriter pwout, Account account, TimeZone tz, 
+            String evFields[], char csvSep, boolean inclHeader) {
+            this.pwout      = pwout;
+            this.account    = account;
+            this.tz         = tz;
+            this.evFields   = evFields;
+            this.csvSep     = csvSep;
+            this.inclHeader = inclHeader;
+        }
+        public void writeHeader() throws IOException {
+            if (this.inclHeader) {
+                String hdr = EventUtil.this.formatHeader_CSV(this.evFields,this.csvSep) + "\n";
+                EventUtil.this.write(this.pwout, hdr);
+            }
         }
-
-        /* date/time format */
-        Account acct = (evdata.length > 0)? evdata[0].getAccount() : null;
-        String dateFmt = (acct != null)? acct.getDateFormat() : BasicPrivateLabel.getDefaultDateFormat();
-        String timeFmt = (acct != null)? acct.getTimeFormat() : BasicPrivateLabel.getDefaultTimeFormat();
-
-        /* print events */
-        for (int i = 0; i < evdata.length; i++) {
-            evdata[i].setAccount(acct);
-            String rcd = this.formatEventData_CSV(evdata[i], evFields, tz, dateFmt, timeFmt, csvSep) + "\n";
-            this.write(pwout, rcd);
+        public void writeEvent(EventData ev) throws IOException {
+            if (this.dateFmt == null) {
+                // date/time format (from the first event, if the account was not specified)
+                if (this.account == null) { this.account = ev.getAccount(); }
+                Account acct = this.account;
+                this.dateFmt = (acct != null)? acct.getDateFormat() : BasicPrivateLabel.getDefaultDateFormat();
+                this.timeFmt = (acct != null)? acct.getTimeFormat() : BasicPrivateLabel.getDefaultTimeFormat();
+            }
+            ev.setAccount(this.account);
+            String rcd = EventUtil.this.formatEventData_CSV(ev, this.evFields, this.tz, 
+                this.dateFmt, this.timeFmt, this.csvSep) + "\n";
+            EventUtil.this.write(this.pwout, rcd);
+        }
+        public void writeFooter(String nextKey) throws IOException {
+            if (!StringTools.isBlank(nextKey)) {
+                EventUtil.this.write(this.pwout, "#NextKey" + this.csvSep + nextKey + "\n");
+            }
+            /* flush (output may not occur until the PrintWriter is flushed) */
+            EventUtil.this.flush(this.pwout);
         }
-
-        /* flush (output may not occur until the PrintWriter is flushed) */
-        this.flush(pwout);
-        return true;
-
     }
 
     private String formatHeader_CSV(String f[], char csvSep)
@@ -403,13 +464,9 @@ public class EventUtil
                     if (fields[i].equals(EventData.FLD_timestamp)) {
                         // format timestamp
                         long time = ((Long)val).longValue();
-                        DateTime dt = new DateTime(time);
                         String fmt = dateFmt + csvSep + timeFmt;
-                        if (tz == null) {
-                            sb.append(dt.gmtFormat(fmt));
-                        } else {
-                            sb.append(dt.format(fmt,tz));
-                        }
+                        TimeZone dtz = (tz != null)? tz : DateTime.getGMTTimeZone();
+                        DateTime.getFormatter(fmt,dtz).format(time * 1000L, sb);
                     } else
                     if (fields[i].equals(EventData.FLD_statusCode)) {
                         // return statusCode description
@@ -481,6 +538,7 @@ public class EventUtil
     public  static final String  TAG_Shape                      = "Shape"; // MapShape
 
     public  static final String  ATTR_isFleet                   = "isFleet";
+    public  static final String  ATTR_encoding                  = "enc";
     public  static final String  ATTR_type                      = "type";
     public  static final String  ATTR_id                        = "id";
     public  static final String  ATTR_route                     = "route";
@@ -504,6 +562,77 @@ public class EventUtil
   //public  static final String  CSV_SEPARATOR                  = "|";
     public  static final char    CSV_SEPARATOR_CHAR             = '|';
 
+    public  static final String  ENCODING_compact               = "c1";
+
+    /* compact map event encoder state (one per MapData document) */
+    // Compact record fields (must match 'MapEventDecoder' in 'getParseMapEventJS'):
+    //   VIN|Desc|dEpoch|Date|Time|Tmz|Stat|Icon|dLat|dLon|#Sats|kph*10|Heading|Alt|dOdomKM*10|Addr|Opt...
+    // - String fields are dictionary encoded: "^N" references the N'th literal string
+    //   previously sent in this document.  Any other value is a literal (a leading '\'
+    //   is removed), which is added to the dictionary.  Blank strings are sent as-is.
+    // - 'dEpoch', 'dLat', 'dLon', 'dOdomKM' are deltas from the previous record in the
+    //   same DataSet (the first record in each DataSet is relative to '0').
+    // - Latitude/Longitude are in 1/1000000 degrees.  Zero integer values are sent blank.
+    private static class MapEventEncoder
+    {
+        private char                csvSep   = CSV_SEPARATOR_CHAR;
+        private Map<String,Integer> dict     = new HashMap<String,Integer>();
+        private int                 dictSize = 0;
+        private long                lastTime = 0L;
+        private long                lastLat  = 0L;
+        private long                lastLon  = 0L;
+        private long                lastOdom = 0L;
+        public MapEventEncoder(char csvSep) {
+            this.csvSep = csvSep;
+        }
+        public void reset() {
+            // start of DataSet
+            this.lastTime = 0L;
+            this.lastLat  = 0L;
+            this.lastLon  = 0L;
+            this.lastOdom = 0L;
+        }
+        public void appendString(StringBuffer sb, String s) {
+            if (StringTools.isBlank(s)) {
+                sb.append(this.csvSep);
+                return;
+            }
+            s = s.replace(this.csvSep,' ');
+            Integer ndx = this.dict.get(s);
+            String  ref = (ndx != null)? ("^" + ndx) : null;
+            if ((ref != null) && (ref.length() < s.length())) {
+                sb.append(ref);
+            } else {
+                char ch = s.charAt(0);
+                if ((ch == '^') || (ch == '\\')) { sb.append('\\'); }
+                sb.append(s);
+                this.dict.put(s, new Integer(this.dictSize++));
+            }
+            sb.append(this.csvSep);
+        }
+        public void appendInt(StringBuffer sb, long v) {
+            if (v != 0L) { sb.append(v); }
+            sb.append(this.csvSep);
+        }
+        public void appendTime(StringBuffer sb, long time) {
+            this.appendInt(sb, time - this.lastTime);
+            this.lastTime = time;
+        }
+        public void appendLatLon(StringBuffer sb, double lat, double lon) {
+            long iLat = Math.round(lat * 1000000.0);
+            long iLon = Math.round(lon * 1000000.0);
+            this.appendInt(sb, iLat - this.lastLat);
+            this.appendInt(sb, iLon - this.lastLon);
+            this.lastLat = iLat;
+            this.lastLon = iLon;
+        }
+        public void appendOdometer(StringBuffer sb, double odomKM) {
+            long iOdom = Math.round(odomKM * 10.0);
+            this.appendInt(sb, iOdom - this.lastOdom);
+            this.lastOdom = iOdom;
+        }
+    }
+
     /* return JavaScript for parsing the formatted CSV EventDataProvider record */
     public String getParseMapEventJS(boolean isFleet, Locale locale)
     {
@@ -518,7 +647,7 @@ public class EventUtil
 
         js.append("// (generated by 'EventUtil.getParseMapEventJS')\n");
         js.append("function MapEventRecord(csvRcd) {\n");
-        js.append("    var fld        = csvRcd.split('" + csvSep + "');\n");
+        js.append("    var fld        = (typeof csvRcd == 'string')? csvRcd.split('" + csvSep + "') : csvRcd;\n"); // array from 'MapEventDecoder'
         js.append("    this.index     = 0;\n"); // will be set later
         js.append("    this.valid     = (fld.length > 8);\n"); // must include at least up to latitude/longitude
         js.append("    this.devVIN    = (fld.length > 0)? fld[0] : '';\n");
@@ -551,6 +680,48 @@ public class EventUtil
         js.append("    }\n");
         js.append("};\n");
 
+        // NOTE: The format decoded here must match the encoder 'MapEventEncoder' above
+        js.append("function MapEventDecoder() {\n");
+        js.append("    this.dict = [];\n");
+        js.append("    this.reset();\n");
+        js.append("};\n");
+        js.append("MapEventDecoder.prototype.reset = function() {\n");
+        js.append("    this.time = 0; this.lat = 0; this.lon = 0; this.odom = 0;\n");
+        js.append("};\n");
+        js.append("MapEventDecoder.prototype.str = function(v) {\n");
+        js.append("    if ((v == null) || (v == '')) { return ''; }\n");
+        js.append("    var ch = v.charAt(0);\n");
+        js.append("    if (ch == '^') { var d = this.dict[parseInt(v.substring(1),10)]; return (d != null)? d : ''; }\n");
+        js.append("    if (ch == '\\\\') { v = v.substring(1); }\n");
+        js.append("    this.dict.push(v);\n");
+        js.append("    return v;\n");
+        js.append("};\n");
+        js.append("MapEventDecoder.prototype.num = function(v) {\n");
+        js.append("    return ((v == null) || (v == ''))? 0 : parseInt(v,10);\n");
+        js.append("};\n");
+        js.append("MapEventDecoder.prototype.decode = function(rcd) {\n"); // returns MapEventRecord fields
+        js.append("    var c = rcd.split('" + csvSep + "');\n");
+        js.append("    var f = [];\n");
+        js.append("    f[0]  = this.str(c[0]);\n");                                       // VIN
+        js.append("    f[1]  = this.str(c[1]);\n");                                       // description
+        js.append("    this.time += this.num(c[2]); f[2] = this.time;\n");               // epoch
+        js.append("    f[3]  = this.str(c[3]);\n");                                       // date
+        js.append("    f[4]  = (c.length > 4)? c[4] : '';\n");                            // time (not dictionary encoded)
+        js.append("    f[5]  = this.str(c[5]);\n");                                       // timezone
+        js.append("    f[6]  = this.str(c[6]);\n");                                       // status code
+        js.append("    f[7]  = String(this.num(c[7]));\n");                               // icon index
+        js.append("    this.lat += this.num(c[8]); f[8] = (this.lat / 1000000.0).toFixed(6);\n");
+        js.append("    this.lon += this.num(c[9]); f[9] = (this.lon / 1000000.0).toFixed(6);\n");
+        js.append("    f[10] = String(this.num(c[10]));\n");                              // satellite count
+        js.append("    f[11] = (this.num(c[11]) / 10.0).toFixed(1);\n");                  // speed kph
+        js.append("    f[12] = String(this.num(c[12]));\n");                              // heading
+        js.append("    f[13] = String(this.num(c[13]));\n");                              // altitude
+        js.append("    this.odom += this.num(c[14]); f[14] = (this.odom / 10.0).toFixed(1);\n");
+        js.append("    f[15] = this.str(c[15]);\n");                                      // address
+        js.append("    for (var i = 16; i < c.length; i++) { f[i] = this.str(c[i]); }\n"); // optional fields
+        js.append("    return f;\n");
+        js.append("};\n");
+
         js.append("function OptionalEventFieldCount() {\n");
         js.append("    return "+((EventUtil.optionalEventFieldHandler!=null)?EventUtil.optionalEventFieldHandler.getOptionalEventFieldCount(isFleet):0)+";\n");
         js.append("};\n");
@@ -612,6 +783,35 @@ public class EventUtil
         double minProximityM,
         char csvSep)
         throws IOException
+    {
+        return this.writeMapEvents(
+            indentLevel, pwout, isSoapRequest,
+            privLabel,
+            edp, includeShapes,
+            iconSelector, iconKeys,
+            isFleet, fleetRoute, selID,
+            tmz,
+            acct,
+            latestTime, lastBattery, lastSignal,
+            minProximityM,
+            csvSep, false);
+    }
+
+    /* write encoded map event data to the specified PrintWriter */
+    // If 'compact' is true, the map event records are written in the compact encoding
+    // (see "MapEventEncoder"), which must be decoded by the client with "MapEventDecoder".
+    public boolean writeMapEvents(
+        int indentLevel, PrintWriter pwout, boolean isSoapRequest,
+        BasicPrivateLabel privLabel,
+        EventDataProvider edp[],  boolean includeShapes,
+        String iconSelector, OrderedSet<String>iconKeys, 
+        boolean isFleet, boolean fleetRoute, String selID,
+        TimeZone tmz, 
+        Account acct, 
+        DateTime latestTime, double lastBattery, double lastSignal,
+        double minProximityM,
+        char csvSep, boolean compact)
+        throws IOException
     {
         // <MapData>
         //   <Time timestamp="EPOCH" timezone="TMZ" year="YYYY" month="MM" day="DD">YYYY/MM/DD|hh:mm:ss</Time>
@@ -640,8 +840,10 @@ public class EventUtil
         String PFX1 = (indentLevel > 0)? XMLTools.PREFIX(isSoapRequest, indentLevel   *3) : "";
         String PFX2 = (indentLevel > 0)? XMLTools.PREFIX(isSoapRequest,(indentLevel+1)*3) : "";
         this.write(pwout, PFX1);
+        MapEventEncoder encoder = compact? new MapEventEncoder(csvSep) : null;
         this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_MapData,
-            XMLTools.ATTR(ATTR_isFleet,isFleet),
+            XMLTools.ATTR(ATTR_isFleet,isFleet) +
+            (compact? XMLTools.ATTR(ATTR_encoding,ENCODING_compact) : ""),
             false,true));
 
         /* today time */
@@ -736,7 +938,7 @@ public class EventUtil
             privLabel,
             this._getPOI(((acct != null)? acct.getAccountID() : null), privLabel), 
             iconKeys, 
-            csvSep);
+            csvSep, encoder);
 
         // <DataSet type="device" id="deviceid" route="true">
         boolean rtn = this._writeMapEvents(
@@ -746,7 +948,7 @@ public class EventUtil
             iconSelector, iconKeys, 
             isFleet, fleetRoute, selID,
             tmz, dateFmt, timeFmt, 
-            csvSep,
+            csvSep, encoder,
             minProximityM);
 
         /* XML footer */
@@ -765,7 +967,7 @@ public class EventUtil
         BasicPrivateLabel privLabel,
         PoiProvider poip[], 
         OrderedSet<String> iconKeys, 
-        char csvSep)
+        char csvSep, MapEventEncoder encoder)
         throws IOException
     {
 
@@ -786,6 +988,9 @@ public class EventUtil
             XMLTools.ATTR(ATTR_type     , type ) +
             XMLTools.ATTR(ATTR_route    , false),
             false,true));
+        if (encoder != null) {
+            encoder.reset();
+        }
 
         /* points of interest */
         for (int i = 0; i < poip.length; i++) {
@@ -799,9 +1004,9 @@ public class EventUtil
                 public String getAddress()           { return pp.getAddress(); }
                 public int    getPushpinIconIndex(String iconSelector, OrderedSet<String> iconKeys, boolean isFleet, BasicPrivateLabel bpl) { return pp.getPushpinIconIndex(iconKeys,bpl); }
             };
-            String rcd = this.formatMapEvent(privLabel, edp,
+            String rcd = this._formatMapEvent(privLabel, edp,
                 null, iconKeys, false,
-                null, null, null, csvSep);
+                null, null, null, csvSep, encoder);
             this.write(pwout, PFX2);
             this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Point,"",false,false));
             this.write(pwout, XMLTools.CDATA(isSoapRequest,rcd));
@@ -827,7 +1032,7 @@ public class EventUtil
         boolean isFleet, boolean fleetRoute, String selID, // "selID" is either a DeviceID or GroupID
         TimeZone tmz, 
         String dateFmt, String timeFmt, 
-        char csvSep,
+        char csvSep, MapEventEncoder encoder,
         double minProximityM)
         throws IOException
     {
@@ -932,6 +1137,9 @@ public class EventUtil
                     XMLTools.ATTR(ATTR_routeColor, routeColor  ) +
                     XMLTools.ATTR(ATTR_textColor , textColor   ),
                     false,true));
+                if (encoder != null) {
+                    encoder.reset();
+                }
                 didStartSet = true;
                 //Print.logWarn(i + ") New DataSet: " + selID);
             }
@@ -960,9 +1168,9 @@ public class EventUtil
 
             /* format and print event */
             //Print.logInfo("["+thisDevID+"] iconSelector='"+iconSelector+"' showFleetIcon=" + showFleetIcon);
-            String rcd = this.formatMapEvent(privLabel, edp[i],
+            String rcd = this._formatMapEvent(privLabel, edp[i],
                 iconSelector, iconKeys, showFleetIcon,
-                tmz, dateFmt, timeFmt, csvSep);
+                tmz, dateFmt, timeFmt, csvSep, encoder);
             this.write(pwout, PFX2);
             this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Point,"",false,false));
             this.write(pwout, XMLTools.CDATA(isSoapRequest,rcd));
@@ -994,6 +1202,60 @@ public class EventUtil
             tmz, dateFmt, timeFmt, cvsSep);
     }
 
+    /* encode a single map event record (compact encoding, if an encoder is specified) */
+    private String _formatMapEvent(
+        BasicPrivateLabel privLabel, 
+        EventDataProvider edp,
+        String iconSelector, OrderedSet<String> iconKeys, boolean isFleet,
+        TimeZone tmz, String dateFmt, String timeFmt, char csvSep,
+        MapEventEncoder encoder)
+    {
+        if (encoder == null) {
+            return this.formatMapEvent(privLabel, edp, 
+                iconSelector, iconKeys, isFleet, 
+                tmz, dateFmt, timeFmt, csvSep);
+        } else
+        if (edp == null) {
+            return "";
+        }
+
+        /* start record assembly */
+        // NOTE: The format encoded here must match the decoder 'MapEventDecoder' above
+        StringBuffer sb = new StringBuffer();
+        encoder.appendString(sb, edp.getDeviceVIN());                                       // [ 0] VehicleID
+        encoder.appendString(sb, edp.getDeviceDescription());                               // [ 1] DeviceDesc
+        long time = edp.getTimestamp();
+        encoder.appendTime(sb, time);                                                       // [ 2] Timestamp
+        if (dateFmt != null) {
+            DateTime dt = new DateTime(time,tmz);
+            encoder.appendString(sb, dt.format(dateFmt));                                   // [ 3] Date
+            sb.append(dt.format(timeFmt)).append(csvSep);                                   // [ 4] Time
+            encoder.appendString(sb, dt.format("zzz",tmz));                                 // [ 5] TimeZone
+        } else {
+            sb.append(csvSep).append(csvSep).append(csvSep);
+        }
+        encoder.appendString(sb, edp.getStatusCodeDescription(privLabel));                  // [ 6] StatusCode
+        encoder.appendInt(sb, edp.getPushpinIconIndex(iconSelector, iconKeys, isFleet, privLabel)); // [ 7] Icon
+        encoder.appendLatLon(sb, edp.getLatitude(), edp.getLongitude());                    // [8,9] Latitude/Longitude
+        encoder.appendInt(sb, edp.getSatelliteCount());                                     // [10] Satellite Count
+        encoder.appendInt(sb, Math.round(edp.getSpeedKPH() * 10.0));                        // [11] SpeedKPH
+        encoder.appendInt(sb, Math.round(edp.getHeading()));                                // [12] Heading
+        encoder.appendInt(sb, Math.round(edp.getAltitude()));                               // [13] Altitude (meters)
+        encoder.appendOdometer(sb, edp.getOdometerKM());                                    // [14] Odometer (kilometers)
+        encoder.appendString(sb, edp.getAddress());                                         // [15] Address
+        if (EventUtil.optionalEventFieldHandler != null) {                                  // [16+] other fields?
+            int optFieldCount = EventUtil.optionalEventFieldHandler.getOptionalEventFieldCount(isFleet);
+            for (int i = 0; i < optFieldCount; i++) {
+                encoder.appendString(sb, EventUtil.optionalEventFieldHandler.getOptionalEventField(i,isFleet,edp));
+            }
+        }
+        sb.setLength(sb.length() - 1); // remove trailing separator
+
+        /* return compact record */
+        return sb.toString();
+
+    }
+
     /* encode a single map event record */
     // NOTE: The format encoded here must match the parser 'getParseMapEventJS' above
     public String formatMapEvent(
@@ -1405,30 +1667,54 @@ public class EventUtil
         if (account == null) {
             return false;
         }
-        String accountID = account.getAccountID();
-        String tzStr = account.getTimeZone();
-        if ((tzStr == null) || tzStr.equals("")) {
-            tzStr = DateTime.GMT_TIMEZONE;
+
+        /* write events */
+        EventWriter evw = new EventWriter_XML(pwout, account, allTags, privLabel);
+        evw.writeHeader();
+        for (int i = 0; i < evdata.length; i++) {
+            evw.writeEvent(evdata[i]);
         }
+        evw.writeFooter(null);
+        return true;
 
-        /* header */
-        this.writeEvents_XML_EventData(pwout, accountID, tzStr, true);
+    }
 
-        /* event data */
-        if (evdata != null) {
-            for (int i = 0; i < evdata.length; i++) {
-                if (evdata[i].getAccountID().equals(accountID)) {
-                    evdata[i].setAccount(account);
-                    this.writeEvents_XML_Event(pwout, evdata[i], 2, allTags, privLabel);
-                }
+    /* incremental XML writer */
+    private class EventWriter_XML
+        implements EventWriter
+    {
+        private PrintWriter       pwout     = null;
+        private Account           account   = null;
+        private String            accountID = null;
+        private boolean           allTags   = false;
+        private BasicPrivateLabel privLabel = null;
+        public EventWriter_XML(PrintWriter pwout, Account account, boolean allTags, BasicPrivateLabel privLabel) {
+            this.pwout     = pwout;
+            this.account   = account;
+            this.accountID = account.getAccountID();
+            this.allTags   = allTags;
+            this.privLabel = privLabel;
+        }
+        public void writeHeader() throws IOException {
+            String tzStr = this.account.getTimeZone();
+            if ((tzStr == null) || tzStr.equals("")) {
+                tzStr = DateTime.GMT_TIMEZONE;
             }
+            EventUtil.this.writeEvents_XML_EventData(this.pwout, this.accountID, tzStr, true);
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            if (ev.getAccountID().equals(this.accountID)) {
+                ev.setAccount(this.account);
+                EventUtil.this.writeEvents_XML_Event(this.pwout, ev, 2, this.allTags, this.privLabel);
+            }
+        }
+        public void writeFooter(String nextKey) throws IOException {
+            if (!StringTools.isBlank(nextKey)) {
+                EventUtil.this.write(this.pwout, "  <NextKey>" + nextKey + "</NextKey>\n");
+            }
+            EventUtil.this.writeEvents_XML_EventData(this.pwout, null, null, false);
+            EventUtil.this.flush(this.pwout); // flush (output may not occur this the PrintWriter is flushed)
         }
-
-        /* trailer */
-        this.writeEvents_XML_EventData(pwout, null, null, false);
-        this.flush(pwout); // flush (output may not occur this the PrintWriter is flushed)
-        return true;
-
     }
 
     // ------------------------------------------------------------------------
@@ -1462,57 +1748,80 @@ public class EventUtil
     public boolean writeEvents_GPX(PrintWriter pwout, EventData evdata[], BasicPrivateLabel privLabel)
         throws IOException
     {
-        String dateFmt = "yyyy-MM-dd'T'HH:mm:ss'Z'";
 
         /* account info */
         Account account = !ListTools.isEmpty(evdata)? evdata[0].getAccount() : null;
         if (account == null) {
             return false;
         }
-        TimeZone tz = DateTime.getGMTTimeZone();
 
-        /* header */
-        this.write(pwout, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        this.write(pwout, "<gpx version=\"1.0\"\n");
-        this.write(pwout, "    creator=\"OpenGTS "+Version.getVersion()+" - http://www.opengts.org\"\n");
-        this.write(pwout, "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
-        this.write(pwout, "    xsi:schemaLocation=\"http://www.topografix.com/GPX/1/0 http://www.topografix.com/GPX/1/0/gpx.xsd\">\n");
-        this.write(pwout, "  <time>" + (new DateTime(tz)).format(dateFmt) + "</time>\n");
-        
-        /* track body */
-        Device lastDev   = null;
-        String lastDevID = null;
+        /* write events */
+        EventWriter evw = new EventWriter_GPX(pwout);
+        evw.writeHeader();
         for (int i = 0; i < evdata.length; i++) {
-            String thisDevID = evdata[i].getDeviceID();
+            evw.writeEvent(evdata[i]);
+        }
+        evw.writeFooter(null);
+        return false;
+
+    }
+
+    /* incremental GPX writer */
+    private class EventWriter_GPX
+        implements EventWriter
+    {
+        private String      dateFmt   = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+        private TimeZone    tz        = DateTime.getGMTTimeZone();
+        private PrintWriter pwout     = null;
+        private String      lastDevID = null;
+        public EventWriter_GPX(PrintWriter pwout) {
+            this.pwout = pwout;
+        }
+        private void write(String s) throws IOException {
+            EventUtil.this.write(this.pwout, s);
+        }
+        public void writeHeader() throws IOException {
+            this.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            this.write("<gpx version=\"1.0\"\n");
+            this.write("    creator=\"OpenGTS "+Version.getVersion()+" - http://www.opengts.org\"\n");
+            this.write("    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
+            this.write("    xsi:schemaLocation=\"http://www.topografix.com/GPX/1/0 http://www.topografix.com/GPX/1/0/gpx.xsd\">\n");
+            this.write("  <time>" + (new DateTime(this.tz)).format(this.dateFmt) + "</time>\n");
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            String thisDevID = ev.getDeviceID();
             // Device change
-            if (!thisDevID.equals(lastDevID)) {
-                if (lastDevID != null) {
-                    this.write(pwout, "  </trkseg>\n");
-                    this.write(pwout, "  </trk>\n");
+            if (!thisDevID.equals(this.lastDevID)) {
+                if (this.lastDevID != null) {
+                    this.write("  </trkseg>\n");
+                    this.write("  </trk>\n");
                     // we're done with the last device
                 }
-                lastDevID = thisDevID;
-                lastDev   = evdata[i].getDevice();
-                this.write(pwout, "  <trk>\n");
-                this.write(pwout, "  <name><![CDATA["+lastDevID+"]]></name>\n");
-                this.write(pwout, "  <desc><![CDATA["+((lastDev!=null)?lastDev.getDescription():"?")+"]]></desc>\n");
-                this.write(pwout, "  <trkseg>\n");
+                this.lastDevID = thisDevID;
+                Device lastDev = ev.getDevice();
+                this.write("  <trk>\n");
+                this.write("  <name><![CDATA["+this.lastDevID+"]]></name>\n");
+                this.write("  <desc><![CDATA["+((lastDev!=null)?lastDev.getDescription():"?")+"]]></desc>\n");
+                this.write("  <trkseg>\n");
             }
             // Data
-            this.write(pwout, "    <trkpt lat=\"" + evdata[i].getLatitude() + "\" lon=\"" + evdata[i].getLongitude() + "\">\n");
-            this.write(pwout, "      <time>" + (new DateTime(evdata[i].getTimestamp(),tz)).format(dateFmt) + "</time>\n");
-            this.write(pwout, "      <ele>"+evdata[i].getAltitude()+"</ele>\n"); // meters
-            this.write(pwout, "    </trkpt>\n");
-        }
-        if (lastDevID != null) {
-            this.write(pwout, "  </trkseg>\n");
-            this.write(pwout, "  </trk>\n");
+            this.write("    <trkpt lat=\"" + ev.getLatitude() + "\" lon=\"" + ev.getLongitude() + "\">\n");
+            this.write("      <time>" + (new DateTime(ev.getTimestamp(),this.tz)).format(this.dateFmt) + "</time>\n");
+            this.write("      <ele>"+ev.getAltitude()+"</ele>\n"); // meters
+            this.write("    </trkpt>\n");
+        }
+        public void writeFooter(String nextKey) throws IOException {
+            if (this.lastDevID != null) {
+                this.write("  </trkseg>\n");
+                this.write("  </trk>\n");
+            }
+            if (!StringTools.isBlank(nextKey)) {
+                this.write("  <!-- NextKey=" + nextKey + " -->\n");
+            }
+            /* footer */
+            this.write("</gpx>\n");
+            EventUtil.this.flush(this.pwout);
         }
-
-        /* footer */
-        this.write(pwout, "</gpx>\n");
-
-        return false;
     }
 
     // ------------------------------------------------------------------------
@@ -1520,18 +1829,42 @@ public class EventUtil
     public boolean writeEvents_BML(PrintWriter pwout, EventData evdata[], BasicPrivateLabel privLabel)
         throws IOException
     {
-        pwout.write("<lbs>\n");
+        EventWriter evw = new EventWriter_BML(pwout);
+        evw.writeHeader();
         for (EventData ev : evdata) {
-            pwout.write("<location lon=\""+ev.getLongitude()+"\" lat=\""+ev.getLatitude()+"\"");
-            pwout.write(" label=\""+ev.getDeviceID()+"\"");
-            pwout.write(" description=\""+ev.getAddress()+"\"");
-            // other options available as well
-            pwout.write("/>\n");
+            evw.writeEvent(ev);
         }
-        pwout.write("</lbs>\n");
+        evw.writeFooter(null);
         return false;
     }
 
+    /* incremental BML writer */
+    private class EventWriter_BML
+        implements EventWriter
+    {
+        private PrintWriter pwout = null;
+        public EventWriter_BML(PrintWriter pwout) {
+            this.pwout = pwout;
+        }
+        public void writeHeader() throws IOException {
+            this.pwout.write("<lbs>\n");
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            this.pwout.write("<location lon=\""+ev.getLongitude()+"\" lat=\""+ev.getLatitude()+"\"");
+            this.pwout.write(" label=\""+ev.getDeviceID()+"\"");
+            this.pwout.write(" description=\""+ev.getAddress()+"\"");
+            // other options available as well
+            this.pwout.write("/>\n");
+        }
+        public void writeFooter(String nextKey) throws IOException {
+            if (!StringTools.isBlank(nextKey)) {
+                this.pwout.write("<!-- NextKey=" + nextKey + " -->\n");
+            }
+            this.pwout.write("</lbs>\n");
+            this.pwout.flush();
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     public boolean writeEvents(OutputStream out, 
@@ -1569,6 +1902,40 @@ public class EventUtil
         return false;
     }
 
+    /**
+    *** Creates an incremental EventWriter for the specified output format
+    *** @param pwout       The PrintWriter to which events are written
+    *** @param formatEnum  The output format
+    *** @param allTags     True to include all available event fields (CSV/XML)
+    *** @param account     The Account which owns the events to be written
+    *** @param privLabel   The BasicPrivateLabel
+    *** @return The EventWriter, or null if the format is not recognized
+    **/
+    public EventWriter createEventWriter(PrintWriter pwout, 
+        int formatEnum, boolean allTags, 
+        Account account, BasicPrivateLabel privLabel)
+    {
+        if ((pwout == null) || (account == null)) {
+            return null;
+        }
+        switch (formatEnum) {
+            case FORMAT_TXT:
+            case FORMAT_CSV:
+                return new EventWriter_CSV(pwout, account, null/*TimeZone*/, this.getFields_CSV(allTags), ',', true/*inclHeader*/);
+            case FORMAT_KML:
+                return GoogleKML.getInstance().createEventWriter(pwout, account, privLabel);
+            case FORMAT_XML:
+                return new EventWriter_XML(pwout, account, allTags, privLabel);
+            case FORMAT_GPX:
+                return new EventWriter_GPX(pwout);
+            case FORMAT_BML:
+                return new EventWriter_BML(pwout);
+            default:
+                Print.logError("Unrecognized data format: " + formatEnum);
+                return null;
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     public static OutputStream openFileOutputStream(String outFile)
@@ -394,84 +394,139 @@ public class GoogleKML
         if (account == null) {
             return false;
         }
-        String accountID = account.getAccountID();
-        TimeZone tz = account.getTimeZone(null);
 
-        /* Localization */
-        I18N i18n = (privLabel != null)? privLabel.getI18N(GoogleKML.class) : I18N.getI18N(GoogleKML.class,null);
+        /* write events */
+        EventUtil.EventWriter evw = this.createEventWriter(out, account, privLabel);
+        evw.writeHeader();
+        for (int i = 0; i < evdata.length; i++) {
+            evw.writeEvent(evdata[i]);
+        }
+        evw.writeFooter(null);
+        return true;
+        
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates an incremental KML EventWriter.  Each placemark is written when the 
+    *** following event is received (to determine whether it is the last event for 
+    *** the device), and the route coordinates for the current device are retained
+    *** until the device changes.
+    *** @param out        The PrintWriter
+    *** @param account    The Account which owns the events
+    *** @param privLabel  The BasicPrivateLabel
+    *** @return The EventWriter
+    **/
+    public EventUtil.EventWriter createEventWriter(PrintWriter out, 
+        Account account, BasicPrivateLabel privLabel)
+    {
+        return new EventWriter_KML(out, account, privLabel);
+    }
+
+    /* incremental KML writer */
+    private class EventWriter_KML
+        implements EventUtil.EventWriter
+    {
+        private PrintWriter            out       = null;
+        private Account                account   = null;
+        private String                 accountID = null;
+        private BasicPrivateLabel      privLabel = null;
+        private I18N                   i18n      = null;
+        private boolean                useLastPP = false;
+        private EventData              pendingEv = null;
+        private String                 lastDevID = "";
+        private java.util.List<String> routeList = new Vector<String>();
+        public EventWriter_KML(PrintWriter out, Account account, BasicPrivateLabel privLabel) {
+            this.out       = out;
+            this.account   = account;
+            this.accountID = account.getAccountID();
+            this.privLabel = privLabel;
+            this.i18n      = (privLabel != null)? privLabel.getI18N(GoogleKML.class) : I18N.getI18N(GoogleKML.class,null);
+        }
+        public void writeHeader() throws IOException {
 
-        /* header */
-        out.write(XML_Header);
+            /* header */
+            out.write(XML_Header);
         
-        /* Route Style */
-        out.write(XML_RouteStyle);
-
-        /* standard styles */
-        out.write(_createStyle(STYLE_DEFAULT      , getGooglePushpin("green")));
-        out.write(_createStyle(STYLE_MOVING       , getGooglePushpin("green")));
-        out.write(_createStyle(STYLE_MOVING_LAST  , getGooglePushpin("green.last")));
-        out.write(_createStyle(STYLE_STOPPED      , getGooglePushpin("red")));
-        out.write(_createStyle(STYLE_STOPPED_LAST , getGooglePushpin("red.last")));
-        out.write(_createStyle(STYLE_SLOW         , getGooglePushpin("yellow")));
-        out.write(_createStyle(STYLE_SLOW_LAST    , getGooglePushpin("yellow.last")));
-
-        /* last icon */
-        boolean useLastPP = false;
-        String lastPP = (privLabel != null)? privLabel.getStringProperty(PROP_GoogleKML_lastPushpinID,null) : null;
-        if (!StringTools.isBlank(lastPP) && GooglePushpinMap.containsKey(lastPP)) {
-            out.write(_createStyle(STYLE_LAST, getGooglePushpin(lastPP)));
-            useLastPP = true;
+            /* Route Style */
+            out.write(XML_RouteStyle);
+
+            /* standard styles */
+            out.write(_createStyle(STYLE_DEFAULT      , getGooglePushpin("green")));
+            out.write(_createStyle(STYLE_MOVING       , getGooglePushpin("green")));
+            out.write(_createStyle(STYLE_MOVING_LAST  , getGooglePushpin("green.last")));
+            out.write(_createStyle(STYLE_STOPPED      , getGooglePushpin("red")));
+            out.write(_createStyle(STYLE_STOPPED_LAST , getGooglePushpin("red.last")));
+            out.write(_createStyle(STYLE_SLOW         , getGooglePushpin("yellow")));
+            out.write(_createStyle(STYLE_SLOW_LAST    , getGooglePushpin("yellow.last")));
+
+            /* last icon */
+            String lastPP = (privLabel != null)? privLabel.getStringProperty(PROP_GoogleKML_lastPushpinID,null) : null;
+            if (!StringTools.isBlank(lastPP) && GooglePushpinMap.containsKey(lastPP)) {
+                out.write(_createStyle(STYLE_LAST, getGooglePushpin(lastPP)));
+                this.useLastPP = true;
+            }
+
         }
+        public void writeEvent(EventData ev) throws IOException {
 
-        /* placemarks */
-        if (!ListTools.isEmpty(evdata)) {
-            int deviceEventCount = 0;
-            String lastDevID = "";
-            java.util.List<String> routeList = new Vector<String>();
-            for (int i = 0; i < evdata.length; i++) {
-                
-                /* same account? */
-                if (!evdata[i].getAccountID().equals(accountID)) {
-                    // mismatched AccountID
-                    continue;
-                }
-                evdata[i].setAccount(account);
-
-                /* device ID change? */
-                String thisDevID = evdata[i].getDeviceID();
-                if (!thisDevID.equals(lastDevID)) {
-                    // start of new device
-                    if (routeList.size() > 1) {
-                        // draw route for previous device
-                        this._writeRoute(out, i18n, privLabel, lastDevID, routeList, 4);
-                    }
-                    routeList.clear();
-                    lastDevID = thisDevID;
-                    deviceEventCount = 0;
-                }
-                
-                /* last event for current device */
-                // if end of list, or this DeviceID != next DeviceID
-                boolean isLast = ((i == (evdata.length - 1)) || !thisDevID.equals(evdata[i+1].getDeviceID()));
-
-                /* write marker */
-                deviceEventCount++;
-                String pc = this._writePlacemark(out, i18n, privLabel, evdata[i], isLast, useLastPP, 4);
-                routeList.add(pc);
-                
+            /* same account? */
+            if (!ev.getAccountID().equals(this.accountID)) {
+                // mismatched AccountID
+                return;
             }
-            if (routeList.size() > 1) {
-                this._writeRoute(out, i18n, privLabel, lastDevID, routeList, 4);
+            ev.setAccount(this.account);
+
+            /* write the pending event, now that we know whether it is the last for its device */
+            if (this.pendingEv != null) {
+                boolean isLast = !this.pendingEv.getDeviceID().equals(ev.getDeviceID());
+                this._writePending(isLast);
             }
+            this.pendingEv = ev;
+
         }
+        private void _writePending(boolean isLast) throws IOException {
+
+            /* device ID change? */
+            String thisDevID = this.pendingEv.getDeviceID();
+            if (!thisDevID.equals(this.lastDevID)) {
+                // start of new device
+                if (this.routeList.size() > 1) {
+                    // draw route for previous device
+                    GoogleKML.this._writeRoute(out, i18n, privLabel, this.lastDevID, this.routeList, 4);
+                }
+                this.routeList.clear();
+                this.lastDevID = thisDevID;
+            }
 
-        /* trailer */
-        out.write(XML_Footer);
+            /* write marker */
+            String pc = GoogleKML.this._writePlacemark(out, i18n, privLabel, this.pendingEv, isLast, this.useLastPP, 4);
+            this.routeList.add(pc);
+            this.pendingEv = null;
 
-        /* flush (output may not occur until the PrintWriter is flushed) */
-        out.flush();
-        return true;
-        
+        }
+        public void writeFooter(String nextKey) throws IOException {
+
+            /* last placemark/route */
+            if (this.pendingEv != null) {
+                this._writePending(true);
+            }
+            if (this.routeList.size() > 1) {
+                GoogleKML.this._writeRoute(out, i18n, privLabel, this.lastDevID, this.routeList, 4);
+            }
+            this.routeList.clear();
+
+            /* trailer */
+            if (!StringTools.isBlank(nextKey)) {
+                out.write("    <!-- NextKey=" + nextKey + " -->\n");
+            }
+            out.write(XML_Footer);
+
+            /* flush (output may not occur until the PrintWriter is flushed) */
+            out.flush();
+
+        }
     }
 
     // ------------------------------------------------------------------------
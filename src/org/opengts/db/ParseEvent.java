@@ -66,6 +66,11 @@ public class ParseEvent
     private Account             account        = null;
     private Device              device         = null;
 
+    private int                 batchSize      = 0;
+    private int                 batchCount     = 0;
+    private long                insertCount    = 0L;
+    private long                failedCount    = 0L;
+
     /**
     *** Consgtructor 
     **/
@@ -95,6 +100,55 @@ public class ParseEvent
         
     }
 
+    /**
+    *** Sets the EventData batch size.  If greater than zero, inserted events are deferred
+    *** and saved with a multi-row insert each time the specified number of events have been
+    *** inserted (the remaining events are saved when <code>flush</code> is called).
+    *** @param size  The batch size (0 to insert each event individually)
+    **/
+    public void setBatchSize(int size)
+    {
+        this.batchSize = (size > 0)? size : 0;
+    }
+
+    /**
+    *** Saves any events deferred in the current EventData batch, and updates the Device
+    *** @return The number of events saved
+    **/
+    public int flush()
+    {
+        this.batchCount = 0;
+        if ((this.device == null) || !this.device.isEventBatch()) {
+            return 0;
+        }
+        Device.EventBatchResult result = this.device.endEventBatch();
+        int count = result.getSavedCount();
+        this.insertCount += count;
+        this.failedCount += result.getFailedCount();
+        return count;
+    }
+
+    /**
+    *** Returns the number of events saved by this instance (in batch mode, only those events
+    *** which have been flushed are included)
+    *** @return The number of events saved
+    **/
+    public long getInsertCount()
+    {
+        return this.insertCount;
+    }
+
+    /**
+    *** Returns the number of batched events which could not be saved by this instance
+    *** @return The number of events which could not be saved
+    **/
+    public long getFailedCount()
+    {
+        return this.failedCount;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Parse file
     **/
@@ -108,10 +162,11 @@ public class ParseEvent
             FileInputStream fis = null;
             try {
                 fis = new FileInputStream(parseFile);
-                rtn = this.parseHandler.parseStream(fis, this);
+                rtn = this.parseHandler.parseStream(new BufferedInputStream(fis), this);
             } catch (IOException ioe) {
                 Print.logException("IO Error", ioe);
             } finally {
+                this.flush();
                 if (fis != null) { try { fis.close(); } catch (Throwable th) {} }
             }
             return rtn;
@@ -245,6 +300,9 @@ public class ParseEvent
         }
         gev.setAccount(this.account);
         gev.setDevice(this.device);
+        if ((this.batchSize > 0) && !DEBUG_MODE && !this.device.isEventBatch()) {
+            this.device.startEventBatch();
+        }
 
         /* timestamp */
         long timestamp = gev.getTimestamp();
@@ -320,6 +378,13 @@ public class ParseEvent
         }
 
         /* update device date */
+        if ((this.device != null) && this.device.isEventBatch()) {
+            // deferred until the batch is flushed
+            this.batchCount += eventCount;
+            if (this.batchCount >= this.batchSize) {
+                this.flush();
+            }
+        } else
         if (!DEBUG_MODE) {
             // TODO: optimize
             try {
@@ -341,12 +406,50 @@ public class ParseEvent
 
     }
     
+    /**
+    *** Inserts the specified event into the EventData table for the event Device
+    *** @param gev  The GeoEvent to insert
+    *** @return True if the event was inserted (or deferred in the current EventData batch)
+    **/
     protected boolean insertEventRecord(GeoEvent gev)
     {
-        Print.logInfo("GeoEvent: " + gev);
-        if (DEBUG_MODE) { return false; }
-        
-        return false;
+        if (DEBUG_MODE) {
+            Print.logInfo("GeoEvent: " + gev);
+            return false;
+        }
+
+        /* device */
+        Device dev = gev.getDevice();
+        if (dev == null) {
+            return false;
+        }
+
+        /* create event */
+        EventData.Key evKey = new EventData.Key(dev.getAccountID(), dev.getDeviceID(), gev.getTimestamp(), gev.getStatusCode());
+        EventData evdb = evKey.getDBRecord();
+        evdb.setLatitude(gev.getLatitude());
+        evdb.setLongitude(gev.getLongitude());
+        evdb.setSpeedKPH(gev.getSpeedKPH());
+        evdb.setHeading(gev.getHeading());
+        evdb.setAltitude(gev.getAltitudeMeters());
+        evdb.setOdometerKM(gev.getOdometerKM());
+        if (gev.hasGeozone()) {
+            evdb.setGeozone(gev.getGeozone());
+        } else
+        if (gev.hasGeozoneID()) {
+            evdb.setGeozoneID(gev.getGeozoneID());
+        }
+
+        /* insert (deferred if in an EventData batch) */
+        if (dev.insertEventData(evdb)) {
+            if (!dev.isEventBatch()) {
+                this.insertCount++;
+            }
+            return true;
+        } else {
+            return false;
+        }
+
     }
 
     // ------------------------------------------------------------------------
@@ -356,7 +459,11 @@ public class ParseEvent
     private static String ARG_DEVICE[]  = new String[] { "device"  , "dev" , "d" };
     private static String ARG_FORMAT[]  = new String[] { "format"  , "fmt"       };
     private static String ARG_DCS[]     = new String[] { "dcserver", "dcs"       };
-    private static String ARG_FILE[]    = new String[] { "file"                  };
+    private static String ARG_FILE[]    = new String[] { "file"    , "dir"       };
+    private static String ARG_THREADS[] = new String[] { "threads" , "t"         };
+    private static String ARG_BATCH[]   = new String[] { "batch"                 };
+    private static String ARG_CHECKPT[] = new String[] { "checkpoint", "ckpt"    };
+    private static String ARG_PROGRESS[]= new String[] { "progress"              };
 
     private static void usage()
     {
@@ -365,9 +472,14 @@ public class ParseEvent
         Print.sysPrintln("Common Options:");
         Print.sysPrintln("  -account=<id>   Acount ID which owns Device");
         Print.sysPrintln("  -device=<id>    Device ID to which parsed events will be inserted");
-        Print.sysPrintln("  -format=<class> The format handler class");
-        Print.sysPrintln("  -dcs=<name>     The format handler class");
-        Print.sysPrintln("  -file=<file>    The file to parse");
+        Print.sysPrintln("  -format=<class> The format handler class (or 'gpx'/'csv' for a streaming import)");
+        Print.sysPrintln("  -dcs=<name>     The DCServerConfig name");
+        Print.sysPrintln("  -file=<file>    The file to parse (or directory of gpx/csv files to import)");
+        Print.sysPrintln("Streaming GPX/CSV Import Options:");
+        Print.sysPrintln("  -threads=<n>    Number of devices imported in parallel [default 4]");
+        Print.sysPrintln("  -batch=<n>      Number of events per multi-row insert/checkpoint");
+        Print.sysPrintln("  -checkpoint=<f> Checkpoint file used to resume an interrupted import");
+        Print.sysPrintln("  -progress=<sec> Progress logging interval [default 30]");
         System.exit(1);
     }
 
@@ -381,7 +493,7 @@ public class ParseEvent
         DBConfig.cmdLineInit(argv, true);  // main
         String accountID  = RTConfig.getString(ARG_ACCOUNT, null);
         String deviceID   = RTConfig.getString(ARG_DEVICE , null);
-        Class  fmtClass   = RTConfig.getClass(ARG_FORMAT , null);
+        String fmtName    = RTConfig.getString(ARG_FORMAT , null);
         File   parseFile  = RTConfig.getFile(ARG_FILE,null);
         String dcsName    = RTConfig.getString(ARG_DCS,null);
         
@@ -395,7 +507,31 @@ public class ParseEvent
             }
         }
 
+        /* streaming GPX/CSV import */
+        if ((parseFile != null) && 
+            (parseFile.isDirectory() || (ParseEventImport.getFormat(fmtName,parseFile) != null))) {
+            String fmt = !StringTools.isBlank(fmtName)? ParseEventImport.getFormat(fmtName,parseFile) : null;
+            if (!StringTools.isBlank(fmtName) && (fmt == null)) {
+                Print.sysPrintln("ERROR: Streaming import format must be 'gpx' or 'csv': " + fmtName);
+                System.exit(99);
+            }
+            if (!DBAdmin.verifyTablesExist()) {
+                Print.sysPrintln("ERROR: MySQL database has not yet been properly initialized");
+                System.exit(99);
+            }
+            ParseEventImport pei = new ParseEventImport(dcsc, accountID, deviceID, fmt);
+            pei.setMaxThreads(RTConfig.getInt(ARG_THREADS, 4));
+            if (RTConfig.hasProperty(ARG_BATCH)) {
+                pei.setBatchSize(RTConfig.getInt(ARG_BATCH, 0));
+            }
+            pei.setCheckpointFile(RTConfig.getFile(ARG_CHECKPT,null));
+            pei.setProgressInterval(RTConfig.getLong(ARG_PROGRESS, 30L));
+            boolean ok = pei.importFile(parseFile);
+            System.exit(ok? 0 : 1);
+        }
+
         /* format class */
+        Class fmtClass = RTConfig.getClass(ARG_FORMAT , null);
         if (fmtClass == null) {
             Print.sysPrintln("ERROR: Format class not specified or not found: " + RTConfig.getString(ARG_FORMAT,null));
             System.exit(99);
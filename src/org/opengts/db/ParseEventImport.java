@@ -0,0 +1,488 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Bulk (streaming) import of GPX/CSV event files
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+
+/**
+*** Bulk import of GPX/CSV event files.<br>
+*** Files are parsed with the streaming parsers <code>ParseEventsGPX</code> and
+*** <code>ParseEventsCSV</code> (memory use does not depend on the file size), and the parsed
+*** events are inserted with multi-row EventData inserts (see <code>ParseEvent.setBatchSize</code>).<br>
+*** Files are grouped by device, and each device group is imported by a worker thread, so that
+*** several devices are imported in parallel, while the events of any one device are still
+*** inserted in file order.  The device of a file is the "-device" specified on the
+*** command-line, or (when only the account is specified) the name of the file without its
+*** extension, unless the file records contain their own device/mobile IDs.<br>
+*** Progress is logged periodically, and if a checkpoint file is specified, the number of
+*** records saved for each file is recorded after each batch, so that an interrupted import
+*** may be restarted with the same arguments, skipping the records which were already saved.
+*** The checkpoint only advances after a batch was completely saved (inserted or spooled).  If
+*** any event of a batch could not be saved, the rest of the file is skipped and the file is
+*** counted as failed, so that it is resumed from the last checkpoint on the next run.
+**/
+
+public class ParseEventImport
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String FORMAT_GPX              = "gpx";
+    public  static final String FORMAT_CSV              = "csv";
+
+    private static final String CHECKPOINT_DONE         = "done";
+
+    private static final long   DFT_PROGRESS_INTERVAL   = 30L;  // seconds
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the streaming import format for the specified format name, or file extension
+    *** @param format  The format name ("gpx", "csv"), or null to use the file extension
+    *** @param file    The file
+    *** @return The format ("gpx", "csv"), or null if the file is not a supported import format
+    **/
+    public static String getFormat(String format, File file)
+    {
+        String fmt = !StringTools.isBlank(format)? format : FileTools.getExtension(file);
+        if (FORMAT_GPX.equalsIgnoreCase(fmt)) {
+            return FORMAT_GPX;
+        } else
+        if (FORMAT_CSV.equalsIgnoreCase(fmt)) {
+            return FORMAT_CSV;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+    *** Returns a new streaming ParseEventHandler for the specified format
+    *** @param format  The format ("gpx", "csv")
+    *** @return The ParseEventHandler, or null if the format is not supported
+    **/
+    public static ParseEvent.ParseEventHandler getParseHandler(String format)
+    {
+        if (FORMAT_GPX.equals(format)) {
+            return new ParseEventsGPX();
+        } else
+        if (FORMAT_CSV.equals(format)) {
+            return new ParseEventsCSV();
+        } else {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private DCServerConfig      dcserver        = null;
+    private String              accountID       = null;
+    private String              deviceID        = null;
+    private String              format          = null;
+
+    private int                 maxThreads      = 1;
+    private int                 batchSize       = 500;
+    private long                progressSec     = DFT_PROGRESS_INTERVAL;
+
+    private File                checkpointFile  = null;
+    private Properties          checkpoint      = new Properties();
+
+    private int                 jobsPending     = 0;
+    private long                fileCount       = 0L;
+    private long                filesDone       = 0L;
+    private long                recordCount     = 0L;
+    private long                skipCount       = 0L;
+    private long                eventCount      = 0L;
+    private long                errorCount      = 0L;
+
+    /**
+    *** Constructor
+    *** @param dcserver   The DCServerConfig (may be null)
+    *** @param accountID  The default account ID (may be null if the records contain mobile IDs)
+    *** @param deviceID   The default device ID (if null, the file name is used)
+    *** @param format     The import format ("gpx", "csv"), or null to use the file extension
+    **/
+    public ParseEventImport(DCServerConfig dcserver, String accountID, String deviceID, String format)
+    {
+        super();
+        this.dcserver  = dcserver;
+        this.accountID = StringTools.trim(accountID);
+        this.deviceID  = !StringTools.isBlank(this.accountID)? StringTools.trim(deviceID) : "";
+        this.format    = format;
+        this.setBatchSize((int)RTConfig.getLong(DBConfig.PROP_ingest_batch_insertSize, 500L));
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the maximum number of devices imported in parallel
+    *** @param threads  The number of worker threads
+    **/
+    public void setMaxThreads(int threads)
+    {
+        this.maxThreads = (threads > 0)? threads : 1;
+    }
+
+    /**
+    *** Sets the number of records saved with each multi-row insert (this is also the
+    *** checkpoint interval)
+    *** @param size  The batch size
+    **/
+    public void setBatchSize(int size)
+    {
+        this.batchSize = (size > 0)? size : 1;
+    }
+
+    /**
+    *** Sets the progress logging interval
+    *** @param sec  The interval in seconds (0 to disable progress logging)
+    **/
+    public void setProgressInterval(long sec)
+    {
+        this.progressSec = (sec > 0L)? sec : 0L;
+    }
+
+    /**
+    *** Sets the checkpoint file
+    *** @param file  The checkpoint file (null for no checkpoints)
+    **/
+    public void setCheckpointFile(File file)
+    {
+        this.checkpointFile = file;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Imports the specified file, or all supported files within the specified directory
+    *** @param file  The file or directory
+    *** @return True if all files were imported without error
+    **/
+    public boolean importFile(File file)
+    {
+
+        /* list files */
+        java.util.List<File> files = new Vector<File>();
+        if ((file != null) && file.isDirectory()) {
+            File list[] = file.listFiles();
+            if (list != null) {
+                Arrays.sort(list);
+                for (int i = 0; i < list.length; i++) {
+                    if (list[i].isFile() && (ParseEventImport.getFormat(this.format,list[i]) != null)) {
+                        files.add(list[i]);
+                    }
+                }
+            }
+        } else
+        if ((file != null) && file.isFile()) {
+            files.add(file);
+        }
+        if (files.isEmpty()) {
+            Print.logError("No files to import: " + file);
+            return false;
+        }
+
+        /* load checkpoint */
+        if ((this.checkpointFile != null) && this.checkpointFile.isFile()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(this.checkpointFile);
+                this.checkpoint.load(in);
+                Print.logInfo("Resuming import from checkpoint: " + this.checkpointFile);
+            } catch (IOException ioe) {
+                Print.logException("Unable to read checkpoint file: " + this.checkpointFile, ioe);
+                return false;
+            } finally {
+                if (in != null) { try { in.close(); } catch (Throwable th) {} }
+            }
+        }
+
+        /* group files by device */
+        Map<String,java.util.List<File>> deviceFiles = new OrderedMap<String,java.util.List<File>>();
+        for (File f : files) {
+            if (CHECKPOINT_DONE.equals(this._getCheckpoint(f))) {
+                Print.logInfo("Already imported: " + f);
+                continue;
+            }
+            String devID = this._getDefaultDeviceID(f);
+            java.util.List<File> list = deviceFiles.get(devID);
+            if (list == null) {
+                list = new Vector<File>();
+                deviceFiles.put(devID, list);
+            }
+            list.add(f);
+            this.fileCount++;
+        }
+        if (deviceFiles.isEmpty()) {
+            return true;
+        }
+
+        /* import */
+        long startMS = System.currentTimeMillis();
+        ThreadPool pool = new ThreadPool("ParseEventImport", Math.min(this.maxThreads, deviceFiles.size()));
+        synchronized (this) {
+            this.jobsPending = deviceFiles.size();
+        }
+        for (String devID : deviceFiles.keySet()) {
+            pool.run(new ImportJob(devID, deviceFiles.get(devID)));
+        }
+        pool.stopThreads(); // stop after all jobs have completed
+
+        /* wait for completion */
+        long progressMS = this.progressSec * 1000L;
+        synchronized (this) {
+            long lastMS = startMS;
+            while (this.jobsPending > 0) {
+                try { this.wait((progressMS > 0L)? Math.min(progressMS, 5000L) : 5000L); } catch (InterruptedException ie) {}
+                long nowMS = System.currentTimeMillis();
+                if ((progressMS > 0L) && ((nowMS - lastMS) >= progressMS)) {
+                    this._logProgress(startMS, nowMS);
+                    lastMS = nowMS;
+                }
+            }
+        }
+        this._logProgress(startMS, System.currentTimeMillis());
+        return (this.errorCount == 0L);
+
+    }
+
+    /* log current import progress */
+    private synchronized void _logProgress(long startMS, long nowMS)
+    {
+        double sec  = (double)Math.max(nowMS - startMS, 1L) / 1000.0;
+        double rate = (double)(this.recordCount - this.skipCount) / sec;
+        Print.logInfo("Import progress: files %d/%d, records %d (skipped %d), events %d, errors %d [%.0f records/sec]",
+            this.filesDone, this.fileCount, this.recordCount, this.skipCount, this.eventCount, this.errorCount, rate);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the default device ID for the specified file */
+    private String _getDefaultDeviceID(File file)
+    {
+        if (!StringTools.isBlank(this.deviceID)) {
+            return this.deviceID;
+        } else
+        if (!StringTools.isBlank(this.accountID)) {
+            String name = file.getName();
+            int p = name.lastIndexOf('.');
+            return (p > 0)? name.substring(0,p) : name;
+        } else {
+            return ""; // records must contain mobile IDs
+        }
+    }
+
+    /* return checkpoint value for file */
+    private String _getCheckpoint(File file)
+    {
+        synchronized (this.checkpoint) {
+            return this.checkpoint.getProperty(file.getAbsolutePath());
+        }
+    }
+
+    /* save checkpoint value for file */
+    private void _setCheckpoint(File file, String value)
+    {
+        if (this.checkpointFile == null) {
+            return;
+        }
+        synchronized (this.checkpoint) {
+            this.checkpoint.setProperty(file.getAbsolutePath(), value);
+            File tmpFile = new File(this.checkpointFile.getPath() + ".tmp");
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(tmpFile);
+                this.checkpoint.store(out, "ParseEventImport checkpoint");
+                out.close();
+                out = null;
+                if (!tmpFile.renameTo(this.checkpointFile)) {
+                    // (Windows) rename fails if the destination exists
+                    this.checkpointFile.delete();
+                    if (!tmpFile.renameTo(this.checkpointFile)) {
+                        Print.logError("Unable to rename checkpoint file: " + tmpFile);
+                    }
+                }
+            } catch (IOException ioe) {
+                Print.logError("Unable to write checkpoint file: " + ioe);
+            } finally {
+                if (out != null) { try { out.close(); } catch (Throwable th) {} }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* import the files of a single device */
+    private class ImportJob
+        implements Runnable, GeoEvent.GeoEventHandler
+    {
+        private String                  devID       = null;
+        private java.util.List<File>    files       = null;
+        private Map<String,ParseEvent>  parsers     = new HashMap<String,ParseEvent>();
+        private File                    file        = null;
+        private long                    skip        = 0L;
+        private long                    records     = 0L;
+        private int                     pending     = 0;
+        private long                    savedCount  = 0L;
+        private long                    failedBase  = 0L;
+        private boolean                 failed      = false;
+        public ImportJob(String devID, java.util.List<File> files) {
+            this.devID = devID;
+            this.files = files;
+        }
+        public void run() {
+            try {
+                for (File f : this.files) {
+                    this.importFile(f);
+                }
+            } catch (Throwable th) {
+                Print.logException("Import error: " + this.devID, th);
+                ParseEventImport.this._addCounts(0L, 0L, 0L, 1L, 0L);
+            } finally {
+                synchronized (ParseEventImport.this) {
+                    ParseEventImport.this.jobsPending--;
+                    ParseEventImport.this.notifyAll();
+                }
+            }
+        }
+        private void importFile(File f) {
+            String fmt = ParseEventImport.getFormat(ParseEventImport.this.format, f);
+            ParseEvent.ParseEventHandler parser = ParseEventImport.getParseHandler(fmt);
+            if (parser == null) {
+                Print.logError("Unsupported import format: " + f);
+                ParseEventImport.this._addCounts(0L, 0L, 0L, 1L, 1L);
+                return;
+            }
+            this.file    = f;
+            this.skip    = StringTools.parseLong(ParseEventImport.this._getCheckpoint(f), 0L);
+            this.records = 0L;
+            this.pending = 0;
+            this.failed  = false;
+            this.failedBase = this.getFailedCount(); // (from previous files)
+            if (this.skip > 0L) {
+                Print.logInfo("Resuming '" + f + "' after record " + this.skip);
+            }
+            InputStream in = null;
+            boolean ok = false;
+            try {
+                in = new BufferedInputStream(new FileInputStream(f));
+                ok = parser.parseStream(in, this);
+            } catch (IOException ioe) {
+                Print.logException("IO Error: " + f, ioe);
+            } finally {
+                if (in != null) { try { in.close(); } catch (Throwable th) {} }
+            }
+            if (!this.flushAll()) {
+                ok = false;
+            }
+            if (ok) {
+                ParseEventImport.this._setCheckpoint(f, CHECKPOINT_DONE);
+            } else
+            if (this.failed) {
+                Print.logError("Import failed, events not saved (resume after record " + this.skip + "): " + f);
+            } else {
+                Print.logError("Import failed after record " + this.records + ": " + f);
+            }
+            ParseEventImport.this._addCounts(0L, 0L, 0L, (ok? 0L : 1L), 1L);
+        }
+        public int handleGeoEvent(GeoEvent gev) {
+            this.records++;
+            if (this.records <= this.skip) {
+                ParseEventImport.this._addCounts(1L, 1L, 0L, 0L, 0L);
+                return 0;
+            } else
+            if (this.failed) {
+                // events were not saved, the remainder of the file is imported on the next run
+                return 0;
+            }
+            ParseEvent pe = this.getParseEvent(gev);
+            int count = (pe != null)? pe.handleGeoEvent(gev) : 0;
+            ParseEventImport.this._addCounts(1L, 0L, 0L, 0L, 0L);
+            if (++this.pending >= ParseEventImport.this.batchSize) {
+                if (this.flushAll()) {
+                    // all records up to here have been saved
+                    this.skip = this.records;
+                    ParseEventImport.this._setCheckpoint(this.file, String.valueOf(this.records));
+                }
+            }
+            return count;
+        }
+        private ParseEvent getParseEvent(GeoEvent gev) {
+            // one ParseEvent (and EventData batch) per device within the file
+            String key;
+            String dftDevID;
+            if (gev.hasDeviceID() || gev.hasMobileID()) {
+                key      = gev.getAccountID() + "/" + gev.getDeviceID() + "/" + gev.getMobileID();
+                dftDevID = null;
+            } else {
+                key      = "";
+                dftDevID = this.devID;
+            }
+            ParseEvent pe = this.parsers.get(key);
+            if (pe == null) {
+                pe = new ParseEvent(ParseEventImport.this.dcserver, null, ParseEventImport.this.accountID, dftDevID);
+                pe.setBatchSize(ParseEventImport.this.batchSize);
+                this.parsers.put(key, pe);
+            }
+            return pe;
+        }
+        private boolean flushAll() {
+            // returns false if any event of this file could not be saved
+            long count = 0L;
+            for (ParseEvent pe : this.parsers.values()) {
+                pe.flush();
+                count += pe.getInsertCount();
+            }
+            this.pending = 0;
+            ParseEventImport.this._addCounts(0L, 0L, count - this.savedCount, 0L, 0L);
+            this.savedCount = count;
+            if (this.getFailedCount() > this.failedBase) {
+                this.failed = true;
+            }
+            return !this.failed;
+        }
+        private long getFailedCount() {
+            long failed = 0L;
+            for (ParseEvent pe : this.parsers.values()) {
+                failed += pe.getFailedCount();
+            }
+            return failed;
+        }
+    }
+
+    /* update import counts */
+    private synchronized void _addCounts(long records, long skipped, long events, long errors, long files)
+    {
+        this.recordCount += records;
+        this.skipCount   += skipped;
+        this.eventCount  += events;
+        this.errorCount  += errors;
+        this.filesDone   += files;
+    }
+
+    // ------------------------------------------------------------------------
+
+}
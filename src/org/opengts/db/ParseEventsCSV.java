@@ -0,0 +1,279 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Streaming CSV event parser
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+
+/**
+*** Streaming CSV parser.<br>
+*** The CSV stream is read one line at a time, and each record is passed to the
+*** GeoEventHandler as soon as it has been parsed.<br>
+*** If the first line contains a column header, it defines the column order.  Recognized
+*** column names are the GeoEvent keys ("mobileID", "accountID", "deviceID", "timestamp",
+*** "statusCode", "latitude", "longitude", "speedKPH", "heading", "altitude", "odometerKM"),
+*** and a few common abbreviations ("time", "lat", "lon", "speed", "alt", "odom", "status").
+*** Unrecognized columns are ignored.  Without a header, the columns are:<br>
+*** <code>timestamp,latitude,longitude,speedKPH,heading,altitude,odometerKM,statusCode</code><br>
+*** (the same order used by the HTTP batch fix upload).<br>
+*** The timestamp may be specified in seconds (or milliseconds) since the epoch, or as a
+*** date/time string.  The status code may be specified as a number, or as a status code name.
+*** Blank lines, and lines beginning with '#', are ignored.
+**/
+
+public class ParseEventsCSV
+    implements ParseEvent.ParseEventHandler
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String DEFAULT_COLUMNS[] = new String[] {
+        GeoEvent.KEY_timestamp,
+        GeoEvent.KEY_latitude,
+        GeoEvent.KEY_longitude,
+        GeoEvent.KEY_speedKPH,
+        GeoEvent.KEY_heading,
+        GeoEvent.KEY_altitude,
+        GeoEvent.KEY_odometerKM,
+        GeoEvent.KEY_statusCode,
+    };
+
+    private static Map<String,String> columnNameMap = null;
+
+    /* return map of recognized (lowercase) column names to GeoEvent keys */
+    private static Map<String,String> _getColumnNameMap()
+    {
+        if (columnNameMap == null) {
+            Map<String,String> map = new HashMap<String,String>();
+            String keys[] = new String[] {
+                GeoEvent.KEY_mobileID, GeoEvent.KEY_accountID, GeoEvent.KEY_deviceID,
+                GeoEvent.KEY_timestamp, GeoEvent.KEY_statusCode,
+                GeoEvent.KEY_latitude, GeoEvent.KEY_longitude,
+                GeoEvent.KEY_speedKPH, GeoEvent.KEY_heading,
+                GeoEvent.KEY_altitude, GeoEvent.KEY_odometerKM,
+            };
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i].toLowerCase(), keys[i]);
+            }
+            map.put("imei"  , GeoEvent.KEY_mobileID);
+            map.put("time"  , GeoEvent.KEY_timestamp);
+            map.put("status", GeoEvent.KEY_statusCode);
+            map.put("code"  , GeoEvent.KEY_statusCode);
+            map.put("lat"   , GeoEvent.KEY_latitude);
+            map.put("lon"   , GeoEvent.KEY_longitude);
+            map.put("lng"   , GeoEvent.KEY_longitude);
+            map.put("speed" , GeoEvent.KEY_speedKPH);
+            map.put("head"  , GeoEvent.KEY_heading);
+            map.put("course", GeoEvent.KEY_heading);
+            map.put("alt"   , GeoEvent.KEY_altitude);
+            map.put("odom"  , GeoEvent.KEY_odometerKM);
+            columnNameMap = map;
+        }
+        return columnNameMap;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Constructor
+    **/
+    public ParseEventsCSV()
+    {
+        super();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Parses the specified CSV stream, passing each record to the specified handler
+    *** @param csvStream   The CSV input stream
+    *** @param gevHandler  The GeoEvent handler (if null, records are displayed)
+    *** @return True if the stream was parsed successfully
+    **/
+    public boolean parseStream(InputStream csvStream, GeoEvent.GeoEventHandler gevHandler)
+        throws IOException
+    {
+        if (csvStream == null) {
+            return false;
+        }
+        BufferedReader br = new BufferedReader(new InputStreamReader(csvStream, StringTools.CharEncoding_UTF_8));
+        String  columns[] = null;
+        long    lineNum   = 0L;
+        for (;;) {
+            String line = br.readLine();
+            if (line == null) {
+                break;
+            }
+            lineNum++;
+            line = line.trim();
+            if (line.equals("") || line.startsWith("#")) {
+                continue;
+            }
+            String fld[] = StringTools.parseString(line, ',');
+
+            /* header? */
+            if (columns == null) {
+                columns = this._parseHeader(fld);
+                if (columns != null) {
+                    continue; // header line
+                }
+                columns = DEFAULT_COLUMNS;
+            }
+
+            /* record */
+            GeoEvent gev = this._parseRecord(columns, fld);
+            if (gev == null) {
+                Print.logWarn("Invalid CSV record [line " + lineNum + "]: " + line);
+                continue;
+            }
+            if (gevHandler != null) {
+                gevHandler.handleGeoEvent(gev);
+            } else {
+                Print.logInfo("Point: " + gev);
+            }
+
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the header columns, or null if the specified fields are not a header */
+    private String[] _parseHeader(String fld[])
+    {
+        Map<String,String> nameMap = ParseEventsCSV._getColumnNameMap();
+        String  cols[] = new String[fld.length];
+        boolean found  = false;
+        for (int i = 0; i < fld.length; i++) {
+            String name = StringTools.trim(fld[i]);
+            if (StringTools.isDouble(name,true)) {
+                return null; // numeric value, not a header
+            }
+            cols[i] = nameMap.get(name.toLowerCase()); // may be null
+            if (cols[i] != null) {
+                found = true;
+            }
+        }
+        return found? cols : null;
+    }
+
+    /* parse a single record */
+    private GeoEvent _parseRecord(String columns[], String fld[])
+    {
+        GeoEvent gev = new GeoEvent();
+        for (int i = 0; (i < columns.length) && (i < fld.length); i++) {
+            String key = columns[i];
+            String val = StringTools.trim(fld[i]);
+            if ((key == null) || val.equals("")) {
+                continue;
+            } else
+            if (key.equals(GeoEvent.KEY_mobileID)) {
+                gev.setMobileID(val);
+            } else
+            if (key.equals(GeoEvent.KEY_accountID)) {
+                gev.setAccountID(val);
+            } else
+            if (key.equals(GeoEvent.KEY_deviceID)) {
+                gev.setDeviceID(val);
+            } else
+            if (key.equals(GeoEvent.KEY_timestamp)) {
+                long ts = this._parseTime(val);
+                if (ts <= 0L) {
+                    return null;
+                }
+                gev.setTimestamp(ts);
+            } else
+            if (key.equals(GeoEvent.KEY_statusCode)) {
+                int sc = StatusCodes.ParseCode(val, null, StatusCodes.STATUS_NONE);
+                if (sc == StatusCodes.STATUS_NONE) {
+                    return null;
+                }
+                gev.setStatusCode(sc);
+            } else
+            if (key.equals(GeoEvent.KEY_latitude)) {
+                gev.setLatitude(StringTools.parseDouble(val, 0.0));
+            } else
+            if (key.equals(GeoEvent.KEY_longitude)) {
+                gev.setLongitude(StringTools.parseDouble(val, 0.0));
+            } else
+            if (key.equals(GeoEvent.KEY_speedKPH)) {
+                gev.setSpeedKPH(StringTools.parseDouble(val, 0.0));
+            } else
+            if (key.equals(GeoEvent.KEY_heading)) {
+                gev.setHeading(StringTools.parseDouble(val, 0.0));
+            } else
+            if (key.equals(GeoEvent.KEY_altitude)) {
+                gev.setAltitudeMeters(StringTools.parseDouble(val, 0.0));
+            } else
+            if (key.equals(GeoEvent.KEY_odometerKM)) {
+                gev.setOdometerKM(StringTools.parseDouble(val, 0.0));
+            }
+        }
+        return gev.hasTimestamp()? gev : null;
+    }
+
+    /* parse timestamp (epoch seconds/milliseconds, or date/time string) */
+    private long _parseTime(String timeStr)
+    {
+        if (StringTools.isLong(timeStr,true)) {
+            long ts = StringTools.parseLong(timeStr, 0L);
+            return (ts > 5000000000L)? (ts / 1000L) : ts; // milliseconds?
+        }
+        try {
+            DateTime dt = DateTime.parseArgumentDate(timeStr);
+            return dt.getTimeSec();
+        } catch (DateTime.DateParseException dpe) {
+            return 0L;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    public static void main(String args[])
+    {
+        RTConfig.setCommandLineArgs(args);
+
+        File csvFile = RTConfig.getFile("file",null);
+        if (csvFile == null) {
+            Print.sysPrintln("Missing '-file' specification");
+            System.exit(1);
+        }
+
+        InputStream fis = null;
+        try {
+            fis = new FileInputStream(csvFile);
+            ParseEventsCSV pcsv = new ParseEventsCSV();
+            pcsv.parseStream(fis, null);
+        } catch (IOException ioe) {
+            Print.logException("IO Error", ioe);
+        } finally {
+            if (fis != null) { try { fis.close(); } catch (Throwable th) {} }
+        }
+
+    }
+
+}
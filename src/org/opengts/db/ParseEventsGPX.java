@@ -0,0 +1,317 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Streaming (SAX) GPX event parser
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import javax.xml.parsers.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
+
+import org.opengts.util.*;
+
+/**
+*** Streaming GPX parser.<br>
+*** Unlike <code>ParseEventsXML</code>, which loads the entire GPX document into a DOM, this
+*** parser reads the GPX stream with a SAX parser, and passes each track/route point to the
+*** GeoEventHandler as soon as the point element has been closed.  Memory use is therefore
+*** constant, regardless of the size of the GPX file.<br>
+*** Supported point elements: "trkpt", "rtept", "wpt"<br>
+*** Supported point child elements: "ele", "time", "speed" (GPX 1.0, meters/second), "course"
+**/
+
+public class ParseEventsGPX
+    implements ParseEvent.ParseEventHandler
+{
+
+    // ------------------------------------------------------------------------
+    // GPX tags
+
+    private static final String TAG_trkpt               = "trkpt";      // a 'track' point
+    private static final String TAG_rtept               = "rtept";      // a 'route' point
+    private static final String TAG_wpt                 = "wpt";        // a 'way' point
+    private static final String TAG_ele                 = "ele";        // a point altitude
+    private static final String TAG_time                = "time";       // a point time [2010-07-11T23:44:12Z]
+    private static final String TAG_speed               = "speed";      // a point speed (meters/second)
+    private static final String TAG_course              = "course";     // a point heading (degrees)
+
+    private static final String ATTR_lat                = "lat";        // latitude
+    private static final String ATTR_lon                = "lon";        // longitude
+
+    // ------------------------------------------------------------------------
+
+    private static final double KPH_PER_MPS             = 3.6;
+
+    private static final long   DAY_SECONDS             = DateTime.DaySeconds(1);
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Constructor
+    **/
+    public ParseEventsGPX()
+    {
+        super();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Parses the specified GPX stream, passing each point to the specified handler
+    *** @param gpxStream   The GPX input stream
+    *** @param gevHandler  The GeoEvent handler (if null, points are displayed)
+    *** @return True if the stream was parsed successfully
+    **/
+    public boolean parseStream(InputStream gpxStream, GeoEvent.GeoEventHandler gevHandler)
+        throws IOException
+    {
+        if (gpxStream == null) {
+            return false;
+        }
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setValidating(false);
+            try {
+                // do not attempt to download any referenced DTD
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            } catch (Throwable th) {
+                // feature not supported by this parser
+            }
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(new InputSource(gpxStream), new GPXHandler(gevHandler));
+            return true;
+        } catch (ParserConfigurationException pce) {
+            Print.logException("SAX parser configuration error", pce);
+            return false;
+        } catch (SAXException se) {
+            Print.logError("GPX parse error: " + se);
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* SAX event handler */
+    private class GPXHandler
+        extends DefaultHandler
+    {
+        private GeoEvent.GeoEventHandler gevHandler = null;
+        private boolean       inPoint    = false;
+        private String        textTag    = null;
+        private StringBuilder text       = new StringBuilder();
+        private long          timestamp  = 0L;
+        private double        latitude   = 0.0;
+        private double        longitude  = 0.0;
+        private double        altitudeM  = 0.0;
+        private double        speedKPH   = -1.0;
+        private double        heading    = -1.0;
+        public GPXHandler(GeoEvent.GeoEventHandler gevHandler) {
+            this.gevHandler = gevHandler;
+        }
+        public void startElement(String uri, String localName, String qName, Attributes attr) {
+            String tag = ParseEventsGPX._tagName(qName);
+            if (tag.equals(TAG_trkpt) || tag.equals(TAG_rtept) || tag.equals(TAG_wpt)) {
+                this.inPoint   = true;
+                this.timestamp = 0L;
+                this.latitude  = StringTools.parseDouble(attr.getValue(ATTR_lat), 0.0);
+                this.longitude = StringTools.parseDouble(attr.getValue(ATTR_lon), 0.0);
+                this.altitudeM = 0.0;
+                this.speedKPH  = -1.0;
+                this.heading   = -1.0;
+            } else
+            if (this.inPoint && (tag.equals(TAG_ele) || tag.equals(TAG_time) || tag.equals(TAG_speed) || tag.equals(TAG_course))) {
+                this.textTag = tag;
+                this.text.setLength(0);
+            }
+        }
+        public void characters(char ch[], int start, int length) {
+            if (this.textTag != null) {
+                this.text.append(ch, start, length);
+            }
+        }
+        public void endElement(String uri, String localName, String qName) {
+            String tag = ParseEventsGPX._tagName(qName);
+            if (this.textTag != null) {
+                if (tag.equals(this.textTag)) {
+                    String val = this.text.toString().trim();
+                    if (tag.equals(TAG_ele)) {
+                        this.altitudeM = StringTools.parseDouble(val, 0.0);
+                    } else
+                    if (tag.equals(TAG_time)) {
+                        this.timestamp = ParseEventsGPX.this._parseTime(val);
+                    } else
+                    if (tag.equals(TAG_speed)) {
+                        this.speedKPH  = StringTools.parseDouble(val, 0.0) * KPH_PER_MPS;
+                    } else
+                    if (tag.equals(TAG_course)) {
+                        this.heading   = StringTools.parseDouble(val, 0.0);
+                    }
+                    this.textTag = null;
+                }
+            } else
+            if (this.inPoint && (tag.equals(TAG_trkpt) || tag.equals(TAG_rtept) || tag.equals(TAG_wpt))) {
+                this.inPoint = false;
+                ParseEventsGPX.this._handleEvent(this.gevHandler,
+                    this.timestamp, StatusCodes.STATUS_LOCATION,
+                    this.latitude, this.longitude, this.altitudeM,
+                    this.speedKPH, this.heading);
+            }
+        }
+        public InputSource resolveEntity(String publicId, String systemId) {
+            // ignore external entities
+            return new InputSource(new StringReader(""));
+        }
+    }
+
+    /* return tag name without namespace prefix */
+    private static String _tagName(String qName)
+    {
+        int p = (qName != null)? qName.indexOf(':') : -1;
+        return (p >= 0)? qName.substring(p + 1) : StringTools.trim(qName);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Parses the specified GPX (ISO-8601) time
+    *** @param timeStr  The time string (ie. "2010-07-11T23:44:12Z")
+    *** @return The time in seconds since the epoch, or 0 if the time could not be parsed
+    **/
+    protected long _parseTime(String timeStr)
+    {
+        // "2010-07-11T23:44:12Z", "2010-07-11T23:44:12.250Z", "2010-07-11T16:44:12-07:00"
+        if ((timeStr != null) && (timeStr.length() >= 19) &&
+            (timeStr.charAt(4) == '-') && (timeStr.charAt(7) == '-') && (timeStr.charAt(10) == 'T') &&
+            (timeStr.charAt(13) == ':') && (timeStr.charAt(16) == ':')) {
+            int YY = StringTools.parseInt(timeStr.substring( 0, 4), -1);
+            int MM = StringTools.parseInt(timeStr.substring( 5, 7), -1);
+            int DD = StringTools.parseInt(timeStr.substring( 8,10), -1);
+            int hh = StringTools.parseInt(timeStr.substring(11,13), -1);
+            int mm = StringTools.parseInt(timeStr.substring(14,16), -1);
+            int ss = StringTools.parseInt(timeStr.substring(17,19), -1);
+            int p  = 19;
+            while ((p < timeStr.length()) && ((timeStr.charAt(p) == '.') || Character.isDigit(timeStr.charAt(p)))) {
+                p++; // skip fractional seconds
+            }
+            String tz = timeStr.substring(p);
+            int tzSec = 0;
+            if (tz.equals("") || tz.equals("Z")) {
+                tzSec = 0;
+            } else
+            if ((tz.length() == 6) && ((tz.charAt(0) == '+') || (tz.charAt(0) == '-')) && (tz.charAt(3) == ':')) {
+                int tzH = StringTools.parseInt(tz.substring(1,3), -1);
+                int tzM = StringTools.parseInt(tz.substring(4,6), -1);
+                tzSec = ((tzH * 60) + tzM) * 60 * ((tz.charAt(0) == '-')? -1 : 1);
+                if ((tzH < 0) || (tzM < 0)) { MM = -1; }
+            } else {
+                MM = -1; // unrecognized timezone, use slower parser below
+            }
+            if ((YY >= 1970) && (MM >= 1) && (MM <= 12) && (DD >= 1) && (DD <= 31) &&
+                (hh >= 0) && (hh <= 23) && (mm >= 0) && (mm <= 59) && (ss >= 0) && (ss <= 60)) {
+                long days = ParseEventsGPX._daysFromEpoch(YY, MM, DD);
+                return (days * DAY_SECONDS) + (hh * 3600L) + (mm * 60L) + ss - tzSec;
+            }
+        }
+        try {
+            DateTime dt = DateTime.parseArgumentDate(timeStr);
+            return dt.getTimeSec();
+        } catch (DateTime.DateParseException dpe) {
+            Print.logError("Date/Time parsing format error: " + timeStr);
+            return 0L;
+        }
+    }
+
+    /* return the number of days since 1970/01/01 for the specified (proleptic Gregorian) date */
+    private static long _daysFromEpoch(int year, int month, int day)
+    {
+        long y   = (month <= 2)? (year - 1) : year;
+        long era = ((y >= 0)? y : (y - 399)) / 400;
+        long yoe = y - (era * 400);
+        long doy = ((153 * (month + ((month > 2)? -3 : 9))) + 2) / 5 + day - 1;
+        long doe = (yoe * 365) + (yoe / 4) - (yoe / 100) + doy;
+        return (era * 146097) + doe - 719468;
+    }
+
+    // ------------------------------------------------------------------------
+
+    protected void _handleEvent(GeoEvent.GeoEventHandler gevHandler,
+        long timestamp, int statusCode,
+        double latitude, double longitude,
+        double altitudeM, double speedKPH, double heading)
+    {
+        if (gevHandler != null) {
+            GeoEvent gev = new GeoEvent();
+            gev.setTimestamp(timestamp);
+            gev.setStatusCode(statusCode);
+            gev.setLatitude(latitude);
+            gev.setLongitude(longitude);
+            gev.setAltitudeMeters(altitudeM);
+            if (speedKPH >= 0.0) {
+                gev.setSpeedKPH(speedKPH);
+            }
+            if (heading >= 0.0) {
+                gev.setHeading(heading);
+            }
+            gevHandler.handleGeoEvent(gev);
+        } else {
+            StringBuffer sb = new StringBuffer();
+            sb.append("[" + new DateTime(timestamp) + "] ");
+            sb.append(StringTools.format(latitude,"0.00000"));
+            sb.append("/");
+            sb.append(StringTools.format(longitude,"0.00000"));
+            sb.append("  ");
+            sb.append(StringTools.format(altitudeM,"0") + " m");
+            Print.logInfo("Point: " + sb);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    public static void main(String args[])
+    {
+        RTConfig.setCommandLineArgs(args);
+
+        File gpxFile = RTConfig.getFile("file",null);
+        if (gpxFile == null) {
+            Print.sysPrintln("Missing '-file' specification");
+            System.exit(1);
+        }
+
+        InputStream fis = null;
+        try {
+            fis = new BufferedInputStream(new FileInputStream(gpxFile));
+            ParseEventsGPX pgx = new ParseEventsGPX();
+            pgx.parseStream(fis, null);
+        } catch (IOException ioe) {
+            Print.logException("IO Error", ioe);
+        } finally {
+            if (fis != null) { try { fis.close(); } catch (Throwable th) {} }
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  In-memory filter of recently inserted EventData keys
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** In-memory filter of the recently inserted EventData keys (timestamp, statusCode) for each
+*** device, used to drop retransmitted events before an EventData insert is attempted (rather
+*** than relying on the SQL duplicate-key error).<br>
+*** The keys for each device are held in a ring buffer, with a small bloom filter used to
+*** quickly reject keys which are not in the ring.  The ring starts small, and is doubled
+*** (up to a maximum) whenever a key which is still within the "db.eventDupFilter.windowSec"
+*** window would be overwritten, so its size follows the report rate of the device.<br>
+*** Since only keys inserted by this process are known, this filter does not replace the
+*** SQL duplicate-key check, it only avoids it for the common retransmission case.
+*** A window of '0' disables the filter.
+**/
+
+public class RecentEventFilter
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_windowSec = RTConfig.key(DBConfig.PROP_db_eventDupFilter_windowSec);
+
+    private static final int    MIN_RING_SIZE       = 16;
+    private static final int    MAX_RING_SIZE       = 1024;
+
+    /**
+    *** Returns true if the recent event filter is enabled
+    *** @return True if the recent event filter is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return (KEY_windowSec.asLong(3600L) > 0L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the filter key for the specified event */
+    private static long _eventKey(long timestamp, int statusCode)
+    {
+        return (timestamp << 16) | ((long)statusCode & 0xFFFFL);
+    }
+
+    /* return the timestamp of the specified filter key */
+    private static long _keyTime(long key)
+    {
+        return key >>> 16;
+    }
+
+    /* recent keys for a single device */
+    private static class DeviceKeys
+    {
+        private long ring[]  = new long[MIN_RING_SIZE];
+        private int  count   = 0;
+        private int  next    = 0;
+        private long bloom[] = new long[(MIN_RING_SIZE * 8) / 64];
+        public DeviceKeys() {
+        }
+        private int _bloomBit(long key, int n) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            h ^= (h >>> ((n == 0)? 29 : 37));
+            return (int)((h & 0x7FFFFFFFL) % (this.bloom.length * 64));
+        }
+        private void _bloomAdd(long key) {
+            for (int n = 0; n < 2; n++) {
+                int b = this._bloomBit(key, n);
+                this.bloom[b >> 6] |= (1L << (b & 63));
+            }
+        }
+        private boolean _bloomContains(long key) {
+            for (int n = 0; n < 2; n++) {
+                int b = this._bloomBit(key, n);
+                if ((this.bloom[b >> 6] & (1L << (b & 63))) == 0L) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        private void _bloomRebuild() {
+            Arrays.fill(this.bloom, 0L);
+            for (int i = 0; i < this.count; i++) {
+                this._bloomAdd(this.ring[i]);
+            }
+        }
+        public boolean contains(long key) {
+            if (!this._bloomContains(key)) {
+                return false;
+            }
+            for (int i = 0; i < this.count; i++) {
+                if (this.ring[i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        public void add(long key, long windowSec) {
+            if ((this.count == this.ring.length) && (this.ring.length < MAX_RING_SIZE)) {
+                // ring full, grow if the oldest key is still within the window
+                long oldest = RecentEventFilter._keyTime(this.ring[this.next]);
+                if ((RecentEventFilter._keyTime(key) - oldest) < windowSec) {
+                    long r[] = new long[this.ring.length * 2];
+                    for (int i = 0; i < this.count; i++) {
+                        r[i] = this.ring[(this.next + i) % this.count]; // oldest first
+                    }
+                    this.ring  = r;
+                    this.next  = this.count;
+                    this.bloom = new long[(r.length * 8) / 64];
+                    this._bloomRebuild();
+                }
+            }
+            this.ring[this.next] = key;
+            if (this.count < this.ring.length) {
+                this.count++;
+            }
+            this.next = (this.next + 1) % this.ring.length;
+            if (this.next == 0) {
+                // wrapped, discard overwritten keys from the bloom filter
+                this._bloomRebuild();
+            } else {
+                this._bloomAdd(key);
+            }
+        }
+        public void remove(long key) {
+            for (int i = 0; i < this.count; i++) {
+                if (this.ring[i] == key) {
+                    this.ring[i] = -1L; // (never a valid key)
+                }
+            }
+        }
+    }
+
+    private static Map<String,DeviceKeys> deviceKeyMap = new HashMap<String,DeviceKeys>();
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified event has recently been inserted for the specified device.
+    *** If not, the event key is recorded as inserted.
+    *** @param acctID      The account ID
+    *** @param devID       The device ID
+    *** @param timestamp   The event timestamp
+    *** @param statusCode  The event status code
+    *** @return True if the event is a duplicate
+    **/
+    public static boolean isDuplicate(String acctID, String devID, long timestamp, int statusCode)
+    {
+        long windowSec = KEY_windowSec.asLong(3600L);
+        if (windowSec <= 0L) {
+            return false;
+        } else
+        if ((statusCode < 0) || (statusCode > 0xFFFF)) {
+            return false; // not representable in the filter key
+        }
+        long key = RecentEventFilter._eventKey(timestamp, statusCode);
+        String devKey = acctID + "/" + devID;
+        synchronized (RecentEventFilter.deviceKeyMap) {
+            DeviceKeys dk = RecentEventFilter.deviceKeyMap.get(devKey);
+            if (dk == null) {
+                dk = new DeviceKeys();
+                RecentEventFilter.deviceKeyMap.put(devKey, dk);
+            } else
+            if (dk.contains(key)) {
+                return true;
+            }
+            dk.add(key, windowSec);
+            return false;
+        }
+    }
+
+    /**
+    *** Removes the specified event from the recently inserted keys (ie. the insert failed)
+    *** @param acctID      The account ID
+    *** @param devID       The device ID
+    *** @param timestamp   The event timestamp
+    *** @param statusCode  The event status code
+    **/
+    public static void forget(String acctID, String devID, long timestamp, int statusCode)
+    {
+        long key = RecentEventFilter._eventKey(timestamp, statusCode);
+        String devKey = acctID + "/" + devID;
+        synchronized (RecentEventFilter.deviceKeyMap) {
+            DeviceKeys dk = RecentEventFilter.deviceKeyMap.get(devKey);
+            if (dk != null) {
+                dk.remove(key);
+            }
+        }
+    }
+
+}
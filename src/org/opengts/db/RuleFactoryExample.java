@@ -610,8 +610,8 @@ public class RuleFactoryExample
             return success;
         }
 
-        /* send email */
-        if ((actionMask & RuleFactory.ACTION_VIA_EMAIL) != 0) {
+        /* send email (queued to the outbox if enabled) */
+        if ((actionMask & (RuleFactory.ACTION_VIA_EMAIL | RuleFactory.ACTION_VIA_QUEUE)) != 0) {
             if (emailTo.size() <= 0) {
                 // no-one to which to send email
                 Print.logWarn("EMail requested, but no recipients specified");
@@ -624,7 +624,14 @@ public class RuleFactoryExample
                 success = false;
             } else {
                 try {
-                    SendMail.send(frEmail, toEmail, null, null, subj, body, null);
+                    boolean viaOutbox = ((actionMask & RuleFactory.ACTION_VIA_QUEUE) != 0) || NotificationOutbox.IsEnabled();
+                    if (viaOutbox && (NotificationOutbox.getInstance() != null)) {
+                        String to[] = StringTools.parseString(toEmail,',');
+                        SendMail.Args args = new SendMail.Args(null, frEmail, to, null, null, subj, body, null);
+                        success = NotificationOutbox.Queue(NotificationOutbox.createEMailEntry(args));
+                    } else {
+                        SendMail.send(frEmail, toEmail, null, null, subj, body, null);
+                    }
                 } catch (Throwable t) { // NoClassDefFoundException, ClassNotFoundException
                     // this will fail if JavaMail support for SendMail is not available.
                     Print.logWarn("SendMail error: " + t);
@@ -638,11 +645,6 @@ public class RuleFactoryExample
             // TODO: implement callback listener
         }
 
-        /* queue notification message */
-        if ((actionMask & RuleFactory.ACTION_VIA_QUEUE) != 0) {
-            // TODO: queue notofication message
-        }
-
         /* return success */
         return success;
 
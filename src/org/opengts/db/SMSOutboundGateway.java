@@ -111,6 +111,17 @@ public abstract class SMSOutboundGateway
             return;
         }
 
+        /* NotificationOutbox delivery of queued SMS commands */
+        NotificationOutbox.AddDeliveryHandler(NotificationOutbox.TYPE_SMS, new NotificationOutbox.DeliveryHandler() {
+            public int[] deliver(NotificationOutbox.Entry entries[]) {
+                int rtn[] = new int[entries.length];
+                for (int i = 0; i < entries.length; i++) {
+                    rtn[i] = SMSOutboundGateway._deliverQueuedSMS(entries[i]);
+                }
+                return rtn;
+            }
+        });
+
         // -----------------------------------------------
         // The following shows several example of outbound SMS gateway support.
         // The only method that needs to be overridden and implemented is
@@ -218,6 +229,68 @@ public abstract class SMSOutboundGateway
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    private static final String KEY_ACCOUNT = "accountID";
+    private static final String KEY_DEVICE  = "deviceID";
+    private static final String KEY_HANDLER = "handler";
+    private static final String KEY_COMMAND = "command";
+
+    /**
+    *** Queues an SMS command to the NotificationOutbox for delivery by the named
+    *** SMS gateway handler.
+    *** @param handlerName  The name of the SMS gateway handler
+    *** @param device       The device to which the SMS command is sent
+    *** @param commandStr   The SMS command which is sent
+    *** @return True if the command was queued
+    **/
+    public static boolean QueueSMSCommand(String handlerName, Device device, String commandStr)
+    {
+        if (device == null) {
+            return false;
+        }
+        NotificationOutbox.Entry entry = new NotificationOutbox.Entry(NotificationOutbox.TYPE_SMS);
+        entry.setString(KEY_ACCOUNT, device.getAccountID());
+        entry.setString(KEY_DEVICE , device.getDeviceID());
+        entry.setString(KEY_HANDLER, handlerName);
+        entry.setString(KEY_COMMAND, commandStr);
+        entry.setDedupKey(NotificationOutbox.TYPE_SMS + "|" + 
+            device.getAccountID() + "/" + device.getDeviceID() + "|" + commandStr);
+        return NotificationOutbox.Queue(entry);
+    }
+
+    /* deliver a queued SMS command (called from the NotificationOutbox thread) */
+    private static int _deliverQueuedSMS(NotificationOutbox.Entry entry)
+    {
+        String acctID = entry.getString(KEY_ACCOUNT, "");
+        String devID  = entry.getString(KEY_DEVICE , "");
+        Device device = null;
+        try {
+            Account account = Account.getAccount(acctID);
+            device = (account != null)? Device.getDevice(account, devID) : null;
+        } catch (DBException dbe) {
+            Print.logError("Unable to load SMS Device: " + acctID + "/" + devID + " [" + dbe + "]");
+            return NotificationOutbox.RESULT_RETRY;
+        }
+        if (device == null) {
+            Print.logError("SMS Device not found: " + acctID + "/" + devID);
+            return NotificationOutbox.RESULT_FAILED;
+        }
+        String handler = entry.getString(KEY_HANDLER, null);
+        String command = entry.getString(KEY_COMMAND, "");
+        DCServerFactory.ResultCode result = DCServerConfig.SendSMSCommand(handler, device, command);
+        if (DCServerFactory.ResultCode.SUCCESS.equals(result)) {
+            return NotificationOutbox.RESULT_SENT;
+        } else
+        if (DCServerFactory.ResultCode.TRANSMIT_FAIL.equals(result) || 
+            DCServerFactory.ResultCode.UNKNOWN_HOST.equals(result)    ) {
+            return NotificationOutbox.RESULT_RETRY;
+        } else {
+            return NotificationOutbox.RESULT_FAILED;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     public SMSOutboundGateway()
     {
         // override
@@ -0,0 +1,546 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Interval aggregation of Device session statistics
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** SessionStatsFactory which aggregates the Device session statistics in memory, and writes
+*** a single SessionStatsBucket record per device per interval ("db.sessionStats.intervalSec"),
+*** rather than a record for each TCP/UDP session.<br>
+*** Each session statistic is also appended to a journal file ("db.sessionStats.journalFile",
+*** with the server name inserted before the extension, ie. "sessionStats.gtsdmtp.journal", so
+*** that each server process has its own journal), which is replayed at startup to recover the
+*** statistics which had not yet been written to the database.  The journal is compacted
+*** (rewritten with the remaining aggregated intervals) after it has been replayed, and after
+*** each successful database write.<br>
+*** An interval record is written only once the interval has ended.  Session statistics which
+*** arrive for an interval which has already been written are attributed to the oldest interval
+*** which has not yet been written.  Interval records are written with absolute totals, so
+*** replaying a journal which had already been (partially) written to the database is safe.
+*** (It is assumed that the statistics for a given device are collected by a single server
+*** process).
+**/
+
+public class SessionStatsAggregator
+    implements SessionStatsFactory
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_intervalSec = RTConfig.key(DBConfig.PROP_db_sessionStats_intervalSec);
+
+    private static final String JOURNAL_FLUSHED_    = "#flushed=";
+
+    /**
+    *** Returns true if session statistics aggregation is enabled
+    *** @return True if session statistics aggregation is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return (KEY_intervalSec.asLong(0L) > 0L);
+    }
+
+    private static SessionStatsAggregator aggregator = null;
+
+    /**
+    *** Gets the SessionStatsAggregator instance (created on first call, which should only occur
+    *** in a process which produces session statistics, since the journal is replayed and the
+    *** aggregator thread is started when created)
+    *** @return The SessionStatsAggregator instance, or null if aggregation is disabled
+    **/
+    public static SessionStatsAggregator getInstance()
+    {
+        if (!SessionStatsAggregator.isEnabled()) {
+            return null;
+        }
+        synchronized (SessionStatsAggregator.class) {
+            if (SessionStatsAggregator.aggregator == null) {
+                File journal = RTConfig.getFile(DBConfig.PROP_db_sessionStats_journalFile, null);
+                if (journal == null) {
+                    // default to the log directory
+                    File logFile = RTConfig.getFile(RTKey.LOG_FILE, null);
+                    File logDir  = (logFile != null)? logFile.getParentFile() : null;
+                    if (logDir != null) {
+                        journal = new File(logDir, "sessionStats.journal");
+                    } else {
+                        Print.logWarn("No session statistics journal file defined (not crash-safe)");
+                    }
+                }
+                if (journal != null) {
+                    // one journal per server process
+                    String name = journal.getName();
+                    int    p    = name.lastIndexOf('.');
+                    String srv  = DBConfig.getServerName();
+                    name = (p > 0)? (name.substring(0,p) + "." + srv + name.substring(p)) : (name + "." + srv);
+                    journal = new File(journal.getParentFile(), name);
+                }
+                SessionStatsAggregator.aggregator = new SessionStatsAggregator(KEY_intervalSec.asLong(0L), journal);
+            }
+            return SessionStatsAggregator.aggregator;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* aggregated statistics for a single device interval */
+    private static class Bucket
+    {
+        public String accountID     = null;
+        public String deviceID      = null;
+        public long   bucketTime    = 0L;
+        public String ipAddress     = "";
+        public long   tcpCount      = 0L;
+        public long   udpCount      = 0L;
+        public long   bytesRead     = 0L;
+        public long   bytesWritten  = 0L;
+        public long   eventsRecv    = 0L;
+        public Bucket(String accountID, String deviceID, long bucketTime) {
+            this.accountID  = accountID;
+            this.deviceID   = deviceID;
+            this.bucketTime = bucketTime;
+        }
+        public String getKey() {
+            return Bucket.getKey(this.accountID, this.deviceID, this.bucketTime);
+        }
+        public static String getKey(String accountID, String deviceID, long bucketTime) {
+            return accountID + "/" + deviceID + "/" + bucketTime;
+        }
+        public void add(String ipAddr, long tcp, long udp, long bRead, long bWrite, long events) {
+            if (!StringTools.isBlank(ipAddr)) {
+                this.ipAddress = ipAddr;
+            }
+            this.tcpCount     += tcp;
+            this.udpCount     += udp;
+            this.bytesRead    += bRead;
+            this.bytesWritten += bWrite;
+            this.eventsRecv   += events;
+        }
+        public void add(Bucket b) {
+            this.add(b.ipAddress, b.tcpCount, b.udpCount, b.bytesRead, b.bytesWritten, b.eventsRecv);
+        }
+        public String toJournal() {
+            return Bucket.toJournal(this.accountID, this.deviceID, this.bucketTime, this.ipAddress,
+                this.tcpCount, this.udpCount, this.bytesRead, this.bytesWritten, this.eventsRecv);
+        }
+        public static String toJournal(String acctID, String devID, long bucketTime, String ipAddr,
+            long tcp, long udp, long bRead, long bWrite, long events) {
+            StringBuffer sb = new StringBuffer();
+            sb.append(acctID).append(",");
+            sb.append(devID).append(",");
+            sb.append(bucketTime).append(",");
+            sb.append(StringTools.trim(ipAddr)).append(",");
+            sb.append(tcp).append(",");
+            sb.append(udp).append(",");
+            sb.append(bRead).append(",");
+            sb.append(bWrite).append(",");
+            sb.append(events);
+            return sb.toString();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private long                intervalSec     = 0L;
+    private File                journalFile     = null;
+    private OutputStream        journalOut      = null;
+    private long                flushedThrough  = 0L;
+    private Map<String,Bucket>  buckets         = new HashMap<String,Bucket>();
+    private Map<String,Bucket>  pending         = new HashMap<String,Bucket>();
+    private Object              flushLock       = new Object();
+
+    /**
+    *** Constructor
+    *** @param intervalSec  The aggregation interval (in seconds)
+    *** @param journalFile  The journal file (may be null)
+    **/
+    public SessionStatsAggregator(long intervalSec, File journalFile)
+    {
+        this.intervalSec  = (intervalSec > 0L)? intervalSec : 900L;
+        this.journalFile  = journalFile;
+        if (this._replayJournal()) {
+            // rewrite the recovered statistics (discards a partially written last line)
+            this._compactJournal();
+        } else {
+            this._openJournal();
+        }
+
+        /* flush completed intervals in the background */
+        Thread flushThread = new Thread(new Runnable() {
+            public void run() {
+                long sleepMS = Math.max(SessionStatsAggregator.this.intervalSec / 4L, 5L) * 1000L;
+                for (;;) {
+                    try { Thread.sleep(sleepMS); } catch (Throwable th) { /*ignore*/ }
+                    SessionStatsAggregator.this.flush(false);
+                }
+            }
+        }, "SessionStatsFlush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+
+        /* write everything at shutdown */
+        Runtime.getRuntime().addShutdownHook(new Thread("SessionStatsShutdown") {
+            public void run() {
+                SessionStatsAggregator.this.flush(true);
+            }
+        });
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the start time of the interval containing the specified time */
+    private long _getBucketTime(long timestamp)
+    {
+        return (timestamp / this.intervalSec) * this.intervalSec;
+    }
+
+    /* add statistics to the in-memory bucket (must be synchronized) */
+    private void _addBucket(String acctID, String devID, long bucketTime, String ipAddr,
+        long tcp, long udp, long bRead, long bWrite, long events)
+    {
+        String key = Bucket.getKey(acctID, devID, bucketTime);
+        Bucket b = this.buckets.get(key);
+        if (b == null) {
+            b = new Bucket(acctID, devID, bucketTime);
+            this.buckets.put(key, b);
+        }
+        b.add(ipAddr, tcp, udp, bRead, bWrite, events);
+    }
+
+    /**
+    *** Adds a session statistic to the current aggregation interval
+    **/
+    public void addSessionStatistic(Device device, long timestamp,
+        String ipAddr, boolean isDuplex,
+        long bytesRead, long bytesWritten, long eventsRecv)
+        throws DBException
+    {
+        if (device == null) {
+            return;
+        }
+        String acctID = device.getAccountID();
+        String devID  = device.getDeviceID();
+        long   tcp    = isDuplex? 1L : 0L;
+        long   udp    = isDuplex? 0L : 1L;
+        synchronized (this) {
+            long bucketTime = this._getBucketTime((timestamp > 0L)? timestamp : DateTime.getCurrentTimeSec());
+            if (bucketTime < this.flushedThrough) {
+                // interval already written, attribute to the oldest unwritten interval
+                bucketTime = this.flushedThrough;
+            }
+            this._addBucket(acctID, devID, bucketTime, ipAddr, tcp, udp, bytesRead, bytesWritten, eventsRecv);
+            this._writeJournal(Bucket.toJournal(acctID, devID, bucketTime, ipAddr,
+                tcp, udp, bytesRead, bytesWritten, eventsRecv));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writes the aggregated statistics for all completed intervals to the database
+    *** @param all  True to also write the current (incomplete) interval
+    *** @return The number of interval records written
+    **/
+    public int flush(boolean all)
+    {
+        synchronized (this.flushLock) {
+
+            /* move completed intervals to the pending list */
+            long nowSec = DateTime.getCurrentTimeSec();
+            synchronized (this) {
+                long cutoff = this._getBucketTime(nowSec);
+                if (all) {
+                    cutoff += this.intervalSec; // include current interval
+                }
+                for (Iterator<Bucket> i = this.buckets.values().iterator(); i.hasNext();) {
+                    Bucket b = i.next();
+                    if (b.bucketTime < cutoff) {
+                        Bucket p = this.pending.get(b.getKey());
+                        if (p != null) {
+                            p.add(b); // (should not occur)
+                        } else {
+                            this.pending.put(b.getKey(), b);
+                        }
+                        i.remove();
+                    }
+                }
+                if (cutoff > this.flushedThrough) {
+                    this.flushedThrough = cutoff;
+                }
+            }
+            if (this.pending.isEmpty()) {
+                return 0;
+            }
+
+            /* write interval records */
+            int count = 0;
+            try {
+                count = this._writeBuckets(this.pending.values());
+            } catch (DBException dbe) {
+                // leave pending, retry on next flush (journal is still intact)
+                Print.logError("Session statistics write failed: " + dbe);
+                return 0;
+            }
+
+            /* compact journal */
+            synchronized (this) {
+                this.pending.clear();
+                this._compactJournal();
+            }
+            return count;
+
+        }
+    }
+
+    /* write buckets to the database (absolute interval totals) */
+    private int _writeBuckets(Collection<Bucket> list)
+        throws DBException
+    {
+        java.util.List<SessionStatsBucket> insList = new Vector<SessionStatsBucket>();
+        java.util.List<SessionStatsBucket> updList = new Vector<SessionStatsBucket>();
+        for (Bucket b : list) {
+            SessionStatsBucket.Key key = new SessionStatsBucket.Key(b.accountID, b.deviceID, b.bucketTime);
+            boolean exists = key.exists(); // may throw DBException
+            SessionStatsBucket ssb = key.getDBRecord(exists);
+            ssb.setIntervalSec(this.intervalSec);
+            ssb.setIpAddress(b.ipAddress);
+            ssb.setTcpConnections(b.tcpCount);
+            ssb.setUdpConnections(b.udpCount);
+            ssb.setBytesRead(b.bytesRead);
+            ssb.setBytesWritten(b.bytesWritten);
+            ssb.setEventsRecv(b.eventsRecv);
+            if (exists) {
+                // rewrite (ie. journal replayed after a previous write)
+                updList.add(ssb);
+            } else {
+                insList.add(ssb);
+            }
+        }
+        int count = 0;
+        if (!insList.isEmpty()) {
+            count += DBRecord.insertRecords(insList);
+        }
+        if (!updList.isEmpty()) {
+            Set<String> updFlds = ListTools.toSet(new String[] {
+                SessionStatsBucket.FLD_ipAddress,
+                SessionStatsBucket.FLD_tcpConnections,
+                SessionStatsBucket.FLD_udpConnections,
+                SessionStatsBucket.FLD_bytesRead,
+                SessionStatsBucket.FLD_bytesWritten,
+                SessionStatsBucket.FLD_eventsRecv,
+            }, new HashSet<String>());
+            count += DBRecord.updateRecords(updList, updFlds);
+        }
+        Print.logDebug("Session statistics intervals written: %d", count);
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the unwritten in-memory buckets for the specified device/time-range */
+    private java.util.List<Bucket> _getMemoryBuckets(Device device, long timeStart, long timeEnd)
+    {
+        java.util.List<Bucket> list = new Vector<Bucket>();
+        String acctID = device.getAccountID();
+        String devID  = device.getDeviceID();
+        synchronized (this) {
+            for (int m = 0; m < 2; m++) {
+                Collection<Bucket> bc = (m == 0)? this.buckets.values() : this.pending.values();
+                for (Bucket b : bc) {
+                    if (!b.accountID.equals(acctID) || !b.deviceID.equals(devID)) {
+                        continue;
+                    } else
+                    if ((timeStart > 0L) && (b.bucketTime < timeStart)) {
+                        continue;
+                    } else
+                    if ((timeEnd > 0L) && (b.bucketTime > timeEnd)) {
+                        continue;
+                    }
+                    list.add(b);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+    *** Returns the number of bytes read/written by the device within the specified time range
+    *** @return A 2-element array containing the bytes read, and bytes written
+    **/
+    public long[] getByteCounts(Device device, long timeStart, long timeEnd)
+        throws DBException
+    {
+        if (device == null) {
+            return new long[2];
+        }
+        long start = (timeStart > 0L)? this._getBucketTime(timeStart) : timeStart;
+        long tot[] = SessionStatsBucket.getIntervalTotals(device.getAccountID(), device.getDeviceID(),
+            start, timeEnd, new String[] { SessionStatsBucket.FLD_bytesRead, SessionStatsBucket.FLD_bytesWritten });
+        for (Bucket b : this._getMemoryBuckets(device, start, timeEnd)) {
+            tot[0] += b.bytesRead;
+            tot[1] += b.bytesWritten;
+        }
+        return tot;
+    }
+
+    /**
+    *** Returns the number of TCP/UDP connections made by the device within the specified time range
+    *** @return A 2-element array containing the number of TCP, and UDP, connections
+    **/
+    public long[] getConnectionCounts(Device device, long timeStart, long timeEnd)
+        throws DBException
+    {
+        if (device == null) {
+            return new long[2];
+        }
+        long start = (timeStart > 0L)? this._getBucketTime(timeStart) : timeStart;
+        long tot[] = SessionStatsBucket.getIntervalTotals(device.getAccountID(), device.getDeviceID(),
+            start, timeEnd, new String[] { SessionStatsBucket.FLD_tcpConnections, SessionStatsBucket.FLD_udpConnections });
+        for (Bucket b : this._getMemoryBuckets(device, start, timeEnd)) {
+            tot[0] += b.tcpCount;
+            tot[1] += b.udpCount;
+        }
+        return tot;
+    }
+
+    // ------------------------------------------------------------------------
+    // Journal
+
+    /* open journal for append */
+    private void _openJournal()
+    {
+        if (this.journalFile != null) {
+            try {
+                this.journalOut = new FileOutputStream(this.journalFile, true);
+            } catch (IOException ioe) {
+                Print.logError("Unable to open session statistics journal: " + ioe);
+                this.journalOut = null;
+            }
+        }
+    }
+
+    /* append a line to the journal (must be synchronized) */
+    private void _writeJournal(String line)
+    {
+        if (this.journalOut != null) {
+            try {
+                this.journalOut.write(StringTools.getBytes(line + "\n"));
+                this.journalOut.flush();
+            } catch (IOException ioe) {
+                Print.logError("Session statistics journal write failed: " + ioe);
+            }
+        }
+    }
+
+    /* rewrite the journal with the remaining unwritten buckets (must be synchronized) */
+    private void _compactJournal()
+    {
+        if (this.journalFile == null) {
+            return;
+        }
+        File tmpFile = new File(this.journalFile.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmpFile);
+            StringBuffer sb = new StringBuffer();
+            sb.append(JOURNAL_FLUSHED_).append(this.flushedThrough).append("\n");
+            for (Bucket b : this.buckets.values()) {
+                sb.append(b.toJournal()).append("\n");
+            }
+            out.write(StringTools.getBytes(sb.toString()));
+            out.close();
+            out = null;
+            if (this.journalOut != null) {
+                try { this.journalOut.close(); } catch (Throwable th) {}
+                this.journalOut = null;
+            }
+            if (!tmpFile.renameTo(this.journalFile)) {
+                // (Windows) rename fails if the destination exists
+                this.journalFile.delete();
+                if (!tmpFile.renameTo(this.journalFile)) {
+                    Print.logError("Unable to rename session statistics journal: " + tmpFile);
+                }
+            }
+        } catch (IOException ioe) {
+            Print.logError("Unable to compact session statistics journal: " + ioe);
+        } finally {
+            if (out != null) { try { out.close(); } catch (Throwable th) {} }
+        }
+        if (this.journalOut == null) {
+            this._openJournal();
+        }
+    }
+
+    /* reload unwritten statistics from the journal (returns false if there is no journal) */
+    private boolean _replayJournal()
+    {
+        if ((this.journalFile == null) || !this.journalFile.isFile()) {
+            return false;
+        }
+        BufferedReader br = null;
+        long recs = 0L;
+        try {
+            br = new BufferedReader(new FileReader(this.journalFile));
+            for (;;) {
+                String line = br.readLine();
+                if (line == null) {
+                    break;
+                }
+                line = line.trim();
+                if (line.startsWith(JOURNAL_FLUSHED_)) {
+                    long ft = StringTools.parseLong(line.substring(JOURNAL_FLUSHED_.length()), 0L);
+                    if (ft > this.flushedThrough) {
+                        this.flushedThrough = ft;
+                    }
+                    continue;
+                }
+                String f[] = StringTools.split(line, ',');
+                if (f.length < 9) {
+                    continue; // blank, or partially written line
+                }
+                this._addBucket(f[0], f[1], StringTools.parseLong(f[2],0L), f[3],
+                    StringTools.parseLong(f[4],0L), StringTools.parseLong(f[5],0L),
+                    StringTools.parseLong(f[6],0L), StringTools.parseLong(f[7],0L),
+                    StringTools.parseLong(f[8],0L));
+                recs++;
+            }
+        } catch (IOException ioe) {
+            Print.logError("Unable to read session statistics journal: " + ioe);
+        } finally {
+            if (br != null) { try { br.close(); } catch (Throwable th) {} }
+        }
+        if (recs > 0L) {
+            Print.logInfo("Recovered %d session statistics journal entries (%d intervals)", recs, this.buckets.size());
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,223 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Stationary event filter (store-on-change)
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** Stationary event filter, used by a device communication server to skip the storage of
+*** redundant events from parked devices.<br>
+*** A periodic location event is considered redundant if it has the same status code and
+*** digital input state as the last stored event, its speed is not more than the stationary
+*** maximum speed, it is within the stationary radius of the location where the device stopped,
+*** and the device has already been stationary for at least the dwell period.  While stationary,
+*** one heartbeat event is still stored each heartbeat interval.  Status code changes, input
+*** changes, movement, and all non-periodic status codes are always stored.<br>
+*** Configured per DCServerConfig with the following properties (prefixed by the server name):
+*** <pre>
+***   .stationaryDwellSec       - dwell seconds before events are skipped (0 disables the filter)
+***   .stationaryRadiusMeters   - radius within which the device is considered stationary
+***   .stationaryMaxSpeedKPH    - maximum speed at which the device is considered stationary
+***   .stationaryHeartbeatSec   - interval between stored stationary events (0 for none)
+*** </pre>
+**/
+
+public class StationaryFilter
+{
+
+    // ------------------------------------------------------------------------
+
+    /* returns true if the specified status code is a periodic location status code */
+    private static boolean _isPeriodicStatus(int code)
+    {
+        switch (code) {
+            case StatusCodes.STATUS_LOCATION:
+            case StatusCodes.STATUS_MOTION_IN_MOTION:
+            case StatusCodes.STATUS_MOTION_DORMANT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* state of a single device */
+    private static class DeviceState
+    {
+        public GeoPoint anchor        = null; // location where the device stopped
+        public int      statusCode    = 0;
+        public long     inputMask     = -1L;
+        public long     stoppedTime   = 0L;   // time the device stopped
+        public long     lastStoreTime = 0L;   // time of last stored event
+        public DeviceState() {
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private String                  serverName      = "";
+    private long                    dwellSec        = 0L;
+    private double                  radiusMeters    = 0.0;
+    private double                  maxSpeedKPH     = 0.0;
+    private long                    heartbeatSec    = 0L;
+    private Map<String,DeviceState> deviceState     = new HashMap<String,DeviceState>();
+    private long                    skipCount       = 0L;
+
+    /**
+    *** Constructor
+    *** @param serverName  The device communication server name
+    **/
+    public StationaryFilter(String serverName)
+    {
+        this.serverName = StringTools.trim(serverName);
+    }
+
+    /**
+    *** Sets the filter configuration
+    *** @param dwellSec      Number of seconds the device must be stationary before events are skipped
+    *** @param radiusMeters  Radius within which the device is considered stationary
+    *** @param maxSpeedKPH   Maximum speed at which the device is considered stationary
+    *** @param heartbeatSec  Interval between stored stationary events (0 for none)
+    **/
+    public void setConfig(long dwellSec, double radiusMeters, double maxSpeedKPH, long heartbeatSec)
+    {
+        this.dwellSec     = dwellSec;
+        this.radiusMeters = radiusMeters;
+        this.maxSpeedKPH  = maxSpeedKPH;
+        this.heartbeatSec = heartbeatSec;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* returns true if the event differs from the stationary state (ie. the state must be restarted) */
+    private boolean _isChanged(DeviceState ds, long timestamp, int statusCode, GeoPoint gp, double speedKPH, long inputMask)
+    {
+        return
+            !StationaryFilter._isPeriodicStatus(statusCode) ||
+            (statusCode != ds.statusCode)                   ||
+            (inputMask  != ds.inputMask)                    ||
+            (speedKPH   >  this.maxSpeedKPH)                ||
+            !gp.isValid()                                   ||
+            (ds.anchor == null)                             ||
+            (ds.anchor.metersToPoint(gp) > this.radiusMeters) ||
+            (timestamp < ds.lastStoreTime);
+    }
+
+    /**
+    *** Returns true if the specified event is a redundant stationary event which need not be stored.
+    *** The filter state is not changed, "eventStored" must be called once the event has been stored.
+    *** @param acctID      The account ID
+    *** @param devID       The device ID
+    *** @param timestamp   The event timestamp
+    *** @param statusCode  The event status code
+    *** @param lat         The event latitude
+    *** @param lon         The event longitude
+    *** @param speedKPH    The event speed
+    *** @param inputMask   The event digital input mask (-1 if not available)
+    *** @return True if the event is redundant
+    **/
+    public boolean isRedundant(String acctID, String devID, long timestamp, int statusCode,
+        double lat, double lon, double speedKPH, long inputMask)
+    {
+        String key = acctID + "/" + devID;
+        GeoPoint gp = new GeoPoint(lat, lon);
+        synchronized (this.deviceState) {
+            DeviceState ds = this.deviceState.get(key);
+
+            /* changed? */
+            if ((ds == null) || this._isChanged(ds, timestamp, statusCode, gp, speedKPH, inputMask)) {
+                return false;
+            }
+
+            /* within dwell period? */
+            if ((timestamp - ds.stoppedTime) < this.dwellSec) {
+                return false;
+            }
+
+            /* heartbeat? */
+            if ((this.heartbeatSec > 0L) && ((timestamp - ds.lastStoreTime) >= this.heartbeatSec)) {
+                return false;
+            }
+
+            /* redundant */
+            this.skipCount++;
+            if ((this.skipCount % 1000L) == 0L) {
+                Print.logInfo("[%s] Stationary events skipped: %d", this.serverName, this.skipCount);
+            }
+            return true;
+
+        }
+    }
+
+    /**
+    *** Records that the specified (non-redundant) event has been stored
+    *** @param acctID      The account ID
+    *** @param devID       The device ID
+    *** @param timestamp   The event timestamp
+    *** @param statusCode  The event status code
+    *** @param lat         The event latitude
+    *** @param lon         The event longitude
+    *** @param speedKPH    The event speed
+    *** @param inputMask   The event digital input mask (-1 if not available)
+    **/
+    public void eventStored(String acctID, String devID, long timestamp, int statusCode,
+        double lat, double lon, double speedKPH, long inputMask)
+    {
+        String key = acctID + "/" + devID;
+        GeoPoint gp = new GeoPoint(lat, lon);
+        synchronized (this.deviceState) {
+            DeviceState ds = this.deviceState.get(key);
+            if (ds == null) {
+                ds = new DeviceState();
+                this.deviceState.put(key, ds);
+            } else
+            if (!this._isChanged(ds, timestamp, statusCode, gp, speedKPH, inputMask)) {
+                // still stationary (dwell/heartbeat event)
+                ds.lastStoreTime = timestamp;
+                return;
+            }
+            // (re)start the stationary period here
+            ds.anchor        = gp.isValid()? gp : null;
+            ds.statusCode    = statusCode;
+            ds.inputMask     = inputMask;
+            ds.stoppedTime   = timestamp;
+            ds.lastStoreTime = timestamp;
+        }
+    }
+
+    /**
+    *** Gets the number of events skipped by this filter
+    *** @return The number of skipped events
+    **/
+    public long getSkipCount()
+    {
+        synchronized (this.deviceState) {
+            return this.skipCount;
+        }
+    }
+
+}
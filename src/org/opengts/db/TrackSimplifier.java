@@ -0,0 +1,320 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Server-side track (polyline) simplification for map display
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** Simplifies a device track for map display, using the Douglas-Peucker algorithm.<br>
+*** Events which carry information beyond their location are always retained:
+*** <ul>
+***   <li>The first/last event of each device</li>
+***   <li>Events with a status code other than a simple location/in-motion code</li>
+***   <li>Stop/start transitions (the first stopped event, and the last stopped event before moving)</li>
+***   <li>Geozone transitions (the geozone-id differs from that of the previous event)</li>
+***   <li>Events with an invalid GPS location</li>
+*** </ul>
+*** The remaining events are simplified between these retained events, with a tolerance
+*** (in meters) which is typically derived from the displayed map extent and the map size in
+*** pixels (see <code>getToleranceMeters</code>), so that the simplified track is visually
+*** indistinguishable from the original at the displayed zoom level.
+**/
+
+public class TrackSimplifier
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final double METERS_PER_DEGREE   = (Math.PI / 180.0) * GeoPoint.EARTH_EQUATORIAL_RADIUS_KM * 1000.0;
+
+    private static final int    MAX_ITERATIONS      = 12;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified status code is a simple location/in-motion code, which
+    *** carries no information beyond the location of the event
+    *** @param code  The status code
+    *** @return True if the status code is a simple location code
+    **/
+    public static boolean isLocationStatusCode(int code)
+    {
+        switch (code) {
+            case StatusCodes.STATUS_NONE:
+            case StatusCodes.STATUS_LOCATION:
+            case StatusCodes.STATUS_MOTION_IN_MOTION:
+            case StatusCodes.STATUS_MOTION_MOVING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+    *** Returns the simplification tolerance, in meters, for the specified events displayed on a
+    *** map of the specified size.  The map is assumed to be zoomed to fit the events.
+    *** @param ev              The events
+    *** @param mapWidthPx      The map width, in pixels
+    *** @param mapHeightPx     The map height, in pixels
+    *** @param pixelTolerance  The tolerance, in pixels
+    *** @return The tolerance in meters
+    **/
+    public static double getToleranceMeters(EventDataProvider ev[], int mapWidthPx, int mapHeightPx, double pixelTolerance)
+    {
+        if (ListTools.isEmpty(ev) || (pixelTolerance <= 0.0)) {
+            return 0.0;
+        }
+
+        /* bounds */
+        double minLat =  90.0, maxLat =  -90.0;
+        double minLon = 180.0, maxLon = -180.0;
+        for (int i = 0; i < ev.length; i++) {
+            double lat = ev[i].getLatitude();
+            double lon = ev[i].getLongitude();
+            if (GeoPoint.isValid(lat,lon)) {
+                if (lat < minLat) { minLat = lat; }
+                if (lat > maxLat) { maxLat = lat; }
+                if (lon < minLon) { minLon = lon; }
+                if (lon > maxLon) { maxLon = lon; }
+            }
+        }
+        if (minLat > maxLat) {
+            return 0.0; // no valid points
+        }
+
+        /* meters per pixel */
+        double cosLat  = Math.cos(Math.toRadians((minLat + maxLat) / 2.0));
+        double spanYM  = (maxLat - minLat) * METERS_PER_DEGREE;
+        double spanXM  = (maxLon - minLon) * METERS_PER_DEGREE * cosLat;
+        double mppX    = spanXM / (double)((mapWidthPx  > 0)? mapWidthPx  : 800);
+        double mppY    = spanYM / (double)((mapHeightPx > 0)? mapHeightPx : 600);
+        return Math.max(mppX, mppY) * pixelTolerance;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Simplifies the specified events (which must be grouped by device, in ascending time order
+    *** for each device).  The tolerance is increased until the number of returned events is
+    *** no more than <code>maxCount</code>.  If the retained events alone exceed
+    *** <code>maxCount</code>, the first/last <code>maxCount</code> events are returned, per
+    *** the specified limit type.
+    *** @param ev          The events to simplify
+    *** @param toleranceM  The initial tolerance, in meters
+    *** @param maxCount    The maximum number of returned events (<=0 for no limit)
+    *** @param limitType   Specifies which events to keep if the limit cannot otherwise be met
+    *** @return The simplified events (the original array is returned if no events were removed)
+    **/
+    public static EventData[] simplify(EventData ev[], double toleranceM, long maxCount, EventData.LimitType limitType)
+    {
+        if (ListTools.isEmpty(ev) || (ev.length <= 2)) {
+            return ev;
+        }
+
+        /* project to local x/y meters, and mark retained events */
+        double x[] = new double[ev.length];
+        double y[] = new double[ev.length];
+        boolean anchor[] = TrackSimplifier._getAnchors(ev, x, y);
+
+        /* simplify, increasing the tolerance until within the limit */
+        boolean keep[] = null;
+        int     count  = 0;
+        double  tolM   = (toleranceM > 0.0)? toleranceM : 1.0;
+        for (int n = 0; n < MAX_ITERATIONS; n++) {
+            keep  = TrackSimplifier._simplify(x, y, anchor, tolM);
+            count = 0;
+            for (int i = 0; i < keep.length; i++) {
+                if (keep[i]) { count++; }
+            }
+            if ((maxCount <= 0L) || (count <= maxCount)) {
+                break;
+            }
+            tolM *= 2.0;
+        }
+        if ((count == ev.length) && ((maxCount <= 0L) || (count <= maxCount))) {
+            return ev;
+        }
+
+        /* simplified events */
+        EventData rtn[] = new EventData[count];
+        for (int i = 0, r = 0; i < keep.length; i++) {
+            if (keep[i]) { rtn[r++] = ev[i]; }
+        }
+        //Print.logInfo("Simplified track: %d ==> %d events [tolerance %.1f meters]", ev.length, count, tolM);
+
+        /* still over limit (too many retained events) */
+        if ((maxCount > 0L) && (rtn.length > maxCount)) {
+            int max = (int)maxCount;
+            EventData trim[] = new EventData[max];
+            if (EventData.LimitType.FIRST.equals(limitType)) {
+                System.arraycopy(rtn, 0, trim, 0, max);
+            } else {
+                System.arraycopy(rtn, rtn.length - max, trim, 0, max);
+            }
+            rtn = trim;
+        }
+        return rtn;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* project events to local x/y meters, and return the events which must be retained */
+    private static boolean[] _getAnchors(EventDataProvider ev[], double x[], double y[])
+    {
+        boolean anchor[] = new boolean[ev.length];
+        double  refLat   = 0.0, refLon = 0.0, cosLat = 1.0;
+        boolean hasRef   = false;
+        String  lastDev  = null;
+        String  lastZone = null;
+        boolean lastStop = false;
+        for (int i = 0; i < ev.length; i++) {
+            String devID  = ev[i].getDeviceID();
+            String zoneID = StringTools.trim(ev[i].getGeozoneID());
+            double lat    = ev[i].getLatitude();
+            double lon    = ev[i].getLongitude();
+            boolean valid = GeoPoint.isValid(lat,lon);
+            boolean stop  = (ev[i].getSpeedKPH() <= 0.0);
+
+            /* first/last event for device */
+            if ((i == 0) || !devID.equals(lastDev)) {
+                anchor[i] = true;
+                if (i > 0) { anchor[i - 1] = true; }
+                lastZone  = zoneID;
+                lastStop  = stop;
+            } else {
+                if (!zoneID.equals(lastZone)) {
+                    // geozone transition (arrive/depart)
+                    anchor[i] = true;
+                    if (!lastZone.equals("")) { anchor[i - 1] = true; }
+                }
+                if (stop != lastStop) {
+                    // start/stop transition
+                    anchor[i] = true;
+                    if (!stop) { anchor[i - 1] = true; }
+                }
+                lastZone = zoneID;
+                lastStop = stop;
+            }
+            if (i == (ev.length - 1)) {
+                anchor[i] = true;
+            }
+            lastDev = devID;
+
+            /* status code events, invalid locations */
+            if (!valid || !TrackSimplifier.isLocationStatusCode(ev[i].getStatusCode())) {
+                anchor[i] = true;
+            }
+
+            /* local projection (equirectangular, relative to the first valid point) */
+            if (valid) {
+                if (!hasRef) {
+                    refLat = lat;
+                    refLon = lon;
+                    cosLat = Math.cos(Math.toRadians(lat));
+                    hasRef = true;
+                }
+                x[i] = (lon - refLon) * METERS_PER_DEGREE * cosLat;
+                y[i] = (lat - refLat) * METERS_PER_DEGREE;
+            } else
+            if (i > 0) {
+                // invalid location: use the previous location, so the segments on either
+                // side of this (retained) event are not distorted
+                x[i] = x[i - 1];
+                y[i] = y[i - 1];
+            }
+
+        }
+        return anchor;
+    }
+
+    /* Douglas-Peucker simplification between consecutive anchors (non-recursive) */
+    private static boolean[] _simplify(double x[], double y[], boolean anchor[], double tolM)
+    {
+        boolean keep[] = new boolean[anchor.length];
+        int     stack[] = new int[64];
+        int     sp = 0;
+        int     a  = 0;
+        keep[0] = true;
+        for (int b = 1; b < anchor.length; b++) {
+            if (!anchor[b]) {
+                continue;
+            }
+            keep[b] = true;
+
+            /* simplify [a..b] */
+            if ((b - a) > 1) {
+                sp = 0;
+                stack[sp++] = a;
+                stack[sp++] = b;
+                while (sp > 0) {
+                    int e = stack[--sp];
+                    int s = stack[--sp];
+                    double maxD = -1.0;
+                    int    maxI = -1;
+                    for (int i = s + 1; i < e; i++) {
+                        double d = TrackSimplifier._segmentDistance(x[i], y[i], x[s], y[s], x[e], y[e]);
+                        if (d > maxD) {
+                            maxD = d;
+                            maxI = i;
+                        }
+                    }
+                    if ((maxI > 0) && (maxD > tolM)) {
+                        keep[maxI] = true;
+                        if ((sp + 4) > stack.length) {
+                            int ns[] = new int[stack.length * 2];
+                            System.arraycopy(stack, 0, ns, 0, sp);
+                            stack = ns;
+                        }
+                        if ((maxI - s) > 1) { stack[sp++] = s;    stack[sp++] = maxI; }
+                        if ((e - maxI) > 1) { stack[sp++] = maxI; stack[sp++] = e;    }
+                    }
+                }
+            }
+            a = b;
+
+        }
+        return keep;
+    }
+
+    /* distance from point P to segment AB */
+    private static double _segmentDistance(double px, double py, double ax, double ay, double bx, double by)
+    {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lenSq = (dx * dx) + (dy * dy);
+        double t = (lenSq > 0.0)? (((px - ax) * dx) + ((py - ay) * dy)) / lenSq : 0.0;
+        if (t < 0.0) { t = 0.0; } else if (t > 1.0) { t = 1.0; }
+        double cx = ax + (t * dx) - px;
+        double cy = ay + (t * dy) - py;
+        return Math.sqrt((cx * cx) + (cy * cy));
+    }
+
+    // ------------------------------------------------------------------------
+
+}
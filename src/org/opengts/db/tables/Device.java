@@ -197,8 +197,9 @@ public class Device // Asset
     **/
     public static double GetMaximumOdometerKM()
     {
-        return RTConfig.getDouble(DBConfig.PROP_Device_maximumOdometerKM, MAX_DEVICE_ODOM_KM);
+        return KEY_maximumOdometerKM.asDouble(MAX_DEVICE_ODOM_KM);
     }
+    private static final RTConfig.Key KEY_maximumOdometerKM = RTConfig.key(DBConfig.PROP_Device_maximumOdometerKM);
 
     // ------------------------------------------------------------------------
     // new asset defaults
@@ -262,15 +263,19 @@ public class Device // Asset
     }
 
     /* return ture if a SessionStatsFactory has been defined */
+    // (does not create the SessionStatsAggregator)
     public static boolean hasSessionStatsFactory()
     {
-        return (Device.statsFactory != null);
+        return SessionStatsAggregator.isEnabled() || (Device.statsFactory != null);
     }
 
     /* get the event notification SessionStatsFactory */
+    // (the interval SessionStatsAggregator takes precedence, if enabled, and is created on the
+    // first call, so this should only be called where session statistics are produced)
     public static SessionStatsFactory getSessionStatsFactory()
     {
-        return Device.statsFactory;
+        SessionStatsFactory ssa = SessionStatsAggregator.getInstance();
+        return (ssa != null)? ssa : Device.statsFactory;
     }
 
     // ------------------------------------------------------------------------
@@ -342,6 +347,22 @@ public class Device // Asset
         return Device.pingDispatcher;
     }
 
+    // ------------------------------------------------------------------------
+
+    /* parsed "action" property value (immutable, replaced as a whole) */
+    private static class ParsedAction
+    {
+        public final String value;
+        public final int    action;
+        public ParsedAction(String value, int action) {
+            this.value  = value;
+            this.action = action;
+        }
+        public boolean isValue(String value) {
+            return this.value.equals(value);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Future EventDate timestamp check
 
@@ -350,43 +371,45 @@ public class Device // Asset
     public static final int FUTURE_DATE_DISABLED    = 0;
     public static final int FUTURE_DATE_TRUNCATE    = 1;
 
-    private static int  FutureEventDateAction = FUTURE_DATE_UNDEFINED;
+    private static final RTConfig.Key KEY_futureDate_action     = RTConfig.key(DBConfig.PROP_Device_futureDate_action);
+    private static final RTConfig.Key KEY_futureDate_maximumSec = RTConfig.key(DBConfig.PROP_Device_futureDate_maximumSec);
+
+    private static volatile ParsedAction FutureEventDateAction = null;
     public static int futureEventDateAction()
     {
-        // TODO: synchronize?
-        if (FutureEventDateAction == FUTURE_DATE_UNDEFINED) {
-            // "Device.futureDate.action="
-            String act = RTConfig.getString(DBConfig.PROP_Device_futureDate_action,"");
+        // "Device.futureDate.action="
+        String act = KEY_futureDate_action.asString("");
+        ParsedAction parsed = FutureEventDateAction;
+        if ((parsed == null) || !parsed.isValue(act)) {
+            // (re)parse only when the property value changes
+            int action;
             if (act.equalsIgnoreCase("ignore")   ||
                 act.equalsIgnoreCase("skip")     ||
                 act.equalsIgnoreCase("-1")         ) {
-                FutureEventDateAction = FUTURE_DATE_IGNORE;
+                action = FUTURE_DATE_IGNORE;
             } else
             if (act.equalsIgnoreCase("truncate") ||
                 act.equalsIgnoreCase("1")          ) {
-                FutureEventDateAction = FUTURE_DATE_TRUNCATE;
+                action = FUTURE_DATE_TRUNCATE;
             } else
             if (StringTools.isBlank(act)         ||
                 act.equalsIgnoreCase("disabled") ||
                 act.equalsIgnoreCase("disable")  ||
                 act.equalsIgnoreCase("0")          ) {
-                FutureEventDateAction = FUTURE_DATE_DISABLED;
+                action = FUTURE_DATE_DISABLED;
             } else {
                 Print.logError("Invalid property value %s => %s", DBConfig.PROP_Device_futureDate_action, act);
-                FutureEventDateAction = FUTURE_DATE_DISABLED;
+                action = FUTURE_DATE_DISABLED;
             }
+            parsed = new ParsedAction(act, action);
+            FutureEventDateAction = parsed;
         }
-        return FutureEventDateAction;
+        return parsed.action;
     }
 
-    private static long FutureEventDateMaxSec = -999L;
     public static long futureEventDateMaximumSec()
     {
-        // TODO: synchronize?
-        if (FutureEventDateMaxSec == -999L) {
-            FutureEventDateMaxSec = RTConfig.getLong(DBConfig.PROP_Device_futureDate_maximumSec,0L);
-        }
-        return FutureEventDateMaxSec;
+        return KEY_futureDate_maximumSec.asLong(0L);
     }
 
     // ------------------------------------------------------------------------
@@ -397,43 +420,45 @@ public class Device // Asset
     public static final int INVALID_SPEED_DISABLED    = 0;
     public static final int INVALID_SPEED_TRUNCATE    = 1;
 
-    private static int  InvalidSpeedAction = INVALID_SPEED_UNDEFINED;
+    private static final RTConfig.Key KEY_invalidSpeed_action      = RTConfig.key(DBConfig.PROP_Device_invalidSpeed_action);
+    private static final RTConfig.Key KEY_invalidSpeed_maximumKPH  = RTConfig.key(DBConfig.PROP_Device_invalidSpeed_maximumKPH);
+
+    private static volatile ParsedAction InvalidSpeedAction = null;
     public static int invalidSpeedAction()
     {
-        // TODO: synchronize?
-        if (InvalidSpeedAction == INVALID_SPEED_UNDEFINED) {
-            // "Device.invalidSpeed.action="
-            String act = RTConfig.getString(DBConfig.PROP_Device_invalidSpeed_action,"");
+        // "Device.invalidSpeed.action="
+        String act = KEY_invalidSpeed_action.asString("");
+        ParsedAction parsed = InvalidSpeedAction;
+        if ((parsed == null) || !parsed.isValue(act)) {
+            // (re)parse only when the property value changes
+            int action;
             if (act.equalsIgnoreCase("ignore")   ||
                 act.equalsIgnoreCase("skip")     ||
                 act.equalsIgnoreCase("-1")         ) {
-                InvalidSpeedAction = INVALID_SPEED_IGNORE;
+                action = INVALID_SPEED_IGNORE;
             } else
             if (act.equalsIgnoreCase("truncate") ||
                 act.equalsIgnoreCase("1")          ) {
-                InvalidSpeedAction = INVALID_SPEED_TRUNCATE;
+                action = INVALID_SPEED_TRUNCATE;
             } else
             if (StringTools.isBlank(act)         ||
                 act.equalsIgnoreCase("disabled") ||
                 act.equalsIgnoreCase("disable")  ||
                 act.equalsIgnoreCase("0")          ) {
-                InvalidSpeedAction = INVALID_SPEED_DISABLED;
+                action = INVALID_SPEED_DISABLED;
             } else {
                 Print.logError("Invalid property value %s => %s", DBConfig.PROP_Device_invalidSpeed_action, act);
-                InvalidSpeedAction = INVALID_SPEED_DISABLED;
+                action = INVALID_SPEED_DISABLED;
             }
+            parsed = new ParsedAction(act, action);
+            InvalidSpeedAction = parsed;
         }
-        return InvalidSpeedAction;
+        return parsed.action;
     }
 
-    private static double InvalidSpeedMaxKPH = -999.0;
     public static double invalidSpeedMaximumKPH()
     {
-        // TODO: synchronize?
-        if (InvalidSpeedMaxKPH <= -999.0) {
-            InvalidSpeedMaxKPH = RTConfig.getDouble(DBConfig.PROP_Device_invalidSpeed_maximumKPH,0.0);
-        }
-        return InvalidSpeedMaxKPH;
+        return KEY_invalidSpeed_maximumKPH.asDouble(0.0);
     }
 
     // ------------------------------------------------------------------------
@@ -680,6 +705,14 @@ public class Device // Asset
         public DBFactory<Device> getFactory() {
             return Device.getFactory();
         }
+        public void delete(boolean delDeps) throws DBException {
+            DeviceStateCache.discard(
+                this.getFieldValueAsString(FLD_accountID),
+                this.getFieldValueAsString(FLD_deviceID));
+            super.delete(delDeps);
+            DeviceAuthIndex.invalidate(this.getFieldValueAsString(FLD_accountID));
+            AccountStats.invalidate();
+        }
     }
 
     /* factory constructor */
@@ -2759,7 +2792,7 @@ public class Device // Asset
     /**
     *** Insert event into EventData table
     *** @param evdb  The EventData record to insert
-    *** @return True if successful, false otherwise
+    *** @return True if successful (or the event was a recently inserted duplicate), false otherwise
     **/
     public boolean insertEventData(EventData evdb)
     {
@@ -2890,6 +2923,13 @@ public class Device // Asset
             return true;
         }
 
+        /* recently inserted (retransmitted) event? */
+        if (RecentEventFilter.isDuplicate(this.getAccountID(), this.getDeviceID(), evdb.getTimestamp(), evdb.getStatusCode())) {
+            // already inserted, consume the retransmission (the device expects it to be acknowledged)
+            Print.logInfo("Duplicate EventData skipped: " + evdb.getTimestamp() + "/0x" + StringTools.toHexString(evdb.getStatusCode(),16));
+            return true;
+        }
+
         /* extended EventData record update */
         int extUpdate = EXT_UPDATE_NONE;
 
@@ -2925,26 +2965,46 @@ public class Device // Asset
         //}
 
         /* save EventData record */
-        try {
-            evdb.save(); // insert();
-            // may be re-saved after deferred reverse-geocode
-        } catch (DBException dbe) {
-            // save failed
-            Print.logError("EventData save failed: " + dbe);
-            return false;
+        EventSpool spool = EventSpool.getInstance();
+        if (this.eventBatch != null) {
+            // deferred until "endEventBatch"
+            this.eventBatch.add(evdb);
+        } else
+        if ((spool != null) && spool.isActive()) {
+            // database slow/unavailable, or earlier events still spooled (preserves event order)
+            if (!spool.spool(evdb)) {
+                RecentEventFilter.forget(this.getAccountID(), this.getDeviceID(), evdb.getTimestamp(), evdb.getStatusCode());
+                return false;
+            }
+        } else {
+            long startMS = System.currentTimeMillis();
+            try {
+                evdb.save(); // insert();
+                // may be re-saved after deferred reverse-geocode
+                if (spool != null) {
+                    spool.noteInsertTime(System.currentTimeMillis() - startMS);
+                }
+            } catch (DBException dbe) {
+                // save failed
+                if ((spool != null) && spool.spool(evdb)) {
+                    Print.logWarn("EventData save failed (spooled): " + dbe);
+                } else {
+                    Print.logError("EventData save failed: " + dbe);
+                    RecentEventFilter.forget(this.getAccountID(), this.getDeviceID(), evdb.getTimestamp(), evdb.getStatusCode());
+                    return false;
+                }
+            }
         }
 
         /* background processes */
         if (extUpdate != EXT_UPDATE_NONE) {
-            // queue for background processing
-            final int extUpd = extUpdate;
-            Runnable job = new Runnable() {
-                public void run() {
-                    Device.this._postEventInsertionProcessing(evdb, extUpd);
-                }
-            };
-            BackgroundThreadPool.run(job);
-            Print.logDebug("Address update queued for background operation");
+            if (this.eventBatch != null) {
+                // queued after the record is inserted in "endEventBatch"
+                this.eventBatchExtUpdate.put(evdb, new Integer(extUpdate));
+            } else {
+                // queue for background processing
+                this._queuePostEventInsertionProcessing(evdb, extUpdate);
+            }
         } else {
             // check event rules now and perform appropriate action if necessary
             //this.checkEventRules(evdb);
@@ -2959,6 +3019,22 @@ public class Device // Asset
 
         /* update fields to reflect this event */
         // NOTE: not yet saved!
+        this.setLastEventFields(evdb);
+
+        /* return success */
+        return true;
+
+    }
+
+    /**
+    *** Updates the Device "last" fields (last valid location, GPS timestamp, odometer, battery
+    *** and fuel levels) to reflect the specified event.  This is called by "insertEventData",
+    *** and may also be called for an event which is intentionally not stored (ie. a redundant
+    *** stationary event).  NOTE: the changed fields are not yet saved (see "updateChangedEventFields").
+    *** @param evdb  The EventData record
+    **/
+    public void setLastEventFields(EventData evdb)
+    {
         if (evdb.isValidGeoPoint()) {
             // update last valid location
             this.setLastValidLatitude(evdb.getLatitude());      // FLD_lastValidLatitude
@@ -2974,13 +3050,20 @@ public class Device // Asset
         if (evdb.getFuelLevel() > 0.0) { // EventData may not support fueldLevel
             this.setLastFuelLevel(evdb.getFuelLevel());         // FLD_lastFuelLevel
         }
-
-        /* return success */
-        return true;
-
     }
 
     /* background post-processing: address reverse-geocoding, and rule checking */
+    private void _queuePostEventInsertionProcessing(final EventData evdb, final int extUpdate)
+    {
+        Runnable job = new Runnable() {
+            public void run() {
+                Device.this._postEventInsertionProcessing(evdb, extUpdate);
+            }
+        };
+        BackgroundThreadPool.run(job);
+        Print.logDebug("Address update queued for background operation");
+    }
+
     private void _postEventInsertionProcessing(EventData evdb, int extUpdate)
     {
         Set<String> updatedEvFields = null;
@@ -3123,7 +3206,7 @@ public class Device // Asset
         if (flds != null) {
             ListTools.toSet(flds, updFields);
         }
-        this.update(updFields);
+        this._updateEventFields(updFields);
     }
 
     public void updateChangedEventFields(String... flds)
@@ -3133,7 +3216,240 @@ public class Device // Asset
         if (flds != null) {
             ListTools.toSet(flds, updFields);
         }
-        this.update(updFields);
+        this._updateEventFields(updFields);
+    }
+
+    private void _updateEventFields(Set<String> updFields)
+        throws DBException
+    {
+        if (DeviceStateCache.isEnabled()) {
+            // only the fields actually changed by this event are written
+            Set<String> deferFlds = new HashSet<String>();
+            Set<String> immedFlds = new HashSet<String>();
+            for (String fld : updFields) {
+                if ((this.changedFields == null) || !this.changedFields.contains(fld)) {
+                    // not changed since loaded/saved
+                } else
+                if (DeviceStateCache.isDeferredField(fld)) {
+                    deferFlds.add(fld);
+                } else {
+                    immedFlds.add(fld);
+                }
+            }
+            if (!deferFlds.isEmpty()) {
+                // merged in memory, written by the DeviceStateCache flush
+                DeviceStateCache.deferUpdate(this, deferFlds);
+            }
+            if (!immedFlds.isEmpty()) {
+                // fields which may also be edited by an administrator are written now
+                this.update(immedFlds);
+            }
+            this.clearChanged();
+        } else {
+            this.update(updFields);
+        }
+    }
+
+    /* fields changed since this record was loaded/saved (no initializer, may be set during construction) */
+    private Set<String> changedFields;
+
+    /* overridden to record the changed field */
+    public void setChanged(String fieldName)
+    {
+        super.setChanged(fieldName);
+        if (fieldName != null) {
+            if (this.changedFields == null) { this.changedFields = new HashSet<String>(); }
+            this.changedFields.add(fieldName);
+        }
+    }
+
+    /* overridden to clear the changed fields */
+    public void clearChanged()
+    {
+        super.clearChanged();
+        if (this.changedFields != null) {
+            this.changedFields.clear();
+        }
+    }
+
+    /* overridden to discard the cached account device counts */
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        AccountStats.invalidate();
+    }
+
+    /* overridden to discard the cached account device counts when activated/deactivated */
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        if ((this.changedFields != null) && this.changedFields.contains(FLD_isActive)) {
+            AccountStats.invalidate();
+        }
+    }
+
+    /* overridden to overlay pending (write-behind) event field values */
+    public void setAllFieldValues(ResultSet rs) 
+        throws DBException
+    {
+        super.setAllFieldValues(rs);
+        if (rs != null) {
+            DeviceStateCache.applyPending(this);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** The per-record result of an EventData batch (see "endEventBatch")
+    **/
+    public static class EventBatchResult
+    {
+        public static final int EVENT_NONE      = 0;    // not part of the batch
+        public static final int EVENT_INSERTED  = 1;
+        public static final int EVENT_SPOOLED   = 2;
+        public static final int EVENT_FAILED    = 3;
+        private Map<EventData,Integer> status = new IdentityHashMap<EventData,Integer>();
+        private int count[] = new int[4];
+        public EventBatchResult() {
+            super();
+        }
+        protected void setStatus(EventData ev, int stat) {
+            Integer prior = this.status.put(ev, new Integer(stat));
+            if (prior != null) { this.count[prior.intValue()]--; }
+            this.count[stat]++;
+        }
+        /* returns the result of the specified record (EVENT_NONE if not part of the batch) */
+        public int getStatus(EventData ev) {
+            Integer stat = this.status.get(ev);
+            return (stat != null)? stat.intValue() : EVENT_NONE;
+        }
+        public int getInsertedCount() {
+            return this.count[EVENT_INSERTED];
+        }
+        public int getSpooledCount() {
+            return this.count[EVENT_SPOOLED];
+        }
+        public int getFailedCount() {
+            return this.count[EVENT_FAILED];
+        }
+        /* returns the number of records saved (inserted or spooled) */
+        public int getSavedCount() {
+            return this.getInsertedCount() + this.getSpooledCount();
+        }
+        /* returns true if no record of the batch failed */
+        public boolean isSuccess() {
+            return (this.getFailedCount() == 0);
+        }
+    }
+
+    private java.util.List<EventData> eventBatch = null;
+    private Map<EventData,Integer>    eventBatchExtUpdate = null;
+
+    /**
+    *** Starts an EventData batch.  Until "endEventBatch" is called, EventData records
+    *** passed to "insertEventData" are validated and checked against rules as usual, but
+    *** are not saved until the end of the batch, where they are inserted with a single
+    *** multi-row insert.  "GPSEvent.updateDevice()" is also deferred to the end of the batch,
+    *** as is the background processing (ie. reverse-geocoding) of the batched records.
+    **/
+    public void startEventBatch()
+    {
+        if (this.eventBatch == null) {
+            this.eventBatch = new Vector<EventData>();
+            this.eventBatchExtUpdate = new IdentityHashMap<EventData,Integer>();
+        }
+    }
+
+    /**
+    *** Returns true if an EventData batch is currently in progress
+    *** @return True if an EventData batch is currently in progress
+    **/
+    public boolean isEventBatch()
+    {
+        return (this.eventBatch != null);
+    }
+
+    /**
+    *** Ends the current EventData batch.  All deferred EventData records are inserted (or
+    *** spooled, if an EventSpool is configured and the insert fails), and the changed Device
+    *** event fields are updated once.  Records which could be neither inserted nor spooled
+    *** are reported as failed in the returned result (the caller should not acknowledge them).
+    *** @return The per-record result of the batch
+    **/
+    public EventBatchResult endEventBatch()
+    {
+        EventBatchResult result = new EventBatchResult();
+        java.util.List<EventData> batch = this.eventBatch;
+        Map<EventData,Integer> batchExtUpdate = this.eventBatchExtUpdate;
+        this.eventBatch = null;
+        this.eventBatchExtUpdate = null;
+        if (batch == null) {
+            return result;
+        }
+
+        /* insert */
+        EventSpool spool = EventSpool.getInstance();
+        if ((spool == null) || !spool.isActive()) {
+            long startMS = System.currentTimeMillis();
+            try {
+                int count = DBRecord.insertRecords(batch);
+                if (batch.size() > 1) {
+                    Print.logInfo("EventData batch inserted: [%s/%s] %d",
+                        this.getAccountID(), this.getDeviceID(), count);
+                }
+                if (spool != null) {
+                    spool.noteInsertTime(System.currentTimeMillis() - startMS);
+                }
+                for (EventData ev : batch) {
+                    result.setStatus(ev, EventBatchResult.EVENT_INSERTED);
+                }
+            } catch (DBException dbe) {
+                // records inserted before the failure no longer have changed fields
+                Print.logError("EventData batch save failed: " + dbe);
+                for (EventData ev : batch) {
+                    if (!ev.hasChanged()) {
+                        result.setStatus(ev, EventBatchResult.EVENT_INSERTED);
+                    }
+                }
+            }
+        } else {
+            // database slow/unavailable, or earlier events still spooled (preserves event order)
+        }
+
+        /* spool (or fail) the records not inserted */
+        for (EventData ev : batch) {
+            if (result.getStatus(ev) == EventBatchResult.EVENT_INSERTED) {
+                continue;
+            } else
+            if ((spool != null) && spool.spool(ev)) {
+                result.setStatus(ev, EventBatchResult.EVENT_SPOOLED);
+            } else {
+                RecentEventFilter.forget(this.getAccountID(), this.getDeviceID(), ev.getTimestamp(), ev.getStatusCode());
+                result.setStatus(ev, EventBatchResult.EVENT_FAILED);
+            }
+        }
+        if (!result.isSuccess()) {
+            Print.logError("EventData batch: [%s/%s] %d of %d records not saved",
+                this.getAccountID(), this.getDeviceID(), result.getFailedCount(), batch.size());
+        }
+
+        /* background processing of the inserted records */
+        for (EventData ev : batch) {
+            Integer extUpd = batchExtUpdate.get(ev);
+            if ((extUpd != null) && (result.getStatus(ev) == EventBatchResult.EVENT_INSERTED)) {
+                this._queuePostEventInsertionProcessing(ev, extUpd.intValue());
+            }
+        }
+
+        /* update Device */
+        try {
+            this.updateChangedEventFields();
+        } catch (DBException dbe) {
+            Print.logException("Unable to update Device: " + this.getAccountID() + "/" + this.getDeviceID(), dbe);
+        }
+        return result;
+
     }
 
     // ------------------------------------------------------------------------
@@ -3317,6 +3633,34 @@ public class Device // Asset
 
     }
 
+    private OrderedSet<String>   statusIconKeys = null;
+    private Map<Integer,Integer> statusIconMap  = null;
+
+    /* get cached status code pushpin icon index (-1 if the status code has no icon) */
+    public int getStatusCodeIconIndex(int code, OrderedSet<String> iconKeys, BasicPrivateLabel bpl)
+    {
+
+        /* create map (reset if the icon keys have changed) */
+        if ((this.statusIconMap == null) || (this.statusIconKeys != iconKeys)) {
+            this.statusIconMap  = new HashMap<Integer,Integer>();
+            this.statusIconKeys = iconKeys;
+        }
+
+        /* already in cache */
+        Integer codeKey = new Integer(code);
+        Integer iconNdx = this.statusIconMap.get(codeKey);
+        if (iconNdx != null) {
+            return iconNdx.intValue();
+        }
+
+        /* add to cache */
+        String scIcon = StatusCode.getIconName(this, code, bpl);
+        int ndx = !StringTools.isBlank(scIcon)? EventData.getPushpinIconIndex(scIcon, iconKeys, -1) : -1;
+        this.statusIconMap.put(codeKey, new Integer(ndx));
+        return ndx;
+
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
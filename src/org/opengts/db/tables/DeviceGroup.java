@@ -110,6 +110,10 @@ public class DeviceGroup
         public DBFactory<DeviceGroup> getFactory() {
             return DeviceGroup.getFactory();
         }
+        public void delete(boolean delDeps) throws DBException {
+            super.delete(delDeps);
+            DeviceAuthIndex.invalidate(this.getFieldValueAsString(FLD_accountID));
+        }
     }
     
     /* factory constructor */
@@ -311,7 +315,11 @@ public class DeviceGroup
             return true;
         } else {
             try {
-                return DeviceGroup.exists(acctID, groupID, deviceID);
+                if (DeviceAuthIndex.isEnabled()) {
+                    return DeviceAuthIndex.isDeviceInGroup(acctID, groupID, deviceID);
+                } else {
+                    return DeviceGroup.exists(acctID, groupID, deviceID);
+                }
             } catch (DBException dbe) {
                 return false;
             }
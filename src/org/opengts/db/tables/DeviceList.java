@@ -73,6 +73,13 @@ public class DeviceList
         public DBFactory<DeviceList> getFactory() {
             return DeviceList.getFactory();
         }
+        public void delete(boolean delDeps) throws DBException {
+            super.delete(delDeps);
+            DeviceAuthIndex.deviceRemoved(
+                this.getFieldValueAsString(FLD_accountID),
+                this.getFieldValueAsString(FLD_groupID),
+                this.getFieldValueAsString(FLD_deviceID));
+        }
     }
     
     /* factory constructor */
@@ -119,6 +126,15 @@ public class DeviceList
             );
     }
 
+    // ------------------------------------------------------------------------
+
+    /* overridden to update the device authorization index */
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        DeviceAuthIndex.deviceAdded(this.getAccountID(), this.getGroupID(), this.getDeviceID());
+    }
+
     // SQL table definition above
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -596,9 +596,8 @@ public class EventData
         String dateFmt = (a != null)? a.getDateFormat()   : ((bpl != null)? bpl.getDateFormat() : BasicPrivateLabel.getDefaultDateFormat());
         String timeFmt = (a != null)? a.getTimeFormat()   : ((bpl != null)? bpl.getTimeFormat() : BasicPrivateLabel.getDefaultTimeFormat());
         TimeZone tmz   = (a != null)? a.getTimeZone(null) : DateTime.getGMTTimeZone();
-        DateTime dt    = new DateTime(this.getTimestamp(), tmz);
-        //return dt.gmtFormat(dateFmt + " " + timeFmt + " z");
-        return dt.format(dateFmt + " " + timeFmt + " z");
+        //return DateTime.format(this.getTimestamp(), DateTime.getGMTTimeZone(), dateFmt + " " + timeFmt + " z");
+        return DateTime.format(this.getTimestamp(), tmz, dateFmt + " " + timeFmt + " z");
     }
 
     /**
@@ -619,8 +618,7 @@ public class EventData
         Account a      = this.getAccount();
         String timeFmt = (a != null)? a.getTimeFormat()   : BasicPrivateLabel.getDefaultTimeFormat();
         TimeZone tmz   = (a != null)? a.getTimeZone(null) : DateTime.getGMTTimeZone();
-        DateTime dt    = new DateTime(this.getTimestamp(), tmz);
-        return dt.format(timeFmt);
+        return DateTime.format(this.getTimestamp(), tmz, timeFmt);
     }
 
     /**
@@ -2536,13 +2534,22 @@ public class EventData
         /* device map? - statusCode icon name */
         if (!isFleet) {
             // custom statusCode pushpins override the 'iconSelector'
-            String scIcon = this.getStatusCodeIconName(bpl);
-            if (!StringTools.isBlank(scIcon)) {
-                int iconNdx = EventData.getPushpinIconIndex(scIcon, iconKeys, -1);
+            Device dev = this.getDevice();
+            if (dev != null) {
+                // cached per Device/StatusCode
+                int iconNdx = dev.getStatusCodeIconIndex(this.getStatusCode(), iconKeys, bpl);
                 if (iconNdx >= 0) {
-                    //Print.logInfo("Device '" + this.getDeviceID() + "' - pushpin " + iconNdx);
                     return iconNdx;
                 }
+            } else {
+                String scIcon = this.getStatusCodeIconName(bpl);
+                if (!StringTools.isBlank(scIcon)) {
+                    int iconNdx = EventData.getPushpinIconIndex(scIcon, iconKeys, -1);
+                    if (iconNdx >= 0) {
+                        //Print.logInfo("Device '" + this.getDeviceID() + "' - pushpin " + iconNdx);
+                        return iconNdx;
+                    }
+                }
             }
         }
 
@@ -3117,6 +3124,101 @@ public class EventData
 
     }
 
+    /* range event selector which selects each block relative to the last record retrieved */
+    private static class KeysetRangeSelector
+        extends DBSelect<EventData>
+    {
+        private String  acctId    = null;
+        private String  devId     = null;
+        private long    timeStart = -1L;
+        private long    timeEnd   = -1L;
+        private boolean validGPS  = false;
+        public KeysetRangeSelector(String acctId, String devId, long timeStart, long timeEnd, boolean validGPS) {
+            super(EventData.getFactory());
+            this.acctId    = acctId;
+            this.devId     = devId;
+            this.timeStart = timeStart;
+            this.timeEnd   = timeEnd;
+            this.validGPS  = validGPS;
+            this.setOrderByFields(FLD_timestamp, FLD_statusCode);
+            this.setOrderAscending(true);
+            this.setAfterKey(-1L, 0);
+        }
+        public void setAfterKey(long timestamp, int statusCode) {
+            // AND ( (timestamp>T) OR ((timestamp=T) AND (statusCode>S)) )
+            String after = null;
+            if (timestamp >= 0L) {
+                DBWhere dwh = new DBWhere(EventData.getFactory());
+                after = dwh.OR(
+                    dwh.GT(FLD_timestamp, timestamp),
+                    dwh.AND(dwh.EQ(FLD_timestamp,timestamp), dwh.GT(FLD_statusCode,statusCode))
+                );
+            }
+            this.setWhere(EventData.getWhereClause(
+                this.acctId, this.devId,
+                this.timeStart, this.timeEnd,
+                null/*statCode[]*/,
+                this.validGPS,
+                after));
+        }
+        public boolean supportsLastRecordKey() {
+            return true;
+        }
+        public void setLastRecordKey(DBRecordKey<EventData> rcdKey) {
+            if (rcdKey != null) { // otherwise leave the initial key as-is
+                Object ts = rcdKey.getFieldValue(FLD_timestamp);
+                Object sc = rcdKey.getFieldValue(FLD_statusCode);
+                this.setAfterKey(
+                    (ts instanceof Number)? ((Number)ts).longValue() : 0L,
+                    (sc instanceof Number)? ((Number)sc).intValue()  : 0);
+            }
+        }
+    }
+
+    /**
+    *** Returns an iterator over the EventData records for the specified Account/Device 
+    *** within the specified time range, in ascending timestamp/statusCode order.  Records 
+    *** are retrieved in blocks of 'blockSize', each block selected relative to the key of
+    *** the last record retrieved (keyset pagination), so the full selection is never held
+    *** in memory, and a selection may be resumed at a known timestamp/statusCode.
+    *** @param acctId          The Account ID
+    *** @param devId           The Device ID
+    *** @param timeStart       The starting time range (inclusive), or -1 for no start time
+    *** @param timeEnd         The ending time range (inclusive), or -1 for no end time
+    *** @param validGPS        True to return only events with a valid GPS location
+    *** @param afterTimestamp  Return only records following this timestamp/statusCode key,
+    ***                        or -1 to start at the beginning of the time range
+    *** @param afterStatusCode The statusCode portion of the key
+    *** @param blockSize       The number of records retrieved per block
+    *** @return The EventData record iterator, or null if the arguments are invalid
+    *** @throws DBException if the DBProvider does not support LIMIT
+    **/
+    public static DBRecordIterator<EventData> getRangeEventIterator(
+        String acctId, String devId,
+        long timeStart, long timeEnd,
+        boolean validGPS,
+        long afterTimestamp, int afterStatusCode,
+        long blockSize)
+        throws DBException
+    {
+
+        /* invalid arguments */
+        if (StringTools.isBlank(acctId) || StringTools.isBlank(devId)) {
+            return null;
+        } else
+        if ((timeStart > 0L) && (timeEnd > 0L) && (timeStart > timeEnd)) {
+            return null;
+        }
+
+        /* create iterator */
+        KeysetRangeSelector dsel = new KeysetRangeSelector(acctId, devId, timeStart, timeEnd, validGPS);
+        dsel.setAfterKey(afterTimestamp, afterStatusCode);
+        DBRecordIterator<EventData> rcdIter = new DBRecordIterator<EventData>(dsel);
+        rcdIter.setLimit(blockSize);
+        return rcdIter;
+
+    }
+
     /* return count in range of EventData records */
     public static long countRangeEvents(
         String acctId, String devId,
@@ -0,0 +1,313 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+package org.opengts.db.tables;
+
+import java.lang.*;
+import java.util.*;
+import java.math.*;
+import java.io.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+public class SessionStatsBucket
+    extends DeviceRecord<SessionStatsBucket>
+{
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // SQL table definition below
+
+    /* table name */
+    public static final String _TABLE_NAME              = "SessionStatsBucket";
+    public static String TABLE_NAME() { return DBProvider._translateTableName(_TABLE_NAME); }
+
+    /* field definition */
+    public static final String FLD_bucketTime           = "bucketTime";
+    public static final String FLD_intervalSec          = "intervalSec";
+    public static final String FLD_ipAddress            = "ipAddress";
+    public static final String FLD_bytesRead            = "bytesRead";
+    public static final String FLD_bytesWritten         = "bytesWritten";
+    public static final String FLD_eventsRecv           = "eventsRecv";
+    public static final String FLD_tcpConnections       = "tcpConnections";
+    public static final String FLD_udpConnections       = "udpConnections";
+    private static DBField FieldInfo[] = {
+        // SessionStatsBucket fields
+        newField_accountID(true),
+        newField_deviceID(true),
+        new DBField(FLD_bucketTime      , Long.TYPE     , DBField.TYPE_UINT32     , "Interval Start Time"   , "key=true format=time"),
+        new DBField(FLD_intervalSec     , Long.TYPE     , DBField.TYPE_UINT32     , "Interval Seconds"      , ""),
+        new DBField(FLD_ipAddress       , String.class  , DBField.TYPE_STRING(32) , "Last IP Address"       , ""),
+        new DBField(FLD_bytesRead       , Long.TYPE     , DBField.TYPE_UINT64     , "Bytes Read"            , ""),
+        new DBField(FLD_bytesWritten    , Long.TYPE     , DBField.TYPE_UINT64     , "Bytes Written"         , ""),
+        new DBField(FLD_eventsRecv      , Long.TYPE     , DBField.TYPE_UINT32     , "Events Received"       , ""),
+        new DBField(FLD_tcpConnections  , Long.TYPE     , DBField.TYPE_UINT32     , "TCP Connections"       , ""),
+        new DBField(FLD_udpConnections  , Long.TYPE     , DBField.TYPE_UINT32     , "UDP Sessions"          , ""),
+        // Common fields
+        newField_lastUpdateTime(),
+        newField_creationTime(),
+    };
+
+    /* key class */
+    public static class Key
+        extends DeviceKey<SessionStatsBucket>
+    {
+        public Key() {
+            super();
+        }
+        public Key(String accountId, String deviceId, long bucketTime) {
+            super.setFieldValue(FLD_accountID , ((accountId != null)? accountId.toLowerCase() : ""));
+            super.setFieldValue(FLD_deviceID  , ((deviceId  != null)? deviceId .toLowerCase() : ""));
+            super.setFieldValue(FLD_bucketTime, bucketTime);
+        }
+        public DBFactory<SessionStatsBucket> getFactory() {
+            return SessionStatsBucket.getFactory();
+        }
+    }
+
+    /* factory constructor */
+    private static DBFactory<SessionStatsBucket> factory = null;
+    public static DBFactory<SessionStatsBucket> getFactory()
+    {
+        if (factory == null) {
+            factory = DBFactory.createDBFactory(
+                SessionStatsBucket.TABLE_NAME(),
+                SessionStatsBucket.FieldInfo,
+                DBFactory.KeyType.PRIMARY,
+                SessionStatsBucket.class,
+                SessionStatsBucket.Key.class,
+                false/*editable*/, false/*viewable*/);
+            factory.addParentTable(Account.TABLE_NAME());
+            factory.addParentTable(Device.TABLE_NAME());
+        }
+        return factory;
+    }
+
+    /* Bean instance */
+    public SessionStatsBucket()
+    {
+        super();
+    }
+
+    /* database record */
+    public SessionStatsBucket(SessionStatsBucket.Key key)
+    {
+        super(key);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* table description */
+    public static String getTableDescription(Locale loc)
+    {
+        I18N i18n = I18N.getI18N(SessionStatsBucket.class, loc);
+        return i18n.getString("SessionStatsBucket.description",
+            "This table contains " +
+            "the Device communication session statistics (bytes, events, connections), " +
+            "aggregated over fixed time intervals."
+            );
+    }
+
+    // SQL table definition above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Bean access fields below
+
+    public long getBucketTime()
+    {
+        Long v = (Long)this.getFieldValue(FLD_bucketTime);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    private void setBucketTime(long v)
+    {
+        this.setFieldValue(FLD_bucketTime, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getIntervalSec()
+    {
+        Long v = (Long)this.getFieldValue(FLD_intervalSec);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setIntervalSec(long v)
+    {
+        this.setFieldValue(FLD_intervalSec, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public String getIpAddress()
+    {
+        String v = (String)this.getFieldValue(FLD_ipAddress);
+        return StringTools.trim(v);
+    }
+
+    public void setIpAddress(String v)
+    {
+        this.setFieldValue(FLD_ipAddress, StringTools.trim(v));
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getBytesRead()
+    {
+        Long v = (Long)this.getFieldValue(FLD_bytesRead);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setBytesRead(long v)
+    {
+        this.setFieldValue(FLD_bytesRead, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getBytesWritten()
+    {
+        Long v = (Long)this.getFieldValue(FLD_bytesWritten);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setBytesWritten(long v)
+    {
+        this.setFieldValue(FLD_bytesWritten, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getEventsRecv()
+    {
+        Long v = (Long)this.getFieldValue(FLD_eventsRecv);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setEventsRecv(long v)
+    {
+        this.setFieldValue(FLD_eventsRecv, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getTcpConnections()
+    {
+        Long v = (Long)this.getFieldValue(FLD_tcpConnections);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setTcpConnections(long v)
+    {
+        this.setFieldValue(FLD_tcpConnections, v);
+    }
+
+    // ------------------------------------------------------------------------
+
+    public long getUdpConnections()
+    {
+        Long v = (Long)this.getFieldValue(FLD_udpConnections);
+        return (v != null)? v.longValue() : 0L;
+    }
+
+    public void setUdpConnections(long v)
+    {
+        this.setFieldValue(FLD_udpConnections, v);
+    }
+
+    // Bean access fields above
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    public String toString()
+    {
+        return this.getAccountID() + "/" + this.getDeviceID() + "/" + this.getBucketTime();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* overridden to set default values */
+    public void setCreationDefaultValues()
+    {
+        //super.setRuntimeDefaultValues();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* get (or create) the SessionStatsBucket record for the specified interval */
+    public static SessionStatsBucket getSessionStatsBucket(String acctID, String devID, long bucketTime, boolean create)
+        throws DBException
+    {
+        if (StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            return null;
+        }
+        SessionStatsBucket.Key key = new SessionStatsBucket.Key(acctID, devID, bucketTime);
+        if (key.exists()) { // may throw DBException
+            return key.getDBRecord(true);
+        } else
+        if (create) {
+            SessionStatsBucket ssb = key.getDBRecord();
+            ssb.setCreationDefaultValues();
+            return ssb;
+        } else {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the summed values of the specified fields for the specified device/time-range */
+    public static long[] getIntervalTotals(String acctID, String devID, long timeStart, long timeEnd, String fields[])
+        throws DBException
+    {
+        DBWhere dwh = new DBWhere(SessionStatsBucket.getFactory());
+        StringBuffer wh = new StringBuffer();
+        wh.append(dwh.EQ(FLD_accountID,acctID));
+        wh.append(dwh.AND_(dwh.EQ(FLD_deviceID,devID)));
+        if (timeStart > 0L) {
+            wh.append(dwh.AND_(dwh.GE(FLD_bucketTime,timeStart)));
+        }
+        if ((timeEnd > 0L) && (timeEnd >= timeStart)) {
+            wh.append(dwh.AND_(dwh.LE(FLD_bucketTime,timeEnd)));
+        }
+        String sumFields[] = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            sumFields[i] = DBProvider.FLD_SUM(fields[i]);
+        }
+        Map<String,long[]> aggr = SessionStatsBucket.getFactory().getGroupedAggregates(
+            FLD_deviceID, sumFields, dwh.WHERE(wh.toString()));
+        long tot[] = aggr.get(devID.toLowerCase());
+        return (tot != null)? tot : new long[fields.length];
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv,true);
+    }
+
+}
@@ -101,6 +101,10 @@ public class StatusCode
         public DBFactory<StatusCode> getFactory() {
             return StatusCode.getFactory();
         }
+        public void delete(boolean delDeps) throws DBException {
+            super.delete(delDeps);
+            StatusCode.invalidateCache(this.getFieldValueAsString(FLD_accountID));
+        }
     }
     
     /* factory constructor */
@@ -221,6 +225,22 @@ public class StatusCode
 
     // ------------------------------------------------------------------------
 
+    /* overridden to discard the cached account StatusCodes */
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        StatusCode.invalidateCache(this.getAccountID());
+    }
+
+    /* overridden to discard the cached account StatusCodes */
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        StatusCode.invalidateCache(this.getAccountID());
+    }
+
+    // ------------------------------------------------------------------------
+
     /* overridden to set default values */
     public void setCreationDefaultValues()
     {
@@ -235,10 +255,146 @@ public class StatusCode
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+    // Account StatusCode cache
+    // The StatusCode records for an account are loaded with a single query, and are held
+    // in memory until a StatusCode record for the account is inserted/updated/deleted within
+    // this JVM, or until "db.statusCodeCache.refreshSec" seconds have elapsed (to pick up
+    // changes made by other processes).  Rendering a large report/map then resolves each
+    // distinct Device/StatusCode pair without a database query.  The cached StatusCode 
+    // records are shared and must not be modified.
+
+    private static final RTConfig.Key KEY_cacheRefreshSec = RTConfig.key(DBConfig.PROP_db_statusCodeCache_refreshSec);
+
+    /* cached StatusCodes for a single account */
+    private static class AccountCodes
+    {
+        public long                   loadTimeMS = 0L;
+        public Map<String,StatusCode> codeMap    = new HashMap<String,StatusCode>();
+        public AccountCodes() {
+            this.loadTimeMS = System.currentTimeMillis();
+        }
+    }
+
+    private static Map<String,AccountCodes> accountCodesMap = new HashMap<String,AccountCodes>();
+    private static long                     invalidateCount = 0L;
+
+    /* cached StatusCode map key */
+    private static String _codeKey(String deviceID, int statusCode)
+    {
+        return deviceID + "/" + statusCode;
+    }
+
+    /**
+    *** Returns true if the account StatusCode cache is enabled
+    *** @return True if the account StatusCode cache is enabled
+    **/
+    public static boolean isCacheEnabled()
+    {
+        return (KEY_cacheRefreshSec.asLong(60L) > 0L);
+    }
+
+    /**
+    *** Discards the cached StatusCodes for the specified account
+    *** @param accountID  The Account ID
+    **/
+    public static void invalidateCache(String accountID)
+    {
+        if (accountID != null) {
+            synchronized (accountCodesMap) {
+                accountCodesMap.remove(accountID.toLowerCase());
+                StatusCode.invalidateCount++;
+            }
+        }
+    }
+
+    /* return the cached StatusCode for the specified account/device/code */
+    private static StatusCode _getCachedStatusCode(String accountID, String deviceID, int statusCode)
+        throws DBException
+    {
+        String codeKey = StatusCode._codeKey(deviceID,statusCode);
+
+        /* check cache */
+        long startCount;
+        synchronized (accountCodesMap) {
+            long refreshMS = KEY_cacheRefreshSec.asLong(60L) * 1000L;
+            AccountCodes ac = accountCodesMap.get(accountID);
+            if ((ac != null) && ((System.currentTimeMillis() - ac.loadTimeMS) <= refreshMS)) {
+                return ac.codeMap.get(codeKey);
+            }
+            startCount = StatusCode.invalidateCount;
+        }
+
+        /* load account StatusCodes (not synchronized) */
+        // DBSelect: SELECT * FROM StatusCode WHERE (accountID='acct')
+        DBSelect<StatusCode> dsel = new DBSelect<StatusCode>(StatusCode.getFactory());
+        DBWhere dwh = dsel.createDBWhere();
+        dsel.setWhere(dwh.WHERE(dwh.EQ(FLD_accountID,accountID)));
+        StatusCode codes[] = DBRecord.select(dsel); // may throw DBException
+        AccountCodes ac = new AccountCodes();
+        if (codes != null) {
+            for (StatusCode sc : codes) {
+                String devID = sc.getDeviceID().toLowerCase();
+                ac.codeMap.put(StatusCode._codeKey(devID,sc.getStatusCode()), sc);
+            }
+        }
+
+        /* publish (unless invalidated while loading) */
+        synchronized (accountCodesMap) {
+            if (StatusCode.invalidateCount == startCount) {
+                accountCodesMap.put(accountID, ac);
+            }
+        }
+        return ac.codeMap.get(codeKey);
+    }
+
+    /* return StatusCode (from the account StatusCode cache) */
+    private static StatusCode _findCachedStatusCode(String accountID, String deviceID, int statusCode)
+        throws DBException
+    {
+
+        /* check account status codes */
+        if (!StringTools.isBlank(accountID)) {
+            String acctID = accountID.toLowerCase();
+            if (!StringTools.isBlank(deviceID)) {
+                StatusCode code = StatusCode._getCachedStatusCode(acctID, deviceID.toLowerCase(), statusCode);
+                if (code != null) {
+                    return code;
+                }
+            }
+            StatusCode code = StatusCode._getCachedStatusCode(acctID, ALL_DEVICES, statusCode);
+            if (code != null) {
+                return code;
+            }
+        }
+
+        /* check global status codes */
+        String sysAdmin = AccountRecord.getSystemAdminAccountID();
+        if (!StringTools.isBlank(sysAdmin)) {
+            return StatusCode._getCachedStatusCode(sysAdmin.toLowerCase(), ALL_DEVICES, statusCode);
+        }
+
+        /* not found */
+        return null;
+
+    }
+
+    // ------------------------------------------------------------------------
+
     /* return StatusCode */
     public static StatusCode findStatusCode(String accountID, String deviceID, int statusCode)
     {
 
+        /* cached account status codes */
+        if (StatusCode.isCacheEnabled()) {
+            try {
+                return StatusCode._findCachedStatusCode(accountID, deviceID, statusCode);
+            } catch (DBException dbe) {
+                Print.logException("Loading account StatusCodes", dbe);
+                // continue below
+            }
+        }
+
         /* check account status codes */
         if (!StringTools.isBlank(accountID)) {
 
@@ -1021,6 +1021,17 @@ public class User
             java.util.List<String> groupList = this.getDeviceGroups(false/*refresh*/);
             if (ListTools.isEmpty(groupList)) {
                 return this.getDefaultDeviceAuthorization();
+            } else
+            if (DeviceAuthIndex.isEnabled()) {
+                // check combined group membership bitmap
+                if (this.isDeviceGroupAll()) {
+                    return true;
+                } else
+                if (DeviceAuthIndex.isDeviceInGroups(this.getAccountID(), this.getUserID(), groupList, deviceID)) {
+                    return true;
+                }
+                Print.logInfo("Not authorized device for user '%s': %s", this.getUserID(), deviceID);
+                return false;
             } else {
                 for (String groupID : groupList) {
                     // authorized if the device exists in the DeviceGroup (DeviceList)
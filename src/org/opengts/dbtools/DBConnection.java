@@ -953,6 +953,43 @@ public class DBConnection
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Execute the specified list of SQL updates as a single JDBC batch
+    *** @param sqlList  The list of SQL update statements to execute
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public void executeBatch(java.util.List<String> sqlList)
+        throws SQLException, DBException
+    {
+        if (ListTools.isEmpty(sqlList)) {
+            return;
+        }
+        if (ShowExecutedSQL) { 
+            Print.logInfo("SQL: [batch of " + sqlList.size() + "] " + sqlList.get(0)); 
+        }
+        Statement stmt = null;
+        try {
+            LastSQLExecuted = sqlList.get(sqlList.size() - 1);
+            stmt = this.createStatement();
+            for (String sql : sqlList) {
+                stmt.addBatch(sql);
+            }
+            stmt.executeBatch();
+        } catch (SQLException sqe) {
+            if (StringTools.className(sqe).equals("com.mysql.jdbc.CommunicationsException")) {
+                // MySQL: can occur if the server is not running, or server can't be found
+                throw new DBException("JDBC Error", sqe);
+            } else {
+                throw sqe;
+            }
+        } finally {
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     /** 
     *** DEBUG: Main entry point used for testing/debugging
     *** @param argv  The command-line arguments
@@ -3012,6 +3012,60 @@ public class DBFactory<gDBR extends DBRecord>
 
     }
 
+    /**
+    *** Returns the specified aggregate values for each distinct value of the group-by field,
+    *** using a single grouped selection:<br>
+    *** <code>SELECT groupField,aggrField,... FROM table WHERE ... GROUP BY groupField</code>
+    *** @param groupField  The group-by field name
+    *** @param aggrFields  The aggregate fields (ie. "DBProvider.FLD_COUNT()", 
+    ***                    "DBProvider.FLD_SUM(field)", "DBProvider.FLD_MAX(field)")
+    *** @param where       The 'where' selection clause (may be null/blank)
+    *** @return A map of group-by field values to the aggregate values (in the order specified)
+    *** @throws DBException   If a database error occurs
+    **/
+    public Map<String,long[]> getGroupedAggregates(String groupField, String aggrFields[], String where)
+        throws DBException
+    {
+
+        /* select */
+        // DBSelect: SELECT groupField,COUNT(*),SUM(field),... FROM table WHERE ... GROUP BY groupField ORDER BY groupField
+        DBSelect<gDBR> dsel = new DBSelect<gDBR>(this);
+        String selFields[] = new String[aggrFields.length + 1];
+        selFields[0] = groupField;
+        System.arraycopy(aggrFields, 0, selFields, 1, aggrFields.length);
+        dsel.setSelectedFields(selFields);
+        dsel.setWhere(where);
+        dsel.setGroupByFields(groupField);
+        dsel.setOrderByFields(groupField);
+
+        /* read values */
+        Map<String,long[]> valMap = new OrderedMap<String,long[]>();
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String grp = rs.getString(1); // indexes start at '1'
+                long val[] = new long[aggrFields.length];
+                for (int i = 0; i < val.length; i++) {
+                    val[i] = rs.getLong(i + 2); // SQL 'NULL' is returned as '0'
+                }
+                valMap.put(StringTools.trim(grp), val);
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Grouped aggregate select", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        return valMap;
+
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
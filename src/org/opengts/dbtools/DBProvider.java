@@ -103,6 +103,10 @@ public class DBProvider
     private static final String     FLD_sum_                = "SUM";
     public static String FLD_SUM(String col) { return "SUM(" + col + ")"; }
 
+    // MySQL: "MAX(<column>)", "MIN(<column>)"
+    public static String FLD_MAX(String col) { return "MAX(" + col + ")"; }
+    public static String FLD_MIN(String col) { return "MIN(" + col + ")"; }
+
     // ------------------------------------------------------------------------
 
     public static final String      TYPE_UNKNOWN            = "UNKNOWN";
@@ -1884,6 +1888,94 @@ public class DBProvider
         
     }
     
+    /**
+    *** Insert a list of records into a table using a single multi-row "INSERT" statement.<br>
+    *** All records must belong to the same table.  Tables with an 'auto_increment' field
+    *** are not supported (false is returned and nothing is inserted, in which case the caller
+    *** should fall back to "insertRecordIntoTable").
+    *** @param recs  The list of records to insert
+    *** @return True if the records were inserted, false if this table does not support a
+    ***         multi-row insert.
+    *** @throws SQLException  If an SQL error occurs (ie. a duplicate key in any of the records)
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean insertRecordsIntoTable(java.util.List<? extends DBRecord> recs)
+        throws SQLException, DBException
+    {
+
+        /* nothing to insert? */
+        if (ListTools.isEmpty(recs)) {
+            return false;
+        }
+
+        /* columns (from first record) */
+        // MySQL:      INSERT INTO <table> (<column>,...) VALUES (<value>,...),(<value>,...),...
+        // SQLServer:  (2008 and later)
+        // Derby:      INSERT INTO <table> (<column>,...) VALUES (<value>,...),(<value>,...),...
+        // PostgreSQL: INSERT INTO <table> (<column>,...) VALUES (<value>,...),(<value>,...),...
+        DBRecordKey  recKey   = recs.get(0).getRecordKey();
+        String tableName      = recKey.getTableName();
+        DBFactory recFact     = recKey.getFactory();
+        Map existingColumns   = recFact.getExistingColumnMap(false);
+        DBField field[]       = recKey.getFields();
+        java.util.List<DBField> insFields = new Vector<DBField>();
+        for (int i = 0; i < field.length; i++) {
+            String fldName = field[i].getName();
+            String xFldName = DBProvider.translateColumnName(fldName);
+            if (field[i].isAutoIncrement()) {
+                // the auto_increment value must be returned for each record
+                return false;
+            }
+            if ((existingColumns == null) || existingColumns.containsKey(xFldName)) {
+                insFields.add(field[i]);
+            } else {
+                // ignore non-existant columns
+                Print.logWarn("Field does not exist: " + tableName + "." + fldName + " [ignored]");
+            }
+        }
+        if (insFields.isEmpty()) {
+            Print.logInfo("Nothing was inserted!!! [" + tableName + "]");
+            return false;
+        }
+
+        /* insert */
+        StringBuffer sb = new StringBuffer();
+        sb.append("INSERT INTO ").append(recKey.getTranslateTableName());
+        sb.append(" (");
+        for (int f = 0; f < insFields.size(); f++) {
+            if (f > 0) { sb.append(","); }
+            sb.append(insFields.get(f).getName());
+        }
+        sb.append(") VALUES ");
+        for (int r = 0; r < recs.size(); r++) {
+            DBRecordKey   rk          = recs.get(r).getRecordKey();
+            DBFieldValues fieldValues = rk.getFieldValues();
+            if (!rk.getTableName().equals(tableName)) {
+                throw new DBException("Mixed tables in multi-row insert: " + tableName + "/" + rk.getTableName());
+            }
+            if (r > 0) { sb.append(","); }
+            sb.append("(");
+            for (int f = 0; f < insFields.size(); f++) {
+                DBField fld = insFields.get(f);
+                if (f > 0) { sb.append(","); }
+                Object fldVal = fieldValues.getFieldValue(fld.getName(),true);
+                sb.append(fld.getQValue(fldVal));
+            }
+            sb.append(")");
+        }
+
+        /* execute */
+        DBConnection dbc = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            dbc.executeUpdate(sb.toString());
+        } finally {
+            DBConnection.release(dbc);
+        }
+        return true;
+
+    }
+
     /**
     *** Assemble an update statement (and execute) for the specified record and
     *** array of fields to update
@@ -1924,6 +2016,68 @@ public class DBProvider
     **/
     public static boolean updateRecordInTable(DBRecord rec, Set<String> updFldSet)
         throws SQLException, DBException
+    {
+        String sql = DBProvider._getUpdateSQL(rec, updFldSet);
+        if (sql != null) {
+            DBConnection dbc = null;
+            try {
+                dbc = DBConnection.getDefaultConnection();
+                dbc.executeUpdate(sql);
+            } finally {
+                DBConnection.release(dbc);
+            }
+            return true;
+        } else {
+            Print.logInfo("Nothing was updated!!! [" + rec.getRecordKey().getTableName() + "]");
+            return false;
+        }
+    }
+
+    /**
+    *** Assemble update statements for the specified list of records, and execute them as a 
+    *** single JDBC batch
+    *** @param recs      The list of records to update
+    *** @param updFldSet The set of fields to update (null to update all fields)
+    *** @return The number of records updated
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public static int updateRecordsInTable(java.util.List<? extends DBRecord> recs, Set<String> updFldSet)
+        throws SQLException, DBException
+    {
+
+        /* nothing to update? */
+        if (ListTools.isEmpty(recs)) {
+            return 0;
+        }
+
+        /* update statements */
+        java.util.List<String> sqlList = new Vector<String>();
+        for (DBRecord rec : recs) {
+            String sql = DBProvider._getUpdateSQL(rec, updFldSet);
+            if (sql != null) {
+                sqlList.add(sql);
+            }
+        }
+        if (sqlList.isEmpty()) {
+            return 0;
+        }
+
+        /* execute */
+        DBConnection dbc = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            dbc.executeBatch(sqlList);
+        } finally {
+            DBConnection.release(dbc);
+        }
+        return sqlList.size();
+
+    }
+
+    /* return update statement for the specified record, or null if there is nothing to update */
+    private static String _getUpdateSQL(DBRecord rec, Set<String> updFldSet)
+        throws DBException
     {
         DBRecordKey recKey = rec.getRecordKey();
         StringBuffer sb    = new StringBuffer();
@@ -1974,22 +2128,8 @@ public class DBProvider
 
         /* where */
         sb.append(recKey.getWhereClause(DBWhere.KEY_FULL));
+        return addedField? sb.toString() : null;
 
-        /* execute */
-        if (addedField) {
-            DBConnection dbc = null;
-            try {
-                dbc = DBConnection.getDefaultConnection();
-                dbc.executeUpdate(sb.toString());
-            } finally {
-                DBConnection.release(dbc);
-            }
-            return true;
-        } else {
-            Print.logInfo("Nothing was updated!!! [" + tableName + "]");
-            return false;
-        }
-        
     }
 
     // ------------------------------------------------------------------------
@@ -1053,6 +1053,13 @@ public abstract class DBRecord<gDBR extends DBRecord>
     public void insert()
         throws DBException
     {
+        this._insert(true);
+    }
+
+    /* insert this record ("recordWillInsert" has already been called if 'willInsert' is false) */
+    private void _insert(boolean willInsert)
+        throws DBException
+    {
 
         /* save allowed? */
         if (!this.isOkToSave()) {
@@ -1069,7 +1076,9 @@ public abstract class DBRecord<gDBR extends DBRecord>
             this.setLastUpdateUser(DBRecord.GetCurrentUser());
 
             /* insert */
-            this.recordWillInsert();
+            if (willInsert) {
+                this.recordWillInsert();
+            }
             DBProvider.insertRecordIntoTable(this);
             this.recordDidInsert();
 
@@ -1214,9 +1223,154 @@ public abstract class DBRecord<gDBR extends DBRecord>
             this.insert();      // may throw DBException
         }
     }
+
+    /**
+    *** Inserts the specified list of new records (all of which must be from the same table)
+    *** using a single multi-row "INSERT" statement.  If the multi-row insert fails (ie. one of
+    *** the records already exists), or is not supported by the table, each record is 
+    *** individually saved instead (see "save()").  "recordWillInsert" is called once for each record.
+    *** @param recs  The list of records to insert
+    *** @return The number of records saved
+    *** @throws DBException If a database error occurs (records which were saved before the
+    ***         error no longer have any changed fields)
+    **/
+    public static int insertRecords(java.util.List<? extends DBRecord> recs)
+        throws DBException
+    {
+
+        /* nothing to insert? */
+        if (ListTools.isEmpty(recs)) {
+            return 0;
+        }
+
+        /* single record */
+        if (recs.size() == 1) {
+            recs.get(0).save();
+            return 1;
+        }
+
+        /* save allowed? */
+        for (DBRecord rcd : recs) {
+            if (!rcd.isOkToSave()) {
+                throw new DBException("Update not allowed");
+            }
+        }
+
+        /* multi-row insert */
+        long nowTime = DateTime.getCurrentTimeSec();
+        String user  = DBRecord.GetCurrentUser();
+        for (DBRecord rcd : recs) {
+            rcd.setCreationTime(nowTime);
+            rcd.setLastUpdateTime(nowTime);
+            rcd.setLastUpdateUser(user);
+            rcd.recordWillInsert();
+        }
+        boolean inserted = false;
+        try {
+            inserted = DBProvider.insertRecordsIntoTable(recs);
+        } catch (SQLException sqe) {
+            // most likely a duplicate key, fall back to per-record save
+            DBRecordKey dbKey = recs.get(0).getRecordKey();
+            Print.logInfo("Multi-row insert failed [" + dbKey.getTableName() + "]: " + sqe);
+            inserted = false;
+        }
+        if (inserted) {
+            for (DBRecord rcd : recs) {
+                rcd.recordDidInsert();
+                rcd.clearChanged();
+            }
+            return recs.size();
+        }
+
+        /* per-record save ("recordWillInsert" has already been called) */
+        int count = 0;
+        for (DBRecord rcd : recs) {
+            if (rcd.getRecordKey().exists()) {
+                rcd.update();
+            } else {
+                rcd._insert(false);
+            }
+            count++;
+        }
+        return count;
+
+    }
     
     // ------------------------------------------------------------------------
 
+    /**
+    *** Updates the specified fields in each of the specified list of records, using a single
+    *** JDBC batch.  If the batch update fails, each record is individually updated instead
+    *** (see "update(Set)").
+    *** @param recs       The list of records to update
+    *** @param updFldSet  The set of fields to update (null to update all fields)
+    *** @return The number of records updated
+    *** @throws DBException If a database error occurs
+    **/
+    public static int updateRecords(java.util.List<? extends DBRecord> recs, Set<String> updFldSet)
+        throws DBException
+    {
+
+        /* nothing to update? */
+        if (ListTools.isEmpty(recs)) {
+            return 0;
+        }
+
+        /* single record */
+        if (recs.size() == 1) {
+            recs.get(0).update((updFldSet != null)? new HashSet<String>(updFldSet) : null);
+            return 1;
+        }
+
+        /* save allowed? */
+        for (DBRecord rcd : recs) {
+            if (!rcd.isOkToSave()) {
+                throw new DBException("Update not allowed");
+            }
+        }
+
+        /* batch update */
+        Set<String> fldSet = (updFldSet != null)? new HashSet<String>(updFldSet) : null;
+        long nowTime = DateTime.getCurrentTimeSec();
+        String user  = DBRecord.GetCurrentUser();
+        for (DBRecord rcd : recs) {
+            boolean updTime = rcd.setLastUpdateTime(nowTime);
+            boolean updUser = rcd.setLastUpdateUser(user);
+            if (fldSet != null) {
+                if (updTime) { fldSet.add(FLD_lastUpdateTime); }
+                if (updUser) { fldSet.add(FLD_lastUpdateUser); }
+            }
+            rcd.recordWillUpdate();
+        }
+        boolean updated = false;
+        try {
+            DBProvider.updateRecordsInTable(recs, fldSet);
+            updated = true;
+        } catch (SQLException sqe) {
+            DBRecordKey dbKey = recs.get(0).getRecordKey();
+            Print.logInfo("Batch update failed [" + dbKey.getTableName() + "]: " + sqe);
+            updated = false;
+        }
+        if (updated) {
+            for (DBRecord rcd : recs) {
+                rcd.recordDidUpdate();
+                rcd.clearChanged();
+            }
+            return recs.size();
+        }
+
+        /* per-record update */
+        int count = 0;
+        for (DBRecord rcd : recs) {
+            rcd.update((fldSet != null)? new HashSet<String>(fldSet) : null);
+            count++;
+        }
+        return count;
+
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Lock table associated with this DBRecord for writing
     *** @return True if the query was successful
@@ -34,7 +34,10 @@ import org.opengts.util.*;
 *** iterate through a selection, and thus is only supported by DB providers that support
 *** these keywords.  This method has the disadvantage that record insertions/deletions 
 *** occurring while this DBRecordIterator is in use may cause this iterator to possibly 
-*** miss some records, or produce duplicate records.
+*** miss some records, or produce duplicate records.<br>
+*** If the DBSelect supports keyset pagination (see "DBSelect.supportsLastRecordKey"), the
+*** next block is instead selected relative to the key of the last record retrieved, which
+*** does not require OFFSET support and does not degrade as the offset grows.
 **/
 
 public class DBRecordIterator<DBR extends DBRecord>
@@ -104,7 +107,7 @@ public class DBRecordIterator<DBR extends DBRecord>
             if (!this.dbSelector.supportsLimit()) {
                 throw new DBException("DB provider does not support LIMIT");
             } else
-            if (!this.dbSelector.supportsOffset()) {
+            if (!this.dbSelector.supportsLastRecordKey() && !this.dbSelector.supportsOffset()) {
                 throw new DBException("DB provider does not support OFFSET");
             }
         }
@@ -200,7 +203,9 @@ public class DBRecordIterator<DBR extends DBRecord>
         }
         
         /* offset/limit */
-        this.dbSelector.setOffset(this.offset);
+        if (!this.dbSelector.supportsLastRecordKey()) {
+            this.dbSelector.setOffset(this.offset);
+        }
         this.dbSelector.setLimit(this.limit);
         this.dbSelector.setLastRecordKey(this.lastRecordKey);
 
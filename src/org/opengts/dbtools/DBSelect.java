@@ -53,6 +53,7 @@ public class DBSelect<gDBR extends DBRecord>
     private String          selectFields[]  = null;
     private String          tableName       = null;
     private String          where           = null;
+    private String          groupByFields[] = null;
     private String          orderByFields[] = null;
     private boolean         ascending       = true; // default ascending
     private long            limit           = 0L;   // no limit
@@ -146,6 +147,9 @@ public class DBSelect<gDBR extends DBRecord>
                     } else
                     if (sf[i].equalsIgnoreCase(DBProvider.FLD_COUNT())) {
                         // ok, "COUNT(*)" allowed
+                    } else
+                    if (DBSelect._isAggregateField(fact, sf[i])) {
+                        // ok, "SUM(field)", "MAX(field)", "MIN(field)" allowed
                     } else {
                         Print.logError("DBFactory field does not exist: %s.%s", fact.getTableName(), sf[i]);
                     }
@@ -155,6 +159,22 @@ public class DBSelect<gDBR extends DBRecord>
         }
     }
 
+    /* return true if the specified selected field is an aggregate function of a factory field */
+    private static boolean _isAggregateField(DBFactory fact, String sf)
+    {
+        int p = sf.indexOf('(');
+        if ((p <= 0) || !sf.endsWith(")")) {
+            return false;
+        }
+        String func = sf.substring(0,p).trim().toUpperCase();
+        String fld  = sf.substring(p + 1, sf.length() - 1).trim();
+        if (func.equals("COUNT") || func.equals("SUM") || func.equals("MAX") || func.equals("MIN")) {
+            return fact.hasField(fld);
+        } else {
+            return false;
+        }
+    }
+
     /**
     *** Returns true if this DBSelect has selected fields defined
     *** @return True if this DBSelect has selected fields defined
@@ -273,6 +293,49 @@ public class DBSelect<gDBR extends DBRecord>
         return this.where;
     }
     
+    // ------------------------------------------------------------------------
+    // GROUP BY
+
+    /**
+    *** Sets the group-by fields.  The selected fields should then contain only the group-by
+    *** fields, and aggregate functions (ie. "DBProvider.FLD_COUNT()", "DBProvider.FLD_SUM(...)")
+    *** @param gbf The field names by which the returned results set will be grouped
+    **/
+    public void setGroupByFields(String... gbf)
+    {
+        if ((gbf == null) || (gbf.length == 0)) {
+            this.groupByFields = null;
+        } else {
+            DBFactory<gDBR> fact = this.getFactory();
+            if (fact != null) {
+                for (int i = 0; i < gbf.length; i++) {
+                    if ((gbf[i] == null) || !fact.hasField(gbf[i])) {
+                        Print.logError("DBFactory field does not exist: %s.%s", fact.getTableName(), gbf[i]);
+                    }
+                }
+            }
+            this.groupByFields = gbf;
+        }
+    }
+
+    /**
+    *** Returns true if this DBSelect has group-by fields defined
+    *** @return True if this DBSelect has group-by fields defined
+    **/
+    public boolean hasGroupByFields()
+    {
+        return (this.groupByFields != null);
+    }
+
+    /**
+    *** Gets the group-by fields
+    *** @return An array of group-by fields, or null if no group-by fields have been defined
+    **/
+    public String[] getGroupByFields()
+    {
+        return ((this.groupByFields != null) && (this.groupByFields.length > 0))? this.groupByFields : null;
+    }
+
     // ------------------------------------------------------------------------
     // ORDER BY
 
@@ -446,6 +509,18 @@ public class DBSelect<gDBR extends DBRecord>
     {
         // managed by subclasses of DBSelect
     }
+
+    /**
+    *** Returns true if this DBSelect adjusts its selection criteria based on the
+    *** last record key set by "setLastRecordKey", in which case DBRecordIterator
+    *** does not need to use an OFFSET to retrieve the next block of records.
+    *** @return True if this DBSelect supports keyset pagination
+    **/
+    public boolean supportsLastRecordKey()
+    {
+        // overridden by subclasses of DBSelect
+        return false;
+    }
     
     // ------------------------------------------------------------------------
 
@@ -507,6 +582,18 @@ public class DBSelect<gDBR extends DBRecord>
         if (this.hasWhere()) {
             sb.append(" ").append(this.getWhere());
         }
+
+        /* GROUP BY */
+        if (this.hasGroupByFields()) {
+            sb.append(" GROUP BY ");
+            String fld[] = this.getGroupByFields();
+            for (int i = 0; i < fld.length; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append(fld[i]);
+            }
+        }
         
         /* ORDER BY */
         if (this.hasOrderByFields()) {
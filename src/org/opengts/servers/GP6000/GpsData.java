@@ -2,6 +2,7 @@ package org.opengts.servers.GP6000;
 
 import java.lang.reflect.Field;
 import org.opengts.util.DateTime;
+import org.opengts.util.FieldTokenizer;
 
 /**
  *
@@ -30,28 +31,29 @@ public class GpsData {
     }
     
     public void parseString() {
-        this.date = this.hex.substring(0, 6);
-        this.time = this.hex.substring(6, 12);
-        this.fixtime = this.getFixtime(Long.parseLong(this.date), Long.parseLong(this.time));
-        String auxLat = this.hex.substring(12, 20);
-        String auxLon = this.hex.substring(20, 29);
-        this.locating = this.hexToBin(this.hex.substring(29, 30), 4);
-        this.latitude = this.parseLatitude(auxLat, (this.locating.substring(2, 3).equals("1"))?"N":"S");
-        this.longitude = this.parseLongitude(auxLon, (this.locating.substring(1, 2).equals("1"))?"E":"W");
-        this.speed = (float) (Integer.parseInt(this.hex.substring(30, 32), 16)*1.85);
-        this.heading = Integer.parseInt(this.hex.substring(32, 34), 16)*2;
-        this.fuelLevelH = Integer.parseInt(this.hex.substring(34, 36), 16);
-        if(this.hex.length()>54)
-            this.fuelLevelL = Integer.parseInt(this.hex.substring(52, 54), 16);
+        // numeric fields are parsed in-place from 'hex' (no intermediate substrings)
+        String h = this.hex;
+        this.date = h.substring(0, 6);
+        this.time = h.substring(6, 12);
+        this.fixtime = this._getUTCSeconds(FieldTokenizer.parseLong(h, 0, 6, 0L), FieldTokenizer.parseLong(h, 6, 12, 0L));
+        int loc = (int)FieldTokenizer.parseHex(h, 29, 30, 0L);
+        this.locating = this.hexToBin(h.substring(29, 30), 4);
+        this.latitude = this.parseLatitude(FieldTokenizer.parseLong(h, 12, 20, 0L), ((loc & 0x2) != 0)?"N":"S");
+        this.longitude = this.parseLongitude(FieldTokenizer.parseLong(h, 20, 29, 0L), ((loc & 0x4) != 0)?"E":"W");
+        this.speed = (float) (FieldTokenizer.parseHex(h, 30, 32, 0L)*1.85);
+        this.heading = (int)FieldTokenizer.parseHex(h, 32, 34, 0L)*2;
+        this.fuelLevelH = (int)FieldTokenizer.parseHex(h, 34, 36, 0L);
+        if(h.length()>54)
+            this.fuelLevelL = (int)FieldTokenizer.parseHex(h, 52, 54, 0L);
         else this.fuelLevelL = 0;
         this.fuelLevel = this.fuelLevelH*256 + this.fuelLevelL;
-        this.status = this.parseStatus(this.hex.substring(36, 44));
-        if(this.hex.length()>52)
-            this.mileage = Long.parseLong(this.hex.substring(44, 52), 16);
+        this.status = this.parseStatus(h.substring(36, 44));
+        if(h.length()>52)
+            this.mileage = FieldTokenizer.parseHex(h, 44, 52, 0L);
         else 
             this.mileage = (long)0;
-        if(this.hex.length()>56)
-            this.sn = Integer.parseInt(this.hex.substring(54, 56), 16);
+        if(h.length()>56)
+            this.sn = (int)FieldTokenizer.parseHex(h, 54, 56, 0L);
     }
     
     public long getFixtime(Long ddmmyy, Long hhmmss) {
@@ -157,8 +159,8 @@ public class GpsData {
         return result.toString();
     }
 
-    private double parseLatitude(String s, String d) {
-        double _lat = Double.parseDouble(s)/10000;
+    private double parseLatitude(long v, String d) {
+        double _lat = (double)v/10000;
         if (_lat < 99999.0) {
             double lat = (double)((long)_lat / 100L); // _lat is always positive here
             lat += (_lat - (lat * 100.0)) / 60.0;
@@ -168,8 +170,8 @@ public class GpsData {
         }
     }
     
-    private double parseLongitude(String s, String d) {
-        double _lon = Double.parseDouble(s)/10000;
+    private double parseLongitude(long v, String d) {
+        double _lon = (double)v/10000;
         if (_lon < 99999.0) {
             double lon = (double)((long)_lon / 100L); // _lon is always positive here
             lon += (_lon - (lon * 100.0)) / 60.0;
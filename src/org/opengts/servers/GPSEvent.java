@@ -42,6 +42,46 @@ public class GPSEvent
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** GPSEvent batch.<br>
+    *** Devices loaded while a batch is active are cached by their modem/account/device ID, 
+    *** and placed in EventData batch mode (see "Device.startEventBatch").  All deferred 
+    *** EventData records are inserted, and each Device record updated once, when the batch 
+    *** is flushed.
+    **/
+    public static class Batch
+    {
+        private OrderedMap<String,Device> devices = new OrderedMap<String,Device>();
+        public Batch() {
+            super();
+        }
+        public Device getDevice(String key) {
+            return (key != null)? this.devices.get(key) : null;
+        }
+        public void addDevice(String key, Device device) {
+            if ((key != null) && (device != null) && !this.devices.containsKey(key)) {
+                device.startEventBatch();
+                this.devices.put(key, device);
+            }
+        }
+        public int size() {
+            return this.devices.size();
+        }
+        /* ends the batch of each device, returns false if any event could not be saved */
+        public boolean flush() {
+            boolean success = true;
+            for (Device device : this.devices.values()) {
+                if (!device.endEventBatch().isSuccess()) {
+                    success = false;
+                }
+            }
+            this.devices.clear();
+            return success;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     private DCServerConfig  server          = null;
     private RTProperties    fieldValues     = null;
     
@@ -54,20 +94,55 @@ public class GPSEvent
     *** Constructor 
     **/
     public GPSEvent(DCServerConfig server, String ipAddress, int clientPort, String modemID)
+    {
+        this(server, ipAddress, clientPort, modemID, (Batch)null);
+    }
+
+    /**
+    *** Constructor 
+    *** @param batch  The active GPSEvent batch (may be null)
+    **/
+    public GPSEvent(DCServerConfig server, String ipAddress, int clientPort, String modemID, Batch batch)
     {
         this.server      = server;
         this.fieldValues = new RTProperties();
-        this._setDevice(this.loadDevice(modemID), ipAddress, clientPort);
+        Device dev = (batch != null)? batch.getDevice(modemID) : null;
+        if (dev == null) {
+            dev = this.loadDevice(modemID);
+            if (this._setDevice(dev, ipAddress, clientPort) && (batch != null)) {
+                batch.addDevice(modemID, dev);
+            }
+        } else {
+            this._setDevice(dev, ipAddress, clientPort);
+        }
     }
 
     /**
     *** Constructor 
     **/
     public GPSEvent(DCServerConfig server, String ipAddress, int clientPort, String acctID, String devID)
+    {
+        this(server, ipAddress, clientPort, acctID, devID, (Batch)null);
+    }
+
+    /**
+    *** Constructor 
+    *** @param batch  The active GPSEvent batch (may be null)
+    **/
+    public GPSEvent(DCServerConfig server, String ipAddress, int clientPort, String acctID, String devID, Batch batch)
     {
         this.server      = server;
         this.fieldValues = new RTProperties();
-        this._setDevice(this.loadDevice(acctID,devID), ipAddress, clientPort);
+        String key = (batch != null)? (acctID + "/" + devID) : null;
+        Device dev = (batch != null)? batch.getDevice(key) : null;
+        if (dev == null) {
+            dev = this.loadDevice(acctID,devID);
+            if (this._setDevice(dev, ipAddress, clientPort) && (batch != null)) {
+                batch.addDevice(key, dev);
+            }
+        } else {
+            this._setDevice(dev, ipAddress, clientPort);
+        }
     }
     
     // ------------------------------------------------------------------------
@@ -153,6 +228,11 @@ public class GPSEvent
     public boolean updateDevice()
     {
         if (this.device != null) {
+            /* deferred to end of batch? */
+            if (this.device.isEventBatch()) {
+                // updated by "Device.endEventBatch"
+                return true;
+            }
             /* save device changes */
             try {
                 // TODO: check "this.device" vs "this.dataXPort"
@@ -196,6 +276,8 @@ public class GPSEvent
         String devID        = this.device.getDeviceID();
         long   fixtime      = this.getTimestamp();
         int    statusCode   = this.getStatusCode();
+
+        /* EventData record */
         EventData.Key evKey = new EventData.Key(acctID, devID, fixtime, statusCode);
         EventData evdb      = evKey.getDBRecord();
         if (this.hasLatitude()      ) { evdb.setLatitude(      this.getLatitude());         }
@@ -209,12 +291,30 @@ public class GPSEvent
         if (this.hasOdometerKM()    ) { evdb.setOdometerKM(    this.getOdometerKM());       }
         if (this.hasSatelliteCount()) { evdb.setSatelliteCount(this.getSatelliteCount());   }
 
+        /* redundant stationary event? */
+        StationaryFilter sf = (this.server != null)? this.server.getStationaryFilter() : null;
+        double lat       = this.getLatitude();
+        double lon       = this.getLongitude();
+        double speedKPH  = this.getSpeedKPH();
+        long   inputMask = this.hasInputMask()? this.getInputMask() : -1L;
+        if ((sf != null) && sf.isRedundant(acctID, devID, fixtime, statusCode, lat, lon, speedKPH, inputMask)) {
+            Print.logInfo("Event     : [0x" + 
+                StringTools.toHexString(statusCode,16) + "] stationary (not stored)");
+            // not stored, but the Device still reflects the latest event
+            this.device.setLastEventFields(evdb); // FLD_lastValidLatitude,FLD_lastValidLongitude,FLD_lastGPSTimestamp,FLD_lastOdometerKM
+            return true;
+        }
+
         /* insert event */
         // this will display an error if it was unable to store the event
         Print.logInfo("Event     : [0x" + 
             StringTools.toHexString(statusCode,16) + "] " + 
             StatusCodes.GetDescription(statusCode,null));
-        this.device.insertEventData(evdb); // FLD_lastValidLatitude,FLD_lastValidLongitude,FLD_lastGPSTimestamp,FLD_lastOdometerKM
+        if (this.device.insertEventData(evdb)) { // FLD_lastValidLatitude,FLD_lastValidLongitude,FLD_lastGPSTimestamp,FLD_lastOdometerKM
+            if (sf != null) {
+                sf.eventStored(acctID, devID, fixtime, statusCode, lat, lon, speedKPH, inputMask);
+            }
+        }
         this.eventTotalCount++;
         return true;
 
@@ -223,6 +323,45 @@ public class GPSEvent
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    /**
+    *** Sets the fixtime, GPS location, speed, heading, altitude, and satellite count
+    *** from the specified decoded NMEA-0183 record.  Values not present in the record
+    *** are left unchanged.
+    *** @param nmea  The decoded NMEA-0183 record
+    *** @return True if the record contains a valid GPS fix
+    **/
+    public boolean setNmeaRecord(Nmea0183Decoder.Record nmea)
+    {
+        if (nmea == null) {
+            return false;
+        }
+        if (nmea.hasFixtime()) {
+            this.setTimestamp(nmea.getFixtime());
+        }
+        if (nmea.isValidGPS()) {
+            this.setLatitude(nmea.getLatitude());
+            this.setLongitude(nmea.getLongitude());
+            if (nmea.hasSpeed()) {
+                this.setSpeedKPH(nmea.getSpeedKPH());
+            }
+            if (nmea.hasHeading()) {
+                this.setHeading(nmea.getHeading());
+            }
+            if (nmea.hasAltitude()) {
+                this.setAltitude(nmea.getAltitudeMeters());
+            }
+            if (nmea.hasField(Nmea0183.FIELD_NUMBER_SATS)) {
+                this.setSatelliteCount(nmea.getNumberOfSatellites());
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     public String getUniqueID() 
     {
         return (this.device != null)? this.device.getUniqueID() : "";
@@ -89,6 +89,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 
 import java.text.SimpleDateFormat;
 import org.opengts.util.*;
@@ -99,7 +100,8 @@ import org.opengts.db.tables.*;
 import org.opengts.servers.*;
 
 public class TrackClientPacketHandler
-        extends AbstractClientPacketHandler {
+        extends AbstractClientPacketHandler
+        implements ByteBufferPacketHandler, BatchPacketHandler {
 
     // ------------------------------------------------------------------------
     // This data parsing template contains *examples* of 2 different ASCII data formats:
@@ -226,6 +228,20 @@ public class TrackClientPacketHandler
     private String ipAddress = null;
     private int clientPort = 0;
 
+    /* reusable packet parsing buffers */
+    // These are reset for each packet received in this session, so that parsing
+    // "parseInsertRecord_ASCII_1" packets does not allocate per-field Strings.
+    private FieldTokenizer packetFields = new FieldTokenizer('|');
+    private FieldTokenizer gprmcFields = new FieldTokenizer(',');
+    private StringBuffer urlBuffer = new StringBuffer();
+    private Nmea0183Decoder nmeaDecoder = new Nmea0183Decoder();
+
+    /* packet batch */
+    // Non-null while the server is handling a batch of packets which arrived together.
+    // Devices loaded during the batch are reused for the following packets, and their
+    // EventData records are inserted (and Device record updated) once at the end of the batch.
+    private GPSEvent.Batch eventBatch = null;
+
     /* packet handler constructor */
     public TrackClientPacketHandler() {
         super();
@@ -273,6 +289,20 @@ public class TrackClientPacketHandler
 
     // ------------------------------------------------------------------------
 
+    /* callback before the first packet of a packet batch is handled */
+    public void beginPacketBatch() {
+        this.eventBatch = new GPSEvent.Batch();
+    }
+
+    /* callback after the last packet of a packet batch has been handled */
+    public boolean endPacketBatch() {
+        GPSEvent.Batch batch = this.eventBatch;
+        this.eventBatch = null;
+        return (batch != null)? batch.flush() : true;
+    }
+
+    // ------------------------------------------------------------------------
+
     /* returns true if this session is duplex (ie TCP), false if simplex (ie UDP) */
     public boolean isDuplex() {
         return this.isDuplex;
@@ -370,32 +400,37 @@ public class TrackClientPacketHandler
         // Returned UDP packets may be sent from "getHandlePacket" or "getFinalPacket".
     }
 
-    /* workhorse of the packet handler */
+    /* packet handler (legacy byte array entry point) */
     public byte[] getHandlePacket(byte pktBytes[]) {
+        return this.getHandlePacket((pktBytes != null)? ByteBuffer.wrap(pktBytes) : null);
+    }
+
+    /* workhorse of the packet handler */
+    public byte[] getHandlePacket(ByteBuffer pkt) {
 
         // After determining the length of a client packet (see method 'getActualPacketLength'),
         // this method is called with the single packet which has been read from the client.
         // It is the responsibility of this method to determine what type of packet was received
         // from the client, parse/insert any event data into the tables, and return any expected
         // response that the client may be expected in the form of a byte array.
-        if ((pktBytes != null) && (pktBytes.length > 0)) {
+        // 'pkt' may be backed by the session read buffer and is only valid during this call.
+        if ((pkt != null) && pkt.hasRemaining()) {
 
             /* (debug message) display received data packet */
-        //    Print.logInfo("Recv[HEX]: " + StringTools.toHexString(pktBytes));
-            String s = StringTools.toStringValue(pktBytes).trim(); // remove leading/trailing spaces
-        //    Print.logInfo("Recv[TXT]: " + s); // debug message
+        //    Print.logInfo("Recv[HEX]: " + StringTools.toHexString(ByteBufferPacketHandlerAdapter.getBytes(pkt)));
 
             /* parse/insert event */
             byte rtn[] = null;
             switch (DATA_FORMAT_OPTION) {
                 case 1:
-                    rtn = this.parseInsertRecord_ASCII_1(s, pktBytes);
+                    // parsed in-place from the packet buffer
+                    rtn = this.parseInsertRecord_ASCII_1(this.packetFields.reset(pkt).trim(), pkt);
                     break;
                 case 2:
-                    rtn = this.parseInsertRecord_ASCII_2(s);
+                    rtn = this.parseInsertRecord_ASCII_2(this._toString(pkt));
                     break;
                 case 3:
-                    rtn = this.parseInsertRecord_RTProps(s);
+                    rtn = this.parseInsertRecord_RTProps(this._toString(pkt));
                     break;
                 default:
                     Print.logError("Unspecified data format");
@@ -437,6 +472,13 @@ public class TrackClientPacketHandler
 
     }
 
+    /* return the packet as a String, with leading/trailing spaces removed */
+    private String _toString(ByteBuffer pkt) {
+        String s = StringTools.toStringValue(ByteBufferPacketHandlerAdapter.getBytes(pkt)).trim();
+    //    Print.logInfo("Recv[TXT]: " + s); // debug message
+        return s;
+    }
+
     /* final packet sent to device before session is closed */
     public byte[] getFinalPacket(boolean hasError)
             throws Exception {
@@ -452,7 +494,7 @@ public class TrackClientPacketHandler
     // ------------------------------------------------------------------------
 
     /* parse and insert data record */
-    private byte[] parseInsertRecord_ASCII_1(String s, byte pktBytes[]) {
+    private byte[] parseInsertRecord_ASCII_1(FieldTokenizer fld, ByteBuffer pkt) {
         // This is an example showing how the server might parse one type of ASCII encoded data.
         // Since every device utilizes a different data format, this will likely not match the
         // format coming from your chosen device and may need some significant changes to support
@@ -476,109 +518,104 @@ public class TrackClientPacketHandler
 
          */
 
-       Print.logInfo("Parsear: " + s);
-       Print.logInfo("Largo cadena :" + s.length());
-    //    String a = StringTools.parseHex(s);
+//       Print.logInfo("Parsear: " + s);
+
         /* pre-validate */
-        if (s == null) {
+        if ((fld == null) || (fld.getSourceLength() <= 0)) {
             Print.logError("Cadena nula");
             return null;
         }
+        Print.logInfo("Largo cadena :" + fld.getSourceLength());
 
         /* parse to fields */
-        String fld[] = StringTools.parseString(s, '|');
-        String ini = fld[0].substring(0, 2);
-        String id = fld[0].substring(5, 12);
-        id = StringTools.toHexString(pktBytes, 4, 7, null).toString();
-        String IMEI = this.getImei(id);
-
-        // String com = s.substring(11, 13);
-        // byte coma[] = StringTools.parseHex(com, null);
-        // String comas = new String(coma);
-        // Print.logInfo("com: " + comas);
-        long fixtime;
-        int statusCode;
-        double latitude;
-        double longitude;
-        double speedKPH;
-        double heading;
+        // (fields are parsed in-place, no intermediate Strings are created)
+        fld.setDelimiter('|');
+        if (fld.getFieldCount() < 7) {
+            Print.logWarn("Numero invalido de campos");
+            return null;
+        }
+
+        long fixtime = 0x0;
+        int statusCode = StatusCodes.STATUS_LOCATION;
+        double latitude = 0.0;
+        double longitude = 0.0;
+        double speedKPH = 0.0;
+        double heading = 0.0;
         double altitudeM = 0.0;  //
-        String gprmcparcial;
-        String gprmccortado[];
-        String horautc;
-        String fechautc;
-        if(ini.compareTo("$$") == 0) {
-            String data = "$GPRMC,"+fld[0].substring(13, fld[0].length());
-            Print.logInfo("data: " + data);
-            Nmea0183 gprmc = new Nmea0183(data, true);
-            fixtime = gprmc.getFixtime();
-            statusCode = StatusCodes.STATUS_LOCATION;
-            latitude = gprmc.getLatitude();
-            longitude = gprmc.getLongitude();
-            speedKPH = gprmc.getSpeedKPH();
-            heading = gprmc.getHeading();
-            gprmccortado = StringTools.parseString(data, ',');
-            horautc = gprmccortado[1];
-            fechautc = gprmccortado[9];
+        FieldTokenizer gprmc = null;
+        fld.gotoField(0);
+        if (fld.fieldStartsWith("$$")) {
+            // the "$GPRMC," record header is not included in the packet, so the
+            // "$GPRMC" field indices are one less than the standard NMEA indices.
+            gprmc = this.gprmcFields.reset(fld.subField(13, fld.getFieldLength())).setDelimiter(',');
+            if (gprmc.getFieldCount() >= 9) {
+                gprmc.gotoField(0);
+                long hhmmss = gprmc.getFieldLong(0L);
+                gprmc.gotoField(8);
+                long ddmmyy = gprmc.getFieldLong(0L);
+                fixtime = Nmea0183.getUTCSeconds(ddmmyy, hhmmss);
+                gprmc.gotoField(1);
+                if (gprmc.fieldCharAt(0) != 'V') {
+                    gprmc.next(); // 2
+                    latitude  = gprmc.getFieldNmeaCoordinate(90.0);
+                    gprmc.next(); // 3
+                    if (gprmc.fieldCharAt(0) == 'S') { latitude = -latitude; }
+                    gprmc.next(); // 4
+                    longitude = gprmc.getFieldNmeaCoordinate(180.0);
+                    gprmc.next(); // 5
+                    if (gprmc.fieldCharAt(0) == 'W') { longitude = -longitude; }
+                    if (!GeoPoint.isValid(latitude,longitude)) {
+                        latitude  = 0.0;
+                        longitude = 0.0;
+                    } else {
+                        gprmc.next(); // 6
+                        speedKPH  = gprmc.getFieldDouble(-1.0) * Nmea0183.KILOMETERS_PER_KNOT;
+                        gprmc.next(); // 7
+                        heading   = gprmc.getFieldDouble(-1.0);
+                    }
+                }
+            } else {
+                Print.logWarn("Registro GPRMC invalido");
+                gprmc = null;
+            }
         } else {
             Print.logWarn("Sin senal GPS");
-            fixtime = 0x0;
-            latitude = 0.0;
-            longitude = 0.0;
-            speedKPH = 0.0;
-            heading = 0.0;
-            gprmcparcial = "";
-            gprmccortado = null;
-            horautc = "";
-            fechautc = "";
         }
-        String aa = "AA";
-        String mileage = "0";
-        String temp = "0";
-        String sa = fld[3];
-        String sd = "0";
-        if(sa.substring(0,1).compareTo("1") == 0 || sa.substring(0,1).compareTo("3") == 0) {
-            sa = sa + "1";
-        } else {
-            sa = sa + "0";
-        }
-//         String aa = fld[1].substring(0, 2);
-//         String mileage = fld[11];
-//         String temp = fld[10];
-//         String sa = fld[5];
-//         String sd = fld[8];
-//
-//
-//         /* no deviceID? */
-        // if (StringTools.isBlank(IMEI)) {
-        //     Print.logWarn("DeviceID not specified!");
-        //     return null;
-        // }
-
-        String url = "http://localhost/backend/alerta.php?"
-                + "IMEI=" + IMEI + ""
-                + "&statusCode=61472&"
-                + "fixtime=" + fixtime + ""
-                + "&horautc=" + horautc + ""
-                + "&fechautc=" + fechautc + ""
-                + "&fechafullutc=" + fld[6] + ""
-                + "&latitude=" + latitude + ""
-                + "&longitude=" + longitude + ""
-                + "&gpsAge=0"
-                + "&speedKPH=" + speedKPH + ""
-                + "&heading=" + heading + ""
-                + "&altitude=" + altitudeM + ""
-                + "&distanceKM=0"
-                + "&odometerKM=" + mileage + ""
-                + "&aa=" + aa + ""
-                + "&temp=" + temp + ""
-                + "&sa=" + sa + ""
-                + "&sd=" + sd + ""
-                + "&rawData=";
+
+        /* forward to backend */
+        StringBuffer url = this.urlBuffer;
+        url.setLength(0);
+        url.append("http://localhost/backend/alerta.php?");
+        url.append("IMEI=");
+        this._appendImei(url, pkt, 4, 7);
+        url.append("&statusCode=61472&");
+        url.append("fixtime=").append(fixtime);
+        url.append("&horautc=");
+        if (gprmc != null) { gprmc.gotoField(0); gprmc.appendField(url); }
+        url.append("&fechautc=");
+        if (gprmc != null) { gprmc.gotoField(8); gprmc.appendField(url); }
+        url.append("&fechafullutc=");
+        fld.gotoField(6); fld.appendField(url);
+        url.append("&latitude=").append(latitude);
+        url.append("&longitude=").append(longitude);
+        url.append("&gpsAge=0");
+        url.append("&speedKPH=").append(speedKPH);
+        url.append("&heading=").append(heading);
+        url.append("&altitude=").append(altitudeM);
+        url.append("&distanceKM=0");
+        url.append("&odometerKM=0");
+        url.append("&aa=AA");
+        url.append("&temp=0");
+        url.append("&sa=");
+        fld.gotoField(3); fld.appendField(url);
+        int sa0 = fld.fieldCharAt(0);
+        url.append(((sa0 == '1') || (sa0 == '3'))? '1' : '0');
+        url.append("&sd=0");
+        url.append("&rawData=");
 
         Print.logInfo("Enviando :" + url);
         try {
-            lanzar(url);
+            lanzar(url.toString());
         } catch (MalformedURLException e) {
             Print.logInfo(e.getMessage());
         } catch (IOException e) {
@@ -588,6 +625,20 @@ public class TrackClientPacketHandler
 
     }
 
+    /* append the BCD encoded IMEI (excluding 'F' fill digits, and the last digit) */
+    private void _appendImei(StringBuffer sb, ByteBuffer pkt, int ofs, int len) {
+        // equivalent to "getImei(StringTools.toHexString(pktBytes, ofs, len, null))"
+        int p = pkt.position() + ofs;
+        int n = Math.min(len, pkt.limit() - p) * 2;
+        for (int i = 0; i < n - 1; i++) {
+            int b = (int)pkt.get(p + (i / 2)) & 0xFF;
+            int d = ((i & 1) == 0)? ((b >> 4) & 0xF) : (b & 0xF);
+            if (d != 0xF) {
+                sb.append(StringTools.HEX.charAt(d));
+            }
+        }
+    }
+
     public String getImei(String s) {
         String out = "";
         for (int i = 0; i < s.length() - 1; i += 1) {
@@ -775,14 +826,10 @@ public class TrackClientPacketHandler
         /* parse individual fields */
         String accountID = fld[0].toLowerCase();
         String deviceID = fld[1].toLowerCase();
-        Nmea0183 gprmc = new Nmea0183(fld[2], IGNORE_NMEA_CHECKSUM);
-        long fixtime = gprmc.getFixtime();
+        this.nmeaDecoder.setIgnoreChecksum(IGNORE_NMEA_CHECKSUM);
+        this.nmeaDecoder.decode(fld[2]);
+        Nmea0183Decoder.Record gprmc = this.nmeaDecoder.getRecord();
         int statusCode = StatusCodes.STATUS_LOCATION;
-        double latitude = gprmc.getLatitude();
-        double longitude = gprmc.getLongitude();
-        double speedKPH = gprmc.getSpeedKPH();
-        double heading = gprmc.getHeading();
-        double altitudeM = 0.0;  //
 
         /* no deviceID? */
         if (StringTools.isBlank(deviceID)) {
@@ -792,19 +839,14 @@ public class TrackClientPacketHandler
 
         /* GPS Event */
         GPSEvent gpsEvent = new GPSEvent(Main.getServerConfig(),
-                this.ipAddress, this.clientPort, accountID, deviceID);
+                this.ipAddress, this.clientPort, accountID, deviceID, this.eventBatch);
         Device device = gpsEvent.getDevice();
         if (device == null) {
             // errors already displayed
             return null;
         }
-        gpsEvent.setTimestamp(fixtime);
         gpsEvent.setStatusCode(statusCode);
-        gpsEvent.setLatitude(latitude);
-        gpsEvent.setLongitude(longitude);
-        gpsEvent.setSpeedKPH(speedKPH);
-        gpsEvent.setHeading(heading);
-        gpsEvent.setAltitude(altitudeM);
+        gpsEvent.setNmeaRecord(gprmc); // fixtime, location, speed, heading
 
         /* insert/return */
         if (this.parseInsertRecord_Common(gpsEvent)) {
@@ -917,8 +959,8 @@ public class TrackClientPacketHandler
 
         /* GPS Event */
         GPSEvent gpsEvent = hasAcctDevID
-                ? new GPSEvent(dcserver, this.ipAddress, this.clientPort, accountID, deviceID)
-                : new GPSEvent(dcserver, this.ipAddress, this.clientPort, mobileID);
+                ? new GPSEvent(dcserver, this.ipAddress, this.clientPort, accountID, deviceID, this.eventBatch)
+                : new GPSEvent(dcserver, this.ipAddress, this.clientPort, mobileID, this.eventBatch);
         Device device = gpsEvent.getDevice();
         if (device == null) {
             // errors already displayed
@@ -89,6 +89,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 
 import java.text.SimpleDateFormat;
 import org.opengts.util.*;
@@ -99,7 +100,8 @@ import org.opengts.db.tables.*;
 import org.opengts.servers.*;
 
 public class TrackClientPacketHandler
-        extends AbstractClientPacketHandler {
+        extends AbstractClientPacketHandler
+        implements ByteBufferPacketHandler, BatchPacketHandler {
 
     // ------------------------------------------------------------------------
     // This data parsing template contains *examples* of 2 different ASCII data formats:
@@ -226,6 +228,20 @@ public class TrackClientPacketHandler
     private String ipAddress = null;
     private int clientPort = 0;
 
+    /* reusable packet parsing buffers */
+    // These are reset for each packet received in this session, so that parsing
+    // "parseInsertRecord_ASCII_1" packets does not allocate per-field Strings.
+    private FieldTokenizer packetFields = new FieldTokenizer('|');
+    private FieldTokenizer gprmcFields = new FieldTokenizer(',');
+    private StringBuffer urlBuffer = new StringBuffer();
+    private Nmea0183Decoder nmeaDecoder = new Nmea0183Decoder();
+
+    /* packet batch */
+    // Non-null while the server is handling a batch of packets which arrived together.
+    // Devices loaded during the batch are reused for the following packets, and their
+    // EventData records are inserted (and Device record updated) once at the end of the batch.
+    private GPSEvent.Batch eventBatch = null;
+
     /* packet handler constructor */
     public TrackClientPacketHandler() {
         super();
@@ -273,6 +289,20 @@ public class TrackClientPacketHandler
 
     // ------------------------------------------------------------------------
 
+    /* callback before the first packet of a packet batch is handled */
+    public void beginPacketBatch() {
+        this.eventBatch = new GPSEvent.Batch();
+    }
+
+    /* callback after the last packet of a packet batch has been handled */
+    public boolean endPacketBatch() {
+        GPSEvent.Batch batch = this.eventBatch;
+        this.eventBatch = null;
+        return (batch != null)? batch.flush() : true;
+    }
+
+    // ------------------------------------------------------------------------
+
     /* returns true if this session is duplex (ie TCP), false if simplex (ie UDP) */
     public boolean isDuplex() {
         return this.isDuplex;
@@ -370,32 +400,37 @@ public class TrackClientPacketHandler
         // Returned UDP packets may be sent from "getHandlePacket" or "getFinalPacket".
     }
 
-    /* workhorse of the packet handler */
+    /* packet handler (legacy byte array entry point) */
     public byte[] getHandlePacket(byte pktBytes[]) {
+        return this.getHandlePacket((pktBytes != null)? ByteBuffer.wrap(pktBytes) : null);
+    }
+
+    /* workhorse of the packet handler */
+    public byte[] getHandlePacket(ByteBuffer pkt) {
 
         // After determining the length of a client packet (see method 'getActualPacketLength'),
         // this method is called with the single packet which has been read from the client.
         // It is the responsibility of this method to determine what type of packet was received
         // from the client, parse/insert any event data into the tables, and return any expected
         // response that the client may be expected in the form of a byte array.
-        if ((pktBytes != null) && (pktBytes.length > 0)) {
+        // 'pkt' may be backed by the session read buffer and is only valid during this call.
+        if ((pkt != null) && pkt.hasRemaining()) {
 
             /* (debug message) display received data packet */
-//            Print.logInfo("Recv[HEX]: " + StringTools.toHexString(pktBytes));
-            String s = StringTools.toStringValue(pktBytes).trim(); // remove leading/trailing spaces
-//            Print.logInfo("Recv[TXT]: " + s); // debug message
+//            Print.logInfo("Recv[HEX]: " + StringTools.toHexString(ByteBufferPacketHandlerAdapter.getBytes(pkt)));
 
             /* parse/insert event */
             byte rtn[] = null;
             switch (DATA_FORMAT_OPTION) {
                 case 1:
-                    rtn = this.parseInsertRecord_ASCII_1(s);
+                    // parsed in-place from the packet buffer
+                    rtn = this.parseInsertRecord_ASCII_1(this.packetFields.reset(pkt).trim());
                     break;
                 case 2:
-                    rtn = this.parseInsertRecord_ASCII_2(s);
+                    rtn = this.parseInsertRecord_ASCII_2(this._toString(pkt));
                     break;
                 case 3:
-                    rtn = this.parseInsertRecord_RTProps(s);
+                    rtn = this.parseInsertRecord_RTProps(this._toString(pkt));
                     break;
                 default:
                     Print.logError("Unspecified data format");
@@ -437,6 +472,13 @@ public class TrackClientPacketHandler
 
     }
 
+    /* return the packet as a String, with leading/trailing spaces removed */
+    private String _toString(ByteBuffer pkt) {
+        String s = StringTools.toStringValue(ByteBufferPacketHandlerAdapter.getBytes(pkt)).trim();
+//        Print.logInfo("Recv[TXT]: " + s); // debug message
+        return s;
+    }
+
     /* final packet sent to device before session is closed */
     public byte[] getFinalPacket(boolean hasError)
             throws Exception {
@@ -452,7 +494,7 @@ public class TrackClientPacketHandler
     // ------------------------------------------------------------------------
 
     /* parse and insert data record */
-    private byte[] parseInsertRecord_ASCII_1(String s) {
+    private byte[] parseInsertRecord_ASCII_1(FieldTokenizer fld) {
         // This is an example showing how the server might parse one type of ASCII encoded data.
         // Since every device utilizes a different data format, this will likely not match the
         // format coming from your chosen device and may need some significant changes to support
@@ -508,102 +550,113 @@ public class TrackClientPacketHandler
 //        Print.logInfo("Parsear : " + s);
 
         /* pre-validate */
-        if (s == null) {
+        if ((fld == null) || (fld.getSourceLength() <= 0)) {
             Print.logError("Cadena nula");
             return null;
         }
 
         /* parse to fields */
-        String fld[] = StringTools.parseString(s, '|');
-        if ((fld == null) || (fld.length < 14)) {
+        // (fields are parsed in-place, no intermediate Strings are created)
+        fld.setDelimiter('|');
+        if (fld.getFieldCount() < 14) {
             Print.logWarn("Numero invalido de campos");
             return null;
         }
+        Print.logInfo("Largo cadena :" + fld.getSourceLength());
+
         /* parsear campo 0 , $$, tamanno e IMEI*/
-        //String   campo0		= fld[0].toLowerCase();
-        //String   accountID  = fld[0].toLowerCase();
-        String IMEI = fld[0].substring(4, fld[0].length());
-        /* parse individual fields */
-        Print.logInfo("Largo cadena :" + s.length());
+        fld.gotoField(0);
+        fld.subField(4, fld.getFieldLength());
+        if (fld.isFieldEmpty()) {
+            Print.logWarn("DeviceID not specified!");
+            return null;
+        }
+
         /* parse individual fields */
-//        Print.logWarn("s: " + s);
-//        Print.logWarn("lala: " + fld[1]);
-        String iniGPS = fld[1].substring(2, 3);
-//        Print.logWarn("iniGPS: " + iniGPS);
-        long fixtime;
-        int statusCode;
-        double latitude;
-        double longitude;
-        double speedKPH;
-        double heading;
+        // field 1: "AA$GPRMC,102156.000,A,2232.4690,N,11403.6847,E,0.00,,180909,,*15"
+        long fixtime = 0x0;
+        int statusCode = StatusCodes.STATUS_LOCATION;
+        double latitude = 0.0;
+        double longitude = 0.0;
+        double speedKPH = 0.0;
+        double heading = 0.0;
         double altitudeM = 0.0;  //
-        String gprmcparcial;
-        String gprmccortado[];
-        String horautc;
-        String fechautc;
-        if (iniGPS.compareTo("$") == 0) {
-            Nmea0183 gprmc = new Nmea0183(fld[1].substring(2, fld[1].length() - 1), true);
-            fixtime = gprmc.getFixtime();
-            statusCode = StatusCodes.STATUS_LOCATION;
-            latitude = gprmc.getLatitude();
-            longitude = gprmc.getLongitude();
-            speedKPH = gprmc.getSpeedKPH();
-            heading = gprmc.getHeading();
-            gprmcparcial = fld[1].substring(2, fld[1].length() - 1);
-            gprmccortado = StringTools.parseString(gprmcparcial, ',');
-            horautc = gprmccortado[1];
-            fechautc = gprmccortado[9];
+        FieldTokenizer gprmc = null;
+        fld.gotoField(1);
+        if (fld.fieldCharAt(2) == '$') {
+            gprmc = this.gprmcFields.reset(fld.subField(2, -1)).setDelimiter(',');
+            if (gprmc.next() && gprmc.fieldEquals(Nmea0183.DNAME_GPRMC) && (gprmc.getFieldCount() >= 10)) {
+                gprmc.gotoField(1);
+                long hhmmss = gprmc.getFieldLong(0L);
+                gprmc.gotoField(9);
+                long ddmmyy = gprmc.getFieldLong(0L);
+                fixtime = Nmea0183.getUTCSeconds(ddmmyy, hhmmss);
+                gprmc.gotoField(2);
+                if (gprmc.fieldCharAt(0) != 'V') {
+                    gprmc.next(); // 3
+                    latitude  = gprmc.getFieldNmeaCoordinate(90.0);
+                    gprmc.next(); // 4
+                    if (gprmc.fieldCharAt(0) == 'S') { latitude = -latitude; }
+                    gprmc.next(); // 5
+                    longitude = gprmc.getFieldNmeaCoordinate(180.0);
+                    gprmc.next(); // 6
+                    if (gprmc.fieldCharAt(0) == 'W') { longitude = -longitude; }
+                    if (!GeoPoint.isValid(latitude,longitude)) {
+                        latitude  = 0.0;
+                        longitude = 0.0;
+                    } else {
+                        gprmc.next(); // 7
+                        speedKPH  = gprmc.getFieldDouble(-1.0) * Nmea0183.KILOMETERS_PER_KNOT;
+                        gprmc.next(); // 8
+                        heading   = gprmc.getFieldDouble(-1.0);
+                    }
+                }
+            } else {
+                Print.logWarn("Registro GPRMC invalido");
+                gprmc = null;
+            }
         } else {
             Print.logWarn("Sin señal GPS");
-            fixtime = 0x0;
-            latitude = 0.0;
-            longitude = 0.0;
-            speedKPH = 0.0;
-            heading = 0.0;
-            gprmcparcial = "";
-            gprmccortado = null;
-            horautc = "";
-            fechautc = "";
-        }
-            //       Nmea0183 gprmc      = new Nmea0183(fld[1].substring(2,fld[1].length()-1), IGNORE_NMEA_CHECKSUM);
-
-        String aa = fld[1].substring(0, 2);
-        String mileage = fld[11];
-        String temp = fld[10];
-        String sa = fld[5];
-        String sd = fld[8];
-
-
-        /* no deviceID? */
-        if (StringTools.isBlank(IMEI)) {
-            Print.logWarn("DeviceID not specified!");
-            return null;
         }
 
-        String url = "http://localhost/backend/alerta.php?"
-                + "IMEI=" + IMEI + ""
-                + "&statusCode=61472&"
-                + "fixtime=" + fixtime + ""
-                + "&horautc=" + horautc + ""
-                + "&fechautc=" + fechautc + ""
-                + "&fechafullutc=" + fld[6] + ""
-                + "&latitude=" + latitude + ""
-                + "&longitude=" + longitude + ""
-                + "&gpsAge=0"
-                + "&speedKPH=" + speedKPH + ""
-                + "&heading=" + heading + ""
-                + "&altitude=" + altitudeM + ""
-                + "&distanceKM=0"
-                + "&odometerKM=" + mileage + ""
-                + "&aa=" + aa + ""
-                + "&temp=" + temp + ""
-                + "&sa=" + sa + ""
-                + "&sd=" + sd + ""
-                + "&rawData=" + s;
+        /* forward to backend */
+        StringBuffer url = this.urlBuffer;
+        url.setLength(0);
+        url.append("http://localhost/backend/alerta.php?");
+        url.append("IMEI=");
+        fld.gotoField(0);
+        fld.subField(4, fld.getFieldLength()).appendField(url);
+        url.append("&statusCode=61472&");
+        url.append("fixtime=").append(fixtime);
+        url.append("&horautc=");
+        if (gprmc != null) { gprmc.gotoField(1); gprmc.appendField(url); }
+        url.append("&fechautc=");
+        if (gprmc != null) { gprmc.gotoField(9); gprmc.appendField(url); }
+        url.append("&fechafullutc=");
+        fld.gotoField(6);  fld.appendField(url);
+        url.append("&latitude=").append(latitude);
+        url.append("&longitude=").append(longitude);
+        url.append("&gpsAge=0");
+        url.append("&speedKPH=").append(speedKPH);
+        url.append("&heading=").append(heading);
+        url.append("&altitude=").append(altitudeM);
+        url.append("&distanceKM=0");
+        url.append("&odometerKM=");
+        fld.gotoField(11); fld.appendField(url);
+        url.append("&aa=");
+        fld.gotoField(1);  fld.subField(0, 2).appendField(url);
+        url.append("&temp=");
+        fld.gotoField(10); fld.appendField(url);
+        url.append("&sa=");
+        fld.gotoField(5);  fld.appendField(url);
+        url.append("&sd=");
+        fld.gotoField(8);  fld.appendField(url);
+        url.append("&rawData=");
+        fld.appendSource(url);
 
         Print.logInfo("Enviando :" + url);
         try {
-            lanzar(url);
+            lanzar(url.toString());
         } catch (MalformedURLException e) {
             Print.logInfo(e.getMessage());
         } catch (IOException e) {
@@ -771,14 +824,10 @@ public class TrackClientPacketHandler
         /* parse individual fields */
         String accountID = fld[0].toLowerCase();
         String deviceID = fld[1].toLowerCase();
-        Nmea0183 gprmc = new Nmea0183(fld[2], IGNORE_NMEA_CHECKSUM);
-        long fixtime = gprmc.getFixtime();
+        this.nmeaDecoder.setIgnoreChecksum(IGNORE_NMEA_CHECKSUM);
+        this.nmeaDecoder.decode(fld[2]);
+        Nmea0183Decoder.Record gprmc = this.nmeaDecoder.getRecord();
         int statusCode = StatusCodes.STATUS_LOCATION;
-        double latitude = gprmc.getLatitude();
-        double longitude = gprmc.getLongitude();
-        double speedKPH = gprmc.getSpeedKPH();
-        double heading = gprmc.getHeading();
-        double altitudeM = 0.0;  //
 
         /* no deviceID? */
         if (StringTools.isBlank(deviceID)) {
@@ -788,19 +837,14 @@ public class TrackClientPacketHandler
 
         /* GPS Event */
         GPSEvent gpsEvent = new GPSEvent(Main.getServerConfig(),
-                this.ipAddress, this.clientPort, accountID, deviceID);
+                this.ipAddress, this.clientPort, accountID, deviceID, this.eventBatch);
         Device device = gpsEvent.getDevice();
         if (device == null) {
             // errors already displayed
             return null;
         }
-        gpsEvent.setTimestamp(fixtime);
         gpsEvent.setStatusCode(statusCode);
-        gpsEvent.setLatitude(latitude);
-        gpsEvent.setLongitude(longitude);
-        gpsEvent.setSpeedKPH(speedKPH);
-        gpsEvent.setHeading(heading);
-        gpsEvent.setAltitude(altitudeM);
+        gpsEvent.setNmeaRecord(gprmc); // fixtime, location, speed, heading
 
         /* insert/return */
         if (this.parseInsertRecord_Common(gpsEvent)) {
@@ -913,8 +957,8 @@ public class TrackClientPacketHandler
 
         /* GPS Event */
         GPSEvent gpsEvent = hasAcctDevID
-                ? new GPSEvent(dcserver, this.ipAddress, this.clientPort, accountID, deviceID)
-                : new GPSEvent(dcserver, this.ipAddress, this.clientPort, mobileID);
+                ? new GPSEvent(dcserver, this.ipAddress, this.clientPort, accountID, deviceID, this.eventBatch)
+                : new GPSEvent(dcserver, this.ipAddress, this.clientPort, mobileID, this.eventBatch);
         Device device = gpsEvent.getDevice();
         if (device == null) {
             // errors already displayed
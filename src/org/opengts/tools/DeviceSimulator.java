@@ -0,0 +1,840 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Device simulator/load generator for the device communication servers
+// ----------------------------------------------------------------------------
+package org.opengts.tools;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.net.*;
+
+import org.opengts.util.*;
+
+/**
+*** Device simulator/load generator for the device communication servers.<br>
+*** Simulates a number of moving devices, each reporting its location at a fixed rate to a
+*** running server over TCP or UDP, using one of the following formats:
+*** <pre>
+***   gtx     - "$$..|AA$GPRMC,...|..." pipe-delimited records (template/GTX format #1)
+***   gprmc   - "account/device/$GPRMC,..." records (template/GTX format #2)
+***   rtprops - "acct=.. dev=.. ts=.. gps=lat/lon ..." records (template/GTX format #3)
+***   dmtp    - OpenDMTP binary packets (account/device ident, fixed-format events, EOB)
+*** </pre>
+*** Store-and-forward bursts (a device sending a backlog of events in one session) and
+*** reconnect storms (all devices reconnecting and reporting at the same time) may also be
+*** simulated.  Throughput, and the connect and response latency percentiles, are reported
+*** periodically and at the end of the run.<br>
+*** TCP response latency is the time from the end of the transmitted data until the server
+*** closes the session (ASCII formats), or returns the end-of-block/end-of-transmission packet
+*** (DMTP).  No response latency is available for UDP, or for persistent TCP connections.<br>
+*** The simulated devices must exist on the server (see "-account", "-device", "-imei").
+**/
+
+public class DeviceSimulator
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String PROTO_GTX               = "gtx";
+    public  static final String PROTO_GPRMC             = "gprmc";
+    public  static final String PROTO_RTPROPS           = "rtprops";
+    public  static final String PROTO_DMTP              = "dmtp";
+
+    private static final int    STATUS_LOCATION         = 0xF020; // StatusCodes.STATUS_LOCATION
+
+    private static final int    DMTP_HEADER             = 0xE0;
+    private static final int    DMTP_CLIENT_EOB_DONE    = 0x00;
+    private static final int    DMTP_CLIENT_ACCOUNT_ID  = 0x12;
+    private static final int    DMTP_CLIENT_DEVICE_ID   = 0x13;
+    private static final int    DMTP_CLIENT_FIXED_STD   = 0x30;
+    private static final int    DMTP_SERVER_EOB_DONE    = 0x00;
+    private static final int    DMTP_SERVER_EOB_SPEAK   = 0x01;
+    private static final int    DMTP_SERVER_ERROR       = 0xE0;
+    private static final int    DMTP_SERVER_EOT         = 0xFF;
+    private static final int    DMTP_EVENTS_PER_DATAGRAM = 20;
+
+    private static final int    MAX_LATENCY_MS          = 120000;
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* latency histogram (1ms resolution) */
+    private static class Latency
+    {
+        private int  count[] = new int[MAX_LATENCY_MS + 1];
+        private long total   = 0L;
+        private long maxMS   = 0L;
+        public Latency() {
+        }
+        public void add(long ms) {
+            int b = (int)Math.max(Math.min(ms, (long)MAX_LATENCY_MS), 0L);
+            this.count[b]++;
+            this.total++;
+            this.maxMS = Math.max(this.maxMS, ms);
+        }
+        public long getPercentile(double pct) {
+            if (this.total <= 0L) {
+                return 0L;
+            }
+            long n = (long)Math.ceil((pct / 100.0) * this.total), c = 0L;
+            for (int b = 0; b < this.count.length; b++) {
+                c += this.count[b];
+                if (c >= n) {
+                    return b;
+                }
+            }
+            return this.maxMS;
+        }
+        public void clear() {
+            Arrays.fill(this.count, 0);
+            this.total = 0L;
+            this.maxMS = 0L;
+        }
+        public String toString() {
+            if (this.total <= 0L) {
+                return "n/a";
+            }
+            return "p50=" + this.getPercentile(50.0) + " p90=" + this.getPercentile(90.0) +
+                " p99=" + this.getPercentile(99.0) + " max=" + this.maxMS + "ms";
+        }
+    }
+
+    /* run statistics */
+    private static class Statistics
+    {
+        public long    startMS        = System.currentTimeMillis();
+        public long    events         = 0L;
+        public long    packets        = 0L;
+        public long    sessions       = 0L;
+        public long    bytes          = 0L;
+        public long    connectErrors  = 0L;
+        public long    ioErrors       = 0L;
+        public long    serverErrors   = 0L;
+        public long    lateReports    = 0L;
+        public Latency connectLatency = new Latency();
+        public Latency responseLatency = new Latency();
+        public Statistics() {
+        }
+        public void clear() {
+            this.startMS       = System.currentTimeMillis();
+            this.events        = 0L;
+            this.packets       = 0L;
+            this.sessions      = 0L;
+            this.bytes         = 0L;
+            this.connectErrors = 0L;
+            this.ioErrors      = 0L;
+            this.serverErrors  = 0L;
+            this.lateReports   = 0L;
+            this.connectLatency.clear();
+            this.responseLatency.clear();
+        }
+        public String toString() {
+            double sec = Math.max(System.currentTimeMillis() - this.startMS, 1L) / 1000.0;
+            StringBuffer sb = new StringBuffer();
+            sb.append("events=").append(this.events);
+            sb.append(" (").append(StringTools.format(this.events / sec,"0.0")).append("/s)");
+            sb.append(" packets=").append(this.packets);
+            sb.append(" sessions=").append(this.sessions);
+            sb.append(" bytes=").append(this.bytes);
+            sb.append(" errors[connect=").append(this.connectErrors);
+            sb.append(",io=").append(this.ioErrors);
+            sb.append(",server=").append(this.serverErrors);
+            sb.append(",late=").append(this.lateReports).append("]");
+            sb.append(" connect[").append(this.connectLatency).append("]");
+            sb.append(" response[").append(this.responseLatency).append("]");
+            return sb.toString();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* simulated device */
+    private class SimDevice
+        implements Runnable
+    {
+        public  String  accountID    = null;
+        public  String  deviceID     = null;
+        public  String  imei         = null;
+        private Random  random       = null;
+        private double  latitude     = 0.0;
+        private double  longitude    = 0.0;
+        private double  speedKPH     = 0.0;
+        private double  heading      = 0.0;
+        private double  odometerKM   = 0.0;
+        private long    lastFixSec   = 0L;
+        private int     sequence     = 0;
+        private Socket  socket       = null;        // persistent TCP connection
+        public  long    nextReportMS = 0L;
+        public  boolean busy         = false;
+        public  boolean reconnect    = false;
+        public SimDevice(int index) {
+            this.accountID = DeviceSimulator.this.accountID;
+            this.deviceID  = DeviceSimulator.this.devicePrefix + StringTools.format(index,"00000");
+            this.imei      = StringTools.format(DeviceSimulator.this.imeiBase + index,"000000000000000");
+            this.random    = new Random(index);
+            double radKM   = DeviceSimulator.this.radiusKM * Math.sqrt(this.random.nextDouble());
+            double angle   = this.random.nextDouble() * 2.0 * Math.PI;
+            this.latitude  = DeviceSimulator.this.latitude + (radKM * Math.cos(angle)) / 111.2;
+            this.longitude = DeviceSimulator.this.longitude + (radKM * Math.sin(angle)) / (111.2 * Math.cos(Math.toRadians(this.latitude)));
+            this.speedKPH  = this.random.nextDouble() * 100.0;
+            this.heading   = this.random.nextDouble() * 360.0;
+        }
+        /* advance the simulated location to the specified time */
+        private void _move(long fixSec) {
+            long dtSec = (this.lastFixSec > 0L)? Math.max(fixSec - this.lastFixSec, 0L) : 0L;
+            this.lastFixSec = fixSec;
+            double distKM = (this.speedKPH * dtSec) / 3600.0;
+            this.latitude   += (distKM * Math.cos(Math.toRadians(this.heading))) / 111.2;
+            this.longitude  += (distKM * Math.sin(Math.toRadians(this.heading))) / (111.2 * Math.cos(Math.toRadians(this.latitude)));
+            this.odometerKM += distKM;
+            this.heading     = (this.heading + 360.0 + ((this.random.nextDouble() - 0.5) * 40.0)) % 360.0;
+            this.speedKPH    = Math.max(Math.min(this.speedKPH + ((this.random.nextDouble() - 0.5) * 20.0), 120.0), 0.0);
+            this.sequence    = (this.sequence + 1) & 0xFF;
+        }
+        /* report the current (or store-and-forward backlog of) events */
+        public void run() {
+            try {
+                DeviceSimulator.this._report(this);
+            } catch (Throwable th) {
+                Print.logError("[" + this.deviceID + "] " + th);
+            } finally {
+                synchronized (DeviceSimulator.this.deviceQueue) {
+                    this.busy = false;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private String                  host            = "localhost";
+    private int                     port            = 0;
+    private String                  protocol        = PROTO_GPRMC;
+    private boolean                 useUDP          = false;
+    private boolean                 persistent      = false;
+    private String                  accountID       = "sim";
+    private String                  devicePrefix    = "sim";
+    private long                    imeiBase        = 350000000000000L;
+    private double                  latitude        = 39.0;
+    private double                  longitude       = -142.0;
+    private double                  radiusKM        = 50.0;
+    private long                    rateMS          = 60000L;
+    private int                     burstPercent    = 0;
+    private int                     burstSize       = 10;
+    private long                    stormEveryMS    = 0L;
+    private int                     connectTimeoutMS = 10000;
+    private int                     readTimeoutMS   = 30000;
+
+    private java.util.List<SimDevice> devices       = new Vector<SimDevice>();
+    private PriorityQueue<SimDevice> deviceQueue    = null;
+    private DatagramSocket          datagramSocket  = null;
+    private Statistics              totalStats      = new Statistics();
+    private Statistics              intervalStats   = new Statistics();
+
+    /**
+    *** Constructor
+    *** @param host      The server host
+    *** @param port      The server port
+    *** @param protocol  The data format ("gtx", "gprmc", "rtprops", "dmtp")
+    *** @param useUDP    True to send UDP datagrams, false to use TCP
+    **/
+    public DeviceSimulator(String host, int port, String protocol, boolean useUDP)
+    {
+        this.host     = StringTools.isBlank(host)? "localhost" : host;
+        this.port     = port;
+        this.protocol = StringTools.trim(protocol).toLowerCase();
+        this.useUDP   = useUDP;
+        this.deviceQueue = new PriorityQueue<SimDevice>(11, new Comparator<SimDevice>() {
+            public int compare(SimDevice d1, SimDevice d2) {
+                return (d1.nextReportMS < d2.nextReportMS)? -1 : (d1.nextReportMS > d2.nextReportMS)? 1 : 0;
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the simulated device IDs
+    *** @param accountID     The account ID
+    *** @param devicePrefix  The device ID prefix (followed by the 5-digit device index)
+    *** @param imeiBase      The IMEI of the first device (used by the "gtx" format)
+    **/
+    public void setDeviceIDs(String accountID, String devicePrefix, long imeiBase)
+    {
+        this.accountID    = accountID;
+        this.devicePrefix = devicePrefix;
+        this.imeiBase     = imeiBase;
+    }
+
+    /**
+    *** Sets the area in which the simulated devices start
+    *** @param lat       The center latitude
+    *** @param lon       The center longitude
+    *** @param radiusKM  The radius
+    **/
+    public void setArea(double lat, double lon, double radiusKM)
+    {
+        this.latitude  = lat;
+        this.longitude = lon;
+        this.radiusKM  = radiusKM;
+    }
+
+    /**
+    *** Sets the reporting behavior of the simulated devices
+    *** @param rateSec       The number of seconds between device reports
+    *** @param burstPercent  The percent of reports which are store-and-forward bursts
+    *** @param burstSize     The number of events in a store-and-forward burst
+    *** @param stormSec      The number of seconds between reconnect storms (0 for none)
+    *** @param persistent    True to keep TCP connections open between reports (ASCII formats only)
+    **/
+    public void setReporting(long rateSec, int burstPercent, int burstSize, long stormSec, boolean persistent)
+    {
+        this.rateMS       = Math.max(rateSec, 1L) * 1000L;
+        this.burstPercent = Math.max(Math.min(burstPercent, 100), 0);
+        this.burstSize    = Math.max(burstSize, 1);
+        this.stormEveryMS = Math.max(stormSec, 0L) * 1000L;
+        this.persistent   = persistent && !this.protocol.equals(PROTO_DMTP);
+    }
+
+    /**
+    *** Sets the socket timeouts
+    *** @param connectMS  The TCP connect timeout
+    *** @param readMS     The TCP response timeout
+    **/
+    public void setTimeouts(int connectMS, int readMS)
+    {
+        this.connectTimeoutMS = connectMS;
+        this.readTimeoutMS    = readMS;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* format the $GPRMC record for the current device location */
+    private String _formatGPRMC(SimDevice dev, long fixSec)
+    {
+        DateTime ft = new DateTime(fixSec, DateTime.getGMTTimeZone());
+        GeoPoint gp = new GeoPoint(dev.latitude, dev.longitude);
+        StringBuffer sb = new StringBuffer();
+        sb.append("$GPRMC,");
+        sb.append(ft.format("HHmmss")).append(".000,A,");
+        sb.append(gp.getLatitudeString(GeoPoint.SFORMAT_NMEA,null)).append(",");
+        sb.append(gp.getLongitudeString(GeoPoint.SFORMAT_NMEA,null)).append(",");
+        sb.append(StringTools.format(dev.speedKPH / Nmea0183.KILOMETERS_PER_KNOT,"0.00")).append(",");
+        sb.append(StringTools.format(dev.heading,"0.00")).append(",");
+        sb.append(ft.format("ddMMyy")).append(",,");
+        int cksum = Nmea0183.calcXORChecksum(sb.toString(),false);
+        sb.append("*").append(StringTools.toHexString(cksum,8));
+        return sb.toString();
+    }
+
+    /* encode a single ASCII event record */
+    private byte[] _encodeASCII(SimDevice dev, long fixSec)
+    {
+        StringBuffer sb = new StringBuffer();
+        if (this.protocol.equals(PROTO_GTX)) {
+            DateTime ft = new DateTime(fixSec, DateTime.getGMTTimeZone());
+            StringBuffer r = new StringBuffer();
+            r.append(dev.imei);
+            r.append("|AA").append(this._formatGPRMC(dev,fixSec));
+            r.append("|02.0|01.2|01.6|000000000000|");
+            r.append(ft.format("yyyyMMddHHmmss"));
+            r.append("|00000000|00000000|00000000|0000|");
+            r.append(StringTools.format(dev.odometerKM,"0.0000"));
+            r.append("|").append(StringTools.toHexString(dev.sequence,16));
+            r.append("|0000");
+            int len = 4 + r.length() + 2; // "$$", length, record, "\r\n"
+            sb.append("$$").append(StringTools.toHexString(len & 0xFF,8)).append(r);
+        } else
+        if (this.protocol.equals(PROTO_RTPROPS)) {
+            sb.append("acct=").append(dev.accountID);
+            sb.append(" dev=").append(dev.deviceID);
+            sb.append(" ts=").append(fixSec);
+            sb.append(" code=").append(STATUS_LOCATION);
+            sb.append(" gps=").append(StringTools.format(dev.latitude,"0.00000"));
+            sb.append("/").append(StringTools.format(dev.longitude,"0.00000"));
+            sb.append(" kph=").append(StringTools.format(dev.speedKPH,"0.0"));
+            sb.append(" dir=").append(StringTools.format(dev.heading,"0.0"));
+            sb.append(" odom=").append(StringTools.format(dev.odometerKM,"0.0"));
+        } else {
+            sb.append(dev.accountID).append("/").append(dev.deviceID).append("/");
+            sb.append(this._formatGPRMC(dev,fixSec));
+        }
+        sb.append("\r\n");
+        return StringTools.getBytes(sb.toString());
+    }
+
+    /* encode a single DMTP packet */
+    private static void _writeDMTPPacket(ByteArrayOutputStream out, int type, byte payload[])
+    {
+        int len = (payload != null)? Math.min(payload.length, 255) : 0;
+        out.write(DMTP_HEADER);
+        out.write(type);
+        out.write(len);
+        if (len > 0) {
+            out.write(payload, 0, len);
+        }
+    }
+
+    /* encode a DMTP fixed-format (standard resolution) event payload */
+    private byte[] _encodeDMTPEvent(SimDevice dev, long fixSec)
+    {
+        Payload p = new Payload(20);
+        p.writeULong(STATUS_LOCATION, 2);
+        p.writeULong(fixSec, 4);
+        p.writeGPS(dev.latitude, dev.longitude, 6);
+        p.writeULong(Math.round(dev.speedKPH), 1);
+        p.writeULong(Math.round(dev.heading * 256.0 / 360.0) & 0xFF, 1);
+        p.writeULong(0L, 2); // altitude
+        p.writeULong(Math.round(dev.odometerKM * 10.0) & 0xFFFFFFL, 3);
+        p.writeULong(dev.sequence, 1);
+        return p.getBytes();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* record statistics */
+    private void _addStats(int events, int packets, int sessions, long bytes)
+    {
+        synchronized (this.totalStats) {
+            for (Statistics s : new Statistics[] { this.totalStats, this.intervalStats }) {
+                s.events   += events;
+                s.packets  += packets;
+                s.sessions += sessions;
+                s.bytes    += bytes;
+            }
+        }
+    }
+
+    /* record a connect/response latency (response if 'connect' is false) */
+    private void _addLatency(boolean connect, long ms)
+    {
+        synchronized (this.totalStats) {
+            for (Statistics s : new Statistics[] { this.totalStats, this.intervalStats }) {
+                (connect? s.connectLatency : s.responseLatency).add(ms);
+            }
+        }
+    }
+
+    /* record an error (0=connect, 1=io, 2=server, 3=late) */
+    private void _addError(int type)
+    {
+        synchronized (this.totalStats) {
+            for (Statistics s : new Statistics[] { this.totalStats, this.intervalStats }) {
+                switch (type) {
+                    case 0 : s.connectErrors++; break;
+                    case 1 : s.ioErrors++;      break;
+                    case 2 : s.serverErrors++;  break;
+                    default: s.lateReports++;   break;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* send the current event, or a store-and-forward burst, for the specified device */
+    private void _report(SimDevice dev)
+        throws IOException
+    {
+
+        /* events to send */
+        int count = 1;
+        if ((this.burstPercent > 0) && (dev.random.nextInt(100) < this.burstPercent)) {
+            count = this.burstSize;
+        }
+        long nowSec  = DateTime.getCurrentTimeSec();
+        long rateSec = this.rateMS / 1000L;
+        long fixSec[] = new long[count];
+        for (int i = 0; i < count; i++) {
+            // burst events are spread back over the missed reporting intervals
+            fixSec[i] = nowSec - ((count - 1 - i) * rateSec);
+        }
+        if ((dev.lastFixSec > 0L) && (fixSec[0] <= dev.lastFixSec)) {
+            for (int i = 0; i < count; i++) {
+                fixSec[i] = dev.lastFixSec + 1L + i;
+            }
+        }
+
+        /* encode */
+        java.util.List<byte[]> packets = new Vector<byte[]>();
+        if (this.protocol.equals(PROTO_DMTP)) {
+            int perPacket = this.useUDP? DMTP_EVENTS_PER_DATAGRAM : count;
+            for (int s = 0; s < count; s += perPacket) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                _writeDMTPPacket(out, DMTP_CLIENT_ACCOUNT_ID, StringTools.getBytes(dev.accountID));
+                _writeDMTPPacket(out, DMTP_CLIENT_DEVICE_ID , StringTools.getBytes(dev.deviceID));
+                for (int i = s; (i < count) && (i < (s + perPacket)); i++) {
+                    dev._move(fixSec[i]);
+                    _writeDMTPPacket(out, DMTP_CLIENT_FIXED_STD, this._encodeDMTPEvent(dev, fixSec[i]));
+                }
+                _writeDMTPPacket(out, DMTP_CLIENT_EOB_DONE, null);
+                packets.add(out.toByteArray());
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                dev._move(fixSec[i]);
+                packets.add(this._encodeASCII(dev, fixSec[i]));
+            }
+        }
+        long bytes = 0L;
+        for (byte p[] : packets) {
+            bytes += p.length;
+        }
+
+        /* UDP */
+        if (this.useUDP) {
+            InetAddress addr = InetAddress.getByName(this.host);
+            try {
+                for (byte p[] : packets) {
+                    this.datagramSocket.send(new DatagramPacket(p, p.length, addr, this.port));
+                }
+                this._addStats(count, packets.size(), 0, bytes);
+            } catch (IOException ioe) {
+                this._addError(1);
+            }
+            return;
+        }
+
+        /* persistent TCP */
+        if (this.persistent) {
+            if (dev.reconnect || (dev.socket == null)) {
+                DeviceSimulator._close(dev.socket);
+                dev.socket    = this._connect();
+                dev.reconnect = false;
+                if (dev.socket == null) {
+                    return;
+                }
+            }
+            try {
+                OutputStream out = dev.socket.getOutputStream();
+                for (byte p[] : packets) {
+                    out.write(p);
+                }
+                out.flush();
+                this._addStats(count, packets.size(), 0, bytes);
+            } catch (IOException ioe) {
+                this._addError(1);
+                DeviceSimulator._close(dev.socket);
+                dev.socket = null;
+            }
+            return;
+        }
+
+        /* TCP session */
+        Socket sock = this._connect();
+        if (sock == null) {
+            return;
+        }
+        try {
+            OutputStream out = sock.getOutputStream();
+            InputStream  in  = sock.getInputStream();
+            for (byte p[] : packets) {
+                out.write(p);
+            }
+            out.flush();
+            long sentMS = System.currentTimeMillis();
+            boolean ok;
+            if (this.protocol.equals(PROTO_DMTP)) {
+                ok = this._readDMTPResponse(in);
+            } else {
+                // wait for the server to close the session
+                sock.shutdownOutput();
+                byte b[] = new byte[256];
+                while (in.read(b) >= 0) { /* discard */ }
+                ok = true;
+            }
+            if (ok) {
+                this._addLatency(false, System.currentTimeMillis() - sentMS);
+                this._addStats(count, packets.size(), 1, bytes);
+            }
+        } catch (SocketTimeoutException ste) {
+            this._addError(1);
+        } catch (IOException ioe) {
+            this._addError(1);
+        } finally {
+            DeviceSimulator._close(sock);
+        }
+
+    }
+
+    /* read DMTP server packets until end-of-block/end-of-transmission */
+    private boolean _readDMTPResponse(InputStream in)
+        throws IOException
+    {
+        DataInputStream din = new DataInputStream(in);
+        for (;;) {
+            int hdr  = din.readUnsignedByte(); // EOFException if closed
+            int type = din.readUnsignedByte();
+            int len  = din.readUnsignedByte();
+            if (hdr != DMTP_HEADER) {
+                this._addError(2);
+                return false;
+            }
+            din.skipBytes(len);
+            if (type == DMTP_SERVER_ERROR) {
+                this._addError(2);
+            } else
+            if ((type == DMTP_SERVER_EOB_DONE) || (type == DMTP_SERVER_EOB_SPEAK) || (type == DMTP_SERVER_EOT)) {
+                return true;
+            }
+        }
+    }
+
+    /* open a TCP connection to the server (null on error) */
+    private Socket _connect()
+    {
+        long startMS = System.currentTimeMillis();
+        Socket sock = new Socket();
+        try {
+            sock.setSoTimeout(this.readTimeoutMS);
+            sock.setTcpNoDelay(true);
+            sock.connect(new InetSocketAddress(this.host, this.port), this.connectTimeoutMS);
+            this._addLatency(true, System.currentTimeMillis() - startMS);
+            return sock;
+        } catch (IOException ioe) {
+            this._addError(0);
+            DeviceSimulator._close(sock);
+            return null;
+        }
+    }
+
+    /* close the socket, ignoring errors */
+    private static void _close(Socket sock)
+    {
+        if (sock != null) {
+            try { sock.close(); } catch (Throwable th) { /*ignore*/ }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs the simulation
+    *** @param deviceCount  The number of simulated devices
+    *** @param durationSec  The duration of the simulation
+    *** @param threads      The maximum number of concurrent device sessions
+    *** @param reportSec    The interval between statistics reports
+    **/
+    public void run(int deviceCount, long durationSec, int threads, long reportSec)
+        throws IOException
+    {
+        if (this.useUDP) {
+            this.datagramSocket = new DatagramSocket();
+        }
+
+        /* devices (initial reports are spread over the first reporting interval) */
+        long nowMS = System.currentTimeMillis();
+        Random rand = new Random(deviceCount);
+        for (int i = 0; i < deviceCount; i++) {
+            SimDevice dev = new SimDevice(i + 1);
+            dev.nextReportMS = nowMS + (long)(rand.nextDouble() * this.rateMS);
+            this.devices.add(dev);
+            this.deviceQueue.add(dev);
+        }
+        Print.logInfo("Simulating %d devices [%s/%s] -> %s:%d, rate %ds, for %ds",
+            deviceCount, this.protocol, (this.useUDP?"udp":"tcp"), this.host, this.port,
+            (this.rateMS / 1000L), durationSec);
+
+        /* schedule reports */
+        ThreadPool pool = new ThreadPool("DeviceSimulator", Math.max(threads, 1));
+        long endMS         = nowMS + (durationSec * 1000L);
+        long nextStormMS   = (this.stormEveryMS > 0L)? (nowMS + this.stormEveryMS) : Long.MAX_VALUE;
+        long nextReportMS  = nowMS + (Math.max(reportSec, 1L) * 1000L);
+        this.totalStats.clear();
+        this.intervalStats.clear();
+        for (;;) {
+            nowMS = System.currentTimeMillis();
+            if (nowMS >= endMS) {
+                break;
+            }
+
+            /* statistics */
+            if (nowMS >= nextReportMS) {
+                nextReportMS += Math.max(reportSec, 1L) * 1000L;
+                synchronized (this.totalStats) {
+                    Print.logInfo("Interval: " + this.intervalStats);
+                    this.intervalStats.clear();
+                }
+            }
+
+            /* reconnect storm */
+            if (nowMS >= nextStormMS) {
+                nextStormMS += this.stormEveryMS;
+                Print.logInfo("Reconnect storm: %d devices", this.devices.size());
+                synchronized (this.deviceQueue) {
+                    this.deviceQueue.clear();
+                    for (SimDevice dev : this.devices) {
+                        dev.reconnect    = true;
+                        dev.nextReportMS = nowMS;
+                        this.deviceQueue.add(dev);
+                    }
+                }
+            }
+
+            /* due reports */
+            long waitMS = 100L;
+            synchronized (this.deviceQueue) {
+                while (!this.deviceQueue.isEmpty()) {
+                    SimDevice dev = this.deviceQueue.peek();
+                    if (dev.nextReportMS > nowMS) {
+                        waitMS = Math.min(waitMS, dev.nextReportMS - nowMS);
+                        break;
+                    }
+                    this.deviceQueue.poll();
+                    if (dev.busy) {
+                        // previous report still in progress
+                        this._addError(3);
+                    } else {
+                        dev.busy = true;
+                        pool.run(dev);
+                    }
+                    dev.nextReportMS += this.rateMS;
+                    this.deviceQueue.add(dev);
+                }
+            }
+            try { Thread.sleep(Math.max(waitMS, 1L)); } catch (Throwable th) { /*ignore*/ }
+
+        }
+
+        /* wait for outstanding reports */
+        pool.stopThreads();
+        long stopMS = System.currentTimeMillis() + this.readTimeoutMS + this.connectTimeoutMS;
+        while ((pool.getSize() > 0) && (System.currentTimeMillis() < stopMS)) {
+            try { Thread.sleep(100L); } catch (Throwable th) { /*ignore*/ }
+        }
+        for (SimDevice dev : this.devices) {
+            DeviceSimulator._close(dev.socket);
+            dev.socket = null;
+        }
+        if (this.datagramSocket != null) {
+            this.datagramSocket.close();
+        }
+        synchronized (this.totalStats) {
+            Print.logInfo("Total   : " + this.totalStats);
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_HOST[]          = new String[] { "host"     , "h"   };
+    private static final String ARG_PORT[]          = new String[] { "port"     , "p"   };
+    private static final String ARG_PROTOCOL[]      = new String[] { "protocol" , "fmt" };
+    private static final String ARG_UDP[]           = new String[] { "udp"              };
+    private static final String ARG_DEVICES[]       = new String[] { "devices"  , "n"   };
+    private static final String ARG_ACCOUNT[]       = new String[] { "account"  , "a"   };
+    private static final String ARG_DEVICE[]        = new String[] { "device"   , "d"   };
+    private static final String ARG_IMEI[]          = new String[] { "imei"             };
+    private static final String ARG_LAT[]           = new String[] { "lat"              };
+    private static final String ARG_LON[]           = new String[] { "lon"              };
+    private static final String ARG_RADIUS[]        = new String[] { "radiusKM"         };
+    private static final String ARG_RATE[]          = new String[] { "rate"             };
+    private static final String ARG_BURST_PCT[]     = new String[] { "burstPct"         };
+    private static final String ARG_BURST_SIZE[]    = new String[] { "burstSize"        };
+    private static final String ARG_STORM[]         = new String[] { "storm"            };
+    private static final String ARG_PERSISTENT[]    = new String[] { "persistent"       };
+    private static final String ARG_DURATION[]      = new String[] { "duration" , "t"   };
+    private static final String ARG_THREADS[]       = new String[] { "threads"          };
+    private static final String ARG_REPORT[]        = new String[] { "report"           };
+    private static final String ARG_TIMEOUT[]       = new String[] { "timeout"          };
+
+    private static void usage()
+    {
+        Print.logInfo("Usage:");
+        Print.logInfo("  java ... " + DeviceSimulator.class.getName() + " {options}");
+        Print.logInfo("Options:");
+        Print.logInfo("  -host=<host>         The server host [localhost]");
+        Print.logInfo("  -port=<port>         The server port");
+        Print.logInfo("  -protocol=<fmt>      gtx|gprmc|rtprops|dmtp [gprmc]");
+        Print.logInfo("  -udp                 Send UDP datagrams [TCP]");
+        Print.logInfo("  -devices=<n>         Number of simulated devices [100]");
+        Print.logInfo("  -account=<id>        Account ID [sim]");
+        Print.logInfo("  -device=<prefix>     Device ID prefix, followed by 00001.. [sim]");
+        Print.logInfo("  -imei=<imei>         IMEI of the first device ('gtx' format) [350000000000001]");
+        Print.logInfo("  -lat=<lat> -lon=<lon> -radiusKM=<km>  Starting area [39.0/-142.0, 50]");
+        Print.logInfo("  -rate=<sec>          Seconds between device reports [60]");
+        Print.logInfo("  -burstPct=<pct>      Percent of reports which are store-and-forward bursts [0]");
+        Print.logInfo("  -burstSize=<n>       Number of events in a store-and-forward burst [10]");
+        Print.logInfo("  -storm=<sec>         Seconds between reconnect storms (0 for none) [0]");
+        Print.logInfo("  -persistent          Keep TCP connections open between reports (ASCII formats)");
+        Print.logInfo("  -duration=<sec>      Duration of the simulation [300]");
+        Print.logInfo("  -threads=<n>         Maximum concurrent device sessions [200]");
+        Print.logInfo("  -report=<sec>        Seconds between statistics reports [10]");
+        Print.logInfo("  -timeout=<sec>       TCP connect/response timeout [30]");
+        System.exit(1);
+    }
+
+    /**
+    *** Main entry point
+    *** @param argv Comand-line arguments
+    **/
+    public static void main(String argv[])
+    {
+        RTConfig.setCommandLineArgs(argv);
+        int port = RTConfig.getInt(ARG_PORT, 0);
+        if (port <= 0) {
+            Print.logError("Server port not specified");
+            usage();
+        }
+        String proto = RTConfig.getString(ARG_PROTOCOL, PROTO_GPRMC).toLowerCase();
+        if (!ListTools.contains(new String[] { PROTO_GTX, PROTO_GPRMC, PROTO_RTPROPS, PROTO_DMTP }, proto)) {
+            Print.logError("Invalid protocol: " + proto);
+            usage();
+        }
+        long timeoutMS = RTConfig.getLong(ARG_TIMEOUT, 30L) * 1000L;
+
+        /* simulate */
+        DeviceSimulator sim = new DeviceSimulator(RTConfig.getString(ARG_HOST, "localhost"), port, proto,
+            RTConfig.getBoolean(ARG_UDP, false));
+        sim.setDeviceIDs(
+            RTConfig.getString(ARG_ACCOUNT, "sim"),
+            RTConfig.getString(ARG_DEVICE, "sim"),
+            RTConfig.getLong(ARG_IMEI, 350000000000001L) - 1L);
+        sim.setArea(
+            RTConfig.getDouble(ARG_LAT, 39.0),
+            RTConfig.getDouble(ARG_LON, -142.0),
+            RTConfig.getDouble(ARG_RADIUS, 50.0));
+        sim.setReporting(
+            RTConfig.getLong(ARG_RATE, 60L),
+            RTConfig.getInt(ARG_BURST_PCT, 0),
+            RTConfig.getInt(ARG_BURST_SIZE, 10),
+            RTConfig.getLong(ARG_STORM, 0L),
+            RTConfig.getBoolean(ARG_PERSISTENT, false));
+        sim.setTimeouts((int)timeoutMS, (int)timeoutMS);
+        try {
+            sim.run(
+                RTConfig.getInt(ARG_DEVICES, 100),
+                RTConfig.getLong(ARG_DURATION, 300L),
+                RTConfig.getInt(ARG_THREADS, 200),
+                RTConfig.getLong(ARG_REPORT, 10L));
+        } catch (IOException ioe) {
+            Print.logException("Simulation failed", ioe);
+            System.exit(2);
+        }
+        System.exit(0);
+
+    }
+
+}
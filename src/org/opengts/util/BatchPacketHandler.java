@@ -0,0 +1,56 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Socket client packet handler which is notified when several packets received
+//  on the same read are handled as a batch
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+/**
+*** Optional extension of the <code>ClientPacketHandler</code> interface.<br>
+*** When a TCP client sends several packets in quick succession (ie. a device flushing
+*** its buffered history after reconnecting), the <code>ServerSocketThread</code> will
+*** find the following packets already available after reading the first.  In this case
+*** <code>beginPacketBatch()</code> is called before the first packet is handled, and
+*** <code>endPacketBatch()</code> is called after the last available packet (or after a 
+*** maximum number of packets) has been handled.  The handler may use this to defer
+*** database writes until the end of the batch.  Responses returned by 
+*** <code>getHandlePacket</code> during a batch are transmitted after 
+*** <code>endPacketBatch()</code> returns, and are discarded if it returns false (so that
+*** the client will retransmit the packets of the failed batch).
+**/
+
+public interface BatchPacketHandler
+    extends ClientPacketHandler
+{
+
+    /**
+    *** Called before the first packet of a batch is handled
+    **/
+    public void beginPacketBatch();
+
+    /**
+    *** Called after the last packet of a batch has been handled (including when the 
+    *** session terminates during a batch)
+    *** @return True if the batch was saved, false if the responses of the batch should
+    ***         not be transmitted
+    **/
+    public boolean endPacketBatch();
+
+}
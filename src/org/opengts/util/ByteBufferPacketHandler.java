@@ -0,0 +1,48 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Socket client packet handler which receives packets as a ByteBuffer
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.nio.ByteBuffer;
+
+/**
+*** Optional extension of the <code>ClientPacketHandler</code> interface which allows
+*** the <code>ServerSocketThread</code> to hand the received packet to the handler 
+*** directly from the per-session read buffer, without first copying it into a newly
+*** allocated array.<br>
+*** The ByteBuffer passed to <code>getHandlePacket(ByteBuffer)</code> is only valid for
+*** the duration of the call.  Its contents will be overwritten by the next packet read
+*** on the same session, so the handler must copy any bytes it needs to retain.
+**/
+
+public interface ByteBufferPacketHandler
+    extends ClientPacketHandler
+{
+
+    /**
+    *** Parse the received packet and return a response to be sent to the client.
+    *** The packet bytes are those between the buffer 'position' and 'limit'.
+    *** @param pkt  The received packet (valid only during this call)
+    *** @return The response to send to the client (may be null)
+    **/
+    public byte[] getHandlePacket(ByteBuffer pkt) throws Exception;
+
+}
@@ -0,0 +1,167 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Adapts a legacy byte[] ClientPacketHandler to the ByteBufferPacketHandler interface
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+
+/**
+*** Wraps a legacy <code>ClientPacketHandler</code> (which only accepts packets as an
+*** exact-length byte array) so that it may be called through the 
+*** <code>ByteBufferPacketHandler</code> interface.  The packet bytes are copied into
+*** a new array before being passed to the legacy handler.
+**/
+
+public class ByteBufferPacketHandlerAdapter
+    implements ByteBufferPacketHandler
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the specified handler as a ByteBufferPacketHandler.  If the handler
+    *** already implements <code>ByteBufferPacketHandler</code>, it is returned as-is,
+    *** otherwise it is wrapped in an adapter.
+    *** @param handler  The ClientPacketHandler
+    *** @return The ByteBufferPacketHandler (null if the specified handler is null)
+    **/
+    public static ByteBufferPacketHandler getByteBufferPacketHandler(ClientPacketHandler handler)
+    {
+        if (handler == null) {
+            return null;
+        } else
+        if (handler instanceof ByteBufferPacketHandler) {
+            return (ByteBufferPacketHandler)handler;
+        } else {
+            return new ByteBufferPacketHandlerAdapter(handler);
+        }
+    }
+
+    /**
+    *** Returns a copy of the remaining bytes in the specified ByteBuffer.
+    *** The position of the specified buffer is not changed.
+    *** @param pkt  The ByteBuffer
+    *** @return The byte array (null if the specified buffer is null)
+    **/
+    public static byte[] getBytes(ByteBuffer pkt)
+    {
+        if (pkt == null) {
+            return null;
+        } else {
+            byte b[] = new byte[pkt.remaining()];
+            if (pkt.hasArray()) {
+                System.arraycopy(pkt.array(), pkt.arrayOffset() + pkt.position(), b, 0, b.length);
+            } else {
+                pkt.duplicate().get(b);
+            }
+            return b;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private ClientPacketHandler delegate = null;
+
+    /**
+    *** Constructor
+    *** @param handler  The legacy ClientPacketHandler
+    **/
+    public ByteBufferPacketHandlerAdapter(ClientPacketHandler handler)
+    {
+        super();
+        this.delegate = handler;
+    }
+
+    /**
+    *** Gets the wrapped ClientPacketHandler
+    *** @return The wrapped ClientPacketHandler
+    **/
+    public ClientPacketHandler getClientPacketHandler()
+    {
+        return this.delegate;
+    }
+
+    // ------------------------------------------------------------------------
+
+    public void sessionStarted(InetAddress inetAddr, boolean isTCP, boolean isText)
+    {
+        this.delegate.sessionStarted(inetAddr, isTCP, isText);
+    }
+
+    public byte[] getInitialPacket() 
+        throws Exception
+    {
+        return this.delegate.getInitialPacket();
+    }
+
+    public byte[] getFinalPacket(boolean hasError) 
+        throws Exception
+    {
+        return this.delegate.getFinalPacket(hasError);
+    }
+
+    public int getMinimumPacketLength()
+    {
+        return this.delegate.getMinimumPacketLength();
+    }
+
+    public int getMaximumPacketLength()
+    {
+        return this.delegate.getMaximumPacketLength();
+    }
+
+    public int getActualPacketLength(byte packet[], int packetLen)
+    {
+        return this.delegate.getActualPacketLength(packet, packetLen);
+    }
+
+    public byte[] getHandlePacket(byte cmd[]) 
+        throws Exception
+    {
+        return this.delegate.getHandlePacket(cmd);
+    }
+
+    public byte[] getHandlePacket(ByteBuffer pkt) 
+        throws Exception
+    {
+        return this.delegate.getHandlePacket(ByteBufferPacketHandlerAdapter.getBytes(pkt));
+    }
+
+    public int getResponsePort()
+    {
+        return this.delegate.getResponsePort();
+    }
+
+    public boolean terminateSession()
+    {
+        return this.delegate.terminateSession();
+    }
+
+    public void sessionTerminated(Throwable err, long readCount, long writeCount)
+    {
+        this.delegate.sessionTerminated(err, readCount, writeCount);
+    }
+
+    // ------------------------------------------------------------------------
+
+}
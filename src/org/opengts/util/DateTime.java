@@ -59,6 +59,8 @@ import java.io.*;
 import java.text.FieldPosition;
 import java.text.SimpleDateFormat;
 import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
 
 /**
 *** Performs every manner of function imaginable based on date/time values
@@ -2379,6 +2381,295 @@ public class DateTime
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Cached Date/Time formatter for a specific format, TimeZone, and Locale.<br>
+    *** The date portion of the format (year/month/day/weekday/timezone, etc) is rendered
+    *** once per day, and the time-of-day fields (hour/minute/second/millisecond/am-pm) are
+    *** then computed arithmetically from the precomputed start of the day.  Days on which
+    *** the TimeZone offset changes (ie. daylight savings transitions), and formats which
+    *** cannot be split in this way, are formatted with SimpleDateFormat.<br>
+    *** Formatter instances are not thread-safe, and are intended to be obtained from
+    *** <code>DateTime.getFormatter</code>, which caches formatters per thread.
+    **/
+    public static class Formatter
+    {
+
+        private static final long DAY_MS = DateTime.DaySeconds(1) * 1000L;
+
+        private String           format      = null;
+        private TimeZone         timeZone    = null;
+        private SimpleDateFormat sdf         = null;
+        private FieldPosition    fieldPos    = new FieldPosition(0);
+        private SimpleDateFormat dateSDF     = null;  // null if not splittable
+        private char             fieldChar[] = null;  // time-of-day fields
+        private int              fieldLen[]  = null;
+        private String           amPm[]      = null;
+        private Calendar         calendar    = null;
+
+        private long             dayStartMS  = 0L;
+        private long             dayEndMS    = 0L;    // exclusive
+        private boolean          dayIsSplit  = false; // false if offset changes during day
+        private String           daySegs[]   = null;
+
+        /**
+        *** Constructor
+        *** @param fmt  The Date/Time format (SimpleDateFormat syntax)
+        *** @param tz   The TimeZone
+        *** @param loc  The Locale (null for the default Locale)
+        *** @throws IllegalArgumentException if the format is invalid
+        **/
+        public Formatter(String fmt, TimeZone tz, Locale loc)
+        {
+            this.format   = (fmt != null)? fmt : DEFAULT_DATETIME_FORMAT;
+            this.timeZone = (tz  != null)? tz  : DateTime.getDefaultTimeZone();
+            this.sdf      = (loc != null)? new SimpleDateFormat(this.format, loc) : new SimpleDateFormat(this.format);
+            this.sdf.setTimeZone(this.timeZone);
+            this._initSplit(loc);
+        }
+
+        /* separate the time-of-day fields from the date portion of the format */
+        private void _initSplit(Locale loc)
+        {
+
+            /* numbers must be formatted with ASCII digits */
+            NumberFormat nf = this.sdf.getNumberFormat();
+            if (!(nf instanceof DecimalFormat) || 
+                (((DecimalFormat)nf).getDecimalFormatSymbols().getZeroDigit() != '0')) {
+                return;
+            } else
+            if (this.format.indexOf(SPLIT_MARKER) >= 0) {
+                return;
+            }
+
+            /* replace time-of-day fields with a marker character */
+            StringBuffer datePat = new StringBuffer();
+            StringBuffer fchr    = new StringBuffer();
+            java.util.List<Integer> flen = new Vector<Integer>();
+            boolean inQuote = false;
+            for (int i = 0; i < this.format.length();) {
+                char ch = this.format.charAt(i);
+                if (ch == '\'') {
+                    inQuote = !inQuote;
+                    datePat.append(ch);
+                    i++;
+                } else
+                if (inQuote || !(((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')))) {
+                    datePat.append(ch);
+                    i++;
+                } else {
+                    int n = i + 1;
+                    while ((n < this.format.length()) && (this.format.charAt(n) == ch)) { n++; }
+                    if ("HkKhmsSa".indexOf(ch) >= 0) {
+                        datePat.append(SPLIT_MARKER);
+                        fchr.append(ch);
+                        flen.add(new Integer(n - i));
+                    } else {
+                        datePat.append(this.format.substring(i,n));
+                    }
+                    i = n;
+                }
+            }
+
+            /* date-only formatter */
+            this.dateSDF   = (loc != null)? new SimpleDateFormat(datePat.toString(), loc) : new SimpleDateFormat(datePat.toString());
+            this.dateSDF.setTimeZone(this.timeZone);
+            this.fieldChar = fchr.toString().toCharArray();
+            this.fieldLen  = new int[flen.size()];
+            for (int f = 0; f < this.fieldLen.length; f++) { this.fieldLen[f] = flen.get(f).intValue(); }
+            this.amPm      = this.sdf.getDateFormatSymbols().getAmPmStrings();
+            this.calendar  = Calendar.getInstance(this.timeZone);
+
+        }
+
+        /**
+        *** Gets the format of this formatter
+        *** @return The Date/Time format
+        **/
+        public String getFormat()
+        {
+            return this.format;
+        }
+
+        /**
+        *** Gets the TimeZone of this formatter
+        *** @return The TimeZone
+        **/
+        public TimeZone getTimeZone()
+        {
+            return this.timeZone;
+        }
+
+        /* compute the day boundaries, and date portion segments, for the day containing 'ms' */
+        private void _setDay(long ms)
+        {
+            Calendar cal = this.calendar;
+            cal.setTimeInMillis(ms);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE     , 0);
+            cal.set(Calendar.SECOND     , 0);
+            cal.set(Calendar.MILLISECOND, 0);
+            long startMS = cal.getTimeInMillis();
+            int  offsMS  = this.timeZone.getOffset(startMS);
+            long wallMS  = ((startMS + offsMS) % DAY_MS + DAY_MS) % DAY_MS; // 0 if start is local midnight
+            if ((startMS <= ms) && (wallMS == 0L) && (offsMS == this.timeZone.getOffset(startMS + DAY_MS - 1L)) &&
+                (offsMS == this.timeZone.getOffset(startMS + DAY_MS))) {
+                // fixed offset during day
+                this.dayStartMS = startMS;
+                this.dayEndMS   = startMS + DAY_MS;
+                String dp = this.dateSDF.format(new java.util.Date(startMS));
+                java.util.List<String> segs = new Vector<String>();
+                for (int p = 0;;) {
+                    int m = dp.indexOf(SPLIT_MARKER, p);
+                    if (m < 0) { segs.add(dp.substring(p)); break; }
+                    segs.add(dp.substring(p,m));
+                    p = m + 1;
+                }
+                this.daySegs    = segs.toArray(new String[segs.size()]);
+                this.dayIsSplit = (this.daySegs.length == (this.fieldChar.length + 1));
+            } else {
+                // offset changes during day (or start-of-day does not exist)
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+                this.dayStartMS = Math.min(startMS, ms);
+                this.dayEndMS   = Math.max(cal.getTimeInMillis(), ms + 1L);
+                this.daySegs    = null;
+                this.dayIsSplit = false;
+            }
+        }
+
+        /* append a zero-padded number */
+        private static void _appendNum(StringBuffer sb, int val, int len)
+        {
+            String v = String.valueOf(val);
+            for (int i = v.length(); i < len; i++) { sb.append('0'); }
+            sb.append(v);
+        }
+
+        /**
+        *** Formats the specified time
+        *** @param epochMS  The time, in milliseconds since the epoch
+        *** @param sb       The StringBuffer to which the formatted time is appended (may be null)
+        *** @return The StringBuffer
+        **/
+        public StringBuffer format(long epochMS, StringBuffer sb)
+        {
+            if (sb == null) { sb = new StringBuffer(); }
+
+            /* day boundaries */
+            if (this.dateSDF != null) {
+                if ((epochMS < this.dayStartMS) || (epochMS >= this.dayEndMS)) {
+                    this._setDay(epochMS);
+                }
+            }
+
+            /* full SimpleDateFormat */
+            if ((this.dateSDF == null) || !this.dayIsSplit) {
+                this.sdf.format(new java.util.Date(epochMS), sb, this.fieldPos);
+                return sb;
+            }
+
+            /* date segments and time-of-day fields */
+            int tod = (int)(epochMS - this.dayStartMS);
+            int hh  = tod / 3600000;
+            sb.append(this.daySegs[0]);
+            for (int f = 0; f < this.fieldChar.length; f++) {
+                int len = this.fieldLen[f];
+                switch (this.fieldChar[f]) {
+                    case 'H': _appendNum(sb, hh, len); break;
+                    case 'k': _appendNum(sb, ((hh == 0)? 24 : hh), len); break;
+                    case 'K': _appendNum(sb, (hh % 12), len); break;
+                    case 'h': _appendNum(sb, (((hh % 12) == 0)? 12 : (hh % 12)), len); break;
+                    case 'm': _appendNum(sb, ((tod / 60000) % 60), len); break;
+                    case 's': _appendNum(sb, ((tod / 1000) % 60), len); break;
+                    case 'S': _appendNum(sb, (tod % 1000), len); break;
+                    case 'a': sb.append(this.amPm[(hh < 12)? 0 : 1]); break;
+                }
+                sb.append(this.daySegs[f + 1]);
+            }
+            return sb;
+
+        }
+
+        /**
+        *** Formats the specified time
+        *** @param epochMS  The time, in milliseconds since the epoch
+        *** @return The formatted Date/Time String
+        **/
+        public String format(long epochMS)
+        {
+            return this.format(epochMS, null).toString();
+        }
+
+    }
+
+    private static final char   SPLIT_MARKER            = '\u0001';
+    private static final int    MAX_CACHED_FORMATTERS   = 64;
+
+    /* per-thread formatter cache (LRU) */
+    private static ThreadLocal<Map<String,Formatter>> threadFormatters = new ThreadLocal<Map<String,Formatter>>() {
+        protected Map<String,Formatter> initialValue() {
+            return new LinkedHashMap<String,Formatter>(16, 0.75F, true) {
+                protected boolean removeEldestEntry(Map.Entry<String,Formatter> eldest) {
+                    return (this.size() > MAX_CACHED_FORMATTERS);
+                }
+            };
+        }
+    };
+
+    /**
+    *** Returns a cached Date/Time formatter for the specified format, TimeZone, and Locale.
+    *** The returned formatter is confined to the current thread, and must not be shared with
+    *** other threads.  If the specified format is invalid, the error is logged and a formatter
+    *** for the default Date/Time format is returned.
+    *** @param dtFmt  The Date/Time format (null for the default Date/Time format)
+    *** @param tz     The TimeZone (null for the default TimeZone)
+    *** @param loc    The Locale (null for the default Locale)
+    *** @return The Date/Time formatter
+    **/
+    public static Formatter getFormatter(String dtFmt, TimeZone tz, Locale loc)
+    {
+        String   f   = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
+        TimeZone z   = (tz    != null)? tz    : DateTime.getDefaultTimeZone();
+        String   key = f + "\n" + z.getID() + "\n" + ((loc != null)? loc.toString() : "");
+        Map<String,Formatter> fmtMap = threadFormatters.get();
+        Formatter dtf = fmtMap.get(key);
+        if (dtf == null) {
+            try {
+                dtf = new Formatter(f, z, loc);
+            } catch (IllegalArgumentException iae) {
+                Print.logException("Invalid date/time format: " + dtFmt, iae);
+                dtf = new Formatter(DEFAULT_DATETIME_FORMAT, z, loc); // assumed to be valid
+            }
+            fmtMap.put(key, dtf);
+        }
+        return dtf;
+    }
+
+    /**
+    *** Returns a cached Date/Time formatter for the specified format and TimeZone, using the
+    *** default Locale.  The returned formatter is confined to the current thread.
+    *** @param dtFmt  The Date/Time format (null for the default Date/Time format)
+    *** @param tz     The TimeZone (null for the default TimeZone)
+    *** @return The Date/Time formatter
+    **/
+    public static Formatter getFormatter(String dtFmt, TimeZone tz)
+    {
+        return DateTime.getFormatter(dtFmt, tz, null);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /** 
+    *** Formats the specified time (in seconds since the epoch), using a cached formatter.
+    *** @param timeSec  The time in seconds since the epoch
+    *** @param tz       The TimeZone
+    *** @param dtFmt    The Date/Time format
+    *** @return The formatted Date/Time String
+    **/
+    public static String format(long timeSec, TimeZone tz, String dtFmt)
+    {
+        return DateTime.getFormatter(dtFmt, tz, null).format(timeSec * 1000L);
+    }
+
     /** 
     *** Formats the specified Date instance.
     *** @param date The Date instance
@@ -2388,18 +2679,7 @@ public class DateTime
     **/
     public static String format(java.util.Date date, TimeZone tz, String dtFmt)
     {
-        StringBuffer sb = new StringBuffer();
-        SimpleDateFormat sdf = null;
-        try {
-            String f = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
-            sdf = new SimpleDateFormat(f);
-        } catch (IllegalArgumentException iae) {
-            Print.logException("Invalid date/time format: " + dtFmt, iae);
-            sdf = new SimpleDateFormat(DEFAULT_DATETIME_FORMAT); // assumed to be valid
-        }
-        sdf.setTimeZone((tz != null)? tz : DateTime.getDefaultTimeZone()); 
-        sdf.format(date, sb, new FieldPosition(0));
-        return sb.toString();
+        return DateTime.getFormatter(dtFmt, tz, null).format(date.getTime());
     }
 
     /** 
@@ -2411,18 +2691,8 @@ public class DateTime
     **/
     public String format(String dtFmt, TimeZone tz, StringBuffer sb)
     {
-        if (sb == null) { sb = new StringBuffer(); }
-        SimpleDateFormat sdf = null;
-        try {
-            String f = (dtFmt != null)? dtFmt : DEFAULT_DATETIME_FORMAT;
-            sdf = new SimpleDateFormat(f);
-        } catch (IllegalArgumentException iae) {
-            Print.logException("Invalid date/time format: " + dtFmt, iae);
-            sdf = new SimpleDateFormat(DEFAULT_DATETIME_FORMAT); // assumed to be valid
-        }
-        sdf.setTimeZone(this._timeZone(tz)); 
-        sdf.format(this.getDate(), sb, new FieldPosition(0));
-        return sb.toString();
+        Formatter dtf = DateTime.getFormatter(dtFmt, this._timeZone(tz), null);
+        return dtf.format(this.getTimeMillis(), sb).toString();
     }
 
     /** 
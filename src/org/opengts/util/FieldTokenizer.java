@@ -0,0 +1,733 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Reusable, allocation-free cursor over delimited fields in a byte array or
+//  CharSequence, with in-place numeric parsing.
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.nio.ByteBuffer;
+
+/**
+*** A reusable cursor-style tokenizer over the delimited fields of a byte array or
+*** CharSequence.  Unlike <code>StringTools.parseString</code>, this class does not
+*** create a String for each field.  The "current" field is described by a start/end
+*** index into the source, and may be tested, or parsed in-place into int, long,
+*** double, hex, or NMEA-0183 coordinate values.<br>
+*** An instance is not thread-safe, and is intended to be held by a single client
+*** packet handler and reset for each received packet.
+**/
+
+public class FieldTokenizer
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final double POW10[] = {
+        1e0 , 1e1 , 1e2 , 1e3 , 1e4 , 1e5 , 1e6 , 1e7 , 1e8 , 1e9 ,
+        1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private static final int  MAX_MANTISSA_DIGITS = 18;
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private byte            bytes[]     = null;
+    private CharSequence    chars       = null;
+    private int             srcStart    = 0;
+    private int             srcEnd      = 0;    // exclusive
+
+    private char            delim       = ',';
+
+    private int             cursor      = 0;    // start of next field
+    private int             fldIndex    = -1;
+    private int             fldStart    = 0;
+    private int             fldEnd      = 0;    // exclusive
+
+    private byte            scratch[]   = null; // used for non-array ByteBuffers
+
+    /**
+    *** Constructor
+    **/
+    public FieldTokenizer()
+    {
+        super();
+    }
+
+    /**
+    *** Constructor
+    *** @param delim  The field delimiter
+    **/
+    public FieldTokenizer(char delim)
+    {
+        this();
+        this.delim = delim;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Resets this tokenizer to the specified byte array
+    *** @param b  The byte array
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(byte b[])
+    {
+        return this.reset(b, 0, (b != null)? b.length : 0);
+    }
+
+    /**
+    *** Resets this tokenizer to the specified range of the byte array
+    *** @param b    The byte array
+    *** @param ofs  The offset of the first byte
+    *** @param len  The number of bytes
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(byte b[], int ofs, int len)
+    {
+        this.bytes    = b;
+        this.chars    = null;
+        this.srcStart = (b != null)? ofs : 0;
+        this.srcEnd   = (b != null)? (ofs + len) : 0;
+        return this.rewind();
+    }
+
+    /**
+    *** Resets this tokenizer to the remaining bytes of the specified ByteBuffer.
+    *** The position of the ByteBuffer is not changed.
+    *** @param bb  The ByteBuffer
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(ByteBuffer bb)
+    {
+        if (bb == null) {
+            return this.reset((byte[])null);
+        } else
+        if (bb.hasArray()) {
+            return this.reset(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        } else {
+            int len = bb.remaining();
+            if ((this.scratch == null) || (this.scratch.length < len)) {
+                this.scratch = new byte[len];
+            }
+            bb.duplicate().get(this.scratch, 0, len);
+            return this.reset(this.scratch, 0, len);
+        }
+    }
+
+    /**
+    *** Resets this tokenizer to the specified CharSequence
+    *** @param cs  The CharSequence
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(CharSequence cs)
+    {
+        return this.reset(cs, 0, (cs != null)? cs.length() : 0);
+    }
+
+    /**
+    *** Resets this tokenizer to the specified range of the CharSequence
+    *** @param cs     The CharSequence
+    *** @param start  The index of the first character
+    *** @param end    The index following the last character
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(CharSequence cs, int start, int end)
+    {
+        this.bytes    = null;
+        this.chars    = cs;
+        this.srcStart = (cs != null)? start : 0;
+        this.srcEnd   = (cs != null)? end   : 0;
+        return this.rewind();
+    }
+
+    /**
+    *** Resets this tokenizer to the current field of the specified tokenizer.
+    *** This is used to tokenize a field containing sub-fields (ie. a "$GPRMC"
+    *** record embedded in a '|' delimited packet) without copying.
+    *** @param ft  The parent FieldTokenizer
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer reset(FieldTokenizer ft)
+    {
+        this.bytes    = ft.bytes;
+        this.chars    = ft.chars;
+        this.srcStart = ft.fldStart;
+        this.srcEnd   = ft.fldEnd;
+        return this.rewind();
+    }
+
+    /**
+    *** Repositions the cursor before the first field
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer rewind()
+    {
+        this.cursor   = this.srcStart;
+        this.fldIndex = -1;
+        this.fldStart = this.srcStart;
+        this.fldEnd   = this.srcStart;
+        return this;
+    }
+
+    /**
+    *** Removes leading/trailing whitespace from the source (and rewinds)
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer trim()
+    {
+        while ((this.srcStart < this.srcEnd) && (this._charAt(this.srcStart) <= ' ')) { this.srcStart++; }
+        while ((this.srcEnd > this.srcStart) && (this._charAt(this.srcEnd - 1) <= ' ')) { this.srcEnd--; }
+        return this.rewind();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the field delimiter
+    *** @param delim  The field delimiter
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer setDelimiter(char delim)
+    {
+        this.delim = delim;
+        return this;
+    }
+
+    /**
+    *** Gets the field delimiter
+    *** @return The field delimiter
+    **/
+    public char getDelimiter()
+    {
+        return this.delim;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return the character at the specified absolute index */
+    private int _charAt(int ndx)
+    {
+        return (this.bytes != null)? ((int)this.bytes[ndx] & 0xFF) : (int)this.chars.charAt(ndx);
+    }
+
+    /**
+    *** Gets the length of the source
+    *** @return The length of the source
+    **/
+    public int getSourceLength()
+    {
+        return this.srcEnd - this.srcStart;
+    }
+
+    /**
+    *** Appends the entire source to the specified StringBuffer
+    *** @param sb  The StringBuffer
+    *** @return The StringBuffer
+    **/
+    public StringBuffer appendSource(StringBuffer sb)
+    {
+        return FieldTokenizer._append(sb, this.bytes, this.chars, this.srcStart, this.srcEnd);
+    }
+
+    /**
+    *** Returns the number of fields in the source (does not move the cursor)
+    *** @return The number of fields in the source
+    **/
+    public int getFieldCount()
+    {
+        int count = 1; // an empty source still contains one (empty) field
+        for (int i = this.srcStart; i < this.srcEnd; i++) {
+            if (this._charAt(i) == this.delim) { count++; }
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if there are more fields following the current field
+    *** @return True if there are more fields
+    **/
+    public boolean hasMoreFields()
+    {
+        return (this.cursor <= this.srcEnd);
+    }
+
+    /**
+    *** Advances to the next field
+    *** @return True if the cursor was advanced, false if there are no more fields
+    **/
+    public boolean next()
+    {
+        if (this.cursor > this.srcEnd) {
+            return false;
+        }
+        int e = this.cursor;
+        while ((e < this.srcEnd) && (this._charAt(e) != this.delim)) { e++; }
+        this.fldStart = this.cursor;
+        this.fldEnd   = e;
+        this.cursor   = e + 1;
+        this.fldIndex++;
+        return true;
+    }
+
+    /**
+    *** Skips the specified number of fields
+    *** @param n  The number of fields to skip
+    *** @return True if all fields were skipped, false if the end of the source was reached
+    **/
+    public boolean skip(int n)
+    {
+        for (; n > 0; n--) {
+            if (!this.next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    *** Moves the cursor to the specified field index (0-based).  If the requested
+    *** field is at/before the current field, the source is rescanned from the start
+    *** (which also restores a field previously narrowed with 'subField').
+    *** @param ndx  The field index
+    *** @return True if the field exists, false otherwise
+    **/
+    public boolean gotoField(int ndx)
+    {
+        if (ndx < 0) {
+            return false;
+        } else
+        if (ndx <= this.fldIndex) {
+            this.rewind();
+        }
+        return this.skip(ndx - this.fldIndex);
+    }
+
+    /**
+    *** Gets the index (0-based) of the current field
+    *** @return The index of the current field, or -1 if 'next' has not yet been called
+    **/
+    public int getFieldIndex()
+    {
+        return this.fldIndex;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Narrows the current field to the specified range, relative to the start of
+    *** the current field (similar to <code>String.substring</code>).  A negative
+    *** 'end' is relative to the end of the current field.  The cursor is not moved.
+    *** @param start  The start index (relative to the current field)
+    *** @param end    The end index (exclusive, relative to the current field)
+    *** @return This FieldTokenizer
+    **/
+    public FieldTokenizer subField(int start, int end)
+    {
+        int len = this.fldEnd - this.fldStart;
+        if (end < 0) { end = len + end; }
+        if (end > len) { end = len; }
+        if (start < 0) { start = 0; }
+        if (start > end) { start = end; }
+        this.fldEnd   = this.fldStart + end;
+        this.fldStart = this.fldStart + start;
+        return this;
+    }
+
+    /**
+    *** Gets the length of the current field
+    *** @return The length of the current field
+    **/
+    public int getFieldLength()
+    {
+        return this.fldEnd - this.fldStart;
+    }
+
+    /**
+    *** Returns true if the current field is empty
+    *** @return True if the current field is empty
+    **/
+    public boolean isFieldEmpty()
+    {
+        return (this.fldEnd <= this.fldStart);
+    }
+
+    /**
+    *** Gets the character at the specified index of the current field
+    *** @param ndx  The index relative to the start of the current field
+    *** @return The character, or -1 if the index is out of range
+    **/
+    public int fieldCharAt(int ndx)
+    {
+        int p = this.fldStart + ndx;
+        return ((ndx >= 0) && (p < this.fldEnd))? this._charAt(p) : -1;
+    }
+
+    /**
+    *** Returns true if the current field is equal to the specified String
+    *** @param s  The String to test
+    *** @return True if the current field equals the specified String
+    **/
+    public boolean fieldEquals(String s)
+    {
+        return (s != null) && (s.length() == this.getFieldLength()) && this.fieldStartsWith(s);
+    }
+
+    /**
+    *** Returns true if the current field starts with the specified String
+    *** @param s  The String to test
+    *** @return True if the current field starts with the specified String
+    **/
+    public boolean fieldStartsWith(String s)
+    {
+        if ((s == null) || (s.length() > this.getFieldLength())) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (this._charAt(this.fldStart + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    *** Returns the index of the specified character within the current field
+    *** @param ch  The character to find
+    *** @return The index relative to the start of the field, or -1 if not found
+    **/
+    public int fieldIndexOf(int ch)
+    {
+        for (int i = this.fldStart; i < this.fldEnd; i++) {
+            if (this._charAt(i) == ch) {
+                return i - this.fldStart;
+            }
+        }
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Parses the current field as a decimal int value
+    *** @param dft  The default value if the field does not contain a number
+    *** @return The parsed value
+    **/
+    public int getFieldInt(int dft)
+    {
+        return (int)FieldTokenizer._parseLong(this.bytes, this.chars, this.fldStart, this.fldEnd, (long)dft);
+    }
+
+    /**
+    *** Parses the current field as a decimal long value
+    *** @param dft  The default value if the field does not contain a number
+    *** @return The parsed value
+    **/
+    public long getFieldLong(long dft)
+    {
+        return FieldTokenizer._parseLong(this.bytes, this.chars, this.fldStart, this.fldEnd, dft);
+    }
+
+    /**
+    *** Parses the current field as a hex value
+    *** @param dft  The default value if the field does not contain a hex number
+    *** @return The parsed value
+    **/
+    public long getFieldHex(long dft)
+    {
+        return FieldTokenizer._parseHex(this.bytes, this.chars, this.fldStart, this.fldEnd, dft);
+    }
+
+    /**
+    *** Parses the current field as a double value
+    *** @param dft  The default value if the field does not contain a number
+    *** @return The parsed value
+    **/
+    public double getFieldDouble(double dft)
+    {
+        return FieldTokenizer._parseDouble(this.bytes, this.chars, this.fldStart, this.fldEnd, dft);
+    }
+
+    /**
+    *** Parses the current field as an NMEA-0183 "dddmm.mmmm" coordinate.
+    *** The returned value is unsigned (the hemisphere is contained in the following field).
+    *** @param dft  The default value if the field does not contain a number
+    *** @return The parsed coordinate, in decimal degrees
+    **/
+    public double getFieldNmeaCoordinate(double dft)
+    {
+        double v = this.getFieldDouble(-1.0);
+        if (v < 0.0) {
+            return dft;
+        } else {
+            double deg = (double)((long)v / 100L);
+            return deg + ((v - (deg * 100.0)) / 60.0);
+        }
+    }
+
+    /**
+    *** Returns the current field as a String (allocates a new String)
+    *** @return The current field String
+    **/
+    public String getFieldString()
+    {
+        if (this.chars != null) {
+            return this.chars.subSequence(this.fldStart, this.fldEnd).toString();
+        } else
+        if (this.bytes != null) {
+            return StringTools.toStringValue(this.bytes, this.fldStart, this.fldEnd - this.fldStart);
+        } else {
+            return "";
+        }
+    }
+
+    /**
+    *** Appends the current field to the specified StringBuffer
+    *** @param sb  The StringBuffer
+    *** @return The StringBuffer
+    **/
+    public StringBuffer appendField(StringBuffer sb)
+    {
+        return FieldTokenizer._append(sb, this.bytes, this.chars, this.fldStart, this.fldEnd);
+    }
+
+    /**
+    *** Returns the current field as a String
+    *** @return The current field String
+    **/
+    public String toString()
+    {
+        return this.getFieldString();
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Static range parsers
+
+    /**
+    *** Parses a decimal long value from the specified range of a CharSequence
+    *** @param cs     The CharSequence
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a number
+    *** @return The parsed value
+    **/
+    public static long parseLong(CharSequence cs, int start, int end, long dft)
+    {
+        return (cs != null)? FieldTokenizer._parseLong(null, cs, start, Math.min(end,cs.length()), dft) : dft;
+    }
+
+    /**
+    *** Parses a decimal long value from the specified range of a byte array
+    *** @param b      The byte array
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a number
+    *** @return The parsed value
+    **/
+    public static long parseLong(byte b[], int start, int end, long dft)
+    {
+        return (b != null)? FieldTokenizer._parseLong(b, null, start, Math.min(end,b.length), dft) : dft;
+    }
+
+    /**
+    *** Parses a hex value from the specified range of a CharSequence
+    *** @param cs     The CharSequence
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a hex number
+    *** @return The parsed value
+    **/
+    public static long parseHex(CharSequence cs, int start, int end, long dft)
+    {
+        return (cs != null)? FieldTokenizer._parseHex(null, cs, start, Math.min(end,cs.length()), dft) : dft;
+    }
+
+    /**
+    *** Parses a hex value from the specified range of a byte array
+    *** @param b      The byte array
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a hex number
+    *** @return The parsed value
+    **/
+    public static long parseHex(byte b[], int start, int end, long dft)
+    {
+        return (b != null)? FieldTokenizer._parseHex(b, null, start, Math.min(end,b.length), dft) : dft;
+    }
+
+    /**
+    *** Parses a double value from the specified range of a CharSequence
+    *** @param cs     The CharSequence
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a number
+    *** @return The parsed value
+    **/
+    public static double parseDouble(CharSequence cs, int start, int end, double dft)
+    {
+        return (cs != null)? FieldTokenizer._parseDouble(null, cs, start, Math.min(end,cs.length()), dft) : dft;
+    }
+
+    /**
+    *** Parses a double value from the specified range of a byte array
+    *** @param b      The byte array
+    *** @param start  The start index
+    *** @param end    The end index (exclusive)
+    *** @param dft    The default value if the range does not contain a number
+    *** @return The parsed value
+    **/
+    public static double parseDouble(byte b[], int start, int end, double dft)
+    {
+        return (b != null)? FieldTokenizer._parseDouble(b, null, start, Math.min(end,b.length), dft) : dft;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static int _ch(byte b[], CharSequence cs, int ndx)
+    {
+        return (b != null)? ((int)b[ndx] & 0xFF) : (int)cs.charAt(ndx);
+    }
+
+    private static StringBuffer _append(StringBuffer sb, byte b[], CharSequence cs, int start, int end)
+    {
+        if (cs != null) {
+            sb.append(cs, start, end);
+        } else
+        if (b != null) {
+            for (int i = start; i < end; i++) {
+                sb.append((char)((int)b[i] & 0xFF));
+            }
+        }
+        return sb;
+    }
+
+    private static long _parseLong(byte b[], CharSequence cs, int s, int e, long dft)
+    {
+        while ((s < e) && (_ch(b,cs,s) <= ' ')) { s++; }
+        boolean neg = false;
+        if (s < e) {
+            int c = _ch(b,cs,s);
+            if ((c == '-') || (c == '+')) {
+                neg = (c == '-');
+                s++;
+            }
+        }
+        long v = 0L;
+        int  n = 0;
+        for (; s < e; s++, n++) {
+            int c = _ch(b,cs,s);
+            if ((c < '0') || (c > '9')) { break; }
+            v = (v * 10L) + (long)(c - '0');
+        }
+        return (n > 0)? (neg? -v : v) : dft;
+    }
+
+    private static long _parseHex(byte b[], CharSequence cs, int s, int e, long dft)
+    {
+        while ((s < e) && (_ch(b,cs,s) <= ' ')) { s++; }
+        if (((s + 1) < e) && (_ch(b,cs,s) == '0') && ((_ch(b,cs,s+1) | 0x20) == 'x')) {
+            s += 2;
+        }
+        long v = 0L;
+        int  n = 0;
+        for (; s < e; s++, n++) {
+            int c = _ch(b,cs,s);
+            int d;
+            if ((c >= '0') && (c <= '9')) {
+                d = c - '0';
+            } else
+            if ((c >= 'a') && (c <= 'f')) {
+                d = c - 'a' + 10;
+            } else
+            if ((c >= 'A') && (c <= 'F')) {
+                d = c - 'A' + 10;
+            } else {
+                break;
+            }
+            v = (v << 4) | (long)d;
+        }
+        return (n > 0)? v : dft;
+    }
+
+    private static double _parseDouble(byte b[], CharSequence cs, int s, int e, double dft)
+    {
+        while ((s < e) && (_ch(b,cs,s) <= ' ')) { s++; }
+        boolean neg = false;
+        if (s < e) {
+            int c = _ch(b,cs,s);
+            if ((c == '-') || (c == '+')) {
+                neg = (c == '-');
+                s++;
+            }
+        }
+
+        /* mantissa */
+        long    mant   = 0L;
+        int     digits = 0;     // significant digits accumulated in 'mant'
+        int     scale  = 0;     // power-of-10 adjustment
+        int     n      = 0;     // total digits parsed
+        boolean frac   = false;
+        for (; s < e; s++) {
+            int c = _ch(b,cs,s);
+            if ((c >= '0') && (c <= '9')) {
+                n++;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    if ((mant != 0L) || (c != '0')) { digits++; }
+                    mant = (mant * 10L) + (long)(c - '0');
+                    if (frac) { scale--; }
+                } else
+                if (!frac) {
+                    scale++; // integer digit beyond mantissa precision
+                }
+            } else
+            if ((c == '.') && !frac) {
+                frac = true;
+            } else {
+                break;
+            }
+        }
+        if (n <= 0) {
+            return dft;
+        }
+
+        /* exponent */
+        if ((s < e) && ((_ch(b,cs,s) | 0x20) == 'e')) {
+            long x = FieldTokenizer._parseLong(b, cs, s + 1, e, 0L);
+            scale += (int)x;
+        }
+
+        /* assemble */
+        double v = (double)mant;
+        if (scale < 0) {
+            v = ((-scale) < POW10.length)? (v / POW10[-scale]) : (v / Math.pow(10.0, (double)(-scale)));
+        } else
+        if (scale > 0) {
+            v = (scale < POW10.length)? (v * POW10[scale]) : (v * Math.pow(10.0, (double)scale));
+        }
+        return neg? -v : v;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+}
@@ -174,6 +174,8 @@ public class HTMLTools
     public  static final String CONTENT_TYPE_KML        = "application/vnd.google-earth.kml+xml";
     public  static final String CONTENT_TYPE_KMZ        = "application/vnd.google-earth.kmz";
     public  static final String CONTENT_TYPE_JSON       = "application/jsonrequest";
+    public  static final String CONTENT_TYPE_JAVASCRIPT = "text/javascript";
+    public  static final String CONTENT_TYPE_CSS        = "text/css";
 
     /**
     *** Returns "zip" MIME type
@@ -238,6 +240,24 @@ public class HTMLTools
         return HTMLTools.getMimeType("kml", HTMLTools.CONTENT_TYPE_KML);
     }
 
+    /**
+    *** Returns "javascript" MIME type
+    *** @return "javascript" MIME type
+    **/
+    public static String MIME_JAVASCRIPT()
+    {
+        return HTMLTools.getMimeType("javascript", HTMLTools.CONTENT_TYPE_JAVASCRIPT);
+    }
+
+    /**
+    *** Returns "css" MIME type
+    *** @return "css" MIME type
+    **/
+    public static String MIME_CSS()
+    {
+        return HTMLTools.getMimeType("css", HTMLTools.CONTENT_TYPE_CSS);
+    }
+
     /**
     *** Returns "binary" MIME type
     *** @return "binary" MIME type
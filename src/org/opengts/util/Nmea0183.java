@@ -994,6 +994,19 @@ public class Nmea0183
     *** @return Time in UTC seconds.
     **/
     private long _getUTCSeconds(long dmy, long hms)
+    {
+        return Nmea0183.getUTCSeconds(dmy, hms);
+    }
+
+    /**
+    *** Computes seconds in UTC time given values from GPS device.
+    *** @param dmy Date received from GPS in DDMMYY format, where DD is day, MM is month,
+    ***     YY is year.
+    *** @param hms Time received from GPS in HHMMSS format, where HH is hour, MM is minute,
+    ***     and SS is second.
+    *** @return Time in UTC seconds.
+    **/
+    public static long getUTCSeconds(long dmy, long hms)
     {
     
         /* time of day [TOD] */
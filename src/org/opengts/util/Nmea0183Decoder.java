@@ -0,0 +1,702 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Fast-path streaming decoder for NMEA-0183 $GPRMC/$GPGGA records.
+//  Unlike "Nmea0183", this decoder does not split the record into Strings.
+//  Characters are consumed one at a time, the XOR checksum is computed as the
+//  record is read, and field values are parsed in-place into a reusable
+//  mutable "Nmea0183Decoder.Record".
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.nio.ByteBuffer;
+
+/**
+*** Fast-path streaming decoder for NMEA-0183 "$GPRMC" and "$GPGGA" records.
+*** (the talker ID is not checked, so "$GNRMC", "$GLGGA", etc, are also accepted)<br>
+*** Field semantics match those of <code>Nmea0183</code>, however no intermediate
+*** Strings or objects are created while decoding.  An instance is not thread-safe.
+**/
+
+public class Nmea0183Decoder
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    MAX_FIELDS          = 24;
+    private static final int    MAX_MANTISSA_DIGITS = 18;
+
+    private static final double POW10[] = {
+        1e0 , 1e1 , 1e2 , 1e3 , 1e4 , 1e5 , 1e6 , 1e7 , 1e8 , 1e9 ,
+        1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private static final int    RCD_NONE            = 0;
+    private static final int    RCD_RMC             = ('R' << 16) | ('M' << 8) | 'C';
+    private static final int    RCD_GGA             = ('G' << 16) | ('G' << 8) | 'A';
+
+    private static final int    STATE_IDLE          = 0;    // waiting for '$'
+    private static final int    STATE_FIELDS        = 1;    // reading fields
+    private static final int    STATE_CHECKSUM      = 2;    // reading checksum digits
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reusable container for the values decoded from one or more NMEA-0183 records
+    **/
+    public static class Record
+    {
+        private long    parsedRcdTypes  = Nmea0183.TYPE_NONE;
+        private long    fieldMask       = 0L;
+        private boolean validChecksum   = false;
+        private boolean isValidGPS      = false;
+        private long    ddmmyy          = 0L;
+        private long    hhmmss          = 0L;
+        private double  latitude        = 0.0;
+        private double  longitude       = 0.0;
+        private double  speedKnots      = 0.0;
+        private double  heading         = 0.0;
+        private double  hdop            = 0.0;
+        private int     numSats         = 0;
+        private double  altitudeM       = 0.0;
+        private int     fixType         = 0;
+        private double  magVariation    = 0.0;
+        public Record() {
+            super();
+        }
+        public void clear() {
+            this.parsedRcdTypes = Nmea0183.TYPE_NONE;
+            this.fieldMask      = 0L;
+            this.validChecksum  = false;
+            this.isValidGPS     = false;
+            this.ddmmyy         = 0L;
+            this.hhmmss         = 0L;
+            this.latitude       = 0.0;
+            this.longitude      = 0.0;
+            this.speedKnots     = 0.0;
+            this.heading        = 0.0;
+            this.hdop           = 0.0;
+            this.numSats        = 0;
+            this.altitudeM      = 0.0;
+            this.fixType        = 0;
+            this.magVariation   = 0.0;
+        }
+        public long getParsedRecordTypes() {
+            return this.parsedRcdTypes;
+        }
+        public long getFieldMask() {
+            return this.fieldMask;
+        }
+        public boolean hasField(long fld) {
+            return ((this.fieldMask & fld) != 0L);
+        }
+        public boolean isValidChecksum() {
+            return this.validChecksum;
+        }
+        public boolean isValidGPS() {
+            return this.isValidGPS;
+        }
+        public long getDDMMYY() {
+            return this.ddmmyy;
+        }
+        public long getHHMMSS() {
+            return this.hhmmss;
+        }
+        public boolean hasFixtime() {
+            return this.hasField(Nmea0183.FIELD_HHMMSS);
+        }
+        public long getFixtime() {
+            return Nmea0183.getUTCSeconds(this.ddmmyy, this.hhmmss);
+        }
+        public boolean hasLatitude() {
+            return this.hasField(Nmea0183.FIELD_LATITUDE);
+        }
+        public double getLatitude() {
+            return this.latitude;
+        }
+        public boolean hasLongitude() {
+            return this.hasField(Nmea0183.FIELD_LONGITUDE);
+        }
+        public double getLongitude() {
+            return this.longitude;
+        }
+        public GeoPoint getGeoPoint() {
+            return new GeoPoint(this.latitude, this.longitude);
+        }
+        public boolean hasSpeed() {
+            return this.hasField(Nmea0183.FIELD_SPEED);
+        }
+        public double getSpeedKnots() {
+            return this.speedKnots;
+        }
+        public double getSpeedKPH() {
+            return this.speedKnots * Nmea0183.KILOMETERS_PER_KNOT;
+        }
+        public boolean hasHeading() {
+            return this.hasField(Nmea0183.FIELD_HEADING);
+        }
+        public double getHeading() {
+            return this.heading;
+        }
+        public int getFixType() {
+            return this.fixType;
+        }
+        public int getNumberOfSatellites() {
+            return this.numSats;
+        }
+        public double getHDOP() {
+            return this.hdop;
+        }
+        public boolean hasAltitude() {
+            return this.hasField(Nmea0183.FIELD_ALTITUDE);
+        }
+        public double getAltitudeMeters() {
+            return this.altitudeM;
+        }
+        public double getMagneticVariation() {
+            return this.magVariation;
+        }
+        public String toString() {
+            StringBuffer sb = new StringBuffer();
+            sb.append("RcdType : ").append(Nmea0183.GetTypeNames(this.parsedRcdTypes)).append("\n");
+            sb.append("Checksum: ").append(this.validChecksum?"ok":"failed").append("\n");
+            sb.append("Fixtime : ").append(this.getFixtime()).append(" [").append(new DateTime(this.getFixtime())).append("]\n");
+            sb.append("GPS     : ").append(this.isValidGPS?"valid":"invalid").append(" ").append(this.latitude).append("/").append(this.longitude).append("\n");
+            sb.append("SpeedKPH: ").append(this.getSpeedKPH()).append(" kph, heading ").append(this.heading).append("\n");
+            sb.append("Altitude: ").append(this.altitudeM).append(" meters\n");
+            return sb.toString();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private boolean     ignoreChecksum  = false;
+    private Record      record          = null;
+
+    private int         state           = STATE_IDLE;
+    private int         calcChecksum    = 0;
+    private int         rcvdChecksum    = 0;
+    private int         rcvdChecksumLen = 0;
+    private int         rcdName         = 0;    // last 3 chars of record name
+    private int         rcdNameLen      = 0;
+
+    private int         fldCount        = 0;
+    private int         fldLen[]        = new int[MAX_FIELDS];
+    private int         fldChar[]       = new int[MAX_FIELDS];
+    private long        fldLong[]       = new long[MAX_FIELDS];
+    private double      fldDouble[]     = new double[MAX_FIELDS];
+
+    // current field accumulators
+    private int         curLen          = 0;
+    private int         curChar         = 0;
+    private boolean     curNeg          = false;
+    private boolean     curFrac         = false;
+    private boolean     curNumeric      = true;
+    private long        curInt          = 0L;
+    private long        curMant         = 0L;
+    private int         curDigits       = 0;
+    private int         curScale        = 0;
+
+    /**
+    *** Constructor
+    **/
+    public Nmea0183Decoder()
+    {
+        this(new Record(), false);
+    }
+
+    /**
+    *** Constructor
+    *** @param record          The record into which decoded values are placed
+    *** @param ignoreChecksum  True to ignore the record checksum
+    **/
+    public Nmea0183Decoder(Record record, boolean ignoreChecksum)
+    {
+        this.record         = (record != null)? record : new Record();
+        this.ignoreChecksum = ignoreChecksum;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the record into which decoded values are placed
+    *** @return The Record
+    **/
+    public Record getRecord()
+    {
+        return this.record;
+    }
+
+    /**
+    *** Sets the record into which decoded values are placed
+    *** @param record  The Record
+    **/
+    public void setRecord(Record record)
+    {
+        this.record = (record != null)? record : new Record();
+    }
+
+    /**
+    *** Sets the 'ignore checksum' state
+    *** @param ignore  True to ignore the record checksum
+    **/
+    public void setIgnoreChecksum(boolean ignore)
+    {
+        this.ignoreChecksum = ignore;
+    }
+
+    /**
+    *** Discards any partially received record
+    **/
+    public void reset()
+    {
+        this.state = STATE_IDLE;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Clears the current record and decodes all NMEA-0183 records found in the
+    *** specified range of the byte array.  Values from multiple records (ie. a
+    *** "$GPRMC" followed by "$GPGGA") are combined into the same Record.
+    *** @param b    The byte array
+    *** @param ofs  The offset of the first byte
+    *** @param len  The number of bytes
+    *** @return True if at least one record was successfully decoded
+    **/
+    public boolean decode(byte b[], int ofs, int len)
+    {
+        this.record.clear();
+        this.reset();
+        boolean ok = false;
+        if (b != null) {
+            int end = ofs + len;
+            for (int i = ofs; i < end; i++) {
+                if (this.put((int)b[i] & 0xFF)) { ok = true; }
+            }
+        }
+        return this.flush() || ok;
+    }
+
+    /**
+    *** Clears the current record and decodes all NMEA-0183 records found in the
+    *** remaining bytes of the ByteBuffer.  The ByteBuffer position is not changed.
+    *** @param bb  The ByteBuffer
+    *** @return True if at least one record was successfully decoded
+    **/
+    public boolean decode(ByteBuffer bb)
+    {
+        if ((bb != null) && bb.hasArray()) {
+            return this.decode(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        }
+        this.record.clear();
+        this.reset();
+        boolean ok = false;
+        if (bb != null) {
+            for (int i = bb.position(); i < bb.limit(); i++) {
+                if (this.put((int)bb.get(i) & 0xFF)) { ok = true; }
+            }
+        }
+        return this.flush() || ok;
+    }
+
+    /**
+    *** Clears the current record and decodes all NMEA-0183 records found in the
+    *** specified CharSequence.
+    *** @param cs  The CharSequence
+    *** @return True if at least one record was successfully decoded
+    **/
+    public boolean decode(CharSequence cs)
+    {
+        this.record.clear();
+        this.reset();
+        boolean ok = false;
+        if (cs != null) {
+            int len = cs.length();
+            for (int i = 0; i < len; i++) {
+                if (this.put((int)cs.charAt(i))) { ok = true; }
+            }
+        }
+        return this.flush() || ok;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Completes any record in progress (ie. a record not followed by a line terminator)
+    *** @return True if a record was completed and successfully decoded
+    **/
+    public boolean flush()
+    {
+        if (this.state == STATE_IDLE) {
+            return false;
+        } else {
+            return this._endRecord();
+        }
+    }
+
+    /**
+    *** Consumes the next character of the NMEA-0183 stream.  The values of each
+    *** completed record are combined into the current Record.
+    *** @param ch  The next character
+    *** @return True if this character completed a successfully decoded record
+    **/
+    public boolean put(int ch)
+    {
+        if (ch == '$') {
+            // start of a new record (complete any record in progress)
+            boolean ok = (this.state != STATE_IDLE)? this._endRecord() : false;
+            this.state           = STATE_FIELDS;
+            this.calcChecksum    = 0;
+            this.rcvdChecksum    = 0;
+            this.rcvdChecksumLen = 0;
+            this.rcdName         = 0;
+            this.rcdNameLen      = 0;
+            this.fldCount        = 0;
+            this._startField();
+            return ok;
+        } else
+        if ((ch == '\r') || (ch == '\n')) {
+            return (this.state != STATE_IDLE)? this._endRecord() : false;
+        }
+        switch (this.state) {
+            case STATE_FIELDS:
+                if (ch == '*') {
+                    this._endField();
+                    this.state = STATE_CHECKSUM;
+                } else {
+                    this.calcChecksum = (this.calcChecksum ^ ch) & 0xFF;
+                    if (ch == ',') {
+                        this._endField();
+                        this._startField();
+                    } else
+                    if (this.fldCount == 0) {
+                        // record name: retain the last 3 characters
+                        this.rcdName = ((this.rcdName << 8) | (ch & 0xFF)) & 0xFFFFFF;
+                        this.rcdNameLen++;
+                    } else {
+                        this._fieldChar(ch);
+                    }
+                }
+                return false;
+            case STATE_CHECKSUM:
+                if (this.rcvdChecksumLen < 2) {
+                    int d = Character.digit((char)ch, 16);
+                    if (d >= 0) {
+                        this.rcvdChecksum = (this.rcvdChecksum << 4) | d;
+                        this.rcvdChecksumLen++;
+                    } else {
+                        this.rcvdChecksumLen = 99; // invalid checksum
+                    }
+                }
+                // characters following the checksum are ignored ("extra data")
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private void _startField()
+    {
+        this.curLen     = 0;
+        this.curChar    = 0;
+        this.curNeg     = false;
+        this.curFrac    = false;
+        this.curNumeric = true;
+        this.curInt     = 0L;
+        this.curMant    = 0L;
+        this.curDigits  = 0;
+        this.curScale   = 0;
+    }
+
+    private void _fieldChar(int ch)
+    {
+        if (this.curLen == 0) {
+            this.curChar = ch;
+        }
+        this.curLen++;
+        if (!this.curNumeric) {
+            // no longer parsing a number
+        } else
+        if ((ch >= '0') && (ch <= '9')) {
+            int d = ch - '0';
+            if (!this.curFrac) {
+                this.curInt = (this.curInt * 10L) + d;
+            }
+            if (this.curDigits < MAX_MANTISSA_DIGITS) {
+                if ((this.curMant != 0L) || (d != 0)) { this.curDigits++; }
+                this.curMant = (this.curMant * 10L) + d;
+                if (this.curFrac) { this.curScale--; }
+            } else
+            if (!this.curFrac) {
+                this.curScale++;
+            }
+        } else
+        if ((ch == '.') && !this.curFrac) {
+            this.curFrac = true;
+        } else
+        if (((ch == '-') || (ch == '+')) && (this.curLen == 1)) {
+            this.curNeg = (ch == '-');
+        } else {
+            this.curNumeric = false; // stop at first non-numeric character
+        }
+    }
+
+    private void _endField()
+    {
+        if (this.fldCount == 0) {
+            // record name
+            this.fldCount = 1;
+            return;
+        }
+        int n = this.fldCount++;
+        if (n >= MAX_FIELDS) {
+            return; // ignore extra fields
+        }
+        double v = (double)this.curMant;
+        if (this.curScale < 0) {
+            v = (-this.curScale < POW10.length)? (v / POW10[-this.curScale]) : (v / Math.pow(10.0, -this.curScale));
+        } else
+        if (this.curScale > 0) {
+            v = (this.curScale < POW10.length)? (v * POW10[this.curScale]) : (v * Math.pow(10.0, this.curScale));
+        }
+        this.fldLen[n]    = this.curLen;
+        this.fldChar[n]   = this.curChar;
+        this.fldLong[n]   = this.curNeg? -this.curInt : this.curInt;
+        this.fldDouble[n] = this.curNeg? -v : v;
+    }
+
+    /* return true if field 'n' is present and contains a number */
+    private boolean _hasNumber(int n)
+    {
+        if ((n >= this.fldCount) || (n >= MAX_FIELDS) || (this.fldLen[n] <= 0)) {
+            return false;
+        } else {
+            int c = this.fldChar[n];
+            return ((c >= '0') && (c <= '9')) || (c == '.') || (c == '-') || (c == '+');
+        }
+    }
+
+    private double _double(int n, double dft)
+    {
+        return this._hasNumber(n)? this.fldDouble[n] : dft;
+    }
+
+    private long _long(int n, long dft)
+    {
+        return this._hasNumber(n)? this.fldLong[n] : dft;
+    }
+
+    private int _char(int n)
+    {
+        return ((n < this.fldCount) && (n < MAX_FIELDS) && (this.fldLen[n] > 0))? this.fldChar[n] : 0;
+    }
+
+    /* parse "dddmm.mmmm" coordinate in field 'n', hemisphere in field 'n+1' */
+    private double _coord(int n, int negHemi, double invalid)
+    {
+        double v = this._double(n, 99999.0);
+        if ((v < 0.0) || (v >= 99999.0)) {
+            return invalid;
+        } else {
+            double deg = (double)((long)v / 100L);
+            deg += (v - (deg * 100.0)) / 60.0;
+            return (this._char(n + 1) == negHemi)? -deg : deg;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private boolean _endRecord()
+    {
+        if (this.state == STATE_FIELDS) {
+            this._endField();
+        }
+        boolean hasChecksum = (this.state == STATE_CHECKSUM);
+        this.state = STATE_IDLE;
+
+        /* checksum */
+        boolean validChecksum = hasChecksum && (this.rcvdChecksumLen == 2) && (this.rcvdChecksum == this.calcChecksum);
+        if (!this.ignoreChecksum && !validChecksum) {
+            return false;
+        }
+
+        /* record type */
+        Record r = this.record;
+        int type = (this.rcdNameLen == 5)? this.rcdName : RCD_NONE;
+        if (type == RCD_RMC) {
+            if (this.fldCount < 10) {
+                return false;
+            }
+            r.validChecksum   = validChecksum || this.ignoreChecksum;
+            r.parsedRcdTypes |= Nmea0183.TYPE_GPRMC;
+            r.fieldMask      |= Nmea0183.FIELD_RECORD_TYPE | Nmea0183.FIELD_VALID_FIX;
+            int fix = this._char(2);
+            boolean validGPS = (fix != 'V'); // "A"=valid, "V"=invalid, other=assume valid
+            r.hhmmss          = this._long(1, 0L);
+            r.ddmmyy          = this._long(9, 0L);
+            r.fieldMask      |= Nmea0183.FIELD_HHMMSS | Nmea0183.FIELD_DDMMYY;
+            if (validGPS) {
+                double lat = this._coord(3, 'S',  90.0);
+                double lon = this._coord(5, 'W', 180.0);
+                if (!GeoPoint.isValid(lat,lon)) {
+                    validGPS     = false;
+                    r.latitude   = 0.0;
+                    r.longitude  = 0.0;
+                } else {
+                    r.latitude   = lat;
+                    r.longitude  = lon;
+                    r.speedKnots = this._double(7, -1.0);
+                    r.heading    = this._double(8, -1.0);
+                    r.fieldMask |= Nmea0183.FIELD_LATITUDE | Nmea0183.FIELD_LONGITUDE;
+                    r.fieldMask |= Nmea0183.FIELD_SPEED | Nmea0183.FIELD_HEADING;
+                }
+            } else {
+                r.latitude   = 0.0;
+                r.longitude  = 0.0;
+                r.speedKnots = 0.0;
+                r.heading    = 0.0;
+            }
+            if (this.fldCount > 11) {
+                double magDeg = this._double(10, 0.0);
+                r.magVariation = ((this._char(11) | 0x20) == 'w')? -magDeg : magDeg;
+            }
+            r.isValidGPS = validGPS;
+            return validGPS;
+        } else
+        if (type == RCD_GGA) {
+            if (this.fldCount < 14) {
+                return false;
+            }
+            r.validChecksum   = validChecksum || this.ignoreChecksum;
+            r.parsedRcdTypes |= Nmea0183.TYPE_GPGGA;
+            r.fieldMask      |= Nmea0183.FIELD_RECORD_TYPE | Nmea0183.FIELD_VALID_FIX;
+            boolean validGPS  = !((this.fldLen[6] == 1) && (this.fldChar[6] == '0'));
+            r.hhmmss          = this._long(1, 0L);
+            r.fieldMask      |= Nmea0183.FIELD_HHMMSS;
+            // "$GPGGA" does not contain the date, leave any date from "$GPRMC" as-is
+            if (validGPS) {
+                double lat = this._coord(2, 'S',  90.0);
+                double lon = this._coord(4, 'W', 180.0);
+                if (!GeoPoint.isValid(lat,lon)) {
+                    validGPS     = false;
+                    r.latitude   = 0.0;
+                    r.longitude  = 0.0;
+                } else {
+                    r.latitude   = lat;
+                    r.longitude  = lon;
+                    r.fixType    = (int)this._long(6, 1L);
+                    r.numSats    = (int)this._long(7, 0L);
+                    r.hdop       = this._double(8, 0.0);
+                    r.altitudeM  = this._double(9, 0.0);
+                    r.fieldMask |= Nmea0183.FIELD_LATITUDE | Nmea0183.FIELD_LONGITUDE;
+                    r.fieldMask |= Nmea0183.FIELD_FIX_TYPE | Nmea0183.FIELD_NUMBER_SATS | Nmea0183.FIELD_HDOP | Nmea0183.FIELD_ALTITUDE;
+                }
+            } else {
+                r.latitude   = 0.0;
+                r.longitude  = 0.0;
+                r.fixType    = 0;
+                r.numSats    = 0;
+                r.hdop       = 0.0;
+                r.altitudeM  = 0.0;
+            }
+            r.isValidGPS = validGPS;
+            return validGPS;
+        } else {
+            // not supported by this decoder (use "Nmea0183")
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_PARSE[]     = new String[] { "parse" };
+    private static final String ARG_BENCHMARK[] = new String[] { "bench", "benchmark" };
+
+    /**
+    *** Main entry point for testing/benchmarking
+    *** @param argv Comand-line arguments
+    **/
+    public static void main(String argv[])
+    {
+        RTConfig.setCommandLineArgs(argv);
+
+        /* parse record */
+        if (RTConfig.hasProperty(ARG_PARSE)) {
+            String rcd = RTConfig.getString(ARG_PARSE,"");
+            if (!rcd.startsWith("$")) {
+                rcd = "$" + rcd;
+            }
+            Nmea0183Decoder nd = new Nmea0183Decoder(null, true); // ignore checksum
+            nd.decode(rcd);
+            Print.sysPrintln("NMEA-0183: \n" + nd.getRecord());
+            System.exit(0);
+        }
+
+        /* benchmark against "Nmea0183" */
+        if (RTConfig.hasProperty(ARG_BENCHMARK)) {
+            int count = RTConfig.getInt(ARG_BENCHMARK, 500000);
+            if (count <= 0) { count = 500000; }
+            String rmc = "$GPRMC,080701.00,A,3128.7540,N,14257.6714,W,27.6,107.5,180607,13.1,E,A*2D";
+            String gga = "$GPGGA,025425.494,3509.0743,N,14207.6314,W,1,04,2.3,530.3,M,-21.9,M,0.0,0000*45";
+            String rcds[] = new String[] { rmc, gga };
+            byte   rbyt[][] = new byte[][] { StringTools.getBytes(rmc), StringTools.getBytes(gga) };
+            Nmea0183Decoder nd = new Nmea0183Decoder();
+            for (int pass = 0; pass < 2; pass++) { // pass #0 is warm-up
+                double chk = 0.0;
+                long nmeaStartNS = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    Nmea0183 n = new Nmea0183(rcds[i & 1]);
+                    chk += n.getLatitude() + n.getFixtime();
+                }
+                long nmeaNS = System.nanoTime() - nmeaStartNS;
+                long fastStartNS = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    byte b[] = rbyt[i & 1];
+                    nd.decode(b, 0, b.length);
+                    chk -= nd.getRecord().getLatitude() + nd.getRecord().getFixtime();
+                }
+                long fastNS = System.nanoTime() - fastStartNS;
+                if (pass > 0) {
+                    Print.sysPrintln("Records     : " + count + " (checksum delta " + chk + ")");
+                    Print.sysPrintln("Nmea0183    : " + StringTools.format((double)nmeaNS/count,"0.0") + " ns/record");
+                    Print.sysPrintln("Decoder     : " + StringTools.format((double)fastNS/count,"0.0") + " ns/record");
+                    Print.sysPrintln("Speedup     : " + StringTools.format((double)nmeaNS/(double)Math.max(fastNS,1L),"0.0") + "x");
+                }
+            }
+            System.exit(0);
+        }
+
+        /* usage */
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + Nmea0183Decoder.class.getName() + " {options}");
+        Print.sysPrintln("Options:");
+        Print.sysPrintln("  -parse=<record>    Decode the specified $GPRMC/$GPGGA record");
+        Print.sysPrintln("  -bench=<count>     Benchmark this decoder against 'Nmea0183'");
+        System.exit(1);
+
+    }
+
+}
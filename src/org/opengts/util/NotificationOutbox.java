@@ -0,0 +1,702 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Durable outbound notification queue (email, SMS, etc).
+//  Notifications are journaled to individual files in the outbox directory
+//  and delivered by a single background worker thread, so that the caller
+//  (typically a device communication server inserting events) never blocks
+//  on an SMTP/SMS gateway.  Each notification type is delivered by a
+//  registered 'DeliveryHandler', which is given batches of queued entries
+//  (ie. all queued email is sent over a single SMTP connection).
+//  Each server process uses its own (locked) subdirectory of the configured
+//  outbox directory, so that processes never deliver each other's entries.
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.io.*;
+import java.util.*;
+import java.nio.channels.*;
+
+/**
+*** Durable outbound notification queue
+**/
+
+public class NotificationOutbox
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String TYPE_EMAIL              = "email";
+    public  static final String TYPE_SMS                = "sms";
+
+    /* delivery results */
+    public  static final int    RESULT_SENT             = 0;  // delivered, remove from outbox
+    public  static final int    RESULT_RETRY            = 1;  // temporary failure, retry later
+    public  static final int    RESULT_FAILED           = 2;  // permanent failure, do not retry
+
+    /* journal file extensions */
+    private static final String EXTN_MSG                = ".msg";
+    private static final String EXTN_TMP                = ".tmp";
+    private static final String DIR_FAILED              = "failed";
+    private static final String LOCK_FILE               = "outbox.lock";
+
+    /* entry property keys */
+    public  static final String KEY_TYPE                = "type";
+    public  static final String KEY_CREATED             = "created";
+    public  static final String KEY_ATTEMPTS            = "attempts";
+    public  static final String KEY_NEXT_ATTEMPT        = "nextAttempt";
+    public  static final String KEY_DEDUP               = "dedupKey";
+
+    /* email property keys */
+    public  static final String KEY_FROM                = "from";
+    public  static final String KEY_TO                  = "to";
+    public  static final String KEY_CC                  = "cc";
+    public  static final String KEY_BCC                 = "bcc";
+    public  static final String KEY_SUBJECT             = "subject";
+    public  static final String KEY_BODY                = "body";
+    public  static final String KEY_HEADER_             = "header.";
+    public  static final String KEY_ATTACH_NAME         = "attach.name";
+    public  static final String KEY_ATTACH_TYPE         = "attach.type";
+    public  static final String KEY_ATTACH_DATA         = "attach.data";
+
+    /* default configuration */
+    private static final int    DFT_BATCH_SIZE          = 25;
+    private static final long   DFT_RETRY_DELAY_SEC     = 60L;
+    private static final long   DFT_RETRY_MAX_DELAY_SEC = 3600L;
+    private static final int    DFT_MAX_ATTEMPTS        = 12;
+    private static final long   DFT_DEDUP_WINDOW_SEC    = 300L;
+    private static final long   DFT_POLL_INTERVAL_MS    = 5000L;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the notification outbox has been enabled
+    *** @return True if the notification outbox has been enabled
+    **/
+    public static boolean IsEnabled()
+    {
+        return RTConfig.getBoolean(RTKey.NOTIFY_OUTBOX_ENABLE, false);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** DeliveryHandler interface.
+    *** Implementations deliver a batch of queued entries of a single notification type.
+    **/
+    public interface DeliveryHandler
+    {
+        /**
+        *** Delivers the specified batch of entries
+        *** @param entries  The entries to deliver (all of the same type)
+        *** @return An array of RESULT_XXX values, one for each entry
+        **/
+        public int[] deliver(Entry entries[]);
+    }
+
+    private static Map<String,DeliveryHandler> deliveryHandlerMap = new HashMap<String,DeliveryHandler>();
+
+    /**
+    *** Registers a DeliveryHandler for the specified notification type
+    *** @param type     The notification type
+    *** @param handler  The DeliveryHandler
+    **/
+    public static void AddDeliveryHandler(String type, DeliveryHandler handler)
+    {
+        if (!StringTools.isBlank(type)) {
+            synchronized (deliveryHandlerMap) {
+                if (handler != null) {
+                    deliveryHandlerMap.put(type.toLowerCase(), handler);
+                } else {
+                    deliveryHandlerMap.remove(type.toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+    *** Gets the DeliveryHandler for the specified notification type
+    *** @param type  The notification type
+    *** @return The DeliveryHandler, or null if no handler has been registered
+    **/
+    public static DeliveryHandler GetDeliveryHandler(String type)
+    {
+        if (StringTools.isBlank(type)) {
+            return null;
+        } else {
+            synchronized (deliveryHandlerMap) {
+                return deliveryHandlerMap.get(type.toLowerCase());
+            }
+        }
+    }
+
+    /* default email handler: all entries in the batch are sent on a single SMTP connection */
+    static {
+        NotificationOutbox.AddDeliveryHandler(TYPE_EMAIL, new DeliveryHandler() {
+            public int[] deliver(Entry entries[]) {
+                int rtn[] = new int[entries.length];
+                /* entries without a valid recipient can never be delivered */
+                List<SendMail.Args> argList = new Vector<SendMail.Args>();
+                int argNdx[] = new int[entries.length];
+                for (int i = 0; i < entries.length; i++) {
+                    SendMail.Args args = entries[i].toSendMailArgs();
+                    if (NotificationOutbox._hasValidRecipient(args)) {
+                        argNdx[argList.size()] = i;
+                        argList.add(args);
+                    } else {
+                        Print.logWarn("Email has no valid 'To' recipient: " + entries[i]);
+                        rtn[i] = RESULT_FAILED;
+                    }
+                }
+                if (!argList.isEmpty()) {
+                    /* SMTP connection/send errors are considered temporary */
+                    boolean sent[] = SendMail.sendBatch(argList.toArray(new SendMail.Args[argList.size()]));
+                    for (int a = 0; a < argList.size(); a++) {
+                        rtn[argNdx[a]] = ((sent != null) && (a < sent.length) && sent[a])? RESULT_SENT : RESULT_RETRY;
+                    }
+                }
+                return rtn;
+            }
+        });
+    }
+
+    /**
+    *** Returns true if the specified email arguments contain at least one valid 'To'
+    *** recipient (SendMail does not send email without a 'To' recipient, so a
+    *** message with only 'Cc'/'Bcc' recipients can never be delivered)
+    **/
+    private static boolean _hasValidRecipient(SendMail.Args args)
+    {
+        String to[] = args.getTo();
+        if (to != null) {
+            for (int i = 0; i < to.length; i++) {
+                if (SendMail.validateAddress(StringTools.trim(to[i]))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A single queued notification
+    **/
+    public static class Entry
+    {
+        private File       file  = null;
+        private Properties props = null;
+        public Entry(String type) {
+            this.props = new Properties();
+            this.setString(KEY_TYPE, type);
+            this.setLong(KEY_CREATED, DateTime.getCurrentTimeSec());
+            this.setLong(KEY_ATTEMPTS, 0L);
+            this.setLong(KEY_NEXT_ATTEMPT, 0L);
+        }
+        private Entry(File file, Properties props) {
+            this.file  = file;
+            this.props = props;
+        }
+        public String getType() {
+            return this.getString(KEY_TYPE, "");
+        }
+        public String getName() {
+            return (this.file != null)? this.file.getName() : "";
+        }
+        public long getCreationTime() {
+            return this.getLong(KEY_CREATED, 0L);
+        }
+        public int getAttemptCount() {
+            return (int)this.getLong(KEY_ATTEMPTS, 0L);
+        }
+        public long getNextAttemptTime() {
+            return this.getLong(KEY_NEXT_ATTEMPT, 0L);
+        }
+        public String getDedupKey() {
+            return this.getString(KEY_DEDUP, null);
+        }
+        public void setDedupKey(String key) {
+            this.setString(KEY_DEDUP, key);
+        }
+        public String getString(String key, String dft) {
+            String v = this.props.getProperty(key);
+            return (v != null)? v : dft;
+        }
+        public void setString(String key, String val) {
+            if (val != null) {
+                this.props.setProperty(key, val);
+            } else {
+                this.props.remove(key);
+            }
+        }
+        public long getLong(String key, long dft) {
+            return StringTools.parseLong(this.props.getProperty(key), dft);
+        }
+        public void setLong(String key, long val) {
+            this.props.setProperty(key, String.valueOf(val));
+        }
+        public SendMail.Args toSendMailArgs() {
+            Properties headers = new Properties();
+            for (Enumeration<?> e = this.props.propertyNames(); e.hasMoreElements();) {
+                String k = (String)e.nextElement();
+                if (k.startsWith(KEY_HEADER_)) {
+                    headers.setProperty(k.substring(KEY_HEADER_.length()), this.props.getProperty(k));
+                }
+            }
+            String to[]  = StringTools.parseString(this.getString(KEY_TO ,""),',');
+            String cc[]  = StringTools.parseString(this.getString(KEY_CC ,""),',');
+            String bcc[] = StringTools.parseString(this.getString(KEY_BCC,""),',');
+            SendMail.Attachment attach = null;
+            String attData = this.getString(KEY_ATTACH_DATA, null);
+            if (!StringTools.isBlank(attData)) {
+                attach = new SendMail.Attachment(Base64.decode(attData),
+                    this.getString(KEY_ATTACH_NAME,null), this.getString(KEY_ATTACH_TYPE,null));
+            }
+            return new SendMail.Args(headers,
+                this.getString(KEY_FROM,""), to, cc, bcc,
+                this.getString(KEY_SUBJECT,""), this.getString(KEY_BODY,""),
+                attach);
+        }
+        public String toString() {
+            return this.getType() + ":" + this.getName();
+        }
+    }
+
+    /**
+    *** Creates an email outbox Entry from the specified SendMail arguments
+    *** @param args  The email arguments
+    *** @return The outbox Entry
+    **/
+    public static Entry createEMailEntry(SendMail.Args args)
+    {
+        Entry entry = new Entry(TYPE_EMAIL);
+        Properties headers = args.getHeaders();
+        for (Enumeration<?> e = headers.propertyNames(); e.hasMoreElements();) {
+            String k = (String)e.nextElement();
+            entry.setString(KEY_HEADER_ + k, headers.getProperty(k));
+        }
+        entry.setString(KEY_FROM   , args.getFrom());
+        entry.setString(KEY_TO     , StringTools.join(args.getTo() ,','));
+        entry.setString(KEY_CC     , StringTools.join(args.getCc() ,','));
+        entry.setString(KEY_BCC    , StringTools.join(args.getBcc(),','));
+        entry.setString(KEY_SUBJECT, args.getSubject());
+        entry.setString(KEY_BODY   , args.getBody());
+        SendMail.Attachment attach = args.getAttachment();
+        if ((attach != null) && (attach.getSize() > 0)) {
+            entry.setString(KEY_ATTACH_NAME, attach.getName());
+            entry.setString(KEY_ATTACH_TYPE, attach.getType());
+            entry.setString(KEY_ATTACH_DATA, Base64.encode(attach.getBytes()));
+        }
+        entry.setDedupKey(TYPE_EMAIL + "|" +
+            entry.getString(KEY_TO,"") + "|" +
+            entry.getString(KEY_SUBJECT,"") + "|" +
+            Integer.toHexString(entry.getString(KEY_BODY,"").hashCode()));
+        return entry;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static boolean            outboxDidInit  = false;
+    private static NotificationOutbox outboxInstance = null;
+
+    /**
+    *** Gets the global NotificationOutbox instance (the delivery thread is
+    *** started on first access).  The outbox directory of this server process is
+    *** the server name (see "RTConfig.getServerName()") subdirectory of the
+    *** configured outbox directory.
+    *** @return The NotificationOutbox instance, or null if the outbox directory
+    ***         could not be opened (ie. it is in use by another process)
+    **/
+    public static NotificationOutbox getInstance()
+    {
+        synchronized (NotificationOutbox.class) {
+            if (!NotificationOutbox.outboxDidInit) {
+                NotificationOutbox.outboxDidInit = true;
+                File dir = RTConfig.getFile(RTKey.NOTIFY_OUTBOX_DIR, null);
+                if (dir == null) {
+                    dir = new File(System.getProperty("java.io.tmpdir","/tmp"), "outbox");
+                }
+                dir = new File(dir, RTConfig.getServerName());
+                try {
+                    NotificationOutbox.outboxInstance = new NotificationOutbox(dir);
+                    NotificationOutbox.outboxInstance.start();
+                } catch (IOException ioe) {
+                    Print.logError("Unable to open notification outbox (outbox disabled): " + ioe.getMessage());
+                    NotificationOutbox.outboxInstance = null;
+                }
+            }
+            return NotificationOutbox.outboxInstance;
+        }
+    }
+
+    /**
+    *** Queues the specified entry to the global outbox
+    *** @param entry  The entry to queue
+    *** @return True if the entry was queued (or suppressed as a duplicate), false
+    ***         if the entry could not be queued, or the outbox is not available
+    **/
+    public static boolean Queue(Entry entry)
+    {
+        NotificationOutbox outbox = NotificationOutbox.getInstance();
+        return (outbox != null)? outbox.queue(entry) : false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private File                        outboxDir       = null;
+    private File                        failedDir       = null;
+
+    /* outbox directory lock (held until closed) */
+    private RandomAccessFile            lockFile        = null;
+    private FileLock                    dirLock         = null;
+
+    private java.util.List<Entry>       pendingList     = new Vector<Entry>();
+    private Map<String,Long>            recentKeys      = new HashMap<String,Long>();
+    private long                        sequence        = 0L;
+
+    private Thread                      workerThread    = null;
+    private boolean                     stopWorker      = false;
+
+    private long                        countQueued     = 0L;
+    private long                        countDuplicate  = 0L;
+    private long                        countSent       = 0L;
+    private long                        countRetry      = 0L;
+    private long                        countFailed     = 0L;
+
+    /**
+    *** Constructor
+    *** @param dir  The outbox journal directory (used by this instance only)
+    *** @throws IOException if the directory cannot be created, or is in use
+    **/
+    public NotificationOutbox(File dir)
+        throws IOException
+    {
+        this.outboxDir = dir;
+        this.failedDir = new File(dir, DIR_FAILED);
+        if (!this.outboxDir.isDirectory() && !this.outboxDir.mkdirs()) {
+            throw new IOException("Unable to create outbox directory: " + this.outboxDir);
+        }
+
+        /* exclusive use of the outbox directory */
+        this.lockFile = new RandomAccessFile(new File(this.outboxDir, LOCK_FILE), "rw");
+        try {
+            this.dirLock = this.lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException ofle) {
+            this.dirLock = null; // already locked by this process
+        }
+        if (this.dirLock == null) {
+            this.lockFile.close();
+            throw new IOException("Outbox directory is in use by another process: " + this.outboxDir);
+        }
+
+        this._loadPendingEntries();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* reload entries journaled by a previous instance */
+    private void _loadPendingEntries()
+    {
+        File files[] = FileTools.getFiles(this.outboxDir, new String[] { EXTN_MSG.substring(1) });
+        if (ListTools.isEmpty(files)) {
+            return;
+        }
+        Arrays.sort(files); // file names are time/sequence ordered
+        for (File f : files) {
+            InputStream fis = null;
+            try {
+                fis = new FileInputStream(f);
+                Properties p = new Properties();
+                p.load(fis);
+                this.pendingList.add(new Entry(f, p));
+            } catch (IOException ioe) {
+                Print.logError("Unable to load outbox entry: " + f + " [" + ioe + "]");
+            } finally {
+                FileTools.closeStream(fis);
+            }
+        }
+        Print.logInfo("Outbox entries reloaded: " + this.pendingList.size());
+    }
+
+    /* write entry to journal file (written to a temporary file, then renamed) */
+    private boolean _writeEntry(Entry entry)
+    {
+        if (entry.file == null) {
+            String name = StringTools.format(System.currentTimeMillis(),"0000000000000") + "_" +
+                StringTools.format(this.sequence++ % 1000000L,"000000");
+            entry.file = new File(this.outboxDir, name + EXTN_MSG);
+        }
+        File tmpFile = new File(this.outboxDir, entry.file.getName() + EXTN_TMP);
+        OutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmpFile);
+            entry.props.store(fos, null);
+        } catch (IOException ioe) {
+            Print.logError("Unable to write outbox entry: " + tmpFile + " [" + ioe + "]");
+            return false;
+        } finally {
+            FileTools.closeStream(fos);
+        }
+        if (entry.file.exists() && !entry.file.delete()) {
+            Print.logError("Unable to replace outbox entry: " + entry.file);
+            return false;
+        }
+        return tmpFile.renameTo(entry.file);
+    }
+
+    /* remove entry journal file */
+    private void _removeEntry(Entry entry)
+    {
+        if ((entry.file != null) && entry.file.exists() && !entry.file.delete()) {
+            Print.logError("Unable to delete outbox entry: " + entry.file);
+        }
+    }
+
+    /* move entry journal file to the 'failed' directory */
+    private void _failEntry(Entry entry)
+    {
+        if ((entry.file != null) && entry.file.exists()) {
+            if (!this.failedDir.isDirectory()) { this.failedDir.mkdirs(); }
+            File failFile = new File(this.failedDir, entry.file.getName());
+            if (!entry.file.renameTo(failFile)) {
+                Print.logError("Unable to move failed outbox entry: " + entry.file);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Queues the specified entry for delivery.  This method does not block on
+    *** the delivery of the entry.
+    *** @param entry  The entry to queue
+    *** @return True if the entry was queued (or suppressed as a duplicate)
+    **/
+    public boolean queue(Entry entry)
+    {
+        if (entry == null) {
+            return false;
+        }
+        long nowSec = DateTime.getCurrentTimeSec();
+        synchronized (this.pendingList) {
+
+            /* duplicate suppression */
+            String dedupKey = entry.getDedupKey();
+            long windowSec  = RTConfig.getLong(RTKey.NOTIFY_OUTBOX_DEDUP_WINDOW, DFT_DEDUP_WINDOW_SEC);
+            if (!StringTools.isBlank(dedupKey) && (windowSec > 0L)) {
+                Long lastSec = this.recentKeys.get(dedupKey);
+                if ((lastSec != null) && ((nowSec - lastSec.longValue()) < windowSec)) {
+                    Print.logInfo("Duplicate notification suppressed: " + dedupKey);
+                    this.countDuplicate++;
+                    return true;
+                }
+            }
+
+            /* journal */
+            if (!this._writeEntry(entry)) {
+                return false;
+            }
+
+            /* remember the key only once the entry has actually been journaled */
+            if (!StringTools.isBlank(dedupKey) && (windowSec > 0L)) {
+                this.recentKeys.put(dedupKey, new Long(nowSec));
+                if (this.recentKeys.size() > 1000) {
+                    for (Iterator<Long> i = this.recentKeys.values().iterator(); i.hasNext();) {
+                        if ((nowSec - i.next().longValue()) >= windowSec) { i.remove(); }
+                    }
+                }
+            }
+            this.pendingList.add(entry);
+            this.countQueued++;
+            this.pendingList.notifyAll();
+
+        }
+        return true;
+    }
+
+    /**
+    *** Gets the number of entries currently pending delivery
+    *** @return The number of pending entries
+    **/
+    public int getPendingCount()
+    {
+        synchronized (this.pendingList) {
+            return this.pendingList.size();
+        }
+    }
+
+    /**
+    *** Returns a String containing the current outbox statistics
+    *** @return The outbox statistics
+    **/
+    public String getStatistics()
+    {
+        synchronized (this.pendingList) {
+            return "pending=" + this.pendingList.size() + " queued=" + this.countQueued +
+                " duplicate=" + this.countDuplicate + " sent=" + this.countSent +
+                " retry=" + this.countRetry + " failed=" + this.countFailed;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Starts the delivery worker thread
+    **/
+    public void start()
+    {
+        synchronized (this.pendingList) {
+            if (this.workerThread == null) {
+                this.stopWorker   = false;
+                this.workerThread = new Thread(new Runnable() {
+                    public void run() {
+                        NotificationOutbox.this._deliveryLoop();
+                    }
+                }, "NotificationOutbox");
+                this.workerThread.setDaemon(true);
+                this.workerThread.start();
+            }
+        }
+    }
+
+    /**
+    *** Stops the delivery worker thread (pending entries remain journaled)
+    **/
+    public void stop()
+    {
+        synchronized (this.pendingList) {
+            this.stopWorker = true;
+            this.pendingList.notifyAll();
+        }
+    }
+
+    /**
+    *** Stops the delivery worker thread, and releases the outbox directory
+    *** (pending entries remain journaled, and are reloaded by the next instance)
+    **/
+    public void close()
+    {
+        this.stop();
+        synchronized (this.pendingList) {
+            if (this.lockFile != null) {
+                try {
+                    this.lockFile.close(); // releases the lock
+                } catch (IOException ioe) {
+                    Print.logError("Unable to release outbox directory: " + ioe);
+                }
+                this.lockFile = null;
+                this.dirLock  = null;
+            }
+        }
+    }
+
+    /* delivery thread main loop */
+    private void _deliveryLoop()
+    {
+        long pollMS = RTConfig.getLong(RTKey.NOTIFY_OUTBOX_POLL_INTERVAL, DFT_POLL_INTERVAL_MS);
+        for (;;) {
+
+            /* collect ready entries, grouped by type (queue order preserved) */
+            Map<String,java.util.List<Entry>> readyMap = new OrderedMap<String,java.util.List<Entry>>();
+            synchronized (this.pendingList) {
+                if (this.stopWorker) {
+                    this.workerThread = null;
+                    break;
+                }
+                long nowSec = DateTime.getCurrentTimeSec();
+                for (Entry e : this.pendingList) {
+                    if (e.getNextAttemptTime() <= nowSec) {
+                        java.util.List<Entry> list = readyMap.get(e.getType());
+                        if (list == null) {
+                            list = new Vector<Entry>();
+                            readyMap.put(e.getType(), list);
+                        }
+                        list.add(e);
+                    }
+                }
+                if (readyMap.isEmpty()) {
+                    try { this.pendingList.wait(pollMS); } catch (InterruptedException ie) {}
+                    continue;
+                }
+            }
+
+            /* deliver in batches */
+            int batchSize = Math.max(1, RTConfig.getInt(RTKey.NOTIFY_OUTBOX_BATCH_SIZE, DFT_BATCH_SIZE));
+            for (String type : readyMap.keySet()) {
+                java.util.List<Entry> list = readyMap.get(type);
+                DeliveryHandler handler = NotificationOutbox.GetDeliveryHandler(type);
+                for (int b = 0; b < list.size(); b += batchSize) {
+                    Entry batch[] = list.subList(b, Math.min(b + batchSize, list.size())).toArray(new Entry[0]);
+                    int result[] = null;
+                    if (handler == null) {
+                        Print.logWarn("No outbox DeliveryHandler for type: " + type);
+                    } else {
+                        try {
+                            result = handler.deliver(batch);
+                        } catch (Throwable th) {
+                            Print.logException("Outbox delivery error: " + type, th);
+                        }
+                    }
+                    for (int i = 0; i < batch.length; i++) {
+                        int r = ((result != null) && (i < result.length))? result[i] : RESULT_RETRY;
+                        this._deliveryResult(batch[i], r);
+                    }
+                }
+            }
+
+        }
+    }
+
+    /* update entry state following a delivery attempt */
+    private void _deliveryResult(Entry entry, int result)
+    {
+        synchronized (this.pendingList) {
+            if (result == RESULT_SENT) {
+                this.pendingList.remove(entry);
+                this._removeEntry(entry);
+                this.countSent++;
+                return;
+            }
+            int attempts = entry.getAttemptCount() + 1;
+            int maxAttempts = RTConfig.getInt(RTKey.NOTIFY_OUTBOX_MAX_ATTEMPTS, DFT_MAX_ATTEMPTS);
+            if ((result == RESULT_FAILED) || (attempts >= maxAttempts)) {
+                Print.logError("Outbox delivery failed (attempts="+attempts+"): " + entry);
+                this.pendingList.remove(entry);
+                this._failEntry(entry);
+                this.countFailed++;
+                return;
+            }
+            // exponential backoff
+            long delaySec = RTConfig.getLong(RTKey.NOTIFY_OUTBOX_RETRY_DELAY, DFT_RETRY_DELAY_SEC);
+            long maxDelay = RTConfig.getLong(RTKey.NOTIFY_OUTBOX_RETRY_MAX_DELAY, DFT_RETRY_MAX_DELAY_SEC);
+            for (int i = 1; (i < attempts) && (delaySec < maxDelay); i++) { delaySec *= 2L; }
+            delaySec = Math.min(delaySec, maxDelay);
+            entry.setLong(KEY_ATTEMPTS, attempts);
+            entry.setLong(KEY_NEXT_ATTEMPT, DateTime.getCurrentTimeSec() + delaySec);
+            this._writeEntry(entry);
+            this.countRetry++;
+            Print.logWarn("Outbox delivery will be retried in "+delaySec+" sec (attempts="+attempts+"): " + entry);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+}
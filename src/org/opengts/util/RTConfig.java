@@ -180,6 +180,26 @@ public class RTConfig
         return RTConfig.localhostName;
     }
 
+    /**
+    *** Returns the name of this server process, used to keep the files of several processes
+    *** sharing a configured directory apart.  This is the "log.name" property (set to the 
+    *** DCS name by the "runserver" scripts), or the name of the main class.
+    *** @return The server name
+    **/
+    public static String getServerName()
+    {
+        String name = RTConfig.getString(RTKey.LOG_NAME, null);
+        if (StringTools.isBlank(name)) {
+            Class<?> mainClass = OSTools.hasGetCallerClass()? RTConfig.getMainClass() : null;
+            name = (mainClass != null)? mainClass.getName() : "default";
+        }
+        StringBuffer sb = new StringBuffer();
+        for (char ch : name.trim().toCharArray()) {
+            sb.append((Character.isLetterOrDigit(ch) || (ch == '.') || (ch == '-'))? ch : '_');
+        }
+        return sb.toString();
+    }
+
     // ------------------------------------------------------------------------
 
     private static final int    THREAD_LOCAL        = 0;
@@ -214,6 +234,54 @@ public class RTConfig
 
     // ------------------------------------------------------------------------
 
+    /* volatile: read without locking by every RTConfig.Key lookup */
+    private static volatile long configVersion = 1L;
+
+    /* listener which increments the config version when a layer property changes */
+    private static final RTProperties.PropertyChangeListener CONFIG_CHANGE_LISTENER =
+        new RTProperties.PropertyChangeListener() {
+            public void propertyChange(RTProperties.PropertyChangeEvent pce) {
+                RTConfig.incrementConfigVersion();
+            }
+        };
+
+    /**
+    *** Gets the current configuration version.  This version is incremented whenever
+    *** one of the (non thread-local) property layers is replaced or changed, or when the
+    *** RTKey default properties are changed.
+    *** @return The current configuration version
+    **/
+    public static long getConfigVersion()
+    {
+        return RTConfig.configVersion;
+    }
+
+    /**
+    *** Increments the configuration version (invalidates all cached key handle values)
+    **/
+    public static void incrementConfigVersion()
+    {
+        synchronized (CONFIG_CHANGE_LISTENER) {
+            RTConfig.configVersion++;
+        }
+    }
+
+    /* set the property layer at the specified index, and listen for changes */
+    private static void _setConfigProperties(int ndx, RTProperties rtp)
+    {
+        RTProperties oldProps = CFG_PROPERTIES[ndx];
+        if ((oldProps != null) && (oldProps != rtp)) {
+            oldProps.removeChangeListener(CONFIG_CHANGE_LISTENER);
+        }
+        CFG_PROPERTIES[ndx] = rtp;
+        if ((rtp != null) && (oldProps != rtp)) {
+            rtp.addChangeListener(CONFIG_CHANGE_LISTENER);
+        }
+        RTConfig.incrementConfigVersion();
+    }
+
+    // ------------------------------------------------------------------------
+
     private static ThreadLocal<Stack<RTProperties>> CFG_THREAD_TEMPORARY = null;
 
     /**
@@ -400,7 +468,7 @@ public class RTConfig
         if (CFG_PROPERTIES[RUNTIME_CONSTANT] == null) {
             synchronized (CFG_PROPERTIES) {
                 if (CFG_PROPERTIES[RUNTIME_CONSTANT] == null) {
-                    CFG_PROPERTIES[RUNTIME_CONSTANT] = new RTProperties();
+                    _setConfigProperties(RUNTIME_CONSTANT, new RTProperties());
                 }
             }
         }
@@ -604,6 +672,285 @@ public class RTConfig
         return null;
     }
 
+    // ------------------------------------------------------------------------
+    // Key handles
+
+    private static Map<String,Key> keyHandles = new HashMap<String,Key>();
+
+    /**
+    *** Returns the typed key handle for the specified property key.  Handles are shared,
+    *** and are typically obtained once and held in a static field.
+    *** @param name  The property key
+    *** @return The key handle
+    **/
+    public static Key key(String name)
+    {
+        synchronized (RTConfig.keyHandles) {
+            Key k = RTConfig.keyHandles.get(name);
+            if (k == null) {
+                k = new Key(name);
+                RTConfig.keyHandles.put(name, k);
+            }
+            return k;
+        }
+    }
+
+    /**
+    *** Typed handle for a single runtime property key.<br>
+    *** The property layer in which the key is defined, and the parsed value, are cached
+    *** and only re-resolved when the configuration version changes (see "getConfigVersion").
+    *** Thread-temporary and thread-local properties which define this key are always
+    *** checked first, and are never cached.  Values containing "${...}" key replacement
+    *** references are not cached.<br>
+    *** As with the corresponding RTConfig methods, the "asXXX(dft)" methods do not check
+    *** the RTKey defaults, while the "asXXX()" methods do.
+    **/
+    public static class Key
+    {
+
+        /* resolved property layer */
+        private static class Layer {
+            public long         version   = 0L;
+            public RTProperties rtp       = null;  // null if not defined
+            public boolean      isDefault = false; // true if defined only in RTKey defaults
+            public Layer(long version, RTProperties rtp, boolean isDefault) {
+                this.version   = version;
+                this.rtp       = rtp;
+                this.isDefault = isDefault;
+            }
+        }
+
+        /* parsed value */
+        private static class Value {
+            public long    version = 0L;
+            public boolean dftOK   = false;
+            public Object  dft     = null;
+            public Object  value   = null;
+            public Value(long version, boolean dftOK, Object dft, Object value) {
+                this.version = version;
+                this.dftOK   = dftOK;
+                this.dft     = dft;
+                this.value   = value;
+            }
+            public boolean isValid(long version, boolean dftOK, Object dft) {
+                if ((this.version != version) || (this.dftOK != dftOK)) {
+                    return false;
+                } else
+                if (this.dft == null) {
+                    return (dft == null);
+                } else {
+                    return this.dft.equals(dft);
+                }
+            }
+        }
+
+        private String          name        = null;
+        private volatile Layer  layer       = null;
+        private volatile Value  stringValue = null;
+        private volatile Value  longValue   = null;
+        private volatile Value  intValue    = null;
+        private volatile Value  doubleValue = null;
+        private volatile Value  boolValue   = null;
+
+        private Key(String name) {
+            this.name = name;
+        }
+
+        /* return the property key */
+        public String getName() {
+            return this.name;
+        }
+
+        /* return the thread-temporary/thread-local properties defining this key, or null */
+        private RTProperties _getThreadProperties() {
+            RTProperties tmpProps = RTConfig.getTemporaryProperties(this.name);
+            if (tmpProps != null) {
+                return tmpProps;
+            }
+            RTProperties thrProps = CFG_PROPERTIES[THREAD_LOCAL];
+            if ((thrProps != null) && thrProps.hasProperty(this.name)) {
+                return thrProps;
+            }
+            return null;
+        }
+
+        /* return the (cached) non-thread property layer defining this key */
+        private Layer _getLayer() {
+            long version = RTConfig.getConfigVersion();
+            Layer lyr = this.layer;
+            if ((lyr == null) || (lyr.version != version)) {
+                RTProperties rtp = null;
+                boolean isDft = false;
+                for (int i = THREAD_LOCAL + 1; i < CFG_PROPERTIES.length; i++) {
+                    RTProperties rtProps = CFG_PROPERTIES[i];
+                    if ((rtProps != null) && rtProps.hasProperty(this.name)) {
+                        rtp = rtProps;
+                        break;
+                    }
+                }
+                if (rtp == null) {
+                    RTProperties dftProps = RTKey.getDefaultProperties();
+                    if ((dftProps != null) && dftProps.hasProperty(this.name)) {
+                        rtp   = dftProps;
+                        isDft = true;
+                    }
+                }
+                lyr = new Layer(version, rtp, isDft);
+                this.layer = lyr;
+            }
+            return lyr;
+        }
+
+        /* return the layer properties, or null if not defined (or only in defaults, and !dftOK) */
+        private RTProperties _getLayerProperties(Layer lyr, boolean dftOK) {
+            return (lyr.isDefault && !dftOK)? null : lyr.rtp;
+        }
+
+        /* true if the value may be cached */
+        private boolean _isCacheable(RTProperties rtp) {
+            if (rtp == null) {
+                return true;
+            }
+            Object v = rtp.getProperty(this.name, null);
+            return !(v instanceof String) || (((String)v).indexOf("${") < 0);
+        }
+
+        /* String */
+        private String _getString(String dft, boolean dftOK) {
+            RTProperties thrProps = this._getThreadProperties();
+            if (thrProps != null) {
+                return thrProps.getString(this.name, dft);
+            }
+            Layer lyr = this._getLayer();
+            Value v = this.stringValue;
+            if ((v != null) && v.isValid(lyr.version,dftOK,dft)) {
+                return (String)v.value;
+            }
+            RTProperties rtp = this._getLayerProperties(lyr, dftOK);
+            String val = (rtp != null)? rtp.getString(this.name, dft) : dft;
+            if (this._isCacheable(rtp)) {
+                this.stringValue = new Value(lyr.version, dftOK, dft, val);
+            }
+            return val;
+        }
+        public String asString(String dft) {
+            return this._getString(dft, false);
+        }
+        public String asString() {
+            return this._getString(null, true);
+        }
+
+        /* long */
+        private long _getLong(long dft, boolean dftOK) {
+            RTProperties thrProps = this._getThreadProperties();
+            if (thrProps != null) {
+                return thrProps.getLong(this.name, dft);
+            }
+            Layer lyr = this._getLayer();
+            Value v = this.longValue;
+            if ((v != null) && (v.version == lyr.version) && (v.dftOK == dftOK) && (((Long)v.dft).longValue() == dft)) {
+                return ((Long)v.value).longValue();
+            }
+            RTProperties rtp = this._getLayerProperties(lyr, dftOK);
+            long val = (rtp != null)? rtp.getLong(this.name, dft) : dft;
+            if (this._isCacheable(rtp)) {
+                this.longValue = new Value(lyr.version, dftOK, new Long(dft), new Long(val));
+            }
+            return val;
+        }
+        public long asLong(long dft) {
+            return this._getLong(dft, false);
+        }
+        public long asLong() {
+            return this._getLong(0L, true);
+        }
+
+        /* int */
+        private int _getInt(int dft, boolean dftOK) {
+            RTProperties thrProps = this._getThreadProperties();
+            if (thrProps != null) {
+                return thrProps.getInt(this.name, dft);
+            }
+            Layer lyr = this._getLayer();
+            Value v = this.intValue;
+            if ((v != null) && (v.version == lyr.version) && (v.dftOK == dftOK) && (((Integer)v.dft).intValue() == dft)) {
+                return ((Integer)v.value).intValue();
+            }
+            RTProperties rtp = this._getLayerProperties(lyr, dftOK);
+            int val = (rtp != null)? rtp.getInt(this.name, dft) : dft;
+            if (this._isCacheable(rtp)) {
+                this.intValue = new Value(lyr.version, dftOK, new Integer(dft), new Integer(val));
+            }
+            return val;
+        }
+        public int asInt(int dft) {
+            return this._getInt(dft, false);
+        }
+        public int asInt() {
+            return this._getInt(0, true);
+        }
+
+        /* double */
+        private double _getDouble(double dft, boolean dftOK) {
+            RTProperties thrProps = this._getThreadProperties();
+            if (thrProps != null) {
+                return thrProps.getDouble(this.name, dft);
+            }
+            Layer lyr = this._getLayer();
+            Value v = this.doubleValue;
+            if ((v != null) && (v.version == lyr.version) && (v.dftOK == dftOK) && (((Double)v.dft).doubleValue() == dft)) {
+                return ((Double)v.value).doubleValue();
+            }
+            RTProperties rtp = this._getLayerProperties(lyr, dftOK);
+            double val = (rtp != null)? rtp.getDouble(this.name, dft) : dft;
+            if (this._isCacheable(rtp)) {
+                this.doubleValue = new Value(lyr.version, dftOK, new Double(dft), new Double(val));
+            }
+            return val;
+        }
+        public double asDouble(double dft) {
+            return this._getDouble(dft, false);
+        }
+        public double asDouble() {
+            return this._getDouble(0.0, true);
+        }
+
+        /* boolean */
+        private boolean _getBoolean(boolean dft, boolean dftOK) {
+            RTProperties thrProps = this._getThreadProperties();
+            if (thrProps != null) {
+                return thrProps.getBoolean(this.name, dft);
+            }
+            Layer lyr = this._getLayer();
+            Value v = this.boolValue;
+            if ((v != null) && (v.version == lyr.version) && (v.dftOK == dftOK) && (((Boolean)v.dft).booleanValue() == dft)) {
+                return ((Boolean)v.value).booleanValue();
+            }
+            RTProperties rtp = this._getLayerProperties(lyr, dftOK);
+            boolean val = (rtp != null)? rtp.getBoolean(this.name, dft) : dft;
+            if (this._isCacheable(rtp)) {
+                this.boolValue = new Value(lyr.version, dftOK, new Boolean(dft), new Boolean(val));
+            }
+            return val;
+        }
+        public boolean asBoolean(boolean dft) {
+            return this._getBoolean(dft, false);
+        }
+        public boolean asBoolean() {
+            return this._getBoolean(false, true);
+        }
+
+        /* true if this key is defined */
+        public boolean isDefined() {
+            return (this._getThreadProperties() != null) || (this._getLayer().rtp != null);
+        }
+
+        public String toString() {
+            return this.name + "=" + this.asString();
+        }
+
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -689,7 +1036,7 @@ public class RTConfig
             //}
             if (CFG_PROPERTIES[COMMAND_LINE] == null) {
                 // first initialization
-                CFG_PROPERTIES[COMMAND_LINE] = cmdLineProps;     
+                _setConfigProperties(COMMAND_LINE, cmdLineProps);
                 _startupInit(true); // initialize now to allow for overriding 'configFile'
             } else {
                 // subsequent re-initialization
@@ -754,7 +1101,7 @@ public class RTConfig
     **/
     public static void _setServletContextProperties(RTProperties props)
     {
-        CFG_PROPERTIES[SERVLET_CONTEXT] = props;
+        _setConfigProperties(SERVLET_CONTEXT, props);
     }
 
     /** 
@@ -1197,18 +1544,18 @@ public class RTConfig
                 }
             }
         }
-        CFG_PROPERTIES[SYSTEM_PROPS] = new RTProperties(propMap);
+        _setConfigProperties(SYSTEM_PROPS, new RTProperties(propMap));
 
         /* environment variables */
         if (RTConfig.getEnvironmentVariablesEnabled()) {
             try {
                 Map<String,String> envMap = System.getenv();
                 //for (String k:envMap.keySet()) {String v = envMap.get(k);Print.logInfo("Env: "+k+"==>"+v);}
-                CFG_PROPERTIES[ENVIRONMENT] = new RTProperties(envMap);
+                _setConfigProperties(ENVIRONMENT, new RTProperties(envMap));
                 //CFG_PROPERTIES[ENVIRONMENT].setAllowBlankValues(false);
             } catch (Throwable th) {
                 // security error?
-                CFG_PROPERTIES[ENVIRONMENT] = null;
+                _setConfigProperties(ENVIRONMENT, null);
             }
         }
 
@@ -1225,14 +1572,14 @@ public class RTConfig
 
         /* load config file/URL */
         if (_foundConfigURL != null) {
-            CFG_PROPERTIES[CONFIG_FILE] = new RTProperties(_foundConfigURL);
+            _setConfigProperties(CONFIG_FILE, new RTProperties(_foundConfigURL));
             if (RTConfig.verbose) { 
                 Print.logInfo("Loaded config URL: " + _foundConfigURL); 
             }
         } else {
             //String cfgDir = RTConfig.getFile(RTKey.CONFIG_FILE_DIR);
             //String cfgFile = RTConfig.getFile(RTKey.CONFIG_FILE);
-            CFG_PROPERTIES[CONFIG_FILE] = new RTProperties(); // must be non-null
+            _setConfigProperties(CONFIG_FILE, new RTProperties()); // must be non-null
             if (RTConfig.verbose) { 
                 Print.logWarn("No config file was found"); 
             }
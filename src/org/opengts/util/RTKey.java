@@ -101,6 +101,15 @@ public class RTKey
     public static final String SMTP_THREAD_MODEL_SHOW       = "smtp.threadModel.show";
     public static final String SMTP_DEBUG                   = "smtp.debug";
 
+    public static final String NOTIFY_OUTBOX_ENABLE         = "notifyOutbox.enable";            // Boolean
+    public static final String NOTIFY_OUTBOX_DIR            = "notifyOutbox.directory";         // File
+    public static final String NOTIFY_OUTBOX_BATCH_SIZE     = "notifyOutbox.batchSize";         // Integer
+    public static final String NOTIFY_OUTBOX_RETRY_DELAY    = "notifyOutbox.retryDelaySec";     // Long
+    public static final String NOTIFY_OUTBOX_RETRY_MAX_DELAY= "notifyOutbox.retryMaxDelaySec";  // Long
+    public static final String NOTIFY_OUTBOX_MAX_ATTEMPTS   = "notifyOutbox.maxAttempts";       // Integer
+    public static final String NOTIFY_OUTBOX_DEDUP_WINDOW   = "notifyOutbox.dedupWindowSec";    // Long
+    public static final String NOTIFY_OUTBOX_POLL_INTERVAL  = "notifyOutbox.pollIntervalMS";    // Long
+
     public static final String LOG_NAME                     = "log.name";
     public static final String LOG_LEVEL                    = "log.level";
     public static final String LOG_LEVEL_HEADER             = "log.level.header";
@@ -203,6 +212,16 @@ public class RTKey
         new Entry(SMTP_THREAD_MODEL_SHOW     , false                            , "Print/show Send-Mail thread model"),
         new Entry(SMTP_DEBUG                 , false                            , "Sendmail debug mode"),
 
+        new Entry("Notification outbox attributes"),
+        new Entry(NOTIFY_OUTBOX_ENABLE       , false                            , "Enable notification outbox"),
+        new Entry(NOTIFY_OUTBOX_DIR          , null                             , "Notification outbox directory"),
+        new Entry(NOTIFY_OUTBOX_BATCH_SIZE   , 25                               , "Notification outbox batch size"),
+        new Entry(NOTIFY_OUTBOX_RETRY_DELAY  , 60L                              , "Notification outbox initial retry delay"),
+        new Entry(NOTIFY_OUTBOX_RETRY_MAX_DELAY, 3600L                          , "Notification outbox maximum retry delay"),
+        new Entry(NOTIFY_OUTBOX_MAX_ATTEMPTS , 12                               , "Notification outbox maximum attempts"),
+        new Entry(NOTIFY_OUTBOX_DEDUP_WINDOW , 300L                             , "Notification outbox duplicate window"),
+        new Entry(NOTIFY_OUTBOX_POLL_INTERVAL, 5000L                            , "Notification outbox poll interval"),
+
         new Entry("'Print' util attributes"),
         new Entry(LOG_NAME                   , null                             , "log name"),                                  // APP|WEB
         new Entry(LOG_LEVEL                  , Print.LOG_ALL                    , "log level"),                                 // APP|WEB
@@ -294,6 +313,7 @@ public class RTKey
                 }
             }
             defaultProperties = null;
+            RTConfig.incrementConfigVersion();
         }
     }
     
@@ -307,6 +327,7 @@ public class RTKey
             if (rtKey != null) {
                 RTKey.getRuntimeEntryMap().put(rtKey, dftEntry);
                 defaultProperties = null;
+                RTConfig.incrementConfigVersion();
             }
         }
     }
@@ -358,6 +379,7 @@ public class RTKey
         Entry rtKey = RTKey.getRuntimeEntry(key);
         if (rtKey != null) {
             rtKey.setDefault(val);
+            RTConfig.incrementConfigVersion();
         } else {
             RTKey.addRuntimeEntry(new Entry(key,val));
         }
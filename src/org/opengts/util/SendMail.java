@@ -94,10 +94,12 @@ public class SendMail
     public  static final int    _THREAD_NEW         = 2;
     public  static final String THREAD_DEBUG        = "debug";
     public  static final int    _THREAD_DEBUG       = 3;
+    public  static final String THREAD_OUTBOX       = "outbox";
+    public  static final int    _THREAD_OUTBOX      = 4;
     
     /**
     *** Sets the 'thread model' for email sent by this class.<br>
-    *** The valid values are THREAD_CURRENT, THREAD_POOL, THREAD_NEW, or THREAD_DEBUG.
+    *** The valid values are THREAD_CURRENT, THREAD_POOL, THREAD_NEW, THREAD_OUTBOX, or THREAD_DEBUG.
     *** @param model  The specified thread model.
     **/
     public static void SetThreadModel(String model)
@@ -134,9 +136,13 @@ public class SendMail
     private static int GetThreadModel(String model) 
     {
         if (model == null) {
-            // If this is a server, then we want a thread pool
+            // If this is a server, then we want a thread pool (or the outbox, if enabled)
             // If this is a one-shot 'main' program, we want the current thread
-            return RTConfig.isTestMode()? _THREAD_CURRENT : _THREAD_POOL;
+            if (RTConfig.isTestMode()) {
+                return _THREAD_CURRENT;
+            } else {
+                return NotificationOutbox.IsEnabled()? _THREAD_OUTBOX : _THREAD_POOL;
+            }
             // If a thread pool is needed while in test mode, then the thread model
             // will have to be set explicitly.
         } else
@@ -151,6 +157,9 @@ public class SendMail
         } else
         if (model.equalsIgnoreCase(THREAD_DEBUG)) {
             return _THREAD_DEBUG;
+        } else
+        if (model.equalsIgnoreCase(THREAD_OUTBOX)) {
+            return _THREAD_OUTBOX;
         } else {
             return _THREAD_POOL;
         }
@@ -320,6 +329,14 @@ public class SendMail
                 Print.logDebug("Debug SendMail (email not sent)");
                 Print.logDebug(smr.getArgs().toString());
                 return false;
+            case _THREAD_OUTBOX :
+                if (NotificationOutbox.getInstance() != null) {
+                    if (RTConfig.getBoolean(RTKey.SMTP_THREAD_MODEL_SHOW)) {
+                        Print.logDebug("Queuing SendMail to notification outbox");
+                    }
+                    return NotificationOutbox.Queue(NotificationOutbox.createEMailEntry(args));
+                }
+                // outbox not available, fall through to thread pool
             case _THREAD_POOL  :
             default :
                 if (RTConfig.getBoolean(RTKey.SMTP_THREAD_MODEL_SHOW)) {
@@ -331,6 +348,27 @@ public class SendMail
         return true; // send(args);
     }
 
+    /**
+    *** Sends a batch of emails in the current thread, over a single SMTP connection
+    *** (the current thread model is ignored).
+    *** @param args  The array of email arguments
+    *** @return An array indicating which emails were sent (null if the batch could not be sent)
+    **/
+    public static boolean[] sendBatch(Args args[])
+    {
+        if (ListTools.isEmpty(args)) {
+            return new boolean[0];
+        }
+        //return SendMailArgs.sendBatch(args);
+        try {
+            MethodAction ma = new MethodAction(SendMailArgs_class, "sendBatch", Args[].class);
+            return (boolean[])ma.invoke(new Object[] { args });
+        } catch (Throwable th) {
+            Print.logDebug("Email 'sendBatch' failed: " + th);
+            return null;
+        }
+    }
+
     /**
     *** SendMailRunnable class.
     **/
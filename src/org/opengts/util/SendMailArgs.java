@@ -67,20 +67,11 @@ public class SendMailArgs
     // ------------------------------------------------------------------------
 
     /**
-    *** Internal method to send email
-    *** @param args  The email arguments
-    *** @return True if the email was sent, false otherwise
+    *** Creates the SMTP mail Session from the current runtime configuration
+    *** @return The mail Session, or null if the SMTP host/port is invalid
     **/
-    public static boolean send(SendMail.Args args)
+    private static Session _createSession()
     {
-        String from        = args.getFrom();
-        String to[]        = args.getTo();
-        String cc[]        = args.getCc();
-        String bcc[]       = args.getBcc();
-        String subject     = args.getSubject();
-        String msgBody     = args.getBody();
-        Properties headers = args.getHeaders();
-        SendMail.Attachment attach  = args.getAttachment();
 
         /* SMTP properties */
         // http://www.j2ee.me/products/javamail/javadocs/com/sun/mail/smtp/package-summary.html
@@ -108,11 +99,11 @@ public class SendMailArgs
         final int    smtpPort = RTConfig.getInt(RTKey.SMTP_SERVER_PORT,25);
         if (StringTools.isBlank(smtpHost) || smtpHost.endsWith("example.com")) {
             Print.logError("Null/Invalid SMTP host, not sending email");
-            return false;
+            return null;
         } else
         if (smtpPort <= 0) {
             Print.logError("Invalid SMTP port, not sending email");
-            return false;
+            return null;
         }
         props.put("mail.smtp.host"                          , smtpHost);
         props.put("mail.smtp.port"                          , String.valueOf(smtpPort));
@@ -157,80 +148,194 @@ public class SendMailArgs
 
         /* SMTP Session */
         //props.list(System.out);
-        Session session = Session.getInstance(props, auth);
-        
-        try {
-            Message msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(from));
-            
-            InternetAddress toAddr[]  = _convertRecipients(to);
-            InternetAddress ccAddr[]  = _convertRecipients(cc);
-            InternetAddress bccAddr[] = _convertRecipients(bcc);
-            if ((toAddr != null) && (toAddr.length > 0)) {
-                for (Iterator i = headers.keySet().iterator(); i.hasNext();) {
-                    String k = (String)i.next();
-                    String v = headers.getProperty(k);
-                    if (v != null) {
-                        msg.setHeader(k, v);
-                    }
-                }
-                msg.setRecipients(Message.RecipientType.TO , toAddr);
-                msg.setRecipients(Message.RecipientType.CC , ccAddr);
-                msg.setRecipients(Message.RecipientType.BCC, bccAddr);
-                msg.setSubject(subject);
-                msg.setSentDate(new Date());
-                if ((attach != null) && (attach.getSize() > 0)) {
-                    Multipart multipart = new MimeMultipart();
-                    if ((msgBody != null) && !msgBody.equals("")) {
-                        BodyPart textBodyPart = new MimeBodyPart();
-                        textBodyPart.setText(msgBody);
-                        multipart.addBodyPart(textBodyPart);
-                    }
-                    // add attachment
-                    BodyPart attachBodyPart = new MimeBodyPart();
-                    DataSource source = new ByteArrayDataSource(attach.getName(), attach.getType(), attach.getBytes());
-                    attachBodyPart.setDataHandler(new DataHandler(source));
-                    attachBodyPart.setFileName(source.getName());
-                    multipart.addBodyPart(attachBodyPart);
-                    // set content 
-                    msg.setContent(multipart);
-                } else {
-                    msg.setText(msgBody); // setContent(msgBody, CONTENT_TYPE_PLAIN);
-                }
+        return Session.getInstance(props, auth);
 
-                /* send email */
-                msg.saveChanges(); // implicit with send()
-                if (!USE_AUTHENTICATOR && !StringTools.isBlank(smtpUser)) {
-                    Transport transport = session.getTransport("smtp");
-                    transport.connect(smtpHost, smtpUser, (smtpPass!=null?smtpPass:""));
-                    transport.sendMessage(msg, msg.getAllRecipients());
-                    transport.close();
-                } else {
-                    Transport.send(msg);
-                }
-                Print.logDebug("Email sent ...");
+    }
 
-                return true;
-            } else {
+    /**
+    *** Creates the email Message for the specified arguments
+    *** @param session  The mail Session
+    *** @param args     The email arguments
+    *** @return The Message, or null if no 'To' recipients were specified
+    *** @throws MessagingException if an error occurs while creating the message
+    **/
+    private static Message _createMessage(Session session, SendMail.Args args)
+        throws MessagingException
+    {
+        String from        = args.getFrom();
+        String to[]        = args.getTo();
+        String cc[]        = args.getCc();
+        String bcc[]       = args.getBcc();
+        String subject     = args.getSubject();
+        String msgBody     = args.getBody();
+        Properties headers = args.getHeaders();
+        SendMail.Attachment attach  = args.getAttachment();
+
+        Message msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress(from));
+
+        InternetAddress toAddr[]  = _convertRecipients(to);
+        InternetAddress ccAddr[]  = _convertRecipients(cc);
+        InternetAddress bccAddr[] = _convertRecipients(bcc);
+        if ((toAddr == null) || (toAddr.length <= 0)) {
+            return null;
+        }
+        for (Iterator i = headers.keySet().iterator(); i.hasNext();) {
+            String k = (String)i.next();
+            String v = headers.getProperty(k);
+            if (v != null) {
+                msg.setHeader(k, v);
+            }
+        }
+        msg.setRecipients(Message.RecipientType.TO , toAddr);
+        msg.setRecipients(Message.RecipientType.CC , ccAddr);
+        msg.setRecipients(Message.RecipientType.BCC, bccAddr);
+        msg.setSubject(subject);
+        msg.setSentDate(new Date());
+        if ((attach != null) && (attach.getSize() > 0)) {
+            Multipart multipart = new MimeMultipart();
+            if ((msgBody != null) && !msgBody.equals("")) {
+                BodyPart textBodyPart = new MimeBodyPart();
+                textBodyPart.setText(msgBody);
+                multipart.addBodyPart(textBodyPart);
+            }
+            // add attachment
+            BodyPart attachBodyPart = new MimeBodyPart();
+            DataSource source = new ByteArrayDataSource(attach.getName(), attach.getType(), attach.getBytes());
+            attachBodyPart.setDataHandler(new DataHandler(source));
+            attachBodyPart.setFileName(source.getName());
+            multipart.addBodyPart(attachBodyPart);
+            // set content 
+            msg.setContent(multipart);
+        } else {
+            msg.setText(msgBody); // setContent(msgBody, CONTENT_TYPE_PLAIN);
+        }
+        msg.saveChanges(); // implicit with send()
+        return msg;
+
+    }
+
+    /**
+    *** Prints the details of the specified MessagingException
+    **/
+    private static void _printMessagingException(MessagingException me)
+    {
+        String smtpHost = RTConfig.getString(RTKey.SMTP_SERVER_HOST);
+        int    smtpPort = RTConfig.getInt(RTKey.SMTP_SERVER_PORT,25);
+        Print.logStackTrace("Unable to send email [host="+smtpHost+"; port="+smtpPort+"]", me);
+        for (Exception ex = me; ex != null;) {
+            if (ex instanceof SendFailedException) {
+                SendFailedException sfex = (SendFailedException)ex;
+                _printAddresses("Invalid:"     , sfex.getInvalidAddresses());
+                _printAddresses("Valid Unsent:", sfex.getValidUnsentAddresses());
+                _printAddresses("Valid Sent:"  , sfex.getValidSentAddresses());
+            }
+            ex = (ex instanceof MessagingException)? ((MessagingException)ex).getNextException() : null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Internal method to send email
+    *** @param args  The email arguments
+    *** @return True if the email was sent, false otherwise
+    **/
+    public static boolean send(SendMail.Args args)
+    {
+
+        /* SMTP Session */
+        Session session = _createSession();
+        if (session == null) {
+            return false;
+        }
+
+        try {
+            Message msg = _createMessage(session, args);
+            if (msg == null) {
                 return false;
             }
 
-        } catch (MessagingException me) {
-            
-            Print.logStackTrace("Unable to send email [host="+smtpHost+"; port="+smtpPort+"]", me);
-            for (Exception ex = me; ex != null;) {
-                if (ex instanceof SendFailedException) {
-                    SendFailedException sfex = (SendFailedException)ex;
-                    _printAddresses("Invalid:"     , sfex.getInvalidAddresses());
-                    _printAddresses("Valid Unsent:", sfex.getValidUnsentAddresses());
-                    _printAddresses("Valid Sent:"  , sfex.getValidSentAddresses());
-                }
-                ex = (ex instanceof MessagingException)? ((MessagingException)ex).getNextException() : null;
+            /* send email */
+            String smtpUser = StringTools.trim(RTConfig.getString(RTKey.SMTP_SERVER_USER));
+            if (!USE_AUTHENTICATOR && !StringTools.isBlank(smtpUser)) {
+                String smtpHost = RTConfig.getString(RTKey.SMTP_SERVER_HOST);
+                String smtpPass = RTConfig.getString(RTKey.SMTP_SERVER_PASSWORD);
+                Transport transport = session.getTransport("smtp");
+                transport.connect(smtpHost, smtpUser, (smtpPass!=null?smtpPass:""));
+                transport.sendMessage(msg, msg.getAllRecipients());
+                transport.close();
+            } else {
+                Transport.send(msg);
             }
+            Print.logDebug("Email sent ...");
+            return true;
 
+        } catch (MessagingException me) {
+            _printMessagingException(me);
             return false;
+        }
+
+    }
+
+    /**
+    *** Internal method to send a batch of emails over a single SMTP connection
+    *** @param args  The array of email arguments
+    *** @return An array indicating which emails were sent, or null if the SMTP 
+    ***         connection could not be established.
+    **/
+    public static boolean[] sendBatch(SendMail.Args args[])
+    {
+        boolean sent[] = new boolean[(args != null)? args.length : 0];
+        if (sent.length == 0) {
+            return sent;
+        }
+
+        /* SMTP Session */
+        Session session = _createSession();
+        if (session == null) {
+            return null;
+        }
 
+        /* connect */
+        Transport transport = null;
+        try {
+            String smtpHost = RTConfig.getString(RTKey.SMTP_SERVER_HOST);
+            int    smtpPort = RTConfig.getInt(RTKey.SMTP_SERVER_PORT,25);
+            String smtpUser = StringTools.trim(RTConfig.getString(RTKey.SMTP_SERVER_USER));
+            String smtpPass = RTConfig.getString(RTKey.SMTP_SERVER_PASSWORD);
+            transport = session.getTransport("smtp");
+            if (!StringTools.isBlank(smtpUser)) {
+                transport.connect(smtpHost, smtpPort, smtpUser, (smtpPass!=null?smtpPass:""));
+            } else {
+                transport.connect();
+            }
+        } catch (MessagingException me) {
+            _printMessagingException(me);
+            return null;
+        }
+
+        /* send all messages over this connection */
+        try {
+            for (int i = 0; i < args.length; i++) {
+                try {
+                    Message msg = _createMessage(session, args[i]);
+                    if (msg != null) {
+                        transport.sendMessage(msg, msg.getAllRecipients());
+                        sent[i] = true;
+                    }
+                } catch (MessagingException me) {
+                    _printMessagingException(me);
+                    if (!transport.isConnected()) {
+                        break; // remaining messages will be retried
+                    }
+                }
+            }
+            Print.logDebug("Email batch sent ...");
+        } finally {
+            try { transport.close(); } catch (MessagingException me) { /* ignore */ }
         }
+        return sent;
 
     }
 
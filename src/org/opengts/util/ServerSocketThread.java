@@ -62,6 +62,7 @@ package org.opengts.util;
 import java.io.*;
 import java.util.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.awt.event.*;
 import javax.net.*;
 
@@ -259,6 +260,7 @@ public class ServerSocketThread
     private Class                               clientPacketHandlerClass = null;
 
     private long                                sessionTimeoutMS        = -1L;
+    private int                                 packetBatchLimit        = 64;
     private long                                idleTimeoutMS           = -1L;
     private long                                packetTimeoutMS         = -1L;
     
@@ -675,6 +677,27 @@ public class ServerSocketThread
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Sets the maximum number of packets handled in a single packet batch 
+    *** (only applicable to 'BatchPacketHandler' handlers)
+    *** @param limit The maximum number of packets per batch (<=1 to disable batching)
+    **/
+    public void setPacketBatchLimit(int limit)
+    {
+        this.packetBatchLimit = limit;
+    }
+
+    /**
+    *** Gets the maximum number of packets handled in a single packet batch
+    *** @return The maximum number of packets per batch
+    **/
+    public int getPacketBatchLimit()
+    {
+        return this.packetBatchLimit;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Sets the idle timeout in milliseconds
     *** @param timeoutMS The idle timeout in milliseconds
@@ -1228,6 +1251,11 @@ public class ServerSocketThread
         private long readByteCount  = 0L;
         private long writeByteCount = 0L;
 
+        private byte       readBuffer[]   = null; // reused for each packet read in this session
+        private ByteBuffer readByteBuffer = null; // wraps 'readBuffer'
+
+        private ByteArrayOutputStream batchResponse = null; // responses deferred to end of batch
+
         //public ServerSessionThread(Socket client) {
         //    super("ClientSession");
         //    this.client = new ClientSocket(client);
@@ -1351,6 +1379,11 @@ public class ServerSocketThread
 
                 /* client session handler */
                 ClientPacketHandler clientHandler = ServerSocketThread.this.getClientPacketHandler();
+                ByteBufferPacketHandler bbHandler = ByteBufferPacketHandlerAdapter.getByteBufferPacketHandler(clientHandler);
+                BatchPacketHandler batchHandler = (clientHandler instanceof BatchPacketHandler)? 
+                    (BatchPacketHandler)clientHandler : null;
+                int batchLimit = ServerSocketThread.this.getPacketBatchLimit();
+                int batchCount = 0; // >0 while a packet batch is in progress
                 if (clientHandler != null) {
                     if (clientHandler instanceof AbstractClientPacketHandler) {
                         // set a handle to this session thread
@@ -1401,18 +1434,19 @@ public class ServerSocketThread
                                 }
                             }
 
-                            /* read packet */
-                            byte line[] = null;
+                            /* read packet (into 'this.readBuffer') */
+                            int lineLen = -1;
                             if (ServerSocketThread.this.isTextPackets()) {
                                 // ASCII: read until packet EOL
-                                line = this.readLine(this.client, clientHandler);
+                                lineLen = this.readLine(this.client, clientHandler);
                                 // "getTerminateOnTimeout()" called on timeout (SSReadTimeoutException)
                             } else {
                                 // Binary: read until packet length or timeout
-                                line = this.readPacket(this.client, clientHandler);
+                                lineLen = this.readPacket(this.client, clientHandler);
                                 // "getTerminateOnTimeout()" called on timeout (SSReadTimeoutException)
                             }
                             // timeout occurred?
+                            ByteBuffer line = this.getReadByteBuffer(lineLen); // null if nothing read
 
                             /* check for requested terminate */
                             if (clientHandler.terminateSession()) {
@@ -1422,18 +1456,36 @@ public class ServerSocketThread
                             /* send packet to listeners */
                             if ((line != null) && ServerSocketThread.this.hasListeners()) {
                                 try {
-                                    ServerSocketThread.this.invokeListeners(line);
+                                    ServerSocketThread.this.invokeListeners(ByteBufferPacketHandlerAdapter.getBytes(line));
                                 } catch (Throwable t) {
                                     // a listener can terminate this session
                                     break; 
                                 }
                             }
 
+                            /* begin packet batch if more packets are already available */
+                            if ((line != null) && (batchHandler != null) && (batchLimit > 1) && this.client.isTCP()) {
+                                if (batchCount > 0) {
+                                    batchCount++;
+                                } else
+                                if (this.client.available() > 0) {
+                                    batchHandler.beginPacketBatch();
+                                    batchCount = 1;
+                                }
+                            }
+
                             /* handle packet, and get response */
                             if ((line != null) && (clientHandler != null)) {
                                 try {
-                                    byte response[] = clientHandler.getHandlePacket(line);
+                                    byte response[] = bbHandler.getHandlePacket(line);
                                     if ((response != null) && (response.length > 0)) {
+                                        if (batchCount > 0) {
+                                            // TCP: Send response at end of batch
+                                            if (this.batchResponse == null) {
+                                                this.batchResponse = new ByteArrayOutputStream();
+                                            }
+                                            this.batchResponse.write(response, 0, response.length);
+                                        } else
                                         if (this.client.isTCP()) {
                                             // TCP: Send response over socket connection
                                             this.writeBytes(output, response);
@@ -1455,6 +1507,12 @@ public class ServerSocketThread
                                 }
                             }
 
+                            /* end packet batch when no more packets are available */
+                            if ((batchCount > 0) && ((batchCount >= batchLimit) || (this.client.available() <= 0))) {
+                                batchCount = 0;
+                                this.endPacketBatch(batchHandler, output);
+                            }
+
                             /* terminate now if we're reading a Datagram and we're out of data */
                             if (this.client.isUDP()) {
                                 int avail = this.client.available();
@@ -1505,6 +1563,16 @@ public class ServerSocketThread
                 }
                 Print.logInfo("End of session ...");
 
+                /* end packet batch in progress */
+                if (batchCount > 0) {
+                    batchCount = 0;
+                    try {
+                        this.endPacketBatch(batchHandler, output);
+                    } catch (Throwable t) {
+                        Print.logException("Batch response transmission", t);
+                    }
+                }
+
                 /* client session terminated */
                 if (clientHandler != null) {
                     try {
@@ -1620,6 +1688,26 @@ public class ServerSocketThread
             }
         }
 
+        /* end the current packet batch, and transmit the deferred batch responses */
+        private void endPacketBatch(BatchPacketHandler batchHandler, OutputStream output) throws IOException {
+            boolean saved = false;
+            try {
+                saved = batchHandler.endPacketBatch();
+            } catch (Throwable t) {
+                Print.logException("Unexpected exception: ", t);
+            }
+            if ((this.batchResponse != null) && (this.batchResponse.size() > 0)) {
+                byte response[] = this.batchResponse.toByteArray();
+                this.batchResponse.reset();
+                if (saved) {
+                    this.writeBytes(output, response);
+                } else {
+                    // do not acknowledge packets which were not saved (client will retransmit)
+                    Print.logWarn("Packet batch not saved, discarding batch responses");
+                }
+            }
+        }
+
         private void writeBytes(OutputStream output, byte cmd[]) throws IOException {
             // 'ouput' will be null for UDP
             if ((output != null) && (cmd != null) && (cmd.length > 0)) {
@@ -1636,6 +1724,31 @@ public class ServerSocketThread
             }
         }
 
+        /* return the session read buffer, ensuring that it is at least 'minLen' bytes */
+        private byte[] getReadBuffer(int minLen, int keepLen) {
+            if ((this.readBuffer == null) || (this.readBuffer.length < minLen)) {
+                byte newBuff[] = new byte[(minLen > 0)? minLen : 1];
+                if ((this.readBuffer != null) && (keepLen > 0)) {
+                    System.arraycopy(this.readBuffer, 0, newBuff, 0, keepLen);
+                }
+                this.readBuffer     = newBuff;
+                this.readByteBuffer = ByteBuffer.wrap(this.readBuffer);
+            }
+            return this.readBuffer;
+        }
+
+        /* return the session read buffer positioned over the first 'len' bytes */
+        private ByteBuffer getReadByteBuffer(int len) {
+            if (len < 0) {
+                return null;
+            } else {
+                this.getReadBuffer(len, 0);
+                this.readByteBuffer.clear();
+                this.readByteBuffer.limit(len);
+                return this.readByteBuffer;
+            }
+        }
+
         private int readByte(ClientSocket client, ClientPacketHandler clientHandler, long timeoutAt, int byteNdx) throws IOException {
             // Read until:
             //  - Timeout
@@ -1684,7 +1797,7 @@ public class ServerSocketThread
             }
         }
 
-        private byte[] readLine(ClientSocket client, ClientPacketHandler clientHandler) 
+        private int readLine(ClientSocket client, ClientPacketHandler clientHandler) 
             throws IOException { // SSReadTimeoutException, SSEndOfStreamException, 
             // Read until:
             //  - EOL
@@ -1705,7 +1818,7 @@ public class ServerSocketThread
             //client.setSoTimeout(10000);
 
             /* packet */
-            byte buff[]  = new byte[maxLen];
+            byte buff[]  = this.getReadBuffer(maxLen, 0);
             int  buffLen = 0;
             boolean isIdle = true;
             long readStartTime = DateTime.getCurrentTimeMillis();
@@ -1749,9 +1862,7 @@ public class ServerSocketThread
 
                     /* save byte */
                     if (buffLen >= buff.length) { // overflow?
-                        byte newBuff[] = new byte[buff.length * 2];
-                        System.arraycopy(buff, 0, newBuff, 0, buff.length);
-                        buff = newBuff;
+                        buff = this.getReadBuffer(buff.length * 2, buffLen);
                     }
                     buff[buffLen++] = (byte)ch;
 
@@ -1788,20 +1899,12 @@ public class ServerSocketThread
             }
             long readEndTime = DateTime.getCurrentTimeMillis();
 
-            /* return packet */
-            if (buff.length == buffLen) {
-                // highly unlikely
-                return buff;
-            } else {
-                // resize buffer
-                byte newBuff[] = new byte[buffLen];
-                System.arraycopy(buff, 0, newBuff, 0, buffLen);
-                return newBuff;
-            }
+            /* return packet length (packet is in 'this.readBuffer') */
+            return buffLen;
 
         }
 
-        private byte[] readPacket(ClientSocket client, ClientPacketHandler clientHandler) 
+        private int readPacket(ClientSocket client, ClientPacketHandler clientHandler) 
             throws IOException { // SSReadTimeoutException, SSEndOfStreamException, SocketException
             // Read until:
             //  - Timeout
@@ -1827,7 +1930,7 @@ public class ServerSocketThread
             int  pktState  = 0;
 
             /* read packet */
-            byte packet[] = new byte[maxLen];
+            byte packet[] = this.getReadBuffer(maxLen, 0);
             int  packetLen = 0;
             boolean isIdle = true;
             boolean isTextLine = false;
@@ -1846,7 +1949,7 @@ public class ServerSocketThread
                         if(lastByte == 40) { //28, comando
                             isTextLine = true;
                             maxLen = 100;
-                            packet = new byte[maxLen];
+                            packet = this.getReadBuffer(maxLen, 0);
                             packetLen = 0;
                             gpsTrans = false;
                         } else { 
@@ -1854,7 +1957,7 @@ public class ServerSocketThread
                             if(lastByte == 36){ //transmision gps
                                 isTextLine = false;
                                 packetLen = 0;
-                                packet = new byte[maxLen];
+                                packet = this.getReadBuffer(maxLen, 0);
                                 gpsTrans = true;
                             }
                         }
@@ -1999,16 +2102,8 @@ public class ServerSocketThread
                 throw ioe;
             }
 
-            /* return packet */
-            if (packet.length == packetLen) {
-                // highly unlikely
-                return packet;
-            } else {
-                // resize buffer
-                byte newPacket[] = new byte[packetLen];
-                System.arraycopy(packet, 0, newPacket, 0, packetLen);
-                return newPacket;
-            }
+            /* return packet length (packet is in 'this.readBuffer') */
+            return packetLen;
 
         }
         
@@ -22,6 +22,8 @@
 //  http://localhost:8080/events/dev.xml?a=demo&u=&p=&d=demo&l=1&at=true
 //  http://localhost:8080/events/dev.xml?a=demo&u=&p=&g=all&l=1&at=true
 //  http://localhost:8080/events/dev.xml?a=demo&u=demo&p=&g=all&l=1&at=true
+//  http://localhost:8080/events/dev.csv?a=demo&u=demo&p=&g=all&rf=2010/01/01&stream=true
+//  http://localhost:8080/events/dev.csv?a=demo&u=demo&p=&g=all&rf=2010/01/01&key=demo,1262390400,61714
 // ----------------------------------------------------------------------------
 // Change History:
 //  2006/03/26  Martin D. Flynn
@@ -62,6 +64,7 @@ import java.util.*;
 import java.io.*;
 import java.net.*;
 import java.sql.*;
+import java.util.zip.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -94,12 +97,18 @@ public class Events
     private static final String PARM_LIMIT[]        = new String[] { "limit"      ,         "l"  };  // Constants.PARM_LIMIT;    
     private static final String PARM_VALID_GPS[]    = new String[] { "validgps"   , "gps" , "vg" };  // Constants.PARM_VALID_GPS;    
     private static final String PARM_ALL_TAGS[]     = new String[] { "alltags"    ,         "at" };  // Constants.PARM_ALL_TAGS;    
+    private static final String PARM_STREAM[]       = new String[] { "stream"     ,         "st" };
+    private static final String PARM_KEY[]          = new String[] { "key"        , "next", "k"  };
 
     // ------------------------------------------------------------------------
 
     /* limits */
     public  static final long   DFT_LIMIT           = 100L;
     public  static final long   MAX_LIMIT           = 1000L;
+
+    /* streaming */
+    private static final RTConfig.Key KEY_streamBlockSize    = RTConfig.key(DBConfig.PROP_events_stream_blockSize);
+    private static final RTConfig.Key KEY_streamMaximumLimit = RTConfig.key(DBConfig.PROP_events_stream_maximumLimit);
     
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -184,6 +193,8 @@ public class Events
         long    limit      = Events.getRequestLong   (request, PARM_LIMIT    , DFT_LIMIT);
         boolean validGPS   = Events.getRequestBoolean(request, PARM_VALID_GPS, true);
         boolean allTags    = Events.getRequestBoolean(request, PARM_ALL_TAGS , false);
+        String  lastKey    = Events.getRequestString (request, PARM_KEY      , "");
+        boolean stream     = Events.getRequestBoolean(request, PARM_STREAM   , false) || !StringTools.isBlank(lastKey);
         String  fmtStr     = null;
 
         /* default to 'admin' user */
@@ -401,8 +412,23 @@ public class Events
             }
         }
 
+        /* stream records */
+        if (stream) {
+            long streamLimit = KEY_streamMaximumLimit.asLong(100000L);
+            long limitArg    = Events.getRequestLong(request, PARM_LIMIT, -1L);
+            if ((limitArg > 0L) && ((limitArg < streamLimit) || (streamLimit <= 0L))) {
+                streamLimit = limitArg;
+            } else
+            if (streamLimit <= 0L) {
+                streamLimit = Long.MAX_VALUE; // no maximum
+            }
+            this.writeStreamEvents(request, response, privLabel, account, deviceIDSet, 
+                startTime, endTime, validGPS, lastKey, streamLimit, outFmt, allTags);
+            return;
+        }
+
         /* extract records */
-        // NOT CURRENTLY SCALABLE!
+        // NOT CURRENTLY SCALABLE! (see "&stream=true")
         // this version assumes that the number of returned records is reasonable and fits in memory
         EventData eventArray[] = null;
         try {
@@ -427,6 +453,25 @@ public class Events
         }
 
         /* mime content type */
+        this.setContentType(response, outFmt);
+
+        /* return events */
+        try {
+            PrintWriter out = response.getWriter();
+            EventUtil.getInstance().writeEvents(out, eventArray, outFmt, allTags, privLabel);
+        } catch (IOException ioe) {
+            Print.logException("Error writing events", ioe);
+            this.errorResponse(response, "Internal error (output)");
+            return;
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* set the response content type for the specified output format */
+    private void setContentType(HttpServletResponse response, int outFmt)
+    {
         switch (outFmt) {
             case EventUtil.FORMAT_TXT:
                 CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
@@ -447,15 +492,130 @@ public class Events
                 CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
                 break;
         }
+    }
 
-        /* return events */
+    // ------------------------------------------------------------------------
+
+    /* format the resume key for the specified event */
+    private static String formatEventKey(EventData ev)
+    {
+        return ev.getDeviceID() + "," + ev.getTimestamp() + "," + ev.getStatusCode();
+    }
+
+    /**
+    *** Streams the selected events to the response.  Events for each device are selected
+    *** in ascending timestamp order in blocks of "events.stream.blockSize" records, and are
+    *** written incrementally as each block is retrieved, so that the full selection is never
+    *** held in memory.  Devices are processed in ascending DeviceID order.  The response is 
+    *** gzip encoded if accepted by the client, and is sent chunked (no content-length).<br>
+    *** If 'limit' events have been written, the key of the last event written is included in
+    *** the format footer as the "NextKey", which may be specified in a subsequent request 
+    *** ("&amp;key=...") to resume the selection following that event.
+    **/
+    private void writeStreamEvents(
+        HttpServletRequest request, HttpServletResponse response,
+        BasicPrivateLabel privLabel, Account account, OrderedSet<String> deviceIDSet,
+        long startTime, long endTime, boolean validGPS,
+        String lastKey, long limit, int outFmt, boolean allTags)
+        throws ServletException, IOException
+    {
+        String accountID = account.getAccountID();
+
+        /* devices in ascending order (the resume key depends on a consistent device order) */
+        java.util.List<String> devIDList = new Vector<String>(deviceIDSet);
+        Collections.sort(devIDList);
+
+        /* parse resume key: "<deviceID>,<timestamp>,<statusCode>" */
+        String keyDevID = null;
+        long   keyTime  = -1L;
+        int    keyCode  = 0;
+        if (!StringTools.isBlank(lastKey)) {
+            String k[] = StringTools.parseString(lastKey, ',');
+            keyTime = (k.length == 3)? StringTools.parseLong(k[1], -1L) : -1L;
+            if ((keyTime < 0L) || !devIDList.contains(k[0])) {
+                Print.logError("Invalid key: " + accountID + " => " + lastKey);
+                this.errorResponse(response, "Invalid key");
+                return;
+            }
+            keyDevID = k[0];
+            keyCode  = StringTools.parseInt(k[2], 0);
+        }
+
+        /* response */
+        this.setContentType(response, outFmt);
+        OutputStream os = response.getOutputStream();
+        String acceptEnc = StringTools.trim(request.getHeader("Accept-Encoding")).toLowerCase();
+        if (acceptEnc.indexOf("gzip") >= 0) {
+            response.setHeader("Content-Encoding", "gzip");
+            response.setHeader("Vary", "Accept-Encoding");
+            os = new GZIPOutputStream(os, 8192);
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, response.getCharacterEncoding())));
+        EventUtil.EventWriter evw = EventUtil.getInstance().createEventWriter(out, outFmt, allTags, account, privLabel);
+        if (evw == null) {
+            out.close();
+            return;
+        }
+
+        /* write events */
+        // Output may already have been sent, so errors can only be logged (the client
+        // will see a truncated response, without a format footer).
+        long   blockSize = KEY_streamBlockSize.asLong(500L);
+        long   count     = 0L;
+        String nextKey   = null;
         try {
-            PrintWriter out = response.getWriter();
-            EventUtil.getInstance().writeEvents(out, eventArray, outFmt, allTags, privLabel);
+            evw.writeHeader();
+            deviceLoop:
+            for (String devID : devIDList) {
+
+                /* skip devices preceding the resume key */
+                long afterTime = -1L;
+                int  afterCode = 0;
+                if (keyDevID != null) {
+                    int c = devID.compareTo(keyDevID);
+                    if (c < 0) {
+                        continue;
+                    } else
+                    if (c == 0) {
+                        afterTime = keyTime;
+                        afterCode = keyCode;
+                    }
+                }
+
+                /* device */
+                Device dev = Device.getDevice(account, devID);
+                if (dev == null) {
+                    Print.logWarn("Device not found: " + devID);
+                    continue;
+                }
+
+                /* events */
+                long remaining = limit - count;
+                DBRecordIterator<EventData> evIter = EventData.getRangeEventIterator(
+                    accountID, devID,
+                    startTime, endTime, validGPS,
+                    afterTime, afterCode,
+                    Math.min(blockSize, remaining));
+                while ((evIter != null) && evIter.hasNext()) {
+                    EventData ev = evIter.next();
+                    ev.setAccount(account);
+                    ev.setDevice(dev);
+                    evw.writeEvent(ev);
+                    count++;
+                    if (count >= limit) {
+                        nextKey = Events.formatEventKey(ev);
+                        break deviceLoop;
+                    }
+                }
+
+            }
+            evw.writeFooter(nextKey);
+        } catch (DBException dbe) {
+            Print.logException("Error streaming events: " + accountID, dbe);
         } catch (IOException ioe) {
-            Print.logException("Error writing events", ioe);
-            this.errorResponse(response, "Internal error (output)");
-            return;
+            Print.logError("Error writing streamed events: " + accountID + " [" + ioe + "]");
+        } finally {
+            out.close(); // also finishes the gzip stream
         }
 
     }
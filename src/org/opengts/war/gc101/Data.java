@@ -174,11 +174,29 @@ public class Data
         String gprmc  = AttributeTools.getRequestString(request, PARM_RMC , "");
         Print.logInfo("[" + ipAddr + "] URL: " + request.getRequestURL() + " " + request.getQueryString());
         
-        /* parse/insert event */
-        try {
-            this.parseInsertEvent(ipAddr, imei, gprmc);
-        } catch (Throwable t) {
-            Print.logException("Unexpected Exception", t);
+        /* batch upload (one fix per line) */
+        if (BatchFixUpload.isBatchRequest(request)) {
+            Device device = null;
+            try {
+                device = this.loadDevice(ipAddr, imei);
+            } catch (Throwable t) {
+                Print.logException("Unexpected Exception", t);
+            }
+            if (device != null) {
+                BatchFixUpload.process(request, response, device, new BatchFixUpload.FixHandler() {
+                    public EventData createEventData(Device dev, BatchFixUpload.Fix fix) {
+                        return Data.this.createBatchEvent(dev, fix);
+                    }
+                });
+                return;
+            }
+        } else {
+            /* parse/insert event */
+            try {
+                this.parseInsertEvent(ipAddr, imei, gprmc);
+            } catch (Throwable t) {
+                Print.logException("Unexpected Exception", t);
+            }
         }
         
         /* write response */
@@ -191,14 +209,14 @@ public class Data
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
-    /* parse and insert event */
-    private boolean parseInsertEvent(String ipAddr, String imei, String gprmc)
+    /* find and validate the Device for the specified IMEI# */
+    private Device loadDevice(String ipAddr, String imei)
     {
 
         /* null IMEI? */
         if (StringTools.isBlank(imei)) {
             Print.logWarn("Ignoring packet with blank IMEI#");
-            return false;
+            return null;
         }
 
         /* find Device */
@@ -233,27 +251,40 @@ public class Data
             // final check to see if we found the Device record
             if (device == null) {
                 Print.logWarn("GC-101 ID not found!: " + gc101ID); // <== display main key
-                return false;
+                return null;
             }
             dataXPort = device.getDataTransport();
         } catch (DBException dbe) {
             Print.logError("Exception getting Device: " + uniqueID + " [" + dbe + "]");
-            return false;
+            return null;
         }
-        String accountID = device.getAccountID();
-        String deviceID  = device.getDeviceID();
 
         /* validate source IP address */
         if ((ipAddr != null) && !dataXPort.isValidIPAddress(ipAddr)) {
             Print.logError("Invalid IP Address for device: " + ipAddr + 
                 " [expecting " + dataXPort.getIpAddressValid() + "]");
-            return false;
+            return null;
         }
 
         /* set transport attributes */
         dataXPort.setIpAddressCurrent(ipAddr);      // FLD_ipAddressCurrent
         dataXPort.setDeviceCode(DEVICE_CODE);       // FLD_deviceCode
         device.setLastTotalConnectTime(DateTime.getCurrentTimeSec()); // FLD_lastTotalConnectTime
+        return device;
+
+    }
+
+    /* parse and insert event */
+    private boolean parseInsertEvent(String ipAddr, String imei, String gprmc)
+    {
+
+        /* find Device */
+        Device device = this.loadDevice(ipAddr, imei);
+        if (device == null) {
+            return false;
+        }
+        String accountID = device.getAccountID();
+        String deviceID  = device.getDeviceID();
 
         /* parse/insert event */
         EventData evdb = this.parseGPRMC(device, gprmc);
@@ -263,9 +294,29 @@ public class Data
         }
 
         /* simulate geozones */
+        this.simulateGeozones(device, evdb);
+
+        /* save device changes */
+        try {
+            // TODO: check "this.device" vs "this.dataXPort"
+            device.updateChangedEventFields();
+        } catch (DBException dbe) {
+            Print.logException("Unable to update Device: " + 
+                device.getAccountID() + "/" + device.getDeviceID(), dbe);
+        }
+        
+        return false;
+
+    }
+
+    /* insert simulated geozone arrive/depart events */
+    private void simulateGeozones(Device device, EventData evdb)
+    {
         if (SIMEVENT_GEOZONES && (evdb != null) && evdb.isValidGeoPoint()) {
-            long    timestamp = evdb.getTimestamp();
-            GeoPoint geoPoint = evdb.getGeoPoint();
+            String   accountID = device.getAccountID();
+            String   deviceID  = device.getDeviceID();
+            long     timestamp = evdb.getTimestamp();
+            GeoPoint geoPoint  = evdb.getGeoPoint();
             java.util.List<Device.GeozoneTransition> zone = device.checkGeozoneTransitions(timestamp, geoPoint);
             if (zone != null) {
                 double speedKPH  = evdb.getSpeedKPH();
@@ -285,17 +336,47 @@ public class Data
                 }
             }
         }
+    }
 
-        /* save device changes */
-        try {
-            // TODO: check "this.device" vs "this.dataXPort"
-            device.updateChangedEventFields();
-        } catch (DBException dbe) {
-            Print.logException("Unable to update Device: " + 
-                device.getAccountID() + "/" + device.getDeviceID(), dbe);
+    /* create an event from a batch uploaded fix (same rules as a single fix) */
+    private EventData createBatchEvent(Device device, BatchFixUpload.Fix fix)
+    {
+
+        /* status code */
+        int statusCode = this.parseStatusCode(StringTools.trim(fix.status));
+        if ((statusCode == StatusCodes.STATUS_IGNORE) || (statusCode == StatusCodes.STATUS_NONE)) {
+            return null;
+        } else
+        if ((statusCode == StatusCodes.STATUS_LOCATION) && !fix.isValid) {
+            return null;
         }
-        
-        return false;
+
+        /* minimum speed */
+        double speedKPH = fix.speedKPH;
+        double heading  = (fix.heading >= 0.0)? fix.heading : 0.0;
+        if (speedKPH < MinimumReqSpeedKPH) {
+            speedKPH = 0.0;
+            heading  = 0.0;
+        }
+
+        /* estimate GPS-based odometer */
+        GeoPoint geoPoint = fix.getGeoPoint();
+        double odomKM = (ESTIMATE_ODOMETER && fix.isValid)? 
+            device.getNextOdometerKM(geoPoint) : 
+            device.getLastOdometerKM();
+
+        /* create EventData record */
+        long fixtime = (fix.fixtime > 0L)? fix.fixtime : DateTime.getCurrentTimeSec();
+        EventData.Key evKey = new EventData.Key(device.getAccountID(), device.getDeviceID(), fixtime, statusCode);
+        EventData evdb = evKey.getDBRecord();
+        evdb.setGeoPoint(geoPoint);
+        evdb.setSpeedKPH(speedKPH);
+        evdb.setHeading(heading);
+        evdb.setOdometerKM(odomKM);
+
+        /* simulate geozones (inserted ahead of this event, within the same batch) */
+        this.simulateGeozones(device, evdb);
+        return evdb;
 
     }
         
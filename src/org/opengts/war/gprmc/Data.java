@@ -628,6 +628,17 @@ public class Data
             return;
         }
 
+        /* batch upload (one fix per line) */
+        if (BatchFixUpload.isBatchRequest(request)) {
+            final String batchDriverID = driverID;
+            BatchFixUpload.process(request, response, device, new BatchFixUpload.FixHandler() {
+                public EventData createEventData(Device dev, BatchFixUpload.Fix fix) {
+                    return Data.createBatchEvent(dev, fix, batchDriverID);
+                }
+            });
+            return;
+        }
+
         // ---------------------------------------------------------------------------------
         // --- Parse data below --- 
         
@@ -769,6 +780,51 @@ public class Data
 
     }
 
+    /* create an event from a batch uploaded fix (same rules as a single fix) */
+    private static EventData createBatchEvent(Device device, BatchFixUpload.Fix fix, String driverID)
+    {
+        int     statusCode = Data.TranslateStatusCode(fix.status);
+        long    fixtime    = (fix.fixtime > 0L)? fix.fixtime : DateTime.getCurrentTimeSec();
+        boolean isValid    = fix.isValid;
+        double  speedKPH   = fix.speedKPH;
+        double  headingDeg = fix.heading;
+        double  odometerKM = fix.odometerKM;
+
+        /* reject invalid GPS fixes */
+        if (!isValid && (statusCode == StatusCodes.STATUS_LOCATION)) {
+            return null;
+        }
+
+        /* adjustments to speed/heading */
+        if (!isValid || (speedKPH < MinimumReqSpeedKPH)) {
+            speedKPH = 0.0;
+        }
+        if ((speedKPH <= 0.0) || (headingDeg < 0.0)) {
+            headingDeg = 0.0;
+        }
+
+        /* odometer */
+        if (odometerKM <= 0.0) {
+            odometerKM = (ESTIMATE_ODOMETER && isValid)? 
+                device.getNextOdometerKM(fix.getGeoPoint()) : 
+                device.getLastOdometerKM();
+        } else {
+            odometerKM = device.adjustOdometerKM(odometerKM);
+        }
+
+        /* event record */
+        EventData.Key evKey = new EventData.Key(device.getAccountID(), device.getDeviceID(), fixtime, statusCode);
+        EventData evdb = evKey.getDBRecord();
+        evdb.setLatitude(fix.latitude);
+        evdb.setLongitude(fix.longitude);
+        evdb.setSpeedKPH(speedKPH);
+        evdb.setHeading(headingDeg);
+        evdb.setAltitude(fix.altitudeM);
+        evdb.setOdometerKM(odometerKM);
+        evdb.setDriverID(driverID);
+        return evdb;
+    }
+
     private long _parseFixtime(String dateStr, String timeStr)
     {
         // Examples:
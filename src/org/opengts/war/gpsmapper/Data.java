@@ -161,6 +161,44 @@ public class Data
 
     // ------------------------------------------------------------------------
 
+    /* create an event from a batch uploaded fix (same rules as a single fix) */
+    private static EventData createBatchEvent(Device device, BatchFixUpload.Fix fix)
+    {
+        int    statusCode = StatusCodes.STATUS_LOCATION;
+        long   fixTime    = (fix.fixtime > 0L)? fix.fixtime : DateTime.getCurrentTimeSec();
+        double speedKPH   = fix.speedKPH;
+        double headingDeg = fix.heading;
+
+        /* reject invalid GPS fixes */
+        if (!fix.isValid) {
+            return null;
+        }
+
+        /* adjustments to received values */
+        if (speedKPH < MinimumReqSpeedKPH) {
+            speedKPH = 0.0;
+        }
+        if ((speedKPH <= 0.0) || (headingDeg < 0.0)) {
+            headingDeg = 0.0;
+        }
+
+        /* create new event record */
+        EventData.Key evKey = new EventData.Key(device.getAccountID(), device.getDeviceID(), fixTime, statusCode);
+        EventData evdb = evKey.getDBRecord();
+        evdb.setLatitude(fix.latitude);
+        evdb.setLongitude(fix.longitude);
+        evdb.setSpeedKPH(speedKPH);
+        evdb.setHeading(headingDeg);
+        evdb.setAltitude(fix.altitudeM);
+        evdb.setHorzAccuracy(fix.accuracyM);
+        if (fix.odometerKM > 0.0) {
+            evdb.setOdometerKM(fix.odometerKM);
+        }
+        return evdb;
+    }
+
+    // ------------------------------------------------------------------------
+
     public void doPost(HttpServletRequest request, HttpServletResponse response)
         throws ServletException, IOException
     {
@@ -239,6 +277,17 @@ public class Data
             this.plainTextResponse(response, RESPONSE_INVALID_IP);
             return;
         }
+
+        /* batch upload (one fix per line) */
+        if (BatchFixUpload.isBatchRequest(request)) {
+            Data.logInfo(URL);
+            BatchFixUpload.process(request, response, device, new BatchFixUpload.FixHandler() {
+                public EventData createEventData(Device dev, BatchFixUpload.Fix fix) {
+                    return Data.createBatchEvent(dev, fix);
+                }
+            });
+            return;
+        }
         
         /* display URL (debug) */
         Data.logInfo(URL);
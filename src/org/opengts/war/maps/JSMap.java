@@ -62,9 +62,29 @@ public class JSMap
     private static final int    DEFAULT_ZOOM            = 14;   // when no points are displayed
     private static final int    PUSHPIN_ZOOM            = 8;    // when points are displayed
 
+    private static final String RESOURCE_MAP_EVENT      = "MapEvent";
+
     private static final String PROP_MAP_LOADING        = "jsmap.showMapLoading";
     private static final String PROP_MAP_LOADING_IMAGE  = "jsmap.showMapLoading.image";
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the GeneratedResource generator for the event CSV parsing code (resource arguments
+    *** are "fleet"/"device" and the Locale)
+    **/
+    public static void initGeneratedResources()
+    {
+        GeneratedResource.setGenerator(RESOURCE_MAP_EVENT, new GeneratedResource.Generator() {
+            public String getSource(String args[]) {
+                if ((args.length != 2) || (!args[0].equals("fleet") && !args[0].equals("device"))) {
+                    return null;
+                }
+                return EventUtil.getInstance().getParseMapEventJS(args[0].equals("fleet"), I18N.getLocale(args[1]));
+            }
+        });
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
  
@@ -126,6 +146,23 @@ public class JSMap
         return false;
     }
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if map events are to be sent to the client browser in the compact 
+    *** encoding.  "jsmap.js" supports this encoding, thus it is enabled by default.
+    *** @param reqState  The current session RequestProperties instance
+    *** @return True if the compact encoding is to be used
+    **/
+    public boolean isCompactEncoding(RequestProperties reqState)
+    {
+        if (reqState.isSoapRequest()) {
+            return false;
+        } else {
+            return this.getProperties().getBoolean(MapProvider.PROP_map_compactEncoding, true);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // write JSMap Style
     
@@ -414,10 +451,9 @@ public class JSMap
         /* JSMap JavaScript includes */
         this.writeJSIncludes(out, reqState); 
 
-        /* event CSV parsing code */
-        JavaScriptTools.writeStartJavaScript(out); 
-        out.write(EventUtil.getInstance().getParseMapEventJS(reqState.isFleet(),reqState.getLocale()));
-        JavaScriptTools.writeEndJavaScript(out);
+        /* event CSV parsing code (depends only on fleet/locale) */
+        GeneratedResource.writeJavaScript(out, RESOURCE_MAP_EVENT, 
+            (reqState.isFleet()?"fleet":"device"), String.valueOf(reqState.getLocale()));
 
     } 
 
@@ -179,6 +179,64 @@ public class Data
 
     // ------------------------------------------------------------------------
 
+    /* translate point type to status code */
+    private static int GetPointTypeStatusCode(String pointType)
+    {
+        int statusCode = StatusCodes.STATUS_LOCATION;
+        if (pointType.equalsIgnoreCase(POINT_TYPE_GPS)) {
+            // standard GPS point
+            statusCode = StatusCodes.STATUS_LOCATION;
+        } else
+        if (pointType.equalsIgnoreCase(POINT_TYPE_CELL)) {
+            // location of cell tower?
+            statusCode = StatusCodes.STATUS_LOCATION;
+            // does 'accuracyMM' reflect the uncertainty in this GPS fix?
+        } else
+        if (pointType.equalsIgnoreCase(POINT_TYPE_MANUAL)) {
+            // manually entered GPS point?
+            statusCode = StatusCodes.STATUS_WAYMARK_0;
+        } else
+        if (pointType.equalsIgnoreCase(POINT_TYPE_MOTION)) {
+            // moving (not a Mologogo code)
+            statusCode = StatusCodes.STATUS_MOTION_IN_MOTION;
+        } else
+        if (pointType.equalsIgnoreCase(POINT_TYPE_DORMANT)) {
+            // not moving (not a Mologogo code)
+            statusCode = StatusCodes.STATUS_MOTION_DORMANT;
+        } else {
+            statusCode = StatusCodes.STATUS_LOCATION;
+        }
+        return statusCode;
+    }
+
+    /* create an event from a batch uploaded fix (same rules as a single fix) */
+    private static EventData createBatchEvent(Device device, BatchFixUpload.Fix fix)
+    {
+        String pointType  = StringTools.trim(fix.status);
+        long   fixtime    = (fix.fixtime > 0L)? fix.fixtime : DateTime.getCurrentTimeSec();
+        double speedKPH   = fix.speedKPH;
+        double headingDeg = fix.heading;
+        if (speedKPH < MinimumReqSpeedKPH) {
+            speedKPH = 0.0;
+        }
+        if ((speedKPH <= 0.0) || (headingDeg < 0.0)) {
+            headingDeg = 0.0;
+        }
+        int statusCode = Data.GetPointTypeStatusCode(pointType);
+        EventData.Key evKey = new EventData.Key(device.getAccountID(), device.getDeviceID(), fixtime, statusCode);
+        EventData evdb = evKey.getDBRecord();
+        evdb.setDataSource(pointType);
+        evdb.setLatitude(fix.latitude);
+        evdb.setLongitude(fix.longitude);
+        evdb.setHorzAccuracy(fix.accuracyM);
+        evdb.setSpeedKPH(speedKPH);
+        evdb.setHeading(headingDeg);
+        evdb.setAltitude(fix.altitudeM);
+        return evdb;
+    }
+
+    // ------------------------------------------------------------------------
+
     public void doPost(HttpServletRequest request, HttpServletResponse response)
         throws ServletException, IOException
     {
@@ -298,6 +356,17 @@ public class Data
             this.plainTextResponse(response, "");
             return;
         }
+
+        /* batch upload (one fix per line) */
+        if (BatchFixUpload.isBatchRequest(request)) {
+            Data.logInfo(URL);
+            BatchFixUpload.process(request, response, device, new BatchFixUpload.FixHandler() {
+                public EventData createEventData(Device dev, BatchFixUpload.Fix fix) {
+                    return Data.createBatchEvent(dev, fix);
+                }
+            });
+            return;
+        }
         
         /* display URL (debug) */
         Data.logInfo(URL);
@@ -323,30 +392,7 @@ public class Data
         }
 
         /* status code */
-        int statusCode = StatusCodes.STATUS_LOCATION;
-        if (pointType.equalsIgnoreCase(POINT_TYPE_GPS)) {
-            // standard GPS point
-            statusCode = StatusCodes.STATUS_LOCATION;
-        } else
-        if (pointType.equalsIgnoreCase(POINT_TYPE_CELL)) {
-            // location of cell tower?
-            statusCode = StatusCodes.STATUS_LOCATION;
-            // does 'accuracyMM' reflect the uncertainty in this GPS fix?
-        } else
-        if (pointType.equalsIgnoreCase(POINT_TYPE_MANUAL)) {
-            // manually entered GPS point?
-            statusCode = StatusCodes.STATUS_WAYMARK_0;
-        } else
-        if (pointType.equalsIgnoreCase(POINT_TYPE_MOTION)) {
-            // moving (not a Mologogo code)
-            statusCode = StatusCodes.STATUS_MOTION_IN_MOTION;
-        } else
-        if (pointType.equalsIgnoreCase(POINT_TYPE_DORMANT)) {
-            // not moving (not a Mologogo code)
-            statusCode = StatusCodes.STATUS_MOTION_DORMANT;
-        } else {
-            statusCode = StatusCodes.STATUS_LOCATION;
-        }
+        int statusCode = Data.GetPointTypeStatusCode(pointType);
 
         /* create and insert event */
         try {
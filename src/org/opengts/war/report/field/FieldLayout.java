@@ -546,8 +546,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateFormat(rd.getPrivateLabel()),tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_DATE, cv);
                         } else {
@@ -573,8 +572,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz = rd.getTimeZone();
-                            DateTime dt = new DateTime(ts);
-                            String tmFmt = dt.format(rl.getTimeFormat(rd.getPrivateLabel()),tz);
+                            String tmFmt = DateTime.format(ts, tz, rl.getTimeFormat(rd.getPrivateLabel()));
                             return fd.filterReturnedValue(DATA_TIME, tmFmt);
                         } else {
                             return rc.getBlankFiller();
@@ -599,8 +597,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz = rd.getTimeZone();
-                            DateTime dt = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()),tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_DATETIME, cv);
                         } else {
@@ -648,8 +645,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateFormat(rd.getPrivateLabel()),tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_CREATE_DATE, cv);
                         } else {
@@ -675,8 +671,8 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz = rd.getTimeZone();
-                            DateTime dt = new DateTime(ts);
-                            return fd.filterReturnedValue(DATA_CREATE_TIME,dt.format(rl.getTimeFormat(rd.getPrivateLabel()),tz));
+                            String tmFmt = DateTime.format(ts, tz, rl.getTimeFormat(rd.getPrivateLabel()));
+                            return fd.filterReturnedValue(DATA_CREATE_TIME, tmFmt);
                         } else {
                             return rc.getBlankFiller();
                         }
@@ -700,8 +696,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz = rd.getTimeZone();
-                            DateTime dt = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()),tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_CREATE_DATETIME,cv);
                         } else {
@@ -1816,8 +1811,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()), tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_START_DATETIME, cv);
                         } else {
@@ -1865,8 +1859,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()), tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_ENTER_DATETIME, cv);
                         } else {
@@ -1914,8 +1907,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()), tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_STOP_DATETIME, cv);
                         } else {
@@ -1963,8 +1955,7 @@ public class FieldLayout
                             //Account a = rd.getAccount();
                             //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                             TimeZone tz  = rd.getTimeZone();
-                            DateTime dt  = new DateTime(ts);
-                            String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()),tz);
+                            String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                             ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                             return fd.filterReturnedValue(DATA_EXIT_DATETIME, cv);
                         } else {
@@ -2806,8 +2797,7 @@ public class FieldLayout
                         //Account a = rd.getAccount();
                         //TimeZone tz = (a != null)? TimeZone.getTimeZone(a.getTimeZone()) : null;
                         TimeZone tz = rd.getTimeZone();
-                        DateTime dt = new DateTime(ts);
-                        String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()), tz);
+                        String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                         ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                         long ageSec = DateTime.getCurrentTimeSec() - ts;
                         if (ageSec >= DateTime.HourSeconds(24)) {
@@ -2940,8 +2930,7 @@ public class FieldLayout
                     if (ts > MIN_REASONABLE_TIMESTAMP) {
                         ReportLayout rl = rd.getReportLayout();
                         TimeZone tz = rd.getTimeZone();
-                        DateTime dt = new DateTime(ts);
-                        String dtFmt = dt.format(rl.getDateTimeFormat(rd.getPrivateLabel()), tz);
+                        String dtFmt = DateTime.format(ts, tz, rl.getDateTimeFormat(rd.getPrivateLabel()));
                         ColumnValue cv = new ColumnValue(dtFmt).setSortKey(ts);
                         long ageSec = DateTime.getCurrentTimeSec() - ts;
                         if (ageSec >= DateTime.DaySeconds(30)) {
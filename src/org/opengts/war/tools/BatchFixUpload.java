@@ -0,0 +1,466 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Multi-fix (batch) upload support for the HTTP device communication servlets
+//  (ie. "gprmc", "mologogo", "gc101", "gpsmapper").
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Multi-fix (batch) upload support for the HTTP device communication servlets.<br>
+*** Devices which buffer fixes while out of coverage may upload all buffered fixes with a
+*** single POST, rather than replaying one request per fix.  The device is identified by the
+*** request URL parameters, exactly as for a single fix, and the POST body (with content type
+*** "text/plain", "text/csv", "application/json", or "application/x-ndjson") contains one fix
+*** per line, in any of the following forms:
+*** <ul>
+***   <li>$GPRMC record, optionally followed by a status: "$GPRMC,...*XX[,&lt;status&gt;]"</li>
+***   <li>CSV: "&lt;epoch&gt;,&lt;lat&gt;,&lt;lon&gt;[,&lt;kph&gt;[,&lt;heading&gt;[,&lt;altM&gt;[,&lt;odomKM&gt;[,&lt;status&gt;]]]]]"</li>
+***   <li>JSON: {"t":&lt;epoch&gt;,"lat":&lt;lat&gt;,"lon":&lt;lon&gt;,"speed":&lt;kph&gt;,"head":&lt;heading&gt;,"alt":&lt;altM&gt;,"odom":&lt;odomKM&gt;,"acc":&lt;accM&gt;,"code":&lt;status&gt;}</li>
+*** </ul>
+*** Each fix must specify its fix time (a fix without a time is "INVALID").
+*** Blank lines, and lines beginning with '#', are ignored.  The body is parsed as it is read,
+*** the device is resolved once, and the resulting events are inserted with multi-row inserts
+*** (see "Device.startEventBatch").  The plain-text response contains one
+*** "&lt;lineNumber&gt;,&lt;result&gt;" line for each fix, where the result is one of "OK",
+*** "IGNORED", "INVALID", "ERROR", or "LIMIT".  Processing stops at the first fix beyond the
+*** maximum number of fixes per upload ("LIMIT"), which the device may then upload again.
+**/
+
+public class BatchFixUpload
+{
+
+    // ------------------------------------------------------------------------
+
+    /* batch content types */
+    private static final String BATCH_CONTENT_TYPES[]   = new String[] {
+        "text/plain",
+        "text/csv",
+        "application/json",
+        "application/x-ndjson",
+    };
+
+    /* CSV field order */
+    private static final String CSV_FIELDS[]            = new String[] {
+        "t", "lat", "lon", "speed", "head", "alt", "odom", "code"
+    };
+
+    private static final RTConfig.Key KEY_maximumFixes  = RTConfig.key(DBConfig.PROP_ingest_batch_maximumFixes);
+    private static final RTConfig.Key KEY_insertSize    = RTConfig.key(DBConfig.PROP_ingest_batch_insertSize);
+
+    // ------------------------------------------------------------------------
+
+    /* per-fix results */
+    public  static final int    RESULT_OK               = 0;
+    public  static final int    RESULT_IGNORED          = 1;
+    public  static final int    RESULT_INVALID          = 2;
+    public  static final int    RESULT_ERROR            = 3;
+    public  static final int    RESULT_LIMIT            = 4;
+
+    private static final String RESULT_NAMES[]          = new String[] {
+        "OK", "IGNORED", "INVALID", "ERROR", "LIMIT"
+    };
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A single parsed fix.  Instances are reused for each line of the upload.
+    **/
+    public static class Fix
+    {
+        public int     lineNumber   = 0;
+        public long    fixtime      = 0L;    // seconds (0 if not specified)
+        public boolean isValid      = false; // true if latitude/longitude are valid
+        public double  latitude     = 0.0;
+        public double  longitude    = 0.0;
+        public double  speedKPH     = 0.0;
+        public double  heading      = -1.0;  // <0 if not specified
+        public double  altitudeM    = 0.0;
+        public double  odometerKM   = 0.0;   // <=0 if not specified
+        public double  accuracyM    = 0.0;
+        public String  status       = null;  // raw status code/name (null if not specified)
+        public Fix() {
+            this.clear();
+        }
+        public void clear() {
+            this.lineNumber = 0;
+            this.fixtime    = 0L;
+            this.isValid    = false;
+            this.latitude   = Double.NaN;
+            this.longitude  = Double.NaN;
+            this.speedKPH   = 0.0;
+            this.heading    = -1.0;
+            this.altitudeM  = 0.0;
+            this.odometerKM = 0.0;
+            this.accuracyM  = 0.0;
+            this.status     = null;
+        }
+        public GeoPoint getGeoPoint() {
+            return this.isValid? new GeoPoint(this.latitude, this.longitude) : new GeoPoint();
+        }
+        public String toString() {
+            return "#" + this.lineNumber + " " + this.fixtime + " " + this.latitude + "/" + this.longitude +
+                " " + this.speedKPH + "kph " + StringTools.trim(this.status);
+        }
+    }
+
+    /**
+    *** Servlet specific translation of a parsed fix into an EventData record
+    **/
+    public interface FixHandler
+    {
+        /**
+        *** Creates the EventData record for the specified fix, applying the same rules used
+        *** for a single-fix request (status code translation, minimum speed, odometer, etc).
+        *** The returned record is inserted by the caller.
+        *** @param device  The Device
+        *** @param fix     The parsed fix
+        *** @return The EventData record, or null if the fix is to be ignored
+        **/
+        public EventData createEventData(Device device, Fix fix);
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified request is a batch upload (a POST with a batch content type)
+    *** @param request  The HttpServletRequest
+    *** @return True if the request is a batch upload
+    **/
+    public static boolean isBatchRequest(HttpServletRequest request)
+    {
+        if ((request == null) || !"POST".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        } else
+        if (KEY_maximumFixes.asLong(5000L) <= 0L) {
+            return false; // disabled
+        }
+        String ct = StringTools.trim(request.getContentType()).toLowerCase();
+        for (int i = 0; i < BATCH_CONTENT_TYPES.length; i++) {
+            if (ct.startsWith(BATCH_CONTENT_TYPES[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reads the fixes from the request body, inserts the resulting events, and writes the
+    *** per-fix results to the response.
+    *** @param request   The HttpServletRequest
+    *** @param response  The HttpServletResponse
+    *** @param device    The Device (already resolved and validated)
+    *** @param handler   The servlet specific FixHandler
+    *** @return The number of events saved (inserted, or spooled for later insertion)
+    **/
+    public static int process(HttpServletRequest request, HttpServletResponse response,
+        Device device, FixHandler handler)
+        throws IOException
+    {
+        long maxFixes   = KEY_maximumFixes.asLong(5000L);
+        int  insertSize = (int)Math.max(KEY_insertSize.asLong(500L), 1L);
+
+        /* results */
+        int  resLine[]  = new int[64];
+        int  resCode[]  = new int[64];
+        int  resCount   = 0;
+        int  fixCount   = 0;
+        int  inserted   = 0;
+
+        /* pending (batched) events */
+        java.util.List<EventData> pendEv  = new Vector<EventData>();
+        java.util.List<Integer>   pendNdx = new Vector<Integer>();
+
+        /* read/insert fixes */
+        BufferedReader  reader = request.getReader();
+        Nmea0183Decoder nmea   = new Nmea0183Decoder();
+        Fix             fix    = new Fix();
+        int             lineNum = 0;
+        device.startEventBatch();
+        try {
+            for (;;) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNum++;
+                line = line.trim();
+                if (line.equals("") || line.startsWith("#")) {
+                    continue;
+                }
+
+                /* result entry */
+                if (resCount >= resLine.length) {
+                    int nl[] = new int[resLine.length * 2];
+                    int nc[] = new int[resCode.length * 2];
+                    System.arraycopy(resLine, 0, nl, 0, resCount);
+                    System.arraycopy(resCode, 0, nc, 0, resCount);
+                    resLine = nl;
+                    resCode = nc;
+                }
+                int r = resCount++;
+                resLine[r] = lineNum;
+
+                /* limit */
+                if (fixCount >= maxFixes) {
+                    Print.logWarn("Batch upload limit reached: " + maxFixes);
+                    resCode[r] = RESULT_LIMIT;
+                    break;
+                }
+                fixCount++;
+
+                /* parse */
+                fix.clear();
+                fix.lineNumber = lineNum;
+                if (!BatchFixUpload.parseFix(line, fix, nmea)) {
+                    Print.logWarn("Invalid batch fix [line " + lineNum + "]: " + line);
+                    resCode[r] = RESULT_INVALID;
+                    continue;
+                } else
+                if (fix.fixtime <= 0L) {
+                    // buffered fixes must carry their own time (the current time would be wrong)
+                    Print.logWarn("Batch fix has no time [line " + lineNum + "]: " + line);
+                    resCode[r] = RESULT_INVALID;
+                    continue;
+                }
+
+                /* create event */
+                EventData evdb = null;
+                try {
+                    evdb = handler.createEventData(device, fix);
+                } catch (Throwable th) {
+                    Print.logException("Error creating event [line " + lineNum + "]", th);
+                    resCode[r] = RESULT_ERROR;
+                    continue;
+                }
+                if ((evdb == null) || (evdb.getStatusCode() == StatusCodes.STATUS_NONE)) {
+                    resCode[r] = RESULT_IGNORED;
+                    continue;
+                }
+
+                /* insert (deferred until the batch is flushed) */
+                if (!device.insertEventData(evdb)) {
+                    resCode[r] = RESULT_IGNORED;
+                    continue;
+                }
+                resCode[r] = RESULT_OK;
+                pendEv.add(evdb);
+                pendNdx.add(new Integer(r));
+                if (pendEv.size() >= insertSize) {
+                    inserted += BatchFixUpload._flush(device, pendEv, pendNdx, resCode);
+                    device.startEventBatch();
+                }
+
+            }
+        } finally {
+            inserted += BatchFixUpload._flush(device, pendEv, pendNdx, resCode);
+        }
+        Print.logInfo("Batch upload: [%s/%s] %d fixes, %d saved",
+            device.getAccountID(), device.getDeviceID(), fixCount, inserted);
+
+        /* write results */
+        CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
+        PrintWriter out = response.getWriter();
+        for (int i = 0; i < resCount; i++) {
+            out.print(resLine[i]);
+            out.print(',');
+            out.println(RESULT_NAMES[resCode[i]]);
+        }
+        return inserted;
+
+    }
+
+    /* insert the pending events, and mark those which were not saved */
+    private static int _flush(Device device, java.util.List<EventData> pendEv, java.util.List<Integer> pendNdx, int resCode[])
+    {
+        Device.EventBatchResult result = device.endEventBatch();
+        int count = 0;
+        for (int i = 0; i < pendEv.size(); i++) {
+            switch (result.getStatus(pendEv.get(i))) {
+                case Device.EventBatchResult.EVENT_INSERTED:
+                case Device.EventBatchResult.EVENT_SPOOLED:
+                    // saved (spooled events are inserted once the database is available)
+                    count++;
+                    break;
+                case Device.EventBatchResult.EVENT_FAILED:
+                    resCode[pendNdx.get(i).intValue()] = RESULT_ERROR;
+                    break;
+                default:
+                    // not part of the batch (ie. filtered duplicate)
+                    break;
+            }
+        }
+        pendEv.clear();
+        pendNdx.clear();
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Parses a single fix line ($GPRMC, CSV, or JSON)
+    *** @param line  The fix line
+    *** @param fix   The Fix into which the parsed values are placed (must be cleared)
+    *** @param nmea  The NMEA-0183 decoder used for $GPRMC records (may be null)
+    *** @return True if the line was successfully parsed
+    **/
+    public static boolean parseFix(String line, Fix fix, Nmea0183Decoder nmea)
+    {
+        if (StringTools.isBlank(line)) {
+            return false;
+        }
+        char ch = line.charAt(0);
+
+        /* $GPRMC */
+        if (ch == '$') {
+            if (nmea == null) { nmea = new Nmea0183Decoder(); }
+            int cs = line.indexOf('*');
+            nmea.setIgnoreChecksum(cs < 0); // validate checksum, if present
+            nmea.decode(line); // returns false for an invalid GPS fix
+            Nmea0183Decoder.Record rcd = nmea.getRecord();
+            if ((rcd.getParsedRecordTypes() & Nmea0183.TYPE_GPRMC) == 0L) {
+                return false; // not a $GPRMC record (or invalid checksum)
+            }
+            fix.fixtime    = rcd.getFixtime();
+            fix.isValid    = rcd.isValidGPS();
+            fix.latitude   = fix.isValid? rcd.getLatitude()  : 0.0;
+            fix.longitude  = fix.isValid? rcd.getLongitude() : 0.0;
+            fix.speedKPH   = (fix.isValid && rcd.hasSpeed())? rcd.getSpeedKPH() : 0.0;
+            fix.heading    = (fix.isValid && rcd.hasHeading())? rcd.getHeading() : -1.0;
+            fix.altitudeM  = rcd.hasAltitude()? rcd.getAltitudeMeters() : 0.0;
+            int sp = (cs >= 0)? line.indexOf(',', cs) : -1; // status follows the checksum
+            fix.status     = (sp >= 0)? line.substring(sp + 1).trim() : null;
+            return true;
+        }
+
+        /* JSON */
+        if (ch == '{') {
+            int p = 1, len = line.length();
+            while (p < len) {
+                int ks = line.indexOf('"', p);
+                if (ks < 0) { break; }
+                int ke = line.indexOf('"', ks + 1);
+                if (ke < 0) { return false; }
+                String key = line.substring(ks + 1, ke);
+                int vs = line.indexOf(':', ke + 1);
+                if (vs < 0) { return false; }
+                vs++;
+                while ((vs < len) && Character.isWhitespace(line.charAt(vs))) { vs++; }
+                String val;
+                if ((vs < len) && (line.charAt(vs) == '"')) {
+                    int ve = vs + 1;
+                    while ((ve < len) && (line.charAt(ve) != '"')) { ve += (line.charAt(ve) == '\\')? 2 : 1; }
+                    if (ve >= len) { return false; }
+                    val = line.substring(vs + 1, ve);
+                    p   = ve + 1;
+                } else {
+                    int ve = vs;
+                    while ((ve < len) && (line.charAt(ve) != ',') && (line.charAt(ve) != '}')) { ve++; }
+                    val = line.substring(vs, ve).trim();
+                    p   = ve;
+                }
+                BatchFixUpload._setField(fix, key, val);
+                p = line.indexOf(',', p);
+                if (p < 0) { break; }
+                p++;
+            }
+            return BatchFixUpload._validate(fix);
+        }
+
+        /* CSV */
+        String fld[] = StringTools.parseString(line, ',');
+        if (fld.length < 3) {
+            return false;
+        }
+        for (int i = 0; (i < fld.length) && (i < CSV_FIELDS.length); i++) {
+            BatchFixUpload._setField(fix, CSV_FIELDS[i], fld[i].trim());
+        }
+        return BatchFixUpload._validate(fix);
+
+    }
+
+    /* set a named CSV/JSON field value */
+    private static void _setField(Fix fix, String key, String val)
+    {
+        String k = key.toLowerCase();
+        if (k.equals("t") || k.equals("time") || k.equals("timestamp")) {
+            long t = StringTools.parseLong(val, 0L);
+            fix.fixtime = (t > 5000000000L)? (t / 1000L) : t; // milliseconds?
+        } else
+        if (k.equals("lat") || k.equals("latitude")) {
+            fix.latitude = StringTools.isDouble(val,true)? StringTools.parseDouble(val,0.0) : Double.NaN;
+        } else
+        if (k.equals("lon") || k.equals("lng") || k.equals("longitude")) {
+            fix.longitude = StringTools.isDouble(val,true)? StringTools.parseDouble(val,0.0) : Double.NaN;
+        } else
+        if (k.equals("speed") || k.equals("kph")) {
+            fix.speedKPH = StringTools.parseDouble(val, 0.0);
+        } else
+        if (k.equals("head") || k.equals("heading") || k.equals("dir")) {
+            fix.heading = StringTools.parseDouble(val, -1.0);
+        } else
+        if (k.equals("alt") || k.equals("altitude")) {
+            fix.altitudeM = StringTools.parseDouble(val, 0.0);
+        } else
+        if (k.equals("odom") || k.equals("odometer")) {
+            fix.odometerKM = StringTools.parseDouble(val, 0.0);
+        } else
+        if (k.equals("acc") || k.equals("accuracy")) {
+            fix.accuracyM = StringTools.parseDouble(val, 0.0);
+        } else
+        if (k.equals("code") || k.equals("status") || k.equals("type")) {
+            fix.status = !StringTools.isBlank(val)? val : null;
+        }
+    }
+
+    /* validate CSV/JSON latitude/longitude */
+    private static boolean _validate(Fix fix)
+    {
+        if (Double.isNaN(fix.latitude) || Double.isNaN(fix.longitude)) {
+            return false; // missing/invalid latitude/longitude
+        }
+        fix.isValid = GeoPoint.isValid(fix.latitude, fix.longitude);
+        if (!fix.isValid) {
+            fix.latitude  = 0.0;
+            fix.longitude = 0.0;
+            fix.speedKPH  = 0.0;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+}
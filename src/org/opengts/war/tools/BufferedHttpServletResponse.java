@@ -48,6 +48,12 @@ public class BufferedHttpServletResponse
         public void write(int b) {
             this.baos.write(b);
         }
+        public void write(byte b[]) {
+            this.baos.write(b, 0, b.length);
+        }
+        public void write(byte b[], int ofs, int len) {
+            this.baos.write(b, ofs, len);
+        }
         public int getSize() {
             return this.baos.size();
         }
@@ -0,0 +1,369 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+// 
+// http://www.apache.org/licenses/LICENSE-2.0
+// 
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Session/application scoped cache of the Account, User, and host PrivateLabel 
+//  properties resolved by the 'Track' servlet on each request.
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.util.*;
+import java.io.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Cache of the records which are resolved at the start of every 'Track' request.<br>
+*** <ul>
+*** <li>Host PrivateLabel properties ("Resource.getPrivateLabelPropertiesForHost") are cached
+***     application-wide, keyed by host name.</li>
+*** <li>Account and User records are cached in the HttpSession.  These records are mutable, and
+***     may be edited by the pages of the session which loaded them, so they are not shared
+***     between sessions.  A cached record with unsaved changes is always reloaded.</li>
+*** </ul>
+*** Each cached entry expires after a configurable time-to-live, and is also invalidated when
+*** any record of the same table is inserted/updated within this JVM (each table has a version
+*** number which is incremented by a <code>DBRecordListener</code>).  Changes made outside of
+*** this JVM (ie. command-line tools) are picked up when the entry expires.
+**/
+
+public class EntityCache
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final String SESSION_CACHE       = "EntityCache.session";
+
+    private static final int    TABLE_ACCOUNT       = 0;
+    private static final int    TABLE_USER          = 1;
+    private static final int    TABLE_RESOURCE      = 2;
+
+    private static final long   STATS_LOG_INTERVAL  = 1000L; // lookups
+
+    // ------------------------------------------------------------------------
+    // table versions
+
+    private static long tableVersion[] = new long[] { 0L, 0L, 0L };
+
+    private static long getTableVersion(int table)
+    {
+        synchronized (EntityCache.tableVersion) {
+            return EntityCache.tableVersion[table];
+        }
+    }
+
+    private static void incrementTableVersion(int table)
+    {
+        synchronized (EntityCache.tableVersion) {
+            EntityCache.tableVersion[table]++;
+        }
+    }
+
+    /**
+    *** DBRecordListener which increments the table version when a record is inserted/updated.
+    *** Any previously installed listener is still called.
+    **/
+    private static class VersionListener<gDBR extends DBRecord>
+        implements DBRecordListener<gDBR>
+    {
+        private int                    table    = 0;
+        private DBRecordListener<gDBR> delegate = null;
+        public VersionListener(int table, DBRecordListener<gDBR> delegate) {
+            this.table    = table;
+            this.delegate = delegate;
+        }
+        public void recordWillInsert(gDBR rcd) {
+            if (this.delegate != null) { this.delegate.recordWillInsert(rcd); }
+        }
+        public void recordDidInsert(gDBR rcd) {
+            EntityCache.incrementTableVersion(this.table);
+            if (this.delegate != null) { this.delegate.recordDidInsert(rcd); }
+        }
+        public void recordWillUpdate(gDBR rcd) {
+            if (this.delegate != null) { this.delegate.recordWillUpdate(rcd); }
+        }
+        public void recordDidUpdate(gDBR rcd) {
+            EntityCache.incrementTableVersion(this.table);
+            if (this.delegate != null) { this.delegate.recordDidUpdate(rcd); }
+        }
+    }
+
+    private static boolean listenersInstalled = false;
+
+    private static void installListeners()
+    {
+        synchronized (EntityCache.tableVersion) {
+            if (!EntityCache.listenersInstalled) {
+                DBFactory<Account>  acctFact = Account.getFactory();
+                DBFactory<User>     userFact = User.getFactory();
+                DBFactory<Resource> resFact  = Resource.getFactory();
+                acctFact.setRecordListener(new VersionListener<Account>( TABLE_ACCOUNT , acctFact.getRecordListener()));
+                userFact.setRecordListener(new VersionListener<User>(    TABLE_USER    , userFact.getRecordListener()));
+                resFact.setRecordListener( new VersionListener<Resource>(TABLE_RESOURCE, resFact.getRecordListener()));
+                EntityCache.listenersInstalled = true;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // statistics
+
+    /**
+    *** Cache hit/miss statistics
+    **/
+    public static class Stats
+    {
+        private String name    = "";
+        private long   hits    = 0L;
+        private long   misses  = 0L;
+        private long   expired = 0L;
+        private long   stale   = 0L;
+        public Stats(String name) {
+            this.name = name;
+        }
+        private synchronized void hit() {
+            this.hits++;
+            this._checkLog();
+        }
+        private synchronized void miss(boolean expired, boolean stale) {
+            this.misses++;
+            if (expired) { this.expired++; }
+            if (stale  ) { this.stale++;   }
+            this._checkLog();
+        }
+        private void _checkLog() {
+            if (((this.hits + this.misses) % STATS_LOG_INTERVAL) == 0L) {
+                Print.logInfo("EntityCache " + this.toString());
+            }
+        }
+        public synchronized long getHitCount() {
+            return this.hits;
+        }
+        public synchronized long getMissCount() {
+            return this.misses;
+        }
+        public synchronized double getHitRate() {
+            long total = this.hits + this.misses;
+            return (total > 0L)? ((double)this.hits / (double)total) : 0.0;
+        }
+        public synchronized String toString() {
+            StringBuffer sb = new StringBuffer();
+            sb.append(this.name).append(": ");
+            sb.append("hits=").append(this.hits);
+            sb.append(" misses=").append(this.misses);
+            sb.append(" [expired=").append(this.expired);
+            sb.append(" invalidated=").append(this.stale).append("]");
+            sb.append(" hitRate=").append(StringTools.format(this.getHitRate()*100.0,"0.0")).append("%");
+            return sb.toString();
+        }
+    }
+
+    private static Stats statsHostProps = new Stats("HostProperties");
+    private static Stats statsAccount   = new Stats("Account");
+    private static Stats statsUser      = new Stats("User");
+
+    /**
+    *** Returns the cache statistics, one line per cached record type
+    *** @return The cache statistics
+    **/
+    public static String getStatistics()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(statsHostProps.toString()).append("\n");
+        sb.append(statsAccount.toString()).append("\n");
+        sb.append(statsUser.toString()).append("\n");
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // cache entry
+
+    private static class Entry
+    {
+        private Object value    = null;
+        private long   version  = 0L;
+        private long   expireMS = 0L;
+        public Entry(Object value, long version, long ttlMS) {
+            this.value    = value;
+            this.version  = version;
+            this.expireMS = DateTime.getCurrentTimeMillis() + ttlMS;
+        }
+        public boolean isExpired(long nowMS) {
+            return (nowMS >= this.expireMS);
+        }
+        public boolean isStale(long version) {
+            return (this.version != version);
+        }
+        public Object getValue() {
+            return this.value;
+        }
+    }
+
+    /* return the entry value if still valid, otherwise remove it */
+    private static Object _getValidValue(Map<String,Entry> cache, String key, int table, Stats stats)
+    {
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            boolean expired = entry.isExpired(DateTime.getCurrentTimeMillis());
+            boolean stale   = entry.isStale(EntityCache.getTableVersion(table));
+            boolean changed = (entry.getValue() instanceof DBRecord) && ((DBRecord)entry.getValue()).hasChanged();
+            if (!expired && !stale && !changed) {
+                stats.hit();
+                return entry.getValue();
+            }
+            cache.remove(key);
+            stats.miss(expired, stale || changed);
+        } else {
+            stats.miss(false, false);
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // host properties (application scope)
+
+    private static Map<String,Entry> hostPropsCache = new HashMap<String,Entry>();
+
+    private static final RTConfig.Key KEY_hostPropertiesTTL = RTConfig.key(DBConfig.PROP_track_cache_hostPropertiesTTL);
+    private static final RTConfig.Key KEY_accountUserTTL    = RTConfig.key(DBConfig.PROP_track_cache_accountUserTTL);
+
+    /**
+    *** Gets the custom PrivateLabel properties for the specified host name 
+    *** (see "Resource.getPrivateLabelPropertiesForHost")
+    *** @param hostName  The request host name
+    *** @return The host RTProperties (does not return null)
+    **/
+    public static RTProperties getPrivateLabelPropertiesForHost(String hostName)
+    {
+        long ttlMS = KEY_hostPropertiesTTL.asLong(60L) * 1000L;
+        if ((ttlMS <= 0L) || (hostName == null)) {
+            return Resource.getPrivateLabelPropertiesForHost(hostName);
+        }
+        EntityCache.installListeners();
+        synchronized (hostPropsCache) {
+            RTProperties rtp = (RTProperties)_getValidValue(hostPropsCache, hostName, TABLE_RESOURCE, statsHostProps);
+            if (rtp != null) {
+                return rtp;
+            }
+        }
+        long version = EntityCache.getTableVersion(TABLE_RESOURCE);
+        RTProperties rtp = Resource.getPrivateLabelPropertiesForHost(hostName);
+        synchronized (hostPropsCache) {
+            hostPropsCache.put(hostName, new Entry(rtp, version, ttlMS));
+        }
+        return rtp;
+    }
+
+    // ------------------------------------------------------------------------
+    // Account/User (session scope)
+
+    /* return the session cache */
+    @SuppressWarnings("unchecked")
+    private static Map<String,Entry> _getSessionCache(HttpServletRequest request)
+    {
+        HttpSession sess = AttributeTools.getSession(request);
+        if (sess == null) {
+            return null;
+        }
+        synchronized (sess) {
+            Object cache = sess.getAttribute(SESSION_CACHE);
+            if (!(cache instanceof Map)) {
+                cache = new HashMap<String,Entry>();
+                sess.setAttribute(SESSION_CACHE, cache);
+            }
+            return (Map<String,Entry>)cache;
+        }
+    }
+
+    /**
+    *** Gets the specified Account (see "Account.getAccount")
+    *** @param request   The current request (used to locate the session cache)
+    *** @param accountID The Account ID
+    *** @return The Account, or null if the Account does not exist
+    *** @throws DBException If a database error occurs
+    **/
+    public static Account getAccount(HttpServletRequest request, String accountID)
+        throws DBException
+    {
+        long ttlMS = KEY_accountUserTTL.asLong(30L) * 1000L;
+        Map<String,Entry> cache = (ttlMS > 0L)? EntityCache._getSessionCache(request) : null;
+        if ((cache == null) || StringTools.isBlank(accountID)) {
+            return Account.getAccount(accountID);
+        }
+        EntityCache.installListeners();
+        String key = "A:" + accountID;
+        synchronized (cache) {
+            Account account = (Account)_getValidValue(cache, key, TABLE_ACCOUNT, statsAccount);
+            if (account != null) {
+                return account;
+            }
+        }
+        long version = EntityCache.getTableVersion(TABLE_ACCOUNT);
+        Account account = Account.getAccount(accountID);
+        if (account != null) {
+            // non-existent accounts are not cached
+            synchronized (cache) {
+                cache.put(key, new Entry(account, version, ttlMS));
+            }
+        }
+        return account;
+    }
+
+    /**
+    *** Gets the specified User (see "User.getUser")
+    *** @param request   The current request (used to locate the session cache)
+    *** @param account   The User Account
+    *** @param userID    The User ID
+    *** @return The User, or null if the User does not exist
+    *** @throws DBException If a database error occurs
+    **/
+    public static User getUser(HttpServletRequest request, Account account, String userID)
+        throws DBException
+    {
+        long ttlMS = KEY_accountUserTTL.asLong(30L) * 1000L;
+        Map<String,Entry> cache = (ttlMS > 0L)? EntityCache._getSessionCache(request) : null;
+        if ((cache == null) || (account == null) || StringTools.isBlank(userID)) {
+            return User.getUser(account, userID);
+        }
+        EntityCache.installListeners();
+        String key = "U:" + account.getAccountID() + "/" + userID;
+        synchronized (cache) {
+            User user = (User)_getValidValue(cache, key, TABLE_USER, statsUser);
+            if (user != null) {
+                user.setAccount(account);
+                return user;
+            }
+        }
+        long version = EntityCache.getTableVersion(TABLE_USER);
+        User user = User.getUser(account, userID);
+        if (user != null) {
+            // non-existent users are not cached
+            synchronized (cache) {
+                cache.put(key, new Entry(user, version, ttlMS));
+            }
+        }
+        return user;
+    }
+
+}
@@ -0,0 +1,363 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Registry of generated static JavaScript/CSS resources, served as versioned,
+//  cacheable resources rather than written inline into each page.
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.security.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.db.*;
+
+import org.opengts.war.track.Track;
+
+/**
+*** Registry of generated static resources.<br>
+*** JavaScript/CSS which is generated by the server, but which does not change from one
+*** page request to the next (ie. it depends only on the PrivateLabel and Locale), may be
+*** registered here by name.  The page then references the resource by a URL containing a
+*** version (the resource ETag), so the browser may cache the resource indefinitely, and a
+*** changed resource is automatically requested under a new URL.  Resources are served by
+*** the "Track" servlet command "Track.COMMAND_RESOURCE", with "ETag" and "Last-Modified"
+*** headers, and conditional requests are answered with "304 Not Modified".<br>
+*** Each resource type has a <code>Generator</code>, and the resource name is built from the
+*** type and the generator arguments (ie. "MapEvent~fleet~en.js"), so that a resource which
+*** is not (or no longer) held in memory (ie. after a restart, or on another server of a
+*** cluster) is regenerated from its name when requested.  Resources must therefore not
+*** contain any per-user or per-session data.  At most "MAX_RESOURCES" resources are held in
+*** memory (the least recently used resources are discarded).
+**/
+
+public class GeneratedResource
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String PARM_VERSION    = "v";
+
+    private static final long   MAX_AGE_SEC     = DateTime.DaySeconds(365);
+
+    private static final int    MAX_RESOURCES   = 500;
+
+    private static final char   ARG_SEPARATOR   = '~';
+    private static final String EXTN_JAVASCRIPT = ".js";
+
+    private static final RTConfig.Key KEY_enabled       = RTConfig.key(DBConfig.PROP_track_generatedResources);
+    private static final RTConfig.Key KEY_versionFiles  = RTConfig.key(DBConfig.PROP_track_versionStaticFiles);
+
+    /**
+    *** Returns true if generated resources are to be externalized
+    *** @return True if generated resources are to be externalized
+    **/
+    public static boolean isEnabled()
+    {
+        return KEY_enabled.asBoolean(true);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* a single generated resource */
+    private static class Resource
+    {
+        public String name         = null;
+        public String mimeType     = null;
+        public String source       = null;
+        public byte   data[]       = null;
+        public String etag         = null;
+        public long   lastModified = 0L;
+        public Resource(String name, String mimeType, String source) {
+            this.name         = name;
+            this.mimeType     = mimeType;
+            this.source       = source;
+            this.data         = StringTools.getBytes(source);
+            this.etag         = GeneratedResource._digest(this.data);
+            this.lastModified = (System.currentTimeMillis() / 1000L) * 1000L; // HTTP dates are in seconds
+        }
+        public String getETagHeader() {
+            return "\"" + this.etag + "\"";
+        }
+    }
+
+    /* generated resources (least recently used first) */
+    private static Map<String,Resource> resourceMap = new LinkedHashMap<String,Resource>(16, 0.75F, true) {
+        protected boolean removeEldestEntry(Map.Entry<String,Resource> eldest) {
+            return (this.size() > MAX_RESOURCES);
+        }
+    };
+
+    /* return a short hex digest of the specified data */
+    private static String _digest(byte data[])
+    {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return StringTools.toHexString(md.digest(data)).substring(0,16).toLowerCase();
+        } catch (NoSuchAlgorithmException nsae) {
+            // unlikely
+            return Integer.toHexString(Arrays.hashCode(data)) + Integer.toHexString(data.length);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Generates the contents of a resource type
+    **/
+    public interface Generator
+    {
+        /**
+        *** Returns the resource contents for the specified arguments
+        *** @param args  The resource arguments (ie. the PrivateLabel host name, Locale, etc)
+        *** @return The resource contents, or null if the arguments are invalid
+        **/
+        public String getSource(String args[]);
+    }
+
+    private static Map<String,Generator> generatorMap = new HashMap<String,Generator>();
+
+    /**
+    *** Sets the generator for the specified resource type
+    *** @param type  The resource type (ie. "MapEvent")
+    *** @param gen   The resource generator
+    **/
+    public static void setGenerator(String type, Generator gen)
+    {
+        synchronized (generatorMap) {
+            generatorMap.put(type, gen);
+        }
+    }
+
+    /* return the generator for the specified resource type */
+    private static Generator _getGenerator(String type)
+    {
+        synchronized (generatorMap) {
+            return generatorMap.get(type);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* register the specified generated resource */
+    private static Resource _register(String name, String mimeType, String source)
+    {
+        synchronized (resourceMap) {
+            Resource rsrc = resourceMap.get(name);
+            if ((rsrc == null) || !rsrc.source.equals(source)) {
+                rsrc = new Resource(name, mimeType, source);
+                resourceMap.put(name, rsrc);
+            }
+            return rsrc;
+        }
+    }
+
+    /* regenerate the named resource (null if the name is invalid) */
+    private static Resource _regenerate(String name)
+    {
+        if (!name.endsWith(EXTN_JAVASCRIPT)) {
+            return null;
+        }
+        String n[] = StringTools.split(name.substring(0, name.length() - EXTN_JAVASCRIPT.length()), ARG_SEPARATOR);
+        Generator gen = (n.length > 0)? GeneratedResource._getGenerator(n[0]) : null;
+        if (gen == null) {
+            return null;
+        }
+        String args[] = new String[n.length - 1];
+        System.arraycopy(n, 1, args, 0, args.length);
+        String source = gen.getSource(args);
+        if (source == null) {
+            return null;
+        }
+        return GeneratedResource._register(name, HTMLTools.MIME_JAVASCRIPT(), source);
+    }
+
+    /**
+    *** Writes the specified generated JavaScript as a versioned JavaScript include, or inline
+    *** if generated resources are disabled.
+    *** @param out   The PrintWriter
+    *** @param type  The resource type (a Generator must have been set for this type)
+    *** @param args  The generator arguments (must not contain '~')
+    **/
+    public static void writeJavaScript(PrintWriter out, String type, String... args)
+        throws IOException
+    {
+        Generator gen = GeneratedResource._getGenerator(type);
+        String js = (gen != null)? gen.getSource(args) : null;
+        if (js == null) {
+            Print.logError("Unable to generate resource: " + type);
+            return;
+        }
+        StringBuffer name = new StringBuffer(type);
+        boolean isNameOK = GeneratedResource.isEnabled();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].indexOf(ARG_SEPARATOR) >= 0) {
+                isNameOK = false; // cannot be regenerated from the name
+            }
+            name.append(ARG_SEPARATOR).append(args[i]);
+        }
+        name.append(EXTN_JAVASCRIPT);
+        if (isNameOK) {
+            Resource rsrc = GeneratedResource._register(name.toString(), HTMLTools.MIME_JAVASCRIPT(), js);
+            URIArg url = new URIArg(Track.BASE_URI());
+            url.addArg(CommonServlet.PARM_COMMAND , Track.COMMAND_RESOURCE);
+            url.addArg(CommonServlet.PARM_ARGUMENT, rsrc.name);
+            url.addArg(PARM_VERSION               , rsrc.etag);
+            JavaScriptTools.writeJSInclude(out, url.toString());
+        } else {
+            JavaScriptTools.writeStartJavaScript(out);
+            out.write(js);
+            JavaScriptTools.writeEndJavaScript(out);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Versioned local static files
+
+    private static final long   FILE_CHECK_INTERVAL_MS  = 60000L;
+
+    /* cached local file version */
+    private static class FileVersion
+    {
+        public String version   = null;
+        public long   checkTime = 0L;
+        public FileVersion(String version, long checkTime) {
+            this.version   = version;
+            this.checkTime = checkTime;
+        }
+    }
+
+    private static Map<String,FileVersion> fileVersionMap = new HashMap<String,FileVersion>();
+
+    /**
+    *** Returns the specified local file reference (ie. "./js/utils.js") with an appended 
+    *** version argument based on the file modification time (ie. "./js/utils.js?v=l5x2k1"),
+    *** so that the browser may cache the file indefinitely, while still retrieving a changed
+    *** file.  Absolute URLs, references which already contain a query string, and files 
+    *** which cannot be found within the servlet context, are returned as-is.
+    *** @param fileRef  The local file reference
+    *** @return The versioned file reference
+    **/
+    public static String getVersionedFileURL(String fileRef)
+    {
+
+        /* skip non-local references */
+        if (StringTools.isBlank(fileRef) || !KEY_versionFiles.asBoolean(true)) {
+            return fileRef;
+        } else
+        if ((fileRef.indexOf('?') >= 0) || (fileRef.indexOf(':') >= 0) || fileRef.startsWith("/")) {
+            return fileRef;
+        }
+        File rootDir = RTConfig.getServletContextPath(); // may return null
+        if (rootDir == null) {
+            return fileRef;
+        }
+
+        /* file version */
+        long nowMS = System.currentTimeMillis();
+        FileVersion fv;
+        synchronized (fileVersionMap) {
+            fv = fileVersionMap.get(fileRef);
+            if ((fv == null) || ((nowMS - fv.checkTime) > FILE_CHECK_INTERVAL_MS)) {
+                String relPath = fileRef.startsWith("./")? fileRef.substring(2) : fileRef;
+                File file = new File(rootDir, relPath);
+                String version = file.isFile()? Long.toString(file.lastModified() / 1000L, 36) : null;
+                fv = new FileVersion(version, nowMS);
+                fileVersionMap.put(fileRef, fv);
+            }
+        }
+        return (fv.version != null)? (fileRef + "?" + PARM_VERSION + "=" + fv.version) : fileRef;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writes the named resource to the response.
+    *** @param request   The HttpServletRequest
+    *** @param response  The HttpServletResponse
+    *** @param name      The resource name
+    **/
+    public static void writeResponse(HttpServletRequest request, HttpServletResponse response, String name)
+        throws IOException
+    {
+
+        /* get resource */
+        Resource rsrc;
+        synchronized (resourceMap) {
+            rsrc = resourceMap.get(name);
+        }
+        if (rsrc == null) {
+            // not (yet/still) registered in this JVM
+            rsrc = GeneratedResource._regenerate(StringTools.trim(name));
+            if (rsrc == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
+
+        /* cache headers */
+        String version = StringTools.trim(request.getParameter(PARM_VERSION));
+        response.setHeader("ETag", rsrc.getETagHeader());
+        response.setDateHeader("Last-Modified", rsrc.lastModified);
+        if (version.equals(rsrc.etag)) {
+            // versioned URL, may be cached indefinitely
+            response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE_SEC);
+        } else {
+            // unversioned, or outdated version, revalidate on each use
+            response.setHeader("Cache-Control", "no-cache");
+        }
+
+        /* conditional request */
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if ((ifNoneMatch.indexOf(rsrc.getETagHeader()) >= 0) || ifNoneMatch.trim().equals("*")) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        } else {
+            long ifModSince = -1L;
+            try {
+                ifModSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException iae) {
+                // invalid date format
+            }
+            if ((ifModSince > 0L) && (rsrc.lastModified <= ifModSince)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        /* resource contents */
+        CommonServlet.setResponseContentType(response, rsrc.mimeType);
+        response.setContentLength(rsrc.data.length);
+        OutputStream out = response.getOutputStream();
+        out.write(rsrc.data);
+        out.flush();
+
+    }
+
+    // ------------------------------------------------------------------------
+
+}
@@ -130,7 +130,8 @@ public class JavaScriptTools
     public static void writeJSInclude(PrintWriter out, String jsFileRef)
         throws IOException
     {
-        out.write("<script src=\""+jsFileRef+"\" type=\"text/javascript\"></script>\n");
+        String jsURL = GeneratedResource.getVersionedFileURL(jsFileRef);
+        out.write("<script src=\""+jsURL+"\" type=\"text/javascript\"></script>\n");
     }
     
     public static void writeJSIncludes(PrintWriter out, String jsFileRefs[]) 
@@ -52,6 +52,7 @@ import javax.servlet.http.*;
 import org.opengts.util.*;
 import org.opengts.dbtools.*;
 import org.opengts.db.*;
+import org.opengts.db.tables.*;
 
 public interface MapProvider
 {
@@ -125,6 +126,10 @@ public interface MapProvider
     public static final String  PROP_map_view[]             = new String[] { "map.view"                                          };  // String  (road|satellite|hybrid)
     public static final String  PROP_map_minProximity[]     = new String[] { "map.minProximity" /*meters*/                       };  // double  (mim meters between events)
     public static final String  PROP_map_includeGeozones[]  = new String[] { "map.includeGeozones"    ,  "includeGeozones"       };  // boolean (include traversed Geozones)
+    public static final String  PROP_map_simplify[]         = new String[] { "map.simplify"                                      };  // boolean (simplify device tracks)
+    public static final String  PROP_map_simplify_max[]     = new String[] { "map.simplify.maxEvents"                            };  // int     (maximum events read for simplification)
+    public static final String  PROP_map_simplify_pixels[]  = new String[] { "map.simplify.pixelTolerance"                       };  // double  (simplification tolerance in pixels)
+    public static final String  PROP_map_compactEncoding[]  = new String[] { "map.compactEncoding"                               };  // boolean (compact map event encoding)
     public static final String  PROP_pushpin_zoom[]         = new String[] { "pushpin.zoom"                                      };  // dbl/int (default zoom with points)
     public static final String  PROP_default_zoom[]         = new String[] { "default.zoom"                                      };  // dbl/int (default zoom without points)
     public static final String  PROP_default_latitude[]     = new String[] { "default.lat"            , "default.latitude"       };  // double  (default latitude)
@@ -221,6 +226,24 @@ public interface MapProvider
     **/
     public long getMaxPushpins(RequestProperties reqState);
 
+    /**
+    *** Gets the maximum number of events to read for the map.  If track simplification is
+    *** in effect, this may be larger than the maximum number of pushpins, since the events
+    *** are simplified to the maximum number of pushpins before being displayed.
+    *** @param reqState The session RequestProperties instance
+    *** @return The maximum number of events to read
+    **/
+    public long getMaxQueryEvents(RequestProperties reqState);
+
+    /**
+    *** Simplifies the track of the specified events to no more than the maximum number of
+    *** allowed pushpins, if track simplification is in effect for this request.
+    *** @param reqState The session RequestProperties instance
+    *** @param evdata   The events to simplify
+    *** @return The simplified events
+    **/
+    public EventData[] simplifyEvents(RequestProperties reqState, EventData evdata[]);
+
     /**
     *** Gets the pushpin icon map
     *** @param reqState  The RequestProperties for the current session
@@ -72,6 +72,8 @@ public abstract class MapProviderAdapter
     private static final boolean    DFT_REPLAY_ENABLED         = false;
     private static final long       DFT_REPLAY_INTERVAL        = 1000L;
 
+    private static final long       DFT_SIMPLIFY_MAX_EVENTS    = 5000L;
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -692,6 +694,79 @@ public abstract class MapProviderAdapter
         }
     }
 
+    /**
+    *** Returns true if the track displayed for the current request is to be simplified.
+    *** Simplification applies only to single-device maps (not fleet maps, or reports), and
+    *** is disabled unless "map.simplify" is set to "true".
+    *** @param reqState  The current session RequestProperties instance
+    *** @return True if the track is to be simplified
+    **/
+    public boolean isSimplifyTrack(RequestProperties reqState)
+    {
+        if (reqState.isFleet() || reqState.isReport()) {
+            return false;
+        } else {
+            return this.getProperties().getBoolean(MapProvider.PROP_map_simplify, false);
+        }
+    }
+
+    /**
+    *** Returns the maximum number of events to read for the map.  If the track is to be
+    *** simplified, up to "map.simplify.maxEvents" (default 5000) events are read.
+    *** @param reqState  The current session RequestProperties instance
+    *** @return The maximum number of events to read
+    **/
+    public long getMaxQueryEvents(RequestProperties reqState)
+    {
+        long maxPushpins = this.getMaxPushpins(reqState);
+        if (this.isSimplifyTrack(reqState)) {
+            long maxEvents = this.getProperties().getLong(MapProvider.PROP_map_simplify_max, DFT_SIMPLIFY_MAX_EVENTS);
+            return (maxEvents > maxPushpins)? maxEvents : maxPushpins;
+        } else {
+            return maxPushpins;
+        }
+    }
+
+    /**
+    *** Simplifies the track of the specified events to no more than the maximum number of
+    *** allowed pushpins.  The simplification tolerance is based on the map size, assuming
+    *** that the map is zoomed to fit the events.  Stops, status code events, and geozone
+    *** transitions are always retained.
+    *** @param reqState  The current session RequestProperties instance
+    *** @param evdata    The events to simplify
+    *** @return The simplified events
+    **/
+    public EventData[] simplifyEvents(RequestProperties reqState, EventData evdata[])
+    {
+        long maxPushpins = this.getMaxPushpins(reqState);
+        if (ListTools.isEmpty(evdata) || (evdata.length <= maxPushpins) || !this.isSimplifyTrack(reqState)) {
+            return evdata;
+        }
+        MapDimension mapDim = this.getDimension();
+        double pixelTol = this.getProperties().getDouble(MapProvider.PROP_map_simplify_pixels, 2.0);
+        double tolM     = TrackSimplifier.getToleranceMeters(evdata, mapDim.getWidth(), mapDim.getHeight(), pixelTol);
+        return TrackSimplifier.simplify(evdata, tolM, maxPushpins, reqState.getEventLimitType());
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if map events are to be sent to the client browser in the compact 
+    *** encoding (see "EventUtil.MapEventEncoder").  The client must be able to decode
+    *** this format, thus this default implementation returns true only if explicitly
+    *** enabled with the "map.compactEncoding" property.
+    *** @param reqState  The current session RequestProperties instance
+    *** @return True if the compact encoding is to be used
+    **/
+    public boolean isCompactEncoding(RequestProperties reqState)
+    {
+        if (reqState.isSoapRequest()) {
+            return false;
+        } else {
+            return this.getProperties().getBoolean(MapProvider.PROP_map_compactEncoding, false);
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -971,6 +1046,7 @@ public abstract class MapProviderAdapter
         try {
             // This returns an array of EventData records based on the request attributes
             evdata = reqState.getMapEvents(statusCodes, -1L); // does not return null
+            evdata = this.simplifyEvents(reqState, evdata);
             //Print.logInfo("Found Event count: " + evdata.length);
         } catch (DBException dbe) {
             Print.logException("Error reading Events", dbe);
@@ -993,6 +1069,7 @@ public abstract class MapProviderAdapter
         boolean      fleetRoute = (reqState.getFleetDeviceEventCount() > 1L);
         boolean      inclZones  = this.getProperties().getBoolean(MapProvider.PROP_map_includeGeozones, false);
         OrderedSet<String> iconKeys = (OrderedSet<String>)this.getPushpinIconMap(reqState).keySet();
+        boolean      compact    = this.isCompactEncoding(reqState);
 
         /* return events */
         try {
@@ -1015,7 +1092,8 @@ public abstract class MapProviderAdapter
                 evdata, inclZones,
                 iconSel,iconKeys,
                 isFleet, fleetRoute, selID,
-                tmz, acct, latest, lastBatt, lastSig, proximityM);
+                tmz, acct, latest, lastBatt, lastSig, proximityM,
+                EventUtil.CSV_SEPARATOR_CHAR, compact);
         } catch (IOException ioe) {
             Print.logException("Error writing events", ioe);
             out.println("\nError writing Events"); // output is Mime type plain
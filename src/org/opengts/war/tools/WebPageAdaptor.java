@@ -1187,7 +1187,7 @@ public abstract class WebPageAdaptor
         if (isAbsolute) {
             out.write(cssFileName);
         } else {
-            out.write(privLabel.resolveCssFile(cssFileName,cssFileDir));
+            out.write(GeneratedResource.getVersionedFileURL(privLabel.resolveCssFile(cssFileName,cssFileDir)));
         }
         out.write("\"/>\n");
         
@@ -0,0 +1,290 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+package org.opengts.war.track;
+
+import java.util.*;
+import java.io.*;
+import java.util.zip.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+
+/**
+*** Response filter which gzip encodes text responses (HTML, JavaScript, CSS, XML, CSV, etc)
+*** for clients which accept gzip encoding.  The decision to compress is made when the first
+*** byte of the response body is written, based on the response content type, so responses
+*** without a body (ie. "304 Not Modified"), and binary responses (ie. images), are passed
+*** through as-is.<br>
+*** Requests for versioned static resources (ie. "js/utils.js?v=XXXX") are also given a
+*** long-lived "Cache-Control" header, since the URL changes whenever the resource changes.<br>
+*** Init parameters:<br>
+***  - "mimeTypes"      : comma separated list of compressible mime type prefixes<br>
+***  - "versionMaxAge"  : Cache-Control max-age (seconds) for versioned static resources<br>
+**/
+
+public class CompressionFilter
+    implements Filter
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String PARM_VERSION            = "v";
+
+    private static final String DEFAULT_MIME_TYPES[]    = new String[] {
+        "text/",
+        "application/javascript",
+        "application/x-javascript",
+        "application/xml",
+        "application/json",
+        "application/vnd.google-earth.kml+xml",
+    };
+
+    private static final long   DEFAULT_VERSION_MAX_AGE = DateTime.DaySeconds(365);
+
+    // ------------------------------------------------------------------------
+
+    private FilterConfig filterConfig  = null;
+    private String       mimeTypes[]   = DEFAULT_MIME_TYPES;
+    private long         versionMaxAge = DEFAULT_VERSION_MAX_AGE;
+
+    /**
+    *** Initializes filter
+    *** @param filterConfig  The FilterConfig
+    **/
+    public void init(FilterConfig filterConfig)
+    {
+        this.filterConfig = filterConfig;
+        String mt = filterConfig.getInitParameter("mimeTypes");
+        if (!StringTools.isBlank(mt)) {
+            this.mimeTypes = StringTools.parseArray(mt);
+        }
+        this.versionMaxAge = StringTools.parseLong(filterConfig.getInitParameter("versionMaxAge"),DEFAULT_VERSION_MAX_AGE);
+    }
+
+    /**
+    *** Wraps the response in a compressing response, if the client accepts gzip encoding
+    *** @param req  The ServletRequest
+    *** @param res  The ServletResponse
+    *** @param next The next filter in the chain
+    **/
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain next)
+        throws IOException, ServletException
+    {
+
+        /* not HTTP? */
+        if (!(req instanceof HttpServletRequest) || !(res instanceof HttpServletResponse)) {
+            next.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest  request  = (HttpServletRequest)req;
+        HttpServletResponse response = (HttpServletResponse)res;
+
+        /* versioned static resource */
+        String uri = StringTools.trim(request.getRequestURI());
+        if ((this.versionMaxAge > 0L) && !StringTools.isBlank(request.getParameter(PARM_VERSION)) &&
+            (uri.endsWith(".js") || uri.endsWith(".css"))) {
+            response.setHeader("Cache-Control", "public, max-age=" + this.versionMaxAge);
+        }
+
+        /* client accepts gzip? */
+        String acceptEnc = StringTools.trim(request.getHeader("Accept-Encoding")).toLowerCase();
+        if (acceptEnc.indexOf("gzip") < 0) {
+            next.doFilter(req, res);
+            return;
+        }
+
+        /* compress */
+        GzipResponse gzipResponse = new GzipResponse(response, this.mimeTypes);
+        try {
+            next.doFilter(req, gzipResponse);
+        } finally {
+            gzipResponse.finish();
+        }
+
+    }
+
+    /**
+    *** Destroys filter
+    **/
+    public void destroy()
+    {
+        this.filterConfig = null;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /* output stream which decides whether to compress on the first write */
+    private static class GzipOutputStream
+        extends ServletOutputStream
+    {
+        private GzipResponse     response  = null;
+        private OutputStream     output    = null;
+        private GZIPOutputStream gzipOut   = null;
+        private boolean          closed    = false;
+        public GzipOutputStream(GzipResponse response) {
+            this.response = response;
+        }
+        private OutputStream getOutput() throws IOException {
+            if (this.closed) {
+                throw new IOException("Stream closed");
+            } else
+            if (this.output == null) {
+                ServletOutputStream sos = this.response.getOriginalOutputStream();
+                if (this.response.startCompression()) {
+                    this.gzipOut = new GZIPOutputStream(sos, 8192);
+                    this.output  = this.gzipOut;
+                } else {
+                    this.output  = sos;
+                }
+            }
+            return this.output;
+        }
+        public void write(int b) throws IOException {
+            this.getOutput().write(b);
+        }
+        public void write(byte b[]) throws IOException {
+            this.getOutput().write(b, 0, b.length);
+        }
+        public void write(byte b[], int ofs, int len) throws IOException {
+            this.getOutput().write(b, ofs, len);
+        }
+        public void flush() throws IOException {
+            if (this.output != null) {
+                this.output.flush();
+            }
+        }
+        public void close() throws IOException {
+            this.finish();
+        }
+        public void finish() throws IOException {
+            if (!this.closed) {
+                this.closed = true;
+                if (this.gzipOut != null) {
+                    this.gzipOut.finish();
+                }
+                if (this.output != null) {
+                    this.output.flush();
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* response wrapper which gzip encodes compressible content types */
+    private static class GzipResponse
+        extends HttpServletResponseWrapper
+    {
+        private String           mimeTypes[]   = null;
+        private GzipOutputStream gzipStream    = null;
+        private PrintWriter      printWriter   = null;
+        private int              contentLength = -1;
+        private boolean          compressing   = false;
+        public GzipResponse(HttpServletResponse response, String mimeTypes[]) {
+            super(response);
+            this.mimeTypes = mimeTypes;
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        public ServletOutputStream getOriginalOutputStream() throws IOException {
+            return super.getOutputStream();
+        }
+        public boolean startCompression() {
+            // called once, when the first byte of the body is written
+            HttpServletResponse response = (HttpServletResponse)this.getResponse();
+            String ct = StringTools.trim(response.getContentType()).toLowerCase();
+            boolean compress = false;
+            if (response.containsHeader("Content-Encoding")) {
+                compress = false; // already encoded
+            } else {
+                for (int i = 0; i < this.mimeTypes.length; i++) {
+                    if (!StringTools.isBlank(this.mimeTypes[i]) && ct.startsWith(this.mimeTypes[i].trim())) {
+                        compress = true;
+                        break;
+                    }
+                }
+            }
+            if (compress) {
+                response.setHeader("Content-Encoding", "gzip");
+                this.compressing = true;
+            } else
+            if (this.contentLength >= 0) {
+                response.setContentLength(this.contentLength);
+            }
+            return compress;
+        }
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (this.printWriter != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            if (this.gzipStream == null) {
+                this.gzipStream = new GzipOutputStream(this);
+            }
+            return this.gzipStream;
+        }
+        public PrintWriter getWriter() throws IOException {
+            if (this.printWriter == null) {
+                if (this.gzipStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called for this response");
+                }
+                this.gzipStream  = new GzipOutputStream(this);
+                String charSet   = this.getCharacterEncoding();
+                Writer osw       = !StringTools.isBlank(charSet)?
+                    new OutputStreamWriter(this.gzipStream, charSet) :
+                    new OutputStreamWriter(this.gzipStream);
+                this.printWriter = new PrintWriter(osw);
+            }
+            return this.printWriter;
+        }
+        public void setContentLength(int len) {
+            // the compressed length is not known in advance
+            this.contentLength = len;
+        }
+        public void flushBuffer() throws IOException {
+            if (this.printWriter != null) {
+                this.printWriter.flush();
+            } else
+            if (this.gzipStream != null) {
+                this.gzipStream.flush();
+            }
+            super.flushBuffer();
+        }
+        public void reset() {
+            if (this.compressing) {
+                throw new IllegalStateException("Compressed response already started");
+            }
+            super.reset();
+            this.getResponseHttp().addHeader("Vary", "Accept-Encoding");
+        }
+        private HttpServletResponse getResponseHttp() {
+            return (HttpServletResponse)this.getResponse();
+        }
+        public void finish() throws IOException {
+            if (this.printWriter != null) {
+                this.printWriter.flush();
+            }
+            if (this.gzipStream != null) {
+                this.gzipStream.finish();
+            }
+        }
+    }
+
+}
@@ -35,6 +35,9 @@ import javax.servlet.*;
 import javax.servlet.http.*;
 
 import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
 
 import org.opengts.war.tools.*;
 
@@ -43,6 +46,15 @@ public class DeviceChooser
 
     // ------------------------------------------------------------------------
 
+    public  static final String PARM_SEARCH                 = "search";
+    public  static final String PARM_OFFSET                 = "offset";
+    public  static final String PARM_LIMIT                  = "limit";
+
+    private static final int    DEFAULT_PAGE_SIZE           = 50;
+    private static final int    MAXIMUM_PAGE_SIZE           = 500;
+
+    // ------------------------------------------------------------------------
+
     public static boolean showSingleItemTextField(PrivateLabel privLabel)
     {
         if (privLabel == null) {
@@ -94,6 +106,32 @@ public class DeviceChooser
 
     // ------------------------------------------------------------------------
 
+    public static boolean isServerSearch(PrivateLabel privLabel)
+    {
+        boolean dft = false;
+        if (privLabel == null) {
+            return dft;
+        } else
+        if (!DeviceChooser.isDeviceChooserUseTable(privLabel)) {
+            return false; // table only
+        } else {
+            return privLabel.getBooleanProperty(PrivateLabel.PROP_DeviceChooser_serverSearch,dft);
+        }
+    }
+
+    public static int getPageSize(PrivateLabel privLabel)
+    {
+        int dft = DEFAULT_PAGE_SIZE;
+        if (privLabel == null) {
+            return dft;
+        } else {
+            int size = privLabel.getIntProperty(PrivateLabel.PROP_DeviceChooser_pageSize,dft);
+            return (size <= 0)? dft : (size > MAXIMUM_PAGE_SIZE)? MAXIMUM_PAGE_SIZE : size;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     public static int getIDPosition(PrivateLabel privLabel)
     {
         // 0=none, 1=first, 2=last
@@ -135,29 +173,69 @@ public class DeviceChooser
     // ------------------------------------------------------------------------
     // write JavaScript
 
+    private static final String RESOURCE_TYPE               = "DeviceChooser";
+
+    /**
+    *** Sets the GeneratedResource generator for the DeviceChooser vars (resource arguments
+    *** are the PrivateLabel host name and the Locale)
+    **/
+    public static void initGeneratedResources()
+    {
+        GeneratedResource.setGenerator(RESOURCE_TYPE, new GeneratedResource.Generator() {
+            public String getSource(String args[]) {
+                if (args.length != 2) {
+                    return null;
+                }
+                BasicPrivateLabel bpl = PrivateLabelLoader.getPrivateLabel(args[0]);
+                if (!(bpl instanceof PrivateLabel) || !args[0].equals(bpl.getHostName())) {
+                    return null;
+                }
+                return DeviceChooser._getJavaScriptVars(I18N.getLocale(args[1]), (PrivateLabel)bpl);
+            }
+        });
+    }
+
+    /* return the DeviceChooser vars (depend only on the PrivateLabel/Locale) */
+    private static String _getJavaScriptVars(Locale locale, PrivateLabel privLabel)
+    {
+        I18N i18n = I18N.getI18N(DeviceChooser.class, locale);
+        StringWriter jsw = new StringWriter();
+        PrintWriter  js  = new PrintWriter(jsw);
+
+        try {
+            /* vars */
+            js.write("// DeviceChooser vars\n");
+            JavaScriptTools.writeJSVar(js, "DeviceChooserIDPosition"   , DeviceChooser.getIDPosition(privLabel)); // 0=false, 1=first, 2=last
+            JavaScriptTools.writeJSVar(js, "DeviceChooserEnableSearch" , DeviceChooser.isSearchEnabled(privLabel));
+            JavaScriptTools.writeJSVar(js, "DeviceChooserServerSearch" , DeviceChooser.isServerSearch(privLabel));
+            JavaScriptTools.writeJSVar(js, "DeviceChooserPageSize"     , DeviceChooser.getPageSize(privLabel));
+
+            /* Localized text */
+            js.write("// DeviceChooser localized text\n");
+            JavaScriptTools.writeJSVar(js, "DEVICE_TEXT_ID"            , i18n.getString("DeviceChooser.ID","ID"));
+            JavaScriptTools.writeJSVar(js, "DEVICE_TEXT_Description"   , i18n.getString("DeviceChooser.description","Description"));
+            JavaScriptTools.writeJSVar(js, "DEVICE_TEXT_Search"        , i18n.getString("DeviceChooser.search","Search"));
+            JavaScriptTools.writeJSVar(js, "DEVICE_TEXT_More"          , i18n.getString("DeviceChooser.more","More ..."));
+        } catch (IOException ioe) {
+            // will not occur (StringWriter)
+            return null;
+        }
+        js.flush();
+        return jsw.toString();
+    }
+
     public static void writeJavaScript(PrintWriter out, Locale locale, PrivateLabel privLabel, String deviceListURL)
         throws IOException
     {
-        I18N i18n = I18N.getI18N(DeviceChooser.class, locale);
 
-        /* start JavaScript */
+        /* device list URL (may contain the session ID, so it is not part of the cached resource) */
         JavaScriptTools.writeStartJavaScript(out);
-
-        /* vars */
-        out.write("// DeviceChooser vars\n");
         JavaScriptTools.writeJSVar(out, "DEVICE_LIST_URL"           , deviceListURL);
-        JavaScriptTools.writeJSVar(out, "DeviceChooserIDPosition"   , DeviceChooser.getIDPosition(privLabel)); // 0=false, 1=first, 2=last
-        JavaScriptTools.writeJSVar(out, "DeviceChooserEnableSearch" , DeviceChooser.isSearchEnabled(privLabel));
-
-        /* Localized text */
-        out.write("// DeviceChooser localized text\n");
-        JavaScriptTools.writeJSVar(out, "DEVICE_TEXT_ID"            , i18n.getString("DeviceChooser.ID","ID"));
-        JavaScriptTools.writeJSVar(out, "DEVICE_TEXT_Description"   , i18n.getString("DeviceChooser.description","Description"));
-        JavaScriptTools.writeJSVar(out, "DEVICE_TEXT_Search"        , i18n.getString("DeviceChooser.search","Search"));
-
-        /* end JavaScript */
         JavaScriptTools.writeEndJavaScript(out);
 
+        /* vars/localized text (served as a cacheable resource) */
+        GeneratedResource.writeJavaScript(out, RESOURCE_TYPE, privLabel.getHostName(), String.valueOf(locale));
+
         /* DeviceChooser.js */
         JavaScriptTools.writeJSInclude(out, JavaScriptTools.qualifyJSFileRef("DeviceChooser.js"));
 
@@ -319,6 +397,10 @@ public class DeviceChooser
     public static void writeChooserDIV(PrintWriter out, RequestProperties reqState, IDDescription list[], String searchVal)
     {
         PrivateLabel privLabel = reqState.getPrivateLabel();
+        if ((list == null) || DeviceChooser.isServerSearch(privLabel)) {
+            // rows are loaded on demand from the server
+            list = new IDDescription[0];
+        }
         int         idPos               = DeviceChooser.getIDPosition(privLabel);
         Locale      locale              = reqState.getLocale();
         int         idWidth             = WIDTH_ID;
@@ -364,7 +446,8 @@ public class DeviceChooser
         out.write("</thead>\n");
     
         // table body
-        int extraCount = (int)privLabel.getLongProperty(PrivateLabel.PROP_DeviceChooser_extraDebugEntries,0L);
+        int extraCount = DeviceChooser.isServerSearch(privLabel)? 0 :
+            (int)privLabel.getLongProperty(PrivateLabel.PROP_DeviceChooser_extraDebugEntries,0L);
         out.write("<tbody>\n");
         for (int d = 0; d < list.length + extraCount; d++) {
             String idVal = (d < list.length)? list[d].getID()          : ("v" + String.valueOf(d - list.length + 1));
@@ -413,6 +496,86 @@ public class DeviceChooser
 
     }
 
+    // ------------------------------------------------------------------------
+    // server-side search
+
+    /**
+    *** Writes the requested page of matching devices (or groups, if 'fleet') as a JSON object:<br>
+    *** <code>{ "total":N, "offset":N, "items":[ { "id":"..", "desc":".." }, ... ] }</code>
+    *** @param reqState  The session RequestProperties
+    **/
+    public static void writeDeviceListJSON(RequestProperties reqState)
+        throws IOException
+    {
+        HttpServletRequest  request   = reqState.getHttpServletRequest();
+        HttpServletResponse response  = reqState.getHttpServletResponse();
+        PrivateLabel        privLabel = reqState.getPrivateLabel();
+        boolean             isFleet   = reqState.isFleet();
+        IDDescription.SortBy sortBy   = DeviceChooser.getSortBy(privLabel);
+        String searchText = AttributeTools.getRequestString(request, PARM_SEARCH, "");
+        int    offset     = AttributeTools.getRequestInt(request, PARM_OFFSET, 0);
+        int    limit      = AttributeTools.getRequestInt(request, PARM_LIMIT , DeviceChooser.getPageSize(privLabel));
+        if (offset < 0) { offset = 0; }
+        if ((limit <= 0) || (limit > MAXIMUM_PAGE_SIZE)) { limit = DeviceChooser.getPageSize(privLabel); }
+
+        /* search */
+        int total = 0;
+        java.util.List<String[]> items = new Vector<String[]>();
+        if (isFleet) {
+            // the number of groups is typically small, search the session group list
+            String tokens[] = StringTools.parseArray(StringTools.trim(searchText).toLowerCase(), ' ');
+            for (IDDescription idd : reqState.createIDDescriptionList(true, sortBy)) {
+                String key = (idd.getID() + "\n" + StringTools.trim(idd.getDescription())).toLowerCase();
+                boolean match = true;
+                for (int i = 0; match && (i < tokens.length); i++) {
+                    match = StringTools.isBlank(tokens[i]) || (key.indexOf(tokens[i].trim()) >= 0);
+                }
+                if (match) {
+                    if ((total >= offset) && (items.size() < limit)) {
+                        items.add(new String[] { idd.getID(), idd.getDescription() });
+                    }
+                    total++;
+                }
+            }
+        } else {
+            try {
+                DeviceChooserIndex.Result result = DeviceChooserIndex.search(
+                    reqState.getCurrentAccount(), reqState.getCurrentUser(), false/*inclInactv*/,
+                    searchText, sortBy, offset, limit);
+                for (DeviceChooserIndex.Entry e : result.getItems()) {
+                    items.add(new String[] { e.getID(), e.getDisplayText(sortBy) });
+                }
+                total = result.getTotal();
+            } catch (DBException dbe) {
+                Print.logException("DeviceChooser search error", dbe);
+            }
+        }
+
+        /* write JSON */
+        CommonServlet.setResponseContentType(response, HTMLTools.MIME_PLAIN());
+        PrintWriter out = response.getWriter();
+        StringBuffer sb = new StringBuffer();
+        sb.append("{ \"total\":").append(total);
+        sb.append(", \"offset\":").append(offset);
+        sb.append(", \"items\":[\n");
+        for (int i = 0; i < items.size(); i++) {
+            String item[] = items.get(i);
+            sb.append("  { \"id\":").append(_jsonString(item[0]));
+            sb.append(", \"desc\":").append(_jsonString(item[1])).append(" }");
+            if ((i + 1) < items.size()) { sb.append(","); }
+            sb.append("\n");
+        }
+        sb.append("] }\n");
+        out.write(sb.toString());
+
+    }
+
+    private static String _jsonString(String s)
+    {
+        s = StringTools.quoteString(StringTools.trim(s)); // escapes quote/backslash/cr/lf/tab
+        return StringTools.replace(s, "<", "\\u003C");  // do not allow "</script>" injection
+    }
+
     // ------------------------------------------------------------------------
 
     private static String _escapeText(String s)
@@ -0,0 +1,429 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+package org.opengts.war.track;
+
+import java.util.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+import org.opengts.war.tools.*;
+
+/**
+*** In-memory search index of the Devices within an Account, used by the server-side
+*** DeviceChooser search.<br>
+*** The index for an account is loaded with one Device query, one DeviceList query, and one
+*** DeviceGroup query.  Each device entry holds a pre-computed lower-case search key containing
+*** the device ID, description, display name, VIN, and group IDs/descriptions, and the entries are
+*** kept pre-sorted for each <code>IDDescription.SortBy</code> order, so a search is a single
+*** ordered scan over memory (no database access), from which the requested page is returned.<br>
+*** The index is discarded when a Device or DeviceGroup in the account is inserted/updated within
+*** this JVM, when a group membership changes (see <code>DeviceAuthIndex.getChangeCount</code>),
+*** or after "track.cache.deviceChooserTTL" seconds.
+**/
+
+public class DeviceChooserIndex
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final RTConfig.Key KEY_indexTTL = RTConfig.key(DBConfig.PROP_track_cache_deviceChooserTTL);
+
+    private static final char         KEY_SEP      = '\n';
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A single device entry
+    **/
+    public static class Entry
+    {
+        private String id        = null;
+        private String desc      = null;
+        private String name      = null;
+        private String vin       = null;
+        private String groups[]  = null;
+        private boolean active   = true;
+        private String search    = null;
+        public Entry(String id, String desc, String name, String vin, boolean active) {
+            this.id     = StringTools.trim(id);
+            this.desc   = StringTools.trim(desc);
+            this.name   = StringTools.trim(name);
+            this.vin    = StringTools.trim(vin);
+            this.active = active;
+        }
+        public String getID() {
+            return this.id;
+        }
+        public String getDescription() {
+            return !this.desc.equals("")? this.desc : this.id;
+        }
+        public String getName() {
+            return !this.name.equals("")? this.name : this.id;
+        }
+        /* returns the text displayed for this entry (see "RequestProperties.createIDDescriptionList") */
+        public String getDisplayText(IDDescription.SortBy sortBy) {
+            return IDDescription.SortBy.NAME.equals(sortBy)? this.getName() : this.getDescription();
+        }
+        public boolean isActive() {
+            return this.active;
+        }
+        private String getSortKey(IDDescription.SortBy sortBy) {
+            switch (sortBy) {
+                case DESCRIPTION: return this.getDescription().toLowerCase();
+                case NAME       : return this.getName().toLowerCase();
+                default         : return this.id.toLowerCase();
+            }
+        }
+        private boolean isInGroups(Set<String> groupSet) {
+            if (this.groups != null) {
+                for (int i = 0; i < this.groups.length; i++) {
+                    if (groupSet.contains(this.groups[i])) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        private boolean matches(String tokens[]) {
+            for (int i = 0; i < tokens.length; i++) {
+                if (this.search.indexOf(tokens[i]) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+    *** A page of search results
+    **/
+    public static class Result
+    {
+        private int                   total  = 0;
+        private int                   offset = 0;
+        private java.util.List<Entry> items  = new Vector<Entry>();
+        public int getTotal() {
+            return this.total;
+        }
+        public int getOffset() {
+            return this.offset;
+        }
+        public java.util.List<Entry> getItems() {
+            return this.items;
+        }
+        public boolean hasMore() {
+            return ((this.offset + this.items.size()) < this.total);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* index for a single account */
+    private static class AccountIndex
+    {
+        public  long    loadTimeMS  = 0L;
+        public  long    changeCount = 0L;
+        private Entry   sorted[][]  = new Entry[IDDescription.SortBy.values().length][];
+        public AccountIndex(Entry entries[], long changeCount) {
+            this.loadTimeMS  = DateTime.getCurrentTimeMillis();
+            this.changeCount = changeCount;
+            this.sorted[IDDescription.SortBy.ID.ordinal()] = entries;
+        }
+        public synchronized Entry[] getSorted(final IDDescription.SortBy sortBy) {
+            int ndx = sortBy.ordinal();
+            if (this.sorted[ndx] == null) {
+                Entry list[] = this.sorted[IDDescription.SortBy.ID.ordinal()].clone();
+                Arrays.sort(list, new Comparator<Entry>() {
+                    public int compare(Entry e1, Entry e2) {
+                        int c = e1.getSortKey(sortBy).compareTo(e2.getSortKey(sortBy));
+                        return (c != 0)? c : e1.getID().compareTo(e2.getID());
+                    }
+                });
+                this.sorted[ndx] = list;
+            }
+            return this.sorted[ndx];
+        }
+    }
+
+    private static Map<String,AccountIndex> accountIndexMap = new HashMap<String,AccountIndex>();
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** DBRecordListener which discards the account index when a Device/DeviceGroup record is
+    *** inserted/updated.  Any previously installed listener is still called.
+    **/
+    private static class InvalidateListener<gDBR extends AccountRecord<gDBR>>
+        implements DBRecordListener<gDBR>
+    {
+        private DBRecordListener<gDBR> delegate = null;
+        public InvalidateListener(DBRecordListener<gDBR> delegate) {
+            this.delegate = delegate;
+        }
+        public void recordWillInsert(gDBR rcd) {
+            if (this.delegate != null) { this.delegate.recordWillInsert(rcd); }
+        }
+        public void recordDidInsert(gDBR rcd) {
+            DeviceChooserIndex.invalidate(rcd.getAccountID());
+            if (this.delegate != null) { this.delegate.recordDidInsert(rcd); }
+        }
+        public void recordWillUpdate(gDBR rcd) {
+            if (this.delegate != null) { this.delegate.recordWillUpdate(rcd); }
+        }
+        public void recordDidUpdate(gDBR rcd) {
+            DeviceChooserIndex.invalidate(rcd.getAccountID());
+            if (this.delegate != null) { this.delegate.recordDidUpdate(rcd); }
+        }
+    }
+
+    private static boolean listenersInstalled = false;
+
+    private static void installListeners()
+    {
+        synchronized (accountIndexMap) {
+            if (!DeviceChooserIndex.listenersInstalled) {
+                DBFactory<Device>      devFact = Device.getFactory();
+                DBFactory<DeviceGroup> grpFact = DeviceGroup.getFactory();
+                devFact.setRecordListener(new InvalidateListener<Device>(devFact.getRecordListener()));
+                grpFact.setRecordListener(new InvalidateListener<DeviceGroup>(grpFact.getRecordListener()));
+                DeviceChooserIndex.listenersInstalled = true;
+            }
+        }
+    }
+
+    /**
+    *** Discards the index for the specified account
+    *** @param accountID  The Account ID
+    **/
+    public static void invalidate(String accountID)
+    {
+        if (accountID != null) {
+            synchronized (accountIndexMap) {
+                accountIndexMap.remove(accountID);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* execute the specified select, and return the rows of the specified String columns */
+    private static java.util.List<String[]> _select(DBSelect dsel, String... cols)
+        throws DBException
+    {
+        java.util.List<String[]> rows = new Vector<String[]>();
+        DBConnection dbc = null;
+        Statement   stmt = null;
+        ResultSet     rs = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String row[] = new String[cols.length];
+                for (int i = 0; i < cols.length; i++) {
+                    row[i] = StringTools.trim(rs.getString(cols[i]));
+                }
+                rows.add(row);
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("DeviceChooser index select", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        return rows;
+    }
+
+    /* load the index for the specified account */
+    private static AccountIndex _loadAccountIndex(String accountID, long changeCount)
+        throws DBException
+    {
+
+        /* group descriptions */
+        // DBSelect: SELECT groupID,description FROM DeviceGroup WHERE (accountID='acct')
+        Map<String,String> groupDesc = new HashMap<String,String>();
+        DBSelect<DeviceGroup> gsel = new DBSelect<DeviceGroup>(DeviceGroup.getFactory());
+        gsel.setSelectedFields(DeviceGroup.FLD_groupID, DeviceGroup.FLD_description);
+        DBWhere gwh = gsel.createDBWhere();
+        gsel.setWhere(gwh.WHERE(gwh.EQ(DeviceGroup.FLD_accountID,accountID)));
+        for (String row[] : _select(gsel, DeviceGroup.FLD_groupID, DeviceGroup.FLD_description)) {
+            groupDesc.put(row[0].toLowerCase(), row[1]);
+        }
+
+        /* group membership */
+        // DBSelect: SELECT groupID,deviceID FROM DeviceList WHERE (accountID='acct')
+        Map<String,java.util.List<String>> devGroups = new HashMap<String,java.util.List<String>>();
+        DBSelect<DeviceList> lsel = new DBSelect<DeviceList>(DeviceList.getFactory());
+        lsel.setSelectedFields(DeviceList.FLD_groupID, DeviceList.FLD_deviceID);
+        DBWhere lwh = lsel.createDBWhere();
+        lsel.setWhere(lwh.WHERE(lwh.EQ(DeviceList.FLD_accountID,accountID)));
+        for (String row[] : _select(lsel, DeviceList.FLD_groupID, DeviceList.FLD_deviceID)) {
+            String devID = row[1].toLowerCase();
+            java.util.List<String> g = devGroups.get(devID);
+            if (g == null) {
+                g = new Vector<String>();
+                devGroups.put(devID, g);
+            }
+            g.add(row[0].toLowerCase());
+        }
+
+        /* devices */
+        // DBSelect: SELECT deviceID,description,displayName,vehicleID,isActive FROM Device WHERE (accountID='acct') ORDER BY deviceID
+        DBSelect<Device> dsel = new DBSelect<Device>(Device.getFactory());
+        dsel.setSelectedFields(Device.FLD_deviceID, Device.FLD_description, Device.FLD_displayName, Device.FLD_vehicleID, Device.FLD_isActive);
+        DBWhere dwh = dsel.createDBWhere();
+        dsel.setWhere(dwh.WHERE(dwh.EQ(Device.FLD_accountID,accountID)));
+        dsel.setOrderByFields(Device.FLD_deviceID);
+        java.util.List<String[]> devRows = _select(dsel,
+            Device.FLD_deviceID, Device.FLD_description, Device.FLD_displayName, Device.FLD_vehicleID, Device.FLD_isActive);
+        Entry entries[] = new Entry[devRows.size()];
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < entries.length; i++) {
+            String row[] = devRows.get(i);
+            boolean active = StringTools.parseBoolean(row[4],true);
+            Entry e = new Entry(row[0], row[1], row[2], row[3], active);
+            java.util.List<String> g = devGroups.get(e.getID().toLowerCase());
+            e.groups = (g != null)? g.toArray(new String[g.size()]) : null;
+            sb.setLength(0);
+            sb.append(e.id).append(KEY_SEP);
+            sb.append(e.desc).append(KEY_SEP);
+            sb.append(e.name).append(KEY_SEP);
+            sb.append(e.vin);
+            if (e.groups != null) {
+                for (int n = 0; n < e.groups.length; n++) {
+                    sb.append(KEY_SEP).append(e.groups[n]);
+                    String gd = groupDesc.get(e.groups[n]);
+                    if (!StringTools.isBlank(gd)) { sb.append(KEY_SEP).append(gd); }
+                }
+            }
+            e.search = sb.toString().toLowerCase();
+            entries[i] = e;
+        }
+        return new AccountIndex(entries, changeCount);
+
+    }
+
+    /* return the current index for the specified account */
+    private static AccountIndex _getAccountIndex(String accountID)
+        throws DBException
+    {
+        DeviceChooserIndex.installListeners();
+        long ttlMS       = KEY_indexTTL.asLong(300L) * 1000L;
+        long changeCount = DeviceAuthIndex.getChangeCount();
+        AccountIndex ndx;
+        synchronized (accountIndexMap) {
+            ndx = accountIndexMap.get(accountID);
+        }
+        if ((ndx == null)                                                        ||
+            (ndx.changeCount != changeCount)                                     ||
+            ((DateTime.getCurrentTimeMillis() - ndx.loadTimeMS) > ttlMS)           ) {
+            // loaded outside of the lock, a concurrent load of the same account is harmless
+            ndx = DeviceChooserIndex._loadAccountIndex(accountID, changeCount);
+            if (ttlMS > 0L) {
+                synchronized (accountIndexMap) {
+                    accountIndexMap.put(accountID, ndx);
+                }
+            }
+        }
+        return ndx;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Searches the devices of the specified account.<br>
+    *** All whitespace separated words in the search text must be found (case-insensitive) in the
+    *** device ID, description, display name, VIN, or group ID/description.
+    *** @param account     The Account
+    *** @param user        The User (devices are limited to those authorized for this User), may be null
+    *** @param inclInactv  True to include inactive devices
+    *** @param searchText  The search text (blank to match all devices)
+    *** @param sortBy      The sort order
+    *** @param offset      The index of the first matching entry to return
+    *** @param limit       The maximum number of entries to return
+    *** @return The requested page of search results
+    *** @throws DBException if an error occurs while loading the index
+    **/
+    public static Result search(Account account, User user, boolean inclInactv,
+        String searchText, IDDescription.SortBy sortBy, int offset, int limit)
+        throws DBException
+    {
+        Result result = new Result();
+        if (account == null) {
+            return result;
+        }
+        sortBy = IDDescription.GetSortBy(sortBy);
+        String accountID = account.getAccountID();
+
+        /* user authorization */
+        boolean allDevices = true;
+        Set<String> groupSet = null;
+        if ((user != null) && !user.isDeviceGroupAll()) {
+            java.util.List<String> groups = user.getDeviceGroups(false/*refresh*/);
+            allDevices = false;
+            groupSet = new HashSet<String>();
+            if (!ListTools.isEmpty(groups)) {
+                for (String g : groups) {
+                    groupSet.add(g.toLowerCase());
+                }
+            }
+        }
+
+        /* search tokens */
+        String tokens[] = StringTools.parseArray(StringTools.trim(searchText).toLowerCase(), ' ');
+        java.util.List<String> tokList = new Vector<String>();
+        for (int i = 0; i < tokens.length; i++) {
+            if (!StringTools.isBlank(tokens[i])) { tokList.add(tokens[i].trim()); }
+        }
+        tokens = tokList.toArray(new String[tokList.size()]);
+
+        /* scan */
+        if (offset < 0) { offset = 0; }
+        result.offset = offset;
+        Entry sorted[] = DeviceChooserIndex._getAccountIndex(accountID).getSorted(sortBy);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            Entry e = sorted[i];
+            if (!inclInactv && !e.isActive()) {
+                continue;
+            } else
+            if (!allDevices && !e.isInGroups(groupSet)) {
+                continue;
+            } else
+            if ((tokens.length > 0) && !e.matches(tokens)) {
+                continue;
+            }
+            if ((count >= offset) && (result.items.size() < limit)) {
+                result.items.add(e);
+            }
+            count++;
+        }
+        result.total = count;
+        return result;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+}
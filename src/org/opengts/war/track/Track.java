@@ -147,6 +147,7 @@ public class Track
     // Commands
 
     public static final String COMMAND_DEVICE_LIST          = "devlist";
+    public static final String COMMAND_RESOURCE             = "resource";
 
     // ------------------------------------------------------------------------
     // custom page requests
@@ -180,6 +181,10 @@ public class Track
         /* pre-init Base URI var */
         Track.BASE_URI();
 
+        /* generated resources (may be requested before any page referencing them is written) */
+        DeviceChooser.initGeneratedResources();
+        org.opengts.war.maps.JSMap.initGeneratedResources();
+
         /* enable cookies? */
         if (RTConfig.hasProperty(DBConfig.PROP_track_requireCookies)) {
             REQUIRE_COOKIES = RTConfig.getBoolean(DBConfig.PROP_track_requireCookies,true);
@@ -369,7 +374,7 @@ public class Track
 
         /* display PrivateLabel */
         try {
-            RTProperties hostProps = Resource.getPrivateLabelPropertiesForHost(requestHostName);
+            RTProperties hostProps = EntityCache.getPrivateLabelPropertiesForHost(requestHostName);
             privLabel.pushRTProperties();
             RTConfig.pushTemporaryProperties(hostProps);
             this._doWork(isPost, request, response, privLabel);
@@ -436,6 +441,12 @@ public class Track
         String cmdName      = AttributeTools.getRequestString(request, CommonServlet.PARM_COMMAND , ""); // query only ("page_cmd")
         String cmdArg       = AttributeTools.getRequestString(request, CommonServlet.PARM_ARGUMENT, ""); // query only
 
+        /* generated static resource (does not require login) */
+        if (cmdName.equals(COMMAND_RESOURCE)) {
+            GeneratedResource.writeResponse(request, response, cmdArg);
+            return;
+        }
+
         /* adjust page request */
         if (cmdName.equals(Constants.COMMAND_LOGOUT) || pageName.equals(PAGE_LOGIN)) {
             AttributeTools.clearSessionAttributes(request); // start with a clean slate
@@ -827,7 +838,7 @@ public class Track
         Account account = null;
         try {
 
-            account = Account.getAccount(accountID);
+            account = EntityCache.getAccount(request, accountID);
             if (account == null) {
                 Print.logInfo("Account does not exist: " + accountID);
                 AttributeTools.clearSessionAttributes(request);
@@ -928,7 +939,7 @@ public class Track
 
             /* lookup specified UserID */
             boolean loginOK = true;
-            user = User.getUser(account, userID);
+            user = EntityCache.getUser(request, account, userID);
             if (user != null) {
                 // we found a valid user
                 //Print.logInfo("Found User: " + userID);
@@ -1340,6 +1351,12 @@ public class Track
 
         }
 
+        /* DeviceChooser server-side search */
+        if (cmdName.equals(COMMAND_DEVICE_LIST) && DeviceChooser.isServerSearch(privLabel)) {
+            DeviceChooser.writeDeviceListJSON(reqState);
+            return;
+        }
+
         /* dispatch to page */
         reqState.setPageNavigationHTML(trackPage.getPageNavigationHTML(reqState));
         trackPage.writePage(reqState, "");
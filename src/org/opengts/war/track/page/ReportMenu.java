@@ -924,6 +924,10 @@ public class ReportMenu
                 out.write("</table>\n");  // }
 
                 /* write DeviceChooser DIV */
+                if (DeviceChooser.isServerSearch(privLabel)) {
+                    // devices are searched/loaded on demand
+                    DeviceChooser.writeChooserDIV(out, reqState, null, null);
+                } else
                 if (DeviceChooser.isDeviceChooserUseTable(privLabel)) {
                     java.util.List<IDDescription> idList = reqState.createIDDescriptionList(isGroup, sortBy);
                     IDDescription list[] = idList.toArray(new IDDescription[idList.size()]);
@@ -220,6 +220,26 @@ public class SysAdminAccounts
         return acctLoginMap;
     }
 
+    /* read the listed accounts with a single select */
+    private Map<String,Account> getAccounts(Collection<String> acctList)
+    {
+        Map<String,Account> acctMap = new HashMap<String,Account>();
+        if (ListTools.isEmpty(acctList)) {
+            return acctMap;
+        }
+        try {
+            DBWhere dwh = new DBWhere(Account.getFactory());
+            String where = dwh.WHERE_(dwh.INLIST(Account.FLD_accountID, acctList));
+            Account acct[] = DBRecord.getRecords(Account.getFactory(), where, null, true);
+            for (int i = 0; i < acct.length; i++) {
+                acctMap.put(acct[i].getAccountID(), acct[i]);
+            }
+        } catch (DBException dbe) {
+            Print.logException("Unable to read Account list", dbe);
+        }
+        return acctMap;
+    }
+
     // ------------------------------------------------------------------------
 
     public void writePage(
@@ -667,6 +687,7 @@ public class SysAdminAccounts
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.accountName","Account Description"))+"</th>\n");
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.active","Active"))+"</th>\n");
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.deviceCount","Device\nCount"))+"</th>\n");
+                    out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.lastEvent","Last Event\n{0}",currAcctTZID))+"</th>\n");
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.privateLabel","PrivateLabel\nName"))+"</th>\n");
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.creationDate","Created\n{0}",currAcctTZID))+"</th>\n");
                     out.write("   <th class='"+CommonServlet.CSS_ADMIN_TABLE_HEADER_COL    +"' nowrap>"+filter(i18n.getString("SysAdminAccounts.lastLogin","Last Login\n{0}",currAcctTZID))+"</th>\n");
@@ -675,14 +696,10 @@ public class SysAdminAccounts
                     out.write(" </thead>\n");
                     out.write(" <tbody>\n");
                     Map<String,java.util.List<String>> loggedInAccounts = SysAdminAccounts.this.getLoggedInAccounts(reqState);
+                    Map<String,Account> accountMap = SysAdminAccounts.this.getAccounts(_accountList);
                     for (int u = 0; u < ListTools.size(_accountList); u++) {
                         // get Account
-                        Account acct = null;
-                        try {
-                            acct = Account.getAccount(ListTools.itemAt(_accountList,u,""));
-                        } catch (DBException dbe) {
-                            // 
-                        }
+                        Account acct = accountMap.get(ListTools.itemAt(_accountList,u,""));
                         if (acct == null) {
                             continue;
                         }
@@ -720,7 +737,10 @@ public class SysAdminAccounts
                             // logged in more than 3 weeks ago (red)
                             lastLoginCls = oddRow? "veryOldLoginDate_odd" : "veryOldLoginDate_even"; // (196, 54, 54)
                         }
-                        String deviceCountS = String.valueOf(acct.getDeviceCount());
+                        AccountStats acctStats = AccountStats.getStats(acctID);
+                        String deviceCountS = String.valueOf(acctStats.getDeviceCount());
+                        long lastEventTime  = acctStats.getLastEventTime();
+                        String lastEventStr = (lastEventTime > 0L)? new DateTime(lastEventTime,currAcctTZ).format(dtFormat) : i18n.getString("SysAdminAccounts.never","never");
                         int    loginCount   = 0;
                         String loginCountS  = "--"; // ComboOption.getYesNoText(locale,false);
                         if (loggedInAccounts.containsKey(acctID)) {
@@ -736,6 +756,7 @@ public class SysAdminAccounts
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' nowrap>"+filter(acctDesc)+"</td>\n");
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' nowrap>"+filter(active)+"</td>\n");
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' nowrap>"+filter(deviceCountS)+"</td>\n");
+                        out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' "+SORTTABLE_SORTKEY+"='"+lastEventTime+"' nowrap>"+filter(lastEventStr)+"</td>\n");
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' nowrap>"+filter(prvLabelName)+"</td>\n");
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' "+SORTTABLE_SORTKEY+"='"+creationTime +"' nowrap>"+filter(creationStr)+"</td>\n");
                         out.write("   <td class='"+CommonServlet.CSS_ADMIN_TABLE_BODY_COL    +"' "+SORTTABLE_SORTKEY+"='"+lastLoginTime+"' nowrap><span class='"+lastLoginCls+"'>"+filter(lastLoginStr)+"</span></td>\n");
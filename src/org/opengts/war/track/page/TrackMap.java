@@ -725,9 +725,10 @@ public abstract class TrackMap
         final boolean mapAutoSize = (mapDim.getHeight() < 0);
 
         /* event limit/type */
-        long maxPushpins = mapProvider.getMaxPushpins(reqState);
-        if ((limitCnt <= 0L) || (limitCnt > maxPushpins)) {
-            limitCnt = maxPushpins;
+        // (more events than "maxPushpins" may be read if the track is to be simplified)
+        long maxEvents = mapProvider.getMaxQueryEvents(reqState);
+        if ((limitCnt <= 0L) || (limitCnt > maxEvents)) {
+            limitCnt = maxEvents;
         }
         reqState.setEventLimit(limitCnt);
         reqState.setEventLimitType(limitType);
@@ -750,6 +751,7 @@ public abstract class TrackMap
                 int statCodes[]    = this.getStatusCodes();
                 long perDevLimit   = (!StringTools.isBlank(cmdArg) && cmdArg.equals("last"))? 1L : -1L;
                 EventData evdata[] = reqState.getMapEvents(statCodes, perDevLimit); // [KML] does not return null
+                evdata = mapProvider.simplifyEvents(reqState, evdata);
                 CommonServlet.setResponseContentType(response, HTMLTools.MIME_KML());
                 GoogleKML.getInstance().writeEvents(out, evdata, privLabel);
             } catch (DBException dbe) {
@@ -1450,6 +1452,10 @@ public abstract class TrackMap
                 out.println("</table>"); // ]
 
                 /* write DeviceChooser DIV */
+                if (DeviceChooser.isServerSearch(privLabel)) {
+                    // devices are searched/loaded on demand
+                    DeviceChooser.writeChooserDIV(out, reqState, null, null);
+                } else
                 if (DeviceChooser.isDeviceChooserUseTable(privLabel)) {
                     java.util.List<IDDescription> idList = reqState.createIDDescriptionList(isFleet, sortBy);
                     IDDescription list[] = idList.toArray(new IDDescription[idList.size()]);
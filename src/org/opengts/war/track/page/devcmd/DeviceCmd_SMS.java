@@ -468,7 +468,7 @@ public class DeviceCmd_SMS
         /* send sms message */
         String smsCmd = command.getCommandString(cmdArgs);
         String protoHandler = command.getCommandProtocolHandler();
-        DCServerFactory.ResultCode result = DCServerConfig.SendSMSCommand(protoHandler, device, smsCmd);
+        DCServerFactory.ResultCode result = DCServerConfig.QueueSMSCommand(protoHandler, device, smsCmd);
 
         /* result */
         return CommandPacketHandler.setResult(rtp, result);
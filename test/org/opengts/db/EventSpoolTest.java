@@ -0,0 +1,138 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  EventSpool tests
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+
+import org.opengts.db.tables.*;
+
+public class EventSpoolTest
+    extends UnitTest
+{
+
+    private static final String ACCOUNT_ID = "unittest";
+    private static final String DEVICE_ID  = "spool";
+    private static final long   START_TIME = 1262304000L;
+
+    /* return a new (non-existent) temporary spool directory */
+    private static File _tempDir(String name)
+    {
+        return new File(System.getProperty("java.io.tmpdir","/tmp"),
+            "spoolTest_" + name + "_" + System.currentTimeMillis());
+    }
+
+    /* create an unsaved event */
+    private static EventData _event(int ndx)
+    {
+        EventData.Key evKey = new EventData.Key(ACCOUNT_ID, DEVICE_ID, START_TIME + ndx, StatusCodes.STATUS_LOCATION);
+        EventData ev = evKey.getDBRecord();
+        ev.setGeoPoint(39.1234, -142.1234);
+        ev.setSpeedKPH(50.0);
+        return ev;
+    }
+
+    public void testDirectoryLock()
+        throws IOException
+    {
+        File dir = _tempDir("lock");
+        EventSpool spool = new EventSpool(dir, 65536L, 1024L * 1024L, 0L);
+        assertTrue(new File(dir,"spool.lock").isFile(), "lock file created");
+        try {
+            new EventSpool(dir, 65536L, 1024L * 1024L, 0L);
+            fail("Second EventSpool opened on a locked directory");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage().startsWith("Spool directory is in use"), "lock message: " + ioe.getMessage());
+        }
+    }
+
+    public void testServerDirectory()
+        throws IOException
+    {
+        // each server spools to its own subdirectory (named for the server) of the configured directory
+        File base = _tempDir("server");
+        RTConfig.setString(RTKey.LOG_NAME, "unit/test");
+        String server;
+        try {
+            server = DBConfig.getServerName();
+        } finally {
+            RTConfig.setString(RTKey.LOG_NAME, null);
+        }
+        assertEquals("unit_test", server, "server name");
+        EventSpool spool1 = new EventSpool(new File(base,server), 65536L, 1024L * 1024L, 0L);
+        EventSpool spool2 = new EventSpool(new File(base,"other"), 65536L, 1024L * 1024L, 0L);
+        assertTrue(new File(new File(base,server),"spool.lock").isFile(), "server subdirectory lock file");
+        assertTrue(new File(new File(base,"other"),"spool.lock").isFile(), "other server lock file");
+    }
+
+    public void testSpool()
+        throws IOException
+    {
+        File dir = _tempDir("spool");
+        EventSpool spool = new EventSpool(dir, 65536L, 1024L * 1024L, 0L);
+        assertFalse(spool.isActive(), "empty spool not active");
+        assertEquals(0L, spool.getBacklogBytes(), "empty spool backlog");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spool.spool(_event(i)), "spool event " + i);
+        }
+        assertEquals(10L, spool.getSpoolCount(), "spooled count");
+        assertEquals(0L, spool.getDropCount(), "dropped count");
+        if (spool.getReplayCount() == 0L) {
+            // (not yet replayed, no database in this environment)
+            assertTrue(spool.isActive(), "spool with backlog is active");
+            assertTrue(spool.getBacklogBytes() > 0L, "backlog bytes");
+        }
+        assertTrue(spool.getStatistics().indexOf("spooled=10") >= 0, "statistics: " + spool.getStatistics());
+    }
+
+    public void testSpoolFull()
+        throws IOException
+    {
+        // a single 64K segment
+        File dir = _tempDir("full");
+        EventSpool spool = new EventSpool(dir, 65536L, 65536L, 0L);
+        int spooled = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (spool.spool(_event(i))) {
+                spooled++;
+            }
+        }
+        assertTrue((spooled > 0) && (spooled < 5000), "spooled until full: " + spooled);
+        assertEquals((long)(5000 - spooled), spool.getDropCount(), "dropped count");
+    }
+
+    public void testSlowInsert()
+        throws IOException
+    {
+        File dir = _tempDir("slow");
+        EventSpool spool = new EventSpool(dir, 65536L, 1024L * 1024L, 1000L);
+        spool.noteInsertTime(500L);
+        assertFalse(spool.isActive(), "fast insert");
+        spool.noteInsertTime(2000L);
+        assertTrue(spool.isActive(), "slow insert");
+        assertTrue(spool.getStatistics().endsWith("(slow)"), "statistics: " + spool.getStatistics());
+    }
+
+}
@@ -0,0 +1,110 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  RecentEventFilter tests
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+public class RecentEventFilterTest
+    extends UnitTest
+{
+
+    private static final String ACCOUNT_ID = "unittest";
+    private static final long   START_TIME = 1262304000L;
+
+    /* set the duplicate filter window */
+    private static void _setWindow(long windowSec)
+    {
+        RTConfig.setLong(DBConfig.PROP_db_eventDupFilter_windowSec, windowSec);
+    }
+
+    public void testDuplicate()
+    {
+        _setWindow(3600L);
+        int code = StatusCodes.STATUS_LOCATION;
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "dup1", START_TIME, code), "first insert");
+        assertTrue(RecentEventFilter.isDuplicate(ACCOUNT_ID, "dup1", START_TIME, code), "retransmission");
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "dup1", START_TIME, StatusCodes.STATUS_INPUT_ON), "other status code");
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "dup1", START_TIME + 1L, code), "other timestamp");
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "dup2", START_TIME, code), "other device");
+        assertFalse(RecentEventFilter.isDuplicate("other", "dup1", START_TIME, code), "other account");
+    }
+
+    public void testForget()
+    {
+        _setWindow(3600L);
+        int code = StatusCodes.STATUS_LOCATION;
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "forget", START_TIME, code), "first insert");
+        RecentEventFilter.forget(ACCOUNT_ID, "forget", START_TIME, code);
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "forget", START_TIME, code), "insert after failed insert");
+        assertTrue(RecentEventFilter.isDuplicate(ACCOUNT_ID, "forget", START_TIME, code), "retransmission");
+        RecentEventFilter.forget(ACCOUNT_ID, "unknown", START_TIME, code); // no-op
+    }
+
+    public void testRingGrowth()
+    {
+        // all keys within the window are retained (the ring grows past its initial size)
+        _setWindow(3600L);
+        int code = StatusCodes.STATUS_LOCATION;
+        for (int i = 0; i < 500; i++) {
+            assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "grow", START_TIME + i, code), "insert " + i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(RecentEventFilter.isDuplicate(ACCOUNT_ID, "grow", START_TIME + i, code), "retransmission " + i);
+        }
+    }
+
+    public void testRingExpire()
+    {
+        // keys older than the window are discarded rather than growing the ring
+        _setWindow(60L);
+        try {
+            int code = StatusCodes.STATUS_LOCATION;
+            for (int i = 0; i < 100; i++) {
+                assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "expire", START_TIME + (i * 60L), code), "insert " + i);
+            }
+            assertTrue(RecentEventFilter.isDuplicate(ACCOUNT_ID, "expire", START_TIME + (99L * 60L), code), "recent key");
+            assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "expire", START_TIME, code), "expired key");
+        } finally {
+            _setWindow(3600L);
+        }
+    }
+
+    public void testDisabled()
+    {
+        _setWindow(0L);
+        try {
+            assertFalse(RecentEventFilter.isEnabled(), "disabled");
+            int code = StatusCodes.STATUS_LOCATION;
+            assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "disabled", START_TIME, code), "first insert");
+            assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "disabled", START_TIME, code), "filter disabled");
+        } finally {
+            _setWindow(3600L);
+        }
+        assertTrue(RecentEventFilter.isEnabled(), "enabled");
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "code", START_TIME, 0x10000), "code not representable");
+        assertFalse(RecentEventFilter.isDuplicate(ACCOUNT_ID, "code", START_TIME, 0x10000), "code not representable");
+    }
+
+}
@@ -0,0 +1,147 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  SessionStatsAggregator tests (journal only, the database is not required)
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+public class SessionStatsAggregatorTest
+    extends UnitTest
+{
+
+    private static final String ACCOUNT_ID = "unittest";
+    private static final String DEVICE_ID  = "stats";
+    private static final long   START_TIME = 1262304000L; // (multiple of 900)
+
+    /* return a new (non-existent) temporary file */
+    private static File _tempFile(String name)
+    {
+        return new File(System.getProperty("java.io.tmpdir","/tmp"),
+            "sessionStatsTest_" + name + "_" + System.currentTimeMillis() + ".journal");
+    }
+
+    /* return the non-blank lines of the journal */
+    private static String[] _readJournal(File journal)
+    {
+        java.util.List<String> lines = new Vector<String>();
+        String text = StringTools.toStringValue(FileTools.readFile(journal));
+        for (String line : StringTools.split(text, '\n')) {
+            if (!StringTools.isBlank(line)) {
+                lines.add(line.trim());
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    private static Device _device()
+    {
+        return new Device.Key(ACCOUNT_ID, DEVICE_ID).getDBRecord();
+    }
+
+    public void testJournal()
+        throws DBException
+    {
+        File journal = _tempFile("journal");
+        try {
+            SessionStatsAggregator ssa = new SessionStatsAggregator(900L, journal);
+            ssa.addSessionStatistic(_device(), START_TIME + 100L, "10.0.0.1", true , 120L, 40L, 3L);
+            ssa.addSessionStatistic(_device(), START_TIME + 950L, "10.0.0.2", false,  80L,  0L, 1L);
+            ssa.addSessionStatistic(null, START_TIME, "10.0.0.3", true, 1L, 1L, 1L); // ignored
+            String lines[] = _readJournal(journal);
+            assertEquals(2L, lines.length, "journal lines");
+            assertEquals(ACCOUNT_ID + "," + DEVICE_ID + "," + START_TIME + ",10.0.0.1,1,0,120,40,3", lines[0], "TCP session");
+            assertEquals(ACCOUNT_ID + "," + DEVICE_ID + "," + (START_TIME + 900L) + ",10.0.0.2,0,1,80,0,1", lines[1], "UDP session");
+        } finally {
+            journal.delete();
+        }
+    }
+
+    public void testReplay()
+        throws DBException
+    {
+        File journal = _tempFile("replay");
+        try {
+            // a journal compacted after intervals through START_TIME+1800 were written
+            String text = "#flushed=" + (START_TIME + 1800L) + "\n" +
+                ACCOUNT_ID + "," + DEVICE_ID + "," + (START_TIME + 1800L) + ",10.0.0.1,1,0,120,40,3\n" +
+                ACCOUNT_ID + "," + DEVICE_ID + ",partial";
+            try {
+                FileTools.writeFile(StringTools.getBytes(text), journal);
+            } catch (IOException ioe) {
+                fail("Unable to write journal: " + ioe);
+            }
+            SessionStatsAggregator ssa = new SessionStatsAggregator(900L, journal);
+            // statistics for an interval which has already been written go to the oldest unwritten interval
+            ssa.addSessionStatistic(_device(), START_TIME + 100L, "10.0.0.2", true, 10L, 10L, 1L);
+            String lines[] = _readJournal(journal);
+            assertEquals(ACCOUNT_ID + "," + DEVICE_ID + "," + (START_TIME + 1800L) + ",10.0.0.2,1,0,10,10,1",
+                lines[lines.length - 1], "late session attributed to oldest unwritten interval");
+        } finally {
+            journal.delete();
+        }
+    }
+
+    public void testFailedFlushKeepsJournal()
+        throws DBException
+    {
+        File journal = _tempFile("flush");
+        try {
+            SessionStatsAggregator ssa = new SessionStatsAggregator(900L, journal);
+            ssa.addSessionStatistic(_device(), START_TIME + 100L, "10.0.0.1", true, 120L, 40L, 3L);
+            int count = ssa.flush(true);
+            if (count > 0) {
+                UnitTest.skip("Database available, interval was written");
+            }
+            String lines[] = _readJournal(journal);
+            assertEquals(1L, lines.length, "journal retained after failed write");
+        } finally {
+            journal.delete();
+        }
+    }
+
+    public void testServerJournalName()
+    {
+        // each server process has its own journal, named after the server
+        File journal = _tempFile("server");
+        RTConfig.setLong(DBConfig.PROP_db_sessionStats_intervalSec, 900L);
+        RTConfig.setString(DBConfig.PROP_db_sessionStats_journalFile, journal.getPath());
+        RTConfig.setString(RTKey.LOG_NAME, "unit/test");
+        File srvJournal = new File(journal.getParentFile(), journal.getName().replace(".journal", ".unit_test.journal"));
+        try {
+            assertTrue(SessionStatsAggregator.getInstance() != null, "aggregator enabled");
+            assertTrue(srvJournal.isFile(), "server journal created: " + srvJournal);
+            assertFalse(journal.exists(), "configured journal name not used directly");
+        } finally {
+            RTConfig.setString(RTKey.LOG_NAME, null);
+            RTConfig.setString(DBConfig.PROP_db_sessionStats_journalFile, null);
+            RTConfig.setLong(DBConfig.PROP_db_sessionStats_intervalSec, 0L);
+            srvJournal.delete();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  StationaryFilter tests
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+public class StationaryFilterTest
+    extends UnitTest
+{
+
+    private static final String ACCOUNT_ID  = "unittest";
+    private static final String DEVICE_ID   = "parked";
+    private static final long   START_TIME  = 1262304000L;
+    private static final int    CODE        = StatusCodes.STATUS_LOCATION;
+    private static final double LAT         = 39.1234;
+    private static final double LON         = -142.1234;
+
+    /* filter: 300 second dwell, 50 meter radius, 5 km/h, 3600 second heartbeat */
+    private static StationaryFilter _filter()
+    {
+        StationaryFilter filter = new StationaryFilter("test");
+        filter.setConfig(300L, 50.0, 5.0, 3600L);
+        return filter;
+    }
+
+    /* check the event, and record it as stored if not redundant */
+    private static boolean _event(StationaryFilter filter, long timestamp, int code, double lat, double lon, double kph, long input)
+    {
+        if (filter.isRedundant(ACCOUNT_ID, DEVICE_ID, timestamp, code, lat, lon, kph, input)) {
+            return false;
+        }
+        filter.eventStored(ACCOUNT_ID, DEVICE_ID, timestamp, code, lat, lon, kph, input);
+        return true;
+    }
+
+    public void testDwell()
+    {
+        StationaryFilter filter = _filter();
+        assertTrue(_event(filter, START_TIME        , CODE, LAT, LON, 0.0, 0L), "first event stored");
+        assertTrue(_event(filter, START_TIME +  120L, CODE, LAT, LON, 0.0, 0L), "within dwell period");
+        assertTrue(_event(filter, START_TIME +  299L, CODE, LAT, LON, 0.0, 0L), "end of dwell period");
+        assertFalse(_event(filter, START_TIME + 420L, CODE, LAT, LON, 0.0, 0L), "stationary event skipped");
+        assertFalse(_event(filter, START_TIME + 540L, CODE, LAT + 0.0001, LON, 2.0, 0L), "within radius skipped");
+        assertEquals(2L, filter.getSkipCount(), "skip count");
+    }
+
+    public void testIsRedundantDoesNotChangeState()
+    {
+        StationaryFilter filter = _filter();
+        assertFalse(filter.isRedundant(ACCOUNT_ID, DEVICE_ID, START_TIME, CODE, LAT, LON, 0.0, 0L), "unknown device");
+        assertFalse(filter.isRedundant(ACCOUNT_ID, DEVICE_ID, START_TIME + 600L, CODE, LAT, LON, 0.0, 0L), "still unknown (not stored)");
+        filter.eventStored(ACCOUNT_ID, DEVICE_ID, START_TIME, CODE, LAT, LON, 0.0, 0L);
+        // an event which was checked but never stored must not affect the dwell period
+        assertFalse(filter.isRedundant(ACCOUNT_ID, DEVICE_ID, START_TIME + 200L, CODE, LAT, LON, 0.0, 0L), "within dwell period");
+        assertTrue(filter.isRedundant(ACCOUNT_ID, DEVICE_ID, START_TIME + 600L, CODE, LAT, LON, 0.0, 0L), "after dwell period");
+        assertTrue(filter.isRedundant(ACCOUNT_ID, DEVICE_ID, START_TIME + 600L, CODE, LAT, LON, 0.0, 0L), "repeated check");
+        assertEquals(2L, filter.getSkipCount(), "skip count");
+    }
+
+    public void testChangesStored()
+    {
+        StationaryFilter filter = _filter();
+        assertTrue(_event(filter, START_TIME, CODE, LAT, LON, 0.0, 0L), "first event stored");
+        assertFalse(_event(filter, START_TIME + 600L, CODE, LAT, LON, 0.0, 0L), "stationary event skipped");
+        assertTrue(_event(filter, START_TIME + 660L, CODE, LAT, LON, 0.0, 1L), "input change stored");
+        assertTrue(_event(filter, START_TIME + 720L, StatusCodes.STATUS_INPUT_ON, LAT, LON, 0.0, 1L), "status code stored");
+        assertTrue(_event(filter, START_TIME + 780L, CODE, LAT, LON, 20.0, 1L), "movement stored");
+        assertTrue(_event(filter, START_TIME + 840L, CODE, LAT + 0.01, LON, 0.0, 1L), "outside radius stored");
+        assertTrue(_event(filter, START_TIME + 900L, CODE, 0.0, 0.0, 0.0, 1L), "invalid location stored");
+    }
+
+    public void testHeartbeat()
+    {
+        StationaryFilter filter = _filter();
+        assertTrue(_event(filter, START_TIME, CODE, LAT, LON, 0.0, 0L), "first event stored");
+        int stored = 0;
+        for (long t = START_TIME + 600L; t < (START_TIME + 8000L); t += 600L) {
+            if (_event(filter, t, CODE, LAT, LON, 0.0, 0L)) {
+                stored++;
+            }
+        }
+        assertEquals(2L, stored, "heartbeat events stored");
+    }
+
+    public void testZeroRadius()
+    {
+        StationaryFilter filter = new StationaryFilter("test");
+        filter.setConfig(300L, 0.0, 0.0, 0L);
+        assertTrue(_event(filter, START_TIME, CODE, LAT, LON, 0.0, 0L), "first event stored");
+        assertTrue(_event(filter, START_TIME + 600L, CODE, LAT + 0.0001, LON, 0.0, 0L), "zero radius, moved");
+    }
+
+}
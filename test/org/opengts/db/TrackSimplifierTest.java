@@ -0,0 +1,160 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  TrackSimplifier tests
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+import org.opengts.db.tables.*;
+
+public class TrackSimplifierTest
+    extends UnitTest
+{
+
+    private static final String ACCOUNT_ID = "unittest";
+    private static final long   START_TIME = 1262304000L;
+
+    /* create an unsaved event */
+    private static EventData _event(String devID, int ndx, int code, double lat, double lon, double kph)
+    {
+        EventData.Key evKey = new EventData.Key(ACCOUNT_ID, devID, START_TIME + (ndx * 60L), code);
+        EventData ev = evKey.getDBRecord();
+        ev.setGeoPoint(lat, lon);
+        ev.setSpeedKPH(kph);
+        return ev;
+    }
+
+    /* straight moving track (about 111 meters between events) */
+    private static EventData[] _straightTrack(String devID, int count)
+    {
+        EventData ev[] = new EventData[count];
+        for (int i = 0; i < count; i++) {
+            ev[i] = _event(devID, i, StatusCodes.STATUS_LOCATION, 39.0 + (i * 0.001), -142.0, 50.0);
+        }
+        return ev;
+    }
+
+    public void testStraightLine()
+    {
+        EventData ev[] = _straightTrack("dev1", 20);
+        EventData rtn[] = TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST);
+        assertEquals(2L, rtn.length, "straight track simplified to endpoints");
+        assertTrue(rtn[0] == ev[0], "first event retained");
+        assertTrue(rtn[1] == ev[ev.length - 1], "last event retained");
+    }
+
+    public void testShortTrackUnchanged()
+    {
+        EventData ev[] = _straightTrack("dev1", 2);
+        assertTrue(TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST) == ev, "two events returned as-is");
+        assertTrue(TrackSimplifier.simplify(null, 10.0, 0L, EventData.LimitType.LAST) == null, "null events");
+    }
+
+    public void testCornerRetained()
+    {
+        // north for 10 events, then east for 10 events
+        EventData ev[] = new EventData[20];
+        for (int i = 0; i < 10; i++) {
+            ev[i] = _event("dev1", i, StatusCodes.STATUS_LOCATION, 39.0 + (i * 0.001), -142.0, 50.0);
+        }
+        for (int i = 10; i < 20; i++) {
+            ev[i] = _event("dev1", i, StatusCodes.STATUS_LOCATION, 39.009, -142.0 + ((i - 9) * 0.001), 50.0);
+        }
+        EventData rtn[] = TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST);
+        assertEquals(3L, rtn.length, "corner track simplified");
+        assertTrue(rtn[1] == ev[9], "corner event retained");
+    }
+
+    public void testStatusCodesRetained()
+    {
+        EventData ev[] = _straightTrack("dev1", 20);
+        ev[5]  = _event("dev1", 5 , StatusCodes.STATUS_INPUT_ON, 39.005, -142.0, 50.0);
+        ev[12] = _event("dev1", 12, StatusCodes.STATUS_LOCATION, 0.0, 0.0, 50.0); // invalid GPS
+        EventData rtn[] = TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST);
+        assertEquals(4L, rtn.length, "status/invalid events retained");
+        assertTrue(rtn[1] == ev[5] , "status code event retained");
+        assertTrue(rtn[2] == ev[12], "invalid GPS event retained");
+    }
+
+    public void testStopRetained()
+    {
+        EventData ev[] = _straightTrack("dev1", 20);
+        for (int i = 8; i <= 11; i++) {
+            ev[i] = _event("dev1", i, StatusCodes.STATUS_LOCATION, 39.008, -142.0, 0.0);
+        }
+        EventData rtn[] = TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST);
+        List<EventData> list = Arrays.asList(rtn);
+        assertTrue(list.contains(ev[8]) , "first stopped event retained");
+        assertTrue(list.contains(ev[11]), "last stopped event retained");
+        assertTrue(list.contains(ev[12]), "first moving event retained");
+    }
+
+    public void testDevicesRetained()
+    {
+        EventData a[] = _straightTrack("dev1", 10);
+        EventData b[] = _straightTrack("dev2", 10);
+        EventData ev[] = new EventData[a.length + b.length];
+        System.arraycopy(a, 0, ev, 0, a.length);
+        System.arraycopy(b, 0, ev, a.length, b.length);
+        EventData rtn[] = TrackSimplifier.simplify(ev, 10.0, 0L, EventData.LimitType.LAST);
+        assertEquals(4L, rtn.length, "first/last event for each device");
+        assertTrue(rtn[1] == a[a.length - 1], "last event of first device");
+        assertTrue(rtn[2] == b[0], "first event of second device");
+    }
+
+    public void testMaxCount()
+    {
+        // zig-zag track, which is not simplified at the initial tolerance
+        EventData ev[] = new EventData[50];
+        for (int i = 0; i < ev.length; i++) {
+            double lon = -142.0 + (((i % 2) == 0)? 0.0 : 0.002);
+            ev[i] = _event("dev1", i, StatusCodes.STATUS_LOCATION, 39.0 + (i * 0.001), lon, 50.0);
+        }
+        assertEquals(50L, TrackSimplifier.simplify(ev, 1.0, 0L, EventData.LimitType.LAST).length, "no limit");
+        EventData rtn[] = TrackSimplifier.simplify(ev, 1.0, 10L, EventData.LimitType.LAST);
+        assertTrue(rtn.length <= 10, "limited to maxCount");
+        assertTrue(rtn[0] == ev[0], "first event retained");
+        assertTrue(rtn[rtn.length - 1] == ev[ev.length - 1], "last event retained");
+        // retained events alone exceed the limit
+        for (int i = 0; i < ev.length; i++) {
+            ev[i] = _event("dev1", i, StatusCodes.STATUS_INPUT_ON, 39.0 + (i * 0.001), -142.0, 50.0);
+        }
+        EventData first[] = TrackSimplifier.simplify(ev, 1.0, 5L, EventData.LimitType.FIRST);
+        EventData last[]  = TrackSimplifier.simplify(ev, 1.0, 5L, EventData.LimitType.LAST);
+        assertEquals(5L, first.length, "trimmed (first)");
+        assertTrue(first[0] == ev[0], "first events kept");
+        assertEquals(5L, last.length, "trimmed (last)");
+        assertTrue(last[4] == ev[ev.length - 1], "last events kept");
+    }
+
+    public void testToleranceMeters()
+    {
+        EventData ev[] = _straightTrack("dev1", 11); // about 1112 meters north/south
+        double tolM = TrackSimplifier.getToleranceMeters(ev, 800, 600, 2.0);
+        assertEquals(1112.0 / 600.0 * 2.0, tolM, 0.5, "tolerance meters");
+        assertEquals(0.0, TrackSimplifier.getToleranceMeters(ev, 800, 600, 0.0), 0.0, "zero pixel tolerance");
+        assertEquals(0.0, TrackSimplifier.getToleranceMeters(new EventData[0], 800, 600, 2.0), 0.0, "no events");
+    }
+
+}
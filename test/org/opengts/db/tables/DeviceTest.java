@@ -0,0 +1,108 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Device tests (database tests are skipped if no database is configured)
+// ----------------------------------------------------------------------------
+package org.opengts.db.tables;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+
+public class DeviceTest
+    extends UnitTest
+{
+
+    private static final String TEST_ACCOUNT = "unittest";
+
+    private static boolean didInit = false;
+
+    /* initialize the runtime config, and return the test account (skip if no database) */
+    private static Account _getTestAccount()
+    {
+        if (!didInit) {
+            didInit = true;
+            DBConfig.cmdLineInit(new String[0], false);
+        }
+        try {
+            if (!Account.getFactory().tableExists() || !EventData.getFactory().tableExists()) {
+                UnitTest.skip("EventData table not available");
+            }
+            Account account = Account.getAccount(TEST_ACCOUNT);
+            return (account != null)? account : Account.createNewAccount(TEST_ACCOUNT);
+        } catch (DBException dbe) {
+            UnitTest.skip("Database not available: " + dbe.getMessage());
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    public void testActionPropertyChange()
+    {
+        try {
+            RTConfig.setString(DBConfig.PROP_Device_futureDate_action, "truncate");
+            assertEquals((long)Device.FUTURE_DATE_TRUNCATE, (long)Device.futureEventDateAction(), "futureDate truncate");
+            RTConfig.setString(DBConfig.PROP_Device_futureDate_action, "ignore");
+            assertEquals((long)Device.FUTURE_DATE_IGNORE, (long)Device.futureEventDateAction(), "futureDate ignore");
+            RTConfig.setString(DBConfig.PROP_Device_invalidSpeed_action, "truncate");
+            assertEquals((long)Device.INVALID_SPEED_TRUNCATE, (long)Device.invalidSpeedAction(), "invalidSpeed truncate");
+            // a thread-temporary override is seen, and does not outlive its scope
+            RTProperties tmp = new RTProperties();
+            tmp.setString(DBConfig.PROP_Device_invalidSpeed_action, "ignore");
+            RTConfig.pushTemporaryProperties(tmp);
+            try {
+                assertEquals((long)Device.INVALID_SPEED_IGNORE, (long)Device.invalidSpeedAction(), "invalidSpeed temporary");
+            } finally {
+                RTConfig.popTemporaryProperties(tmp);
+            }
+            assertEquals((long)Device.INVALID_SPEED_TRUNCATE, (long)Device.invalidSpeedAction(), "invalidSpeed restored");
+        } finally {
+            RTConfig.setProperty(DBConfig.PROP_Device_futureDate_action  , null);
+            RTConfig.setProperty(DBConfig.PROP_Device_invalidSpeed_action, null);
+        }
+        assertEquals((long)Device.FUTURE_DATE_DISABLED, (long)Device.futureEventDateAction(), "futureDate default");
+    }
+
+    public void testInsertDuplicateEventData()
+        throws DBException
+    {
+        Account account = _getTestAccount();
+        String  devID   = "dup" + DateTime.getCurrentTimeSec();
+        Device  device  = Device.createNewDevice(account, devID, null);
+        try {
+            long timestamp = DateTime.getCurrentTimeSec();
+            int  code      = StatusCodes.STATUS_LOCATION;
+            for (int i = 0; i < 2; i++) {
+                EventData.Key evKey = new EventData.Key(TEST_ACCOUNT, devID, timestamp, code);
+                EventData evdb = evKey.getDBRecord();
+                evdb.setGeoPoint(new GeoPoint(39.1234, -142.1234));
+                assertTrue(device.insertEventData(evdb), "insertEventData #" + (i + 1));
+            }
+            long count = EventData.getRecordCount(TEST_ACCOUNT, devID, timestamp, timestamp);
+            assertEquals(1L, count, "EventData row count");
+        } finally {
+            new Device.Key(TEST_ACCOUNT, devID).delete(true);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  DateTime.Formatter tests (results are compared with SimpleDateFormat)
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.text.*;
+
+public class DateTimeTest
+    extends UnitTest
+{
+
+    private static final String FORMATS[] = {
+        "yyyy/MM/dd HH:mm:ss zzz",
+        "yyyy-MM-dd'T'HH:mm:ss.SSS",
+        "EEE, d MMM yyyy h:mm a",
+        "K:mm:ss a 'o''clock'",
+        "kk:mm",
+    };
+
+    /* compare Formatter output with SimpleDateFormat for each time in the range */
+    private static void _compare(String tzID, long startMS, long endMS, long stepMS)
+    {
+        TimeZone tz = TimeZone.getTimeZone(tzID);
+        for (String fmt : FORMATS) {
+            DateTime.Formatter dtf = new DateTime.Formatter(fmt, tz, Locale.US);
+            SimpleDateFormat   sdf = new SimpleDateFormat(fmt, Locale.US);
+            sdf.setTimeZone(tz);
+            for (long ms = startMS; ms <= endMS; ms += stepMS) {
+                String expect = sdf.format(new java.util.Date(ms));
+                assertEquals(expect, dtf.format(ms), tzID + " [" + fmt + "] " + ms);
+            }
+        }
+    }
+
+    public void testFormatUTC()
+    {
+        // 2010/01/01 00:00:00 UTC, two days in 7 minute 13.5 second steps
+        long start = 1262304000000L;
+        _compare("UTC", start, start + (2L * 86400000L), 433500L);
+    }
+
+    public void testFormatDaylightSavings()
+    {
+        // 2010/03/13 through 2010/03/15 US/Pacific (spring forward on 03/14)
+        _compare("America/Los_Angeles", 1268467200000L, 1268640000000L, 600000L);
+        // 2010/11/06 through 2010/11/08 US/Pacific (fall back on 11/07)
+        _compare("America/Los_Angeles", 1289026800000L, 1289203200000L, 600000L);
+    }
+
+    public void testFormatOutOfOrder()
+    {
+        // the cached day must be recomputed when moving backward in time
+        TimeZone tz = TimeZone.getTimeZone("Europe/London");
+        DateTime.Formatter dtf = new DateTime.Formatter("yyyy/MM/dd HH:mm:ss", tz, Locale.US);
+        SimpleDateFormat   sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.US);
+        sdf.setTimeZone(tz);
+        long times[] = { 1262390400000L, 1230854400000L, 1262390399999L, 1293926400000L, 0L };
+        for (long ms : times) {
+            assertEquals(sdf.format(new java.util.Date(ms)), dtf.format(ms), "time " + ms);
+        }
+    }
+
+    public void testGetFormatterCached()
+    {
+        TimeZone tz = TimeZone.getTimeZone("UTC");
+        DateTime.Formatter f1 = DateTime.getFormatter("yyyy/MM/dd", tz);
+        DateTime.Formatter f2 = DateTime.getFormatter("yyyy/MM/dd", tz);
+        assertTrue(f1 == f2, "same formatter returned for the same thread/format/TimeZone");
+        assertEquals("2010/01/01", DateTime.format(1262304000L, tz, "yyyy/MM/dd"), "format seconds");
+    }
+
+}
@@ -0,0 +1,99 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  FieldTokenizer tests
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.nio.*;
+
+public class FieldTokenizerTest
+    extends UnitTest
+{
+
+    public void testFieldIteration()
+    {
+        FieldTokenizer ft = new FieldTokenizer().reset("a,,bc,");
+        assertEquals(4L, ft.getFieldCount(), "field count");
+        assertTrue(ft.next() && ft.fieldEquals("a"), "field 0");
+        assertTrue(ft.next() && ft.isFieldEmpty(), "field 1 empty");
+        assertTrue(ft.next() && ft.fieldEquals("bc"), "field 2");
+        assertEquals(2L, ft.getFieldIndex(), "field index");
+        assertTrue(ft.next() && ft.isFieldEmpty(), "field 3 empty");
+        assertFalse(ft.next(), "no more fields");
+    }
+
+    public void testGotoFieldAndSubField()
+    {
+        FieldTokenizer ft = new FieldTokenizer('|').reset("x|hhmmss|z");
+        assertTrue(ft.gotoField(1), "goto field 1");
+        assertEquals("hh", ft.subField(0,2).getFieldString(), "subField");
+        assertTrue(ft.gotoField(1), "goto field 1 again (rescan)");
+        assertEquals("mmss", ft.subField(2,6).getFieldString(), "subField restored");
+        assertFalse(ft.gotoField(3), "field 3 does not exist");
+    }
+
+    public void testNumericFields()
+    {
+        FieldTokenizer ft = new FieldTokenizer().reset("123,-45.25,1F,,abc");
+        assertTrue(ft.next(), "next");
+        assertEquals(123L, ft.getFieldLong(-1L), "long");
+        assertTrue(ft.next(), "next");
+        assertEquals(-45.25, ft.getFieldDouble(0.0), 0.0000001, "double");
+        assertTrue(ft.next(), "next");
+        assertEquals(0x1FL, ft.getFieldHex(-1L), "hex");
+        assertTrue(ft.next(), "next");
+        assertEquals(-1L, ft.getFieldLong(-1L), "empty field default");
+        assertTrue(ft.next(), "next");
+        assertEquals(7L, ft.getFieldInt(7), "non-numeric default");
+    }
+
+    public void testNmeaCoordinate()
+    {
+        FieldTokenizer ft = new FieldTokenizer().reset("3907.4025,,-1");
+        assertTrue(ft.next(), "next");
+        assertEquals(39.0 + (7.4025 / 60.0), ft.getFieldNmeaCoordinate(0.0), 0.0000001, "coordinate");
+        assertTrue(ft.next(), "next");
+        assertEquals(99.0, ft.getFieldNmeaCoordinate(99.0), 0.0, "empty coordinate default");
+    }
+
+    public void testByteSources()
+    {
+        byte b[] = StringTools.getBytes("$GPRMC,123519,A*6A");
+        FieldTokenizer ft = new FieldTokenizer().reset(b, 1, b.length - 4);
+        assertEquals(3L, ft.getFieldCount(), "byte field count");
+        assertTrue(ft.next() && ft.fieldEquals("GPRMC"), "byte field 0");
+        assertTrue(ft.next() && (ft.getFieldLong(0L) == 123519L), "byte field 1");
+        ByteBuffer bb = ByteBuffer.wrap(StringTools.getBytes("7,8"));
+        ft.reset(bb);
+        assertTrue(ft.next() && (ft.getFieldInt(0) == 7), "ByteBuffer field 0");
+        assertTrue(ft.next() && (ft.getFieldInt(0) == 8), "ByteBuffer field 1");
+    }
+
+    public void testStaticParsers()
+    {
+        assertEquals(42L, FieldTokenizer.parseLong("x42y", 1, 3, 0L), "parseLong");
+        assertEquals(0xABL, FieldTokenizer.parseHex("ab", 0, 2, 0L), "parseHex");
+        assertEquals(1.5, FieldTokenizer.parseDouble("1.5", 0, 3, 0.0), 0.0000001, "parseDouble");
+        assertEquals(-3L, FieldTokenizer.parseLong("", 0, 0, -3L), "parseLong empty");
+    }
+
+}
@@ -0,0 +1,111 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Nmea0183Decoder tests (results are compared with Nmea0183)
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.nio.*;
+
+public class Nmea0183DecoderTest
+    extends UnitTest
+{
+
+    private static final String GPRMC = "$GPRMC,123519,A,4807.038,N,01131.000,W,022.4,084.4,230394,003.1,W*00"; // checksum set by _withChecksum
+    private static final String GPGGA = "$GPGGA,123519,4807.038,S,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*00"; // checksum set by _withChecksum
+
+    private static String _withChecksum(String rcd)
+    {
+        // replace the checksum of the specified record with the calculated checksum
+        int cs = rcd.indexOf('*');
+        int x = 0;
+        for (int i = 1; i < cs; i++) { x ^= rcd.charAt(i); }
+        return rcd.substring(0, cs + 1) + StringTools.toHexString(x & 0xFF, 8);
+    }
+
+    public void testGPRMC()
+    {
+        String rcd = _withChecksum(GPRMC);
+        Nmea0183Decoder dec = new Nmea0183Decoder();
+        assertTrue(dec.decode(rcd), "decode");
+        Nmea0183Decoder.Record r = dec.getRecord();
+        Nmea0183 nmea = new Nmea0183(rcd);
+        assertTrue((r.getParsedRecordTypes() & Nmea0183.TYPE_GPRMC) != 0L, "GPRMC parsed");
+        assertTrue(r.isValidChecksum(), "checksum");
+        assertTrue(r.isValidGPS(), "valid GPS");
+        assertEquals(nmea.getFixtime(), r.getFixtime(), "fixtime");
+        assertEquals(nmea.getLatitude() , r.getLatitude() , 0.0000001, "latitude");
+        assertEquals(nmea.getLongitude(), r.getLongitude(), 0.0000001, "longitude");
+        assertTrue(r.getLongitude() < 0.0, "west longitude is negative");
+        assertEquals(nmea.getSpeedKPH(), r.getSpeedKPH(), 0.0000001, "speed");
+        assertEquals(nmea.getHeading() , r.getHeading() , 0.0000001, "heading");
+    }
+
+    public void testGPGGA()
+    {
+        String rcd = _withChecksum(GPGGA);
+        Nmea0183Decoder dec = new Nmea0183Decoder();
+        assertTrue(dec.decode(rcd), "decode");
+        Nmea0183Decoder.Record r = dec.getRecord();
+        Nmea0183 nmea = new Nmea0183(rcd);
+        assertTrue((r.getParsedRecordTypes() & Nmea0183.TYPE_GPGGA) != 0L, "GPGGA parsed");
+        assertTrue(r.getLatitude() < 0.0, "south latitude is negative");
+        assertEquals(nmea.getLatitude()         , r.getLatitude()         , 0.0000001, "latitude");
+        assertEquals(nmea.getLongitude()        , r.getLongitude()        , 0.0000001, "longitude");
+        assertEquals(nmea.getAltitudeMeters()   , r.getAltitudeMeters()   , 0.0000001, "altitude");
+        assertEquals(nmea.getNumberOfSatellites(), r.getNumberOfSatellites(), "satellites");
+    }
+
+    public void testCombinedRecords()
+    {
+        String rcds = _withChecksum(GPRMC) + "\r\n" + _withChecksum(GPGGA) + "\r\n";
+        Nmea0183Decoder dec = new Nmea0183Decoder();
+        assertTrue(dec.decode(ByteBuffer.wrap(StringTools.getBytes(rcds))), "decode");
+        Nmea0183Decoder.Record r = dec.getRecord();
+        long types = r.getParsedRecordTypes();
+        assertTrue((types & Nmea0183.TYPE_GPRMC) != 0L, "GPRMC parsed");
+        assertTrue((types & Nmea0183.TYPE_GPGGA) != 0L, "GPGGA parsed");
+        assertTrue(r.hasSpeed(), "speed from GPRMC");
+        assertTrue(r.hasAltitude(), "altitude from GPGGA");
+    }
+
+    public void testInvalidChecksum()
+    {
+        String rcd = GPRMC.substring(0, GPRMC.indexOf('*') + 1) + "00";
+        Nmea0183Decoder dec = new Nmea0183Decoder();
+        dec.decode(rcd);
+        assertEquals(0L, dec.getRecord().getParsedRecordTypes() & Nmea0183.TYPE_GPRMC, "bad checksum rejected");
+        dec.setIgnoreChecksum(true);
+        assertTrue(dec.decode(rcd), "bad checksum ignored");
+    }
+
+    public void testInvalidFix()
+    {
+        String rcd = _withChecksum("$GPRMC,123519,V,,,,,,,230394,,*00");
+        Nmea0183Decoder dec = new Nmea0183Decoder();
+        dec.decode(rcd);
+        Nmea0183Decoder.Record r = dec.getRecord();
+        assertTrue((r.getParsedRecordTypes() & Nmea0183.TYPE_GPRMC) != 0L, "GPRMC parsed");
+        assertFalse(r.isValidGPS(), "invalid GPS");
+        assertFalse(r.hasLatitude(), "no latitude");
+    }
+
+}
@@ -0,0 +1,188 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  NotificationOutbox tests
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+
+public class NotificationOutboxTest
+    extends UnitTest
+{
+
+    /* create an empty temporary outbox directory */
+    private static File _tempDir(String name)
+    {
+        File dir = new File(System.getProperty("java.io.tmpdir","/tmp"),
+            "outboxTest_" + name + "_" + System.currentTimeMillis());
+        dir.mkdirs();
+        return dir;
+    }
+
+    /* count the journaled entries in the directory */
+    private static int _countMsgFiles(File dir)
+    {
+        File files[] = FileTools.getFiles(dir, new String[] { "msg" });
+        return (files != null)? files.length : 0;
+    }
+
+    /* delete the temporary outbox directory */
+    private static void _delete(File f)
+    {
+        if (f.isDirectory()) {
+            File list[] = f.listFiles();
+            if (list != null) { for (File c : list) { _delete(c); } }
+        }
+        f.delete();
+    }
+
+    private static NotificationOutbox.Entry _entry(String to, String subject)
+    {
+        NotificationOutbox.Entry entry = new NotificationOutbox.Entry(NotificationOutbox.TYPE_EMAIL);
+        entry.setString(NotificationOutbox.KEY_TO     , to);
+        entry.setString(NotificationOutbox.KEY_SUBJECT, subject);
+        entry.setString(NotificationOutbox.KEY_BODY   , "body");
+        entry.setDedupKey(to + "|" + subject);
+        return entry;
+    }
+
+    public void testQueueJournal()
+        throws IOException
+    {
+        File dir = _tempDir("journal");
+        try {
+            NotificationOutbox outbox = new NotificationOutbox(dir);
+            assertTrue(outbox.queue(_entry("a@example.com","one")), "queue first");
+            assertTrue(outbox.queue(_entry("a@example.com","two")), "queue second");
+            assertFalse(outbox.queue(null), "queue null");
+            assertEquals(2L, outbox.getPendingCount(), "pending count");
+            assertEquals(2L, _countMsgFiles(dir), "journal files");
+            // a new instance reloads the journaled entries
+            outbox.close();
+            NotificationOutbox reload = new NotificationOutbox(dir);
+            assertEquals(2L, reload.getPendingCount(), "reloaded pending count");
+            reload.close();
+        } finally {
+            _delete(dir);
+        }
+    }
+
+    public void testDuplicateSuppressed()
+        throws IOException
+    {
+        File dir = _tempDir("dedup");
+        try {
+            NotificationOutbox outbox = new NotificationOutbox(dir);
+            assertTrue(outbox.queue(_entry("a@example.com","alert")), "queue first");
+            assertTrue(outbox.queue(_entry("a@example.com","alert")), "duplicate reported as queued");
+            assertEquals(1L, outbox.getPendingCount(), "duplicate not added");
+            assertEquals(1L, _countMsgFiles(dir), "duplicate not journaled");
+            assertTrue(outbox.getStatistics().indexOf("duplicate=1") >= 0, "duplicate counted");
+            NotificationOutbox.Entry noKey = _entry("a@example.com","alert");
+            noKey.setDedupKey(null);
+            assertTrue(outbox.queue(noKey), "queue without dedup key");
+            assertEquals(2L, outbox.getPendingCount(), "entries without a key are never suppressed");
+            outbox.close();
+        } finally {
+            _delete(dir);
+        }
+    }
+
+    public void testFailedWriteNotRecorded()
+        throws IOException
+    {
+        File dir = _tempDir("nowrite");
+        try {
+            NotificationOutbox outbox = new NotificationOutbox(dir);
+            // replace the outbox directory with a plain file so the journal write fails
+            _delete(dir);
+            try {
+                new FileOutputStream(dir).close();
+            } catch (IOException ioe) {
+                fail("Unable to create file: " + dir);
+            }
+            assertFalse(outbox.queue(_entry("a@example.com","alert")), "queue with failed write");
+            assertEquals(0L, outbox.getPendingCount(), "failed entry not pending");
+            // once the directory is writable again, the same key must not be suppressed
+            _delete(dir);
+            dir.mkdirs();
+            assertTrue(outbox.queue(_entry("a@example.com","alert")), "queue after failed write");
+            assertEquals(1L, outbox.getPendingCount(), "entry queued after failed write");
+            assertTrue(outbox.getStatistics().indexOf("duplicate=0") >= 0, "not counted as duplicate");
+            outbox.close();
+        } finally {
+            _delete(dir);
+        }
+    }
+
+    public void testDirectoryLocked()
+        throws IOException
+    {
+        File dir = _tempDir("lock");
+        try {
+            NotificationOutbox outbox = new NotificationOutbox(dir);
+            try {
+                new NotificationOutbox(dir);
+                fail("Outbox directory opened twice");
+            } catch (IOException ioe) {
+                // expected
+            }
+            outbox.close();
+            new NotificationOutbox(dir).close();
+        } finally {
+            _delete(dir);
+        }
+    }
+
+    public void testEmailNoRecipients()
+    {
+        NotificationOutbox.DeliveryHandler handler = NotificationOutbox.GetDeliveryHandler(NotificationOutbox.TYPE_EMAIL);
+        assertTrue(handler != null, "default email handler registered");
+        NotificationOutbox.Entry entries[] = {
+            _entry("", "blank"),
+            _entry("not-an-address", "invalid"),
+            _entry("", "ccOnly"),
+        };
+        entries[2].setString(NotificationOutbox.KEY_CC , "cc@example.com");
+        entries[2].setString(NotificationOutbox.KEY_BCC, "bcc@example.com");
+        int result[] = handler.deliver(entries);
+        assertEquals(3L, result.length, "result count");
+        for (int i = 0; i < result.length; i++) {
+            assertEquals((long)NotificationOutbox.RESULT_FAILED, (long)result[i], "entry " + i);
+        }
+    }
+
+    public void testDeliveryHandlerRegistry()
+    {
+        NotificationOutbox.DeliveryHandler handler = new NotificationOutbox.DeliveryHandler() {
+            public int[] deliver(NotificationOutbox.Entry entries[]) {
+                return new int[entries.length];
+            }
+        };
+        NotificationOutbox.AddDeliveryHandler("Test", handler);
+        assertTrue(NotificationOutbox.GetDeliveryHandler("test") == handler, "handler type is case-insensitive");
+        NotificationOutbox.AddDeliveryHandler("test", null);
+        assertTrue(NotificationOutbox.GetDeliveryHandler("test") == null, "handler removed");
+        assertTrue(NotificationOutbox.GetDeliveryHandler(null) == null, "null type");
+    }
+
+}
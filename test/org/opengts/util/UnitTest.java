@@ -0,0 +1,200 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Minimal unit test base class and runner (used by the "test" build target)
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+*** Minimal unit test base class.<br>
+*** Each public no-argument "test*" method of a subclass is run against a new instance of
+*** the subclass.  A test fails by throwing any exception (typically from one of the
+*** "assert*" methods), and may call "skip" when a required resource (ie. a database) is
+*** not available.<br>
+*** Usage: java org.opengts.util.UnitTest &lt;TestClass&gt; [&lt;TestClass&gt; ...]
+**/
+
+public abstract class UnitTest
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Thrown to indicate that a test was skipped
+    **/
+    public static class SkipException
+        extends RuntimeException
+    {
+        public SkipException(String msg) {
+            super(msg);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Fails the current test
+    *** @param msg  The failure message
+    **/
+    public static void fail(String msg)
+    {
+        throw new AssertionError(msg);
+    }
+
+    /**
+    *** Skips the current test
+    *** @param msg  The reason the test was skipped
+    **/
+    public static void skip(String msg)
+    {
+        throw new SkipException(msg);
+    }
+
+    /**
+    *** Fails the current test if the specified condition is false
+    *** @param cond  The condition to test
+    *** @param msg   The failure message
+    **/
+    public static void assertTrue(boolean cond, String msg)
+    {
+        if (!cond) {
+            UnitTest.fail(msg);
+        }
+    }
+
+    /**
+    *** Fails the current test if the specified condition is true
+    *** @param cond  The condition to test
+    *** @param msg   The failure message
+    **/
+    public static void assertFalse(boolean cond, String msg)
+    {
+        UnitTest.assertTrue(!cond, msg);
+    }
+
+    /**
+    *** Fails the current test if the specified values are not equal
+    *** @param expect  The expected value
+    *** @param actual  The actual value
+    *** @param msg     The failure message
+    **/
+    public static void assertEquals(Object expect, Object actual, String msg)
+    {
+        if ((expect == null)? (actual != null) : !expect.equals(actual)) {
+            UnitTest.fail(msg + " (expected <" + expect + ">, found <" + actual + ">)");
+        }
+    }
+
+    /**
+    *** Fails the current test if the specified values are not equal
+    *** @param expect  The expected value
+    *** @param actual  The actual value
+    *** @param msg     The failure message
+    **/
+    public static void assertEquals(long expect, long actual, String msg)
+    {
+        if (expect != actual) {
+            UnitTest.fail(msg + " (expected <" + expect + ">, found <" + actual + ">)");
+        }
+    }
+
+    /**
+    *** Fails the current test if the specified values differ by more than 'delta'
+    *** @param expect  The expected value
+    *** @param actual  The actual value
+    *** @param delta   The allowed difference
+    *** @param msg     The failure message
+    **/
+    public static void assertEquals(double expect, double actual, double delta, String msg)
+    {
+        if (Math.abs(expect - actual) > delta) {
+            UnitTest.fail(msg + " (expected <" + expect + ">, found <" + actual + ">)");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private int passCount = 0;
+    private int failCount = 0;
+    private int skipCount = 0;
+
+    /* run all "test*" methods of the specified class */
+    private void _runTests(Class<?> testClass)
+    {
+        Method methods[] = testClass.getMethods();
+        Arrays.sort(methods, new Comparator<Method>() {
+            public int compare(Method m1, Method m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        for (Method m : methods) {
+            if (!m.getName().startsWith("test") || (m.getParameterTypes().length > 0) ||
+                Modifier.isStatic(m.getModifiers())) {
+                continue;
+            }
+            String name = testClass.getName() + "." + m.getName();
+            try {
+                m.invoke(testClass.newInstance());
+                this.passCount++;
+                Print.sysPrintln("PASS: %s", name);
+            } catch (InvocationTargetException ite) {
+                Throwable t = ite.getCause();
+                if (t instanceof SkipException) {
+                    this.skipCount++;
+                    Print.sysPrintln("SKIP: %s - %s", name, t.getMessage());
+                } else {
+                    this.failCount++;
+                    Print.sysPrintln("FAIL: %s - %s", name, t);
+                    if (!(t instanceof AssertionError)) {
+                        t.printStackTrace();
+                    }
+                }
+            } catch (Throwable th) {
+                this.failCount++;
+                Print.sysPrintln("FAIL: %s - %s", name, th);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs the tests in the specified classes, and exits with a non-zero code if any test failed
+    *** @param argv  The test class names
+    **/
+    public static void main(String argv[])
+    {
+        UnitTest runner = new UnitTest() {};
+        for (String className : argv) {
+            try {
+                runner._runTests(Class.forName(className));
+            } catch (ClassNotFoundException cnfe) {
+                runner.failCount++;
+                Print.sysPrintln("FAIL: class not found - %s", className);
+            }
+        }
+        Print.sysPrintln("Tests: %d passed, %d failed, %d skipped", runner.passCount, runner.failCount, runner.skipCount);
+        System.exit((runner.failCount > 0)? 1 : 0);
+    }
+
+}
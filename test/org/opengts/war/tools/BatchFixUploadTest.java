@@ -0,0 +1,169 @@
+// ----------------------------------------------------------------------------
+// Copyright 2006-2010, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  BatchFixUpload tests
+// ----------------------------------------------------------------------------
+package org.opengts.war.tools;
+
+import java.lang.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.io.*;
+
+import javax.servlet.http.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+public class BatchFixUploadTest
+    extends UnitTest
+{
+
+    private static final String GPRMC       = "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230310,003.1,W*66";
+    private static final long   GPRMC_TIME  = 1269347719L; // 2010/03/23 12:35:19 GMT
+
+    /* parse the line into a new Fix (null if the line is not parsed) */
+    private static BatchFixUpload.Fix _parse(String line)
+    {
+        BatchFixUpload.Fix fix = new BatchFixUpload.Fix();
+        return BatchFixUpload.parseFix(line, fix, null)? fix : null;
+    }
+
+    public void testParseGPRMC()
+    {
+        BatchFixUpload.Fix fix = _parse(GPRMC);
+        assertTrue(fix != null, "$GPRMC parsed");
+        assertEquals(GPRMC_TIME, fix.fixtime, "fixtime");
+        assertTrue(fix.isValid, "valid fix");
+        assertEquals( 48.1173, fix.latitude , 0.0001, "latitude");
+        assertEquals( 11.5167, fix.longitude, 0.0001, "longitude");
+        assertEquals(22.4 * GeoPoint.KILOMETERS_PER_NAUTICAL_MILE, fix.speedKPH, 0.01, "speed");
+        assertEquals(84.4, fix.heading, 0.01, "heading");
+        assertTrue(fix.status == null, "no status");
+        fix = _parse(GPRMC + ",InputOn");
+        assertTrue((fix != null) && "InputOn".equals(fix.status), "status following the checksum");
+        assertTrue(_parse(GPRMC.replace("*66","*00")) == null, "invalid checksum");
+        assertTrue(_parse("$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,") == null, "not $GPRMC");
+        fix = _parse(GPRMC.replace(",A,",",V,").replace("*66","*71"));
+        assertTrue((fix != null) && !fix.isValid, "invalid GPS fix parsed");
+        assertEquals(0.0, fix.latitude, 0.0, "invalid GPS latitude");
+    }
+
+    public void testParseCSV()
+    {
+        BatchFixUpload.Fix fix = _parse("1262304000,39.1234,-142.1234,55.5,90,120.0,1234.5,InputOn");
+        assertTrue(fix != null, "CSV parsed");
+        assertEquals(1262304000L, fix.fixtime, "fixtime");
+        assertTrue(fix.isValid, "valid fix");
+        assertEquals(  39.1234, fix.latitude  , 0.0, "latitude");
+        assertEquals(-142.1234, fix.longitude , 0.0, "longitude");
+        assertEquals(55.5     , fix.speedKPH  , 0.0, "speed");
+        assertEquals(90.0     , fix.heading   , 0.0, "heading");
+        assertEquals(120.0    , fix.altitudeM , 0.0, "altitude");
+        assertEquals(1234.5   , fix.odometerKM, 0.0, "odometer");
+        assertEquals("InputOn", fix.status, "status");
+        fix = _parse("1262304000000,39.1234,-142.1234");
+        assertTrue(fix != null, "CSV (minimal) parsed");
+        assertEquals(1262304000L, fix.fixtime, "millisecond fixtime");
+        assertEquals(-1.0, fix.heading, 0.0, "heading not specified");
+        assertTrue(_parse("1262304000,39.1234") == null, "missing longitude");
+        assertTrue(_parse("1262304000,abc,-142.1234") == null, "invalid latitude");
+        fix = _parse("1262304000,95.0,-142.1234,50");
+        assertTrue((fix != null) && !fix.isValid, "out of range latitude parsed as invalid GPS");
+        assertEquals(0.0, fix.speedKPH, 0.0, "invalid GPS speed");
+    }
+
+    public void testParseJSON()
+    {
+        BatchFixUpload.Fix fix = _parse("{\"t\":1262304000, \"lat\":39.1234, \"lon\":-142.1234, \"speed\":55.5, \"acc\":12, \"code\":\"InputOn\"}");
+        assertTrue(fix != null, "JSON parsed");
+        assertEquals(1262304000L, fix.fixtime, "fixtime");
+        assertEquals(  39.1234, fix.latitude , 0.0, "latitude");
+        assertEquals(-142.1234, fix.longitude, 0.0, "longitude");
+        assertEquals(55.5     , fix.speedKPH , 0.0, "speed");
+        assertEquals(12.0     , fix.accuracyM, 0.0, "accuracy");
+        assertEquals("InputOn", fix.status, "status");
+        fix = _parse("{\"timestamp\":1262304000000,\"latitude\":39.1234,\"longitude\":-142.1234}");
+        assertTrue(fix != null, "JSON (long names) parsed");
+        assertEquals(1262304000L, fix.fixtime, "millisecond fixtime");
+        fix = _parse("{\"lat\":39.1234,\"lon\":-142.1234}");
+        assertTrue((fix != null) && (fix.fixtime == 0L), "JSON without time parsed (rejected by process)");
+        assertTrue(_parse("{\"t\":1262304000,\"lat\":39.1234}") == null, "missing longitude");
+        assertTrue(_parse("{\"t\":1262304000,\"lat\":\"39.1234") == null, "unterminated string");
+        assertTrue(_parse("") == null, "blank line");
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* return a proxy implementing the specified servlet interface */
+    private static <T> T _proxy(Class<T> type, final Map<String,Object> values)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object args[]) {
+                    return values.get(method.getName());
+                }
+            }));
+    }
+
+    public void testProcessResults()
+        throws IOException
+    {
+        String body =
+            "# buffered fixes\n" +                              // 1: ignored
+            "\n" +                                              // 2: ignored
+            "1262304000,39.1234,-142.1234\n" +                  // 3: IGNORED (by handler)
+            "garbage\n" +                                       // 4: INVALID
+            "{\"lat\":39.1234,\"lon\":-142.1234}\n" +           // 5: INVALID (no time)
+            "  # indented comment\n" +                          // 6: ignored
+            GPRMC + "\n";                                       // 7: IGNORED (by handler)
+        Map<String,Object> reqValues = new HashMap<String,Object>();
+        reqValues.put("getMethod"     , "POST");
+        reqValues.put("getContentType", "text/plain");
+        reqValues.put("getReader"     , new BufferedReader(new StringReader(body)));
+        StringWriter sw = new StringWriter();
+        Map<String,Object> rspValues = new HashMap<String,Object>();
+        rspValues.put("getWriter"     , new PrintWriter(sw, true));
+        HttpServletRequest  request  = _proxy(HttpServletRequest.class , reqValues);
+        HttpServletResponse response = _proxy(HttpServletResponse.class, rspValues);
+        assertTrue(BatchFixUpload.isBatchRequest(request), "batch request");
+
+        final java.util.List<Long> fixTimes = new Vector<Long>();
+        BatchFixUpload.FixHandler handler = new BatchFixUpload.FixHandler() {
+            public EventData createEventData(Device device, BatchFixUpload.Fix fix) {
+                fixTimes.add(new Long(fix.fixtime));
+                return null; // ignored (nothing is inserted)
+            }
+        };
+        Device device = new Device(new Device.Key("unittest", "batch")) {
+            public void updateChangedEventFields() throws DBException {
+                // (no database, nothing was inserted)
+            }
+        };
+        int saved = BatchFixUpload.process(request, response, device, handler);
+        assertEquals(0L, saved, "no events saved");
+        assertEquals(2L, fixTimes.size(), "fixes passed to handler");
+        assertEquals(GPRMC_TIME, fixTimes.get(1).longValue(), "$GPRMC fixtime");
+        String expect = "3,IGNORED\n4,INVALID\n5,INVALID\n7,IGNORED\n";
+        assertEquals(expect, sw.toString().replace("\r",""), "results");
+    }
+
+}
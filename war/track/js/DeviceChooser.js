@@ -54,6 +54,8 @@ var SEARCH_TEXT_SIZE            = 18;
 
 var PREDEFINED_CHOOSER_HTML     = true;
 
+var SERVER_SEARCH_DELAY_MS      = 250;
+
 // ----------------------------------------------------------------------------
 
 var deviceSelectorVisible       = false;
@@ -173,6 +175,12 @@ function deviceShowChooserList(elemNameID, elemNameDesc, list)
         }
     };
         
+    /* load first page from server */
+    if (deviceIsServerSearch()) {
+        var sv = (devChooserSearchTextElem)? devChooserSearchTextElem.value : "";
+        deviceServerSearch(sv, 0);
+    }
+
     /* focus on search text area */
     if (DeviceChooserEnableSearch) {
         //document.devSearchForm.devSearchText.focus();
@@ -312,6 +320,19 @@ function deviceSearch(event)
     if (!searchTextElem) { searchTextElem = document.getElementByName(ID_SEARCH_TEXT); }
     var searchVal = (searchTextElem)? searchTextElem.value.toLowerCase() : "";
     //alert("Search: " + searchVal);
+
+    /* server search (delay until typing pauses) */
+    if (deviceIsServerSearch()) {
+        if (serverSearchTimer) { clearTimeout(serverSearchTimer); }
+        serverSearchTimer = setTimeout(function() {
+            serverSearchTimer = null;
+            if (searchVal != serverSearchText) {
+                deviceServerSearch(searchVal, 0);
+            }
+        }, SERVER_SEARCH_DELAY_MS);
+        return !isEnterKeyPressed(event);
+    }
+
     var tableDiv = document.getElementById(ID_DIV_TABLE);
     if (tableDiv) {
 
@@ -382,46 +403,119 @@ function deviceCloseChooser()
 
 // ----------------------------------------------------------------------------
 
-function deviceLoadList(elemNameID, elemNameDesc, deviceListURL) 
+var serverSearchTimer   = null;
+var serverSearchText    = null;
+var serverSearchSeq     = 0;
+var serverSearchItems   = [];
+var serverSearchTotal   = 0;
+
+/* return true if device search/list is performed on the server */
+function deviceIsServerSearch()
+{
+    return (typeof DeviceChooserServerSearch != 'undefined') && DeviceChooserServerSearch;
+}
+
+/* request the page of matching devices starting at 'offset' */
+function deviceServerSearch(searchVal, offset)
 {
+    var seq = ++serverSearchSeq;
+    var url = DEVICE_LIST_URL + 
+        "&search=" + encodeURIComponent(searchVal) + 
+        "&offset=" + offset + 
+        "&limit="  + DeviceChooserPageSize;
     try {
-        var req = jsmGetXMLHttpRequest();
+        var req = getXMLHttpRequest();
         if (req) {
-            req.open("GET", deviceListURL, true);
-            //req.setRequestHeader("CACHE-CONTROL", "NO-CACHE");
-            //req.setRequestHeader("PRAGMA", "NO-CACHE");
+            req.open("GET", url, true);
             req.setRequestHeader("If-Modified-Since", "Sat, 1 Jan 2000 00:00:00 GMT");
             req.onreadystatechange = function() {
                 if (req.readyState == 4) {
-                    var data = req.responseText;
-                    deviceParseList(elemNameID, elemNameDesc, data);
-                } else
-                if (req.readyState == 1) {
-                    // alert('Loading points from URL: [' + req.readyState + ']\n' + mapURL);
-                } else {
-                    // alert('Problem loading URL? [' + req.readyState + ']\n' + mapURL);
+                    if (seq != serverSearchSeq) {
+                        // a newer search has been issued, ignore this response
+                    } else
+                    if (req.status == 200) {
+                        serverSearchText = searchVal;
+                        deviceServerParseList(req.responseText, offset);
+                    }
                 }
             }
             req.send(null);
         } else {
-            alert("Error [deviceLoadList]:\n" + deviceURL);
+            alert("Error [deviceServerSearch]:\n" + url);
         }
     } catch (e) {
-        alert("Error [deviceLoadList]:\n" + e);
+        alert("Error [deviceServerSearch]:\n" + e);
     }
 };
 
-function deviceParseList(elemNameID, elemNameDesc, data) 
+/* parse the JSON response, and display the list */
+function deviceServerParseList(data, offset) 
 {
-    // TODO: parse 'data'
-    var list = new Array();
-    for (var d = 1; d <= 500; d++) {
-        var D = new Object();
-        D.id = "device_" + d;
-        D.desc = "My Device #" + d;
-        list.push(D);
+    var rslt = null;
+    try {
+        rslt = (typeof JSON != 'undefined')? JSON.parse(data) : eval("(" + data + ")");
+    } catch (e) {
+        rslt = null;
+    }
+    if (!rslt || !rslt.items) { 
+        return; 
     }
-    deviceShowChooserList(elemNameID, elemNameDesc, list)
+    if (offset <= 0) {
+        serverSearchItems = [];
+    }
+    for (var i = 0; i < rslt.items.length; i++) {
+        serverSearchItems.push(rslt.items[i]);
+    }
+    serverSearchTotal = rslt.total;
+    deviceServerShowList();
+}
+
+/* display the currently loaded list, with a "More" row if additional items are available */
+function deviceServerShowList()
+{
+    var tableDiv = document.getElementById(ID_DIV_TABLE);
+    if (!tableDiv) { return; }
+    var list = serverSearchItems;
+    var idWidth = WIDTH_ID;
+    var dsWidth = WIDTH_DESC;
+    var colspan = (DeviceChooserIDPosition == IDPOS_NONE)? 1 : 2;
+    var TD_idCell = "<td nowrap class='"+CLASS_DEVSELECT_COL_DATA+"' width='"+idWidth+"' onclick=\"javascript:deviceSelected(";
+    var TD_dsCell = "<td nowrap class='"+CLASS_DEVSELECT_COL_DATA+"' width='"+dsWidth+"' onclick=\"javascript:deviceSelected(";
+    deviceGetTableHTML([], ""); // make sure header html is initialized
+    var html = searchTableHeaderHtml;
+    html += "<tbody>\n";
+    for (var d = 0; d < list.length; d++) {
+        var idVal = escapeText(list[d].id);
+        var dsVal = escapeText(list[d].desc);
+        html += "<tr idVal='"+idVal+"' dsVal='"+dsVal+"' selNdx='"+d+"' class='"+CLASS_DEVSELECT_ROW_DATA+"'>";
+        if (DeviceChooserIDPosition == IDPOS_NONE) {
+            html += TD_dsCell + d + ")\">" + dsVal + "</td>";
+        } else 
+        if (DeviceChooserIDPosition == IDPOS_LAST) {
+            html += TD_dsCell + d + ")\">" + dsVal + "</td>";
+            html += TD_idCell + d + ")\">" + idVal + "</td>";
+        } else {
+            html += TD_idCell + d + ")\">" + idVal + "</td>";
+            html += TD_dsCell + d + ")\">" + dsVal + "</td>";
+        }
+        html += "</tr>\n";
+    }
+    if (list.length < serverSearchTotal) {
+        html += "<tr class='"+CLASS_DEVSELECT_ROW_DATA+"'>";
+        html += "<td nowrap colspan='"+colspan+"' class='"+CLASS_DEVSELECT_COL_DATA+"' style='cursor:pointer;' onclick=\"javascript:deviceServerSearchMore()\">";
+        html += DEVICE_TEXT_More + " (" + list.length + "/" + serverSearchTotal + ")</td>";
+        html += "</tr>\n";
+    }
+    html += "</tbody>\n";
+    html += "</table>\n";
+    tableDiv.innerHTML = html;
+    chooserFirstDeviceNdx = (list.length > 0)? 0 : -1;
+}
+
+/* load the next page of the current search */
+function deviceServerSearchMore()
+{
+    deviceServerSearch(((serverSearchText != null)? serverSearchText : ""), serverSearchItems.length);
 }
 
 // ----------------------------------------------------------------------------
@@ -106,6 +106,7 @@ var TAG_Point                   = "P";          // CSV data record
 var TAG_Shape                   = "Shape";      // CSV data record
 
 var ATTR_isFleet                = "isFleet";
+var ATTR_encoding               = "enc";
 var ATTR_type                   = "type";
 var ATTR_routeColor             = "routeColor";
 var ATTR_textColor              = "textColor";
@@ -122,6 +123,9 @@ var ATTR_radius                 = "radius";
 var ATTR_battery                = "battery";
 var ATTR_signal                 = "signal";
 
+/* MapData encodings */
+var ENCODING_compact            = "c1";         // see 'MapEventDecoder'
+
 /* partial data */
 var jsvPartialData              = false;
 
@@ -549,6 +553,8 @@ function jsmParseXMLPoints(xmlText, recenterMode, replay) // tmz
     var dataElem = data[0];
     var dataAttr = dataElem.attributes;
     var isFleet  = getXMLNodeAttribute(dataAttr,ATTR_isFleet,false);
+    var encoding = getXMLNodeAttribute(dataAttr,ATTR_encoding,"");
+    var decoder  = (encoding == ENCODING_compact)? new MapEventDecoder() : null;
 
     /* last event */
     var latest    = dataElem.getElementsByTagName(TAG_LastEvent);
@@ -685,13 +691,21 @@ function jsmParseXMLPoints(xmlText, recenterMode, replay) // tmz
             partial  = true;
         }
 
+        /* compact encoding: delta encoded, skipped points must still be decoded */
+        if (decoder != null) {
+            decoder.reset();
+            for (var p = 0; p < startNdx; p++) {
+                decoder.decode(pts[p].childNodes[0].nodeValue);
+            }
+        }
+
         /* parse points */
         var dsPtCount = 0;
         for (var p = startNdx; p < pts.length; p++) {
             var cvsRcd = pts[p].childNodes[0].nodeValue;
 
             /* parse point */
-            var evRcd = new MapEventRecord(cvsRcd);
+            var evRcd = new MapEventRecord((decoder != null)? decoder.decode(cvsRcd) : cvsRcd);
             if (!evRcd.valid) {
                 continue; // skip invalid records
             }